@@ -0,0 +1,205 @@
+package org.psd.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的布隆过滤器，判断字符串一定不存在或可能存在。
+ * 使用MurmurHash3计算两个哈希值，通过双重哈希得到k个位置，位数组基于CAS无锁更新。
+ *
+ * @author pengshidun
+ */
+public class BloomFilter {
+    /**
+     * 位数组，每个long存放64位
+     */
+    private final AtomicLongArray bits;
+    /**
+     * 位数组的总位数
+     */
+    private final long bitSize;
+    /**
+     * 哈希函数个数
+     */
+    private final int hashFunctions;
+    /**
+     * 已插入的元素个数(重复插入也会计数，仅用于估算误判率)
+     */
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * 根据预期元素个数和期望误判率创建布隆过滤器
+     *
+     * @param expectedInsertions 预期元素个数
+     * @param fpp                期望误判率，取值(0, 1)
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1L, expectedInsertions);
+        // 最优位数 m = -n * ln(p) / (ln2)^2，按64位对齐
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1L, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        // 最优哈希函数个数 k = m / n * ln2
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * 添加元素
+     *
+     * @param value 元素
+     */
+    public void put(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int h1 = murmur3(bytes, 0);
+        int h2 = murmur3(bytes, h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(index(h1, h2, i));
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @param value 元素
+     * @return false表示一定不存在，true表示可能存在
+     */
+    public boolean mightContain(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int h1 = murmur3(bytes, 0);
+        int h2 = murmur3(bytes, h1);
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = index(h1, h2, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 根据已插入的元素个数估算当前误判率 (1 - e^(-k*n/m))^k
+     *
+     * @return 估算的误判率
+     */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions.get() / bitSize), hashFunctions);
+    }
+
+    /**
+     * 获取位数组占用的内存字节数
+     *
+     * @return 内存字节数
+     */
+    public long memoryBytes() {
+        return bitSize / 8;
+    }
+
+    /**
+     * 获取位数组的总位数
+     *
+     * @return 总位数
+     */
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * 获取哈希函数个数
+     *
+     * @return 哈希函数个数
+     */
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * 获取已插入的元素个数
+     *
+     * @return 已插入的元素个数
+     */
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    /**
+     * 通过双重哈希计算第i个位置
+     *
+     * @param h1 第一个哈希值
+     * @param h2 第二个哈希值
+     * @param i  哈希函数序号
+     * @return 位置
+     */
+    private long index(int h1, int h2, int i) {
+        long combined = (h1 & 0xFFFFFFFFL) + (long) i * (h2 & 0xFFFFFFFFL);
+        return combined % bitSize;
+    }
+
+    /**
+     * 以CAS方式将指定位置为1
+     *
+     * @param index 位置
+     */
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long old;
+        do {
+            old = bits.get(word);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, old, old | mask));
+    }
+
+    /**
+     * MurmurHash3 x86 32位哈希
+     *
+     * @param data 数据
+     * @param seed 种子
+     * @return 哈希值
+     */
+    private static int murmur3(byte[] data, int seed) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h = seed;
+        int length = data.length;
+        int blocks = length >>> 2;
+        for (int i = 0; i < blocks; i++) {
+            int offset = i << 2;
+            int k = (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                    | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        int tail = blocks << 2;
+        switch (length & 3) {
+            case 3:
+                k ^= (data[tail + 2] & 0xFF) << 16;
+            case 2:
+                k ^= (data[tail + 1] & 0xFF) << 8;
+            case 1:
+                k ^= data[tail] & 0xFF;
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
+            default:
+                break;
+        }
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
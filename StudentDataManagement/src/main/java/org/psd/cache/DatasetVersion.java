@@ -0,0 +1,75 @@
+package org.psd.cache;
+
+/**
+ * 本节点已知的学生数据集版本号。Redis中的版本号随每次写入递增，
+ * 本节点订阅失效频道期间可以缓存读到的版本号，收到任何失效通知后作废，
+ * 未订阅时不缓存，每次都需要从Redis读取。
+ *
+ * @author pengshidun
+ */
+public class DatasetVersion {
+    /**
+     * 表示版本号未知
+     */
+    private static final long UNKNOWN = -1L;
+    /**
+     * 已知的版本号
+     */
+    private long version = UNKNOWN;
+    /**
+     * 失效次数，用于识别读取Redis期间发生的失效
+     */
+    private long generation;
+    /**
+     * 是否正在通过失效频道跟踪版本号变化
+     */
+    private boolean tracking;
+
+    /**
+     * 获取已知的版本号
+     *
+     * @return 版本号，未知时返回null
+     */
+    public synchronized Long get() {
+        return version == UNKNOWN ? null : version;
+    }
+
+    /**
+     * 开始从Redis读取版本号，返回当前失效次数
+     *
+     * @return 失效次数，读取完成后传给{@link #set(long, long)}
+     */
+    public synchronized long beginRead() {
+        return generation;
+    }
+
+    /**
+     * 缓存从Redis读到的版本号，读取期间发生过失效或未在跟踪版本号时不缓存
+     *
+     * @param readGeneration 开始读取时的失效次数
+     * @param redisVersion   从Redis读到的版本号
+     */
+    public synchronized void set(long readGeneration, long redisVersion) {
+        if (tracking && readGeneration == generation) {
+            version = redisVersion;
+        }
+    }
+
+    /**
+     * 使已知的版本号失效
+     */
+    public synchronized void invalidate() {
+        generation++;
+        version = UNKNOWN;
+    }
+
+    /**
+     * 设置是否正在跟踪版本号变化
+     *
+     * @param tracking 订阅失效频道成功时为true，断开时为false
+     */
+    synchronized void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        invalidate();
+    }
+}
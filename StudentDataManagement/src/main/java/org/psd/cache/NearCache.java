@@ -0,0 +1,190 @@
+package org.psd.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内近端缓存，按最近最少使用(LRU)策略限制容量，并按写入时间限制存活时长(TTL)。
+ * 缓存的对象由多个请求共享，调用方不应修改从缓存中取出的对象。
+ *
+ * @author pengshidun
+ */
+public class NearCache<V> {
+    /**
+     * 最大缓存条目数
+     */
+    private final int maxSize;
+    /**
+     * 缓存条目自写入起的存活时长(毫秒)
+     */
+    private final long ttlMillis;
+    /**
+     * 按访问顺序排列的缓存条目，超出容量时移除最久未访问的条目
+     */
+    private final LinkedHashMap<String, Entry<V>> entries;
+    /**
+     * 命中次数
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * 未命中次数
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * 因超出容量被移除的次数
+     */
+    private final AtomicLong evictions = new AtomicLong();
+    /**
+     * 因过期被移除的次数
+     */
+    private final AtomicLong expirations = new AtomicLong();
+    /**
+     * 因数据变更被失效的次数
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    /**
+     * 失效次数，用于识别从Redis读取期间发生的失效
+     */
+    private long generation;
+
+    /**
+     * 构造方法
+     *
+     * @param maxSize   最大缓存条目数
+     * @param ttlMillis 缓存条目自写入起的存活时长(毫秒)
+     */
+    public NearCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > NearCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的值
+     *
+     * @param key 缓存键
+     * @return 缓存的值，不存在或已过期时返回null
+     */
+    public synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存，用于键中已包含数据集版本号、不受失效通知影响的值
+     *
+     * @param key   缓存键
+     * @param value 缓存的值，为null时不写入
+     */
+    public synchronized void put(String key, V value) {
+        if (value != null) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * 开始从Redis读取要写入缓存的值，返回当前失效次数
+     *
+     * @return 失效次数，读取完成后传给{@link #put(String, Object, long)}
+     */
+    public synchronized long beginRead() {
+        return generation;
+    }
+
+    /**
+     * 写入缓存，读取期间发生过失效时不写入，避免读到的旧值覆盖失效通知的效果
+     *
+     * @param key            缓存键
+     * @param value          缓存的值，为null时不写入
+     * @param readGeneration 开始读取时的失效次数
+     */
+    public synchronized void put(String key, V value, long readGeneration) {
+        if (value != null && readGeneration == generation) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * 使指定的缓存条目失效
+     *
+     * @param key 缓存键
+     */
+    public synchronized void invalidate(String key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * 获取缓存的运行统计信息
+     *
+     * @return 包含容量、命中、未命中、移除和失效次数的Map
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        synchronized (this) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0D : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    /**
+     * 缓存条目，记录缓存的值和过期时间
+     */
+    private static class Entry<V> {
+        /**
+         * 缓存的值
+         */
+        private final V value;
+        /**
+         * 过期时间戳(毫秒)
+         */
+        private final long expireAt;
+
+        Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
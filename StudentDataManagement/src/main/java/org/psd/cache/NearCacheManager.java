@@ -0,0 +1,288 @@
+package org.psd.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.common.PageInfo;
+import org.psd.entity.Student;
+import org.psd.util.ConfigUtils;
+import org.psd.util.JedisUtils;
+import org.psd.util.RedisShard;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 近端缓存管理类，按配置创建学生记录缓存、分页结果缓存、分页快照和学生ID过滤器，并订阅Redis失效频道，
+ * 使其他应用节点对学生数据的修改能及时失效本节点的缓存和已知的数据集版本号，并同步学生ID过滤器。
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class NearCacheManager {
+    /**
+     * 学生记录失效通知的Redis频道，消息内容为学生ID
+     */
+    public static final String CHANNEL_INVALIDATE = "student:invalidate";
+    /**
+     * 失效频道中表示使所有学生缓存失效的消息，用于批量写入
+     */
+    public static final String INVALIDATE_ALL = "*";
+    /**
+     * 订阅断开后重新订阅的间隔时间(毫秒)
+     */
+    private static final long RESUBSCRIBE_INTERVAL_MILLIS = 1000L;
+    /**
+     * 学生记录近端缓存，未启用时为null
+     */
+    private static final NearCache<Student> STUDENT_CACHE;
+    /**
+     * 分页结果缓存，缓存键包含数据集版本号，未启用时为null
+     */
+    private static final NearCache<byte[]> PAGE_CACHE;
+    /**
+     * 最近一次成功查询的分页数据快照，Redis不可用时作为过期数据返回，不随失效通知清空，未启用时为null
+     */
+    private static final NearCache<PageInfo<Student>> PAGE_SNAPSHOTS;
+    /**
+     * 学生ID布隆过滤器，未启用时为null
+     */
+    private static final StudentIdFilter ID_FILTER;
+    /**
+     * 本节点已知的数据集版本号
+     */
+    private static final DatasetVersion DATASET_VERSION = new DatasetVersion();
+    /**
+     * 失效频道的订阅者
+     */
+    private static final InvalidationSubscriber SUBSCRIBER = new InvalidationSubscriber();
+    /**
+     * 订阅线程是否继续运行
+     */
+    private static volatile boolean running;
+    /**
+     * 订阅线程
+     */
+    private static Thread subscriberThread;
+
+    /**
+     * 私有构造函数，防止外部实例化该工具类。
+     */
+    private NearCacheManager() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /*
+     * 静态初始化块，按配置创建近端缓存和学生ID过滤器，订阅线程由Redis存储引擎创建时启动。
+     */
+    static {
+        STUDENT_CACHE = ConfigUtils.getBoolean("cache.enabled", false)
+                ? new NearCache<>(ConfigUtils.getInt("cache.maxSize", 10000), ConfigUtils.getLong("cache.ttlMillis", 60000L))
+                : null;
+        PAGE_CACHE = ConfigUtils.getBoolean("pageCache.enabled", false)
+                ? new NearCache<>(ConfigUtils.getInt("pageCache.maxSize", 256), ConfigUtils.getLong("pageCache.ttlMillis", 300000L))
+                : null;
+        PAGE_SNAPSHOTS = ConfigUtils.getBoolean("snapshot.enabled", true)
+                ? new NearCache<>(ConfigUtils.getInt("snapshot.maxSize", 256), ConfigUtils.getLong("snapshot.ttlMillis", 3600000L))
+                : null;
+        ID_FILTER = ConfigUtils.getBoolean("bloom.enabled", false)
+                ? new StudentIdFilter(RedisShard.rankKeys(), ConfigUtils.getLong("bloom.expectedInsertions", 1000000L),
+                Double.parseDouble(ConfigUtils.getString("bloom.fpp", "0.01")), ConfigUtils.getLong("bloom.rebuildDelayMillis", 2000L))
+                : null;
+    }
+
+    /**
+     * 启用任一近端缓存或学生ID过滤器时启动订阅线程，订阅成功后开始重建学生ID过滤器。
+     * 应用启动时调用，重复调用无副作用
+     */
+    public static synchronized void start() {
+        if (subscriberThread == null && (STUDENT_CACHE != null || PAGE_CACHE != null || ID_FILTER != null)) {
+            running = true;
+            subscriberThread = new Thread(NearCacheManager::subscribeLoop, "near-cache-invalidation");
+            subscriberThread.setDaemon(true);
+            subscriberThread.start();
+        }
+    }
+
+    /**
+     * 获取学生记录近端缓存
+     *
+     * @return 学生记录近端缓存，未启用时返回null
+     */
+    public static NearCache<Student> getStudentCache() {
+        return STUDENT_CACHE;
+    }
+
+    /**
+     * 获取分页结果缓存，缓存的值为分页数据序列化后的JSON
+     *
+     * @return 分页结果缓存，未启用时返回null
+     */
+    public static NearCache<byte[]> getPageCache() {
+        return PAGE_CACHE;
+    }
+
+    /**
+     * 获取分页数据快照，缓存键为页码和每页记录数
+     *
+     * @return 分页数据快照，未启用时返回null
+     */
+    public static NearCache<PageInfo<Student>> getPageSnapshots() {
+        return PAGE_SNAPSHOTS;
+    }
+
+    /**
+     * 获取本节点已知的数据集版本号
+     *
+     * @return 数据集版本号
+     */
+    public static DatasetVersion getDatasetVersion() {
+        return DATASET_VERSION;
+    }
+
+    /**
+     * 获取学生ID布隆过滤器
+     *
+     * @return 学生ID布隆过滤器，未启用时返回null
+     */
+    public static StudentIdFilter getIdFilter() {
+        return ID_FILTER;
+    }
+
+    /**
+     * 使本节点中指定学生相关的缓存失效，本节点写入学生数据后调用
+     *
+     * @param studentId 学生ID
+     */
+    public static void invalidate(String studentId) {
+        DATASET_VERSION.invalidate();
+        if (STUDENT_CACHE != null) {
+            STUDENT_CACHE.invalidate(studentId);
+        }
+    }
+
+    /**
+     * 获取近端缓存的运行统计信息
+     *
+     * @return 学生记录缓存、分页结果缓存和学生ID过滤器的统计信息
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribed", SUBSCRIBER.isSubscribed());
+        stats.put("students", STUDENT_CACHE == null ? "disabled" : STUDENT_CACHE.getStats());
+        stats.put("pages", PAGE_CACHE == null ? "disabled" : PAGE_CACHE.getStats());
+        stats.put("pageSnapshots", PAGE_SNAPSHOTS == null ? "disabled" : PAGE_SNAPSHOTS.getStats());
+        stats.put("idFilter", ID_FILTER == null ? "disabled" : ID_FILTER.getStats());
+        return stats;
+    }
+
+    /**
+     * 停止订阅线程和学生ID过滤器的重建线程，应用关闭时调用
+     */
+    public static synchronized void shutdown() {
+        running = false;
+        if (SUBSCRIBER.isSubscribed()) {
+            SUBSCRIBER.unsubscribe();
+        }
+        if (subscriberThread != null) {
+            subscriberThread.interrupt();
+            subscriberThread = null;
+        }
+        if (ID_FILTER != null) {
+            ID_FILTER.shutdown();
+        }
+    }
+
+    /**
+     * 订阅线程的执行逻辑，订阅断开后间隔一段时间重新订阅
+     */
+    private static void subscribeLoop() {
+        while (running) {
+            try (Jedis jedis = JedisUtils.getJedis()) {
+                // 阻塞直到取消订阅或连接断开
+                jedis.subscribe(SUBSCRIBER, CHANNEL_INVALIDATE);
+            } catch (JedisException e) {
+                log.warn("近端缓存失效频道订阅断开: {}", e.getMessage());
+            }
+            // 断开期间可能错过失效通知，清空缓存以免读到过期数据
+            DATASET_VERSION.setTracking(false);
+            if (ID_FILTER != null) {
+                ID_FILTER.setTracking(false);
+            }
+            invalidateAll();
+            try {
+                Thread.sleep(RESUBSCRIBE_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 清空学生记录缓存并使已知的数据集版本号失效，本节点批量写入学生数据后调用。
+     * 分页结果缓存以版本号区分，版本号变化后旧条目不会再被读取，由容量和过期时间淘汰
+     */
+    public static void invalidateAll() {
+        DATASET_VERSION.invalidate();
+        if (STUDENT_CACHE != null) {
+            STUDENT_CACHE.invalidateAll();
+        }
+    }
+
+    /**
+     * 生成批量写入后向失效频道发布的消息。只更新已存在学生的批量写入逐个发布学号，
+     * 各节点只使这些学生的缓存失效，学生ID过滤器保持完整；可能添加学生的批量写入只发布一条{@link #INVALIDATE_ALL}，
+     * 各节点清空学生记录缓存并重建学生ID过滤器
+     *
+     * @param updateOnly 批量写入是否只更新已存在的学生
+     * @param changedIds 写入成功的学生ID
+     * @return 要发布的消息，没有学生写入成功时为空列表
+     */
+    public static List<String> batchMessages(boolean updateOnly, List<String> changedIds) {
+        if (changedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return updateOnly ? changedIds : Collections.singletonList(INVALIDATE_ALL);
+    }
+
+    /**
+     * 使本节点中失效消息对应的缓存失效，本节点批量写入学生数据后对每条{@link #batchMessages}的消息调用
+     *
+     * @param message 学生ID或{@link #INVALIDATE_ALL}
+     */
+    public static void invalidateMessage(String message) {
+        if (INVALIDATE_ALL.equals(message)) {
+            invalidateAll();
+        } else {
+            invalidate(message);
+        }
+    }
+
+    /**
+     * 失效频道订阅者，收到消息后使对应学生的缓存和已知的数据集版本号失效，并同步学生ID过滤器
+     */
+    private static class InvalidationSubscriber extends JedisPubSub {
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            // 订阅建立前可能错过了失效通知，清空缓存后开始跟踪数据集版本号
+            invalidateAll();
+            DATASET_VERSION.setTracking(true);
+            if (ID_FILTER != null) {
+                ID_FILTER.setTracking(true);
+            }
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            invalidateMessage(message);
+            if (ID_FILTER != null) {
+                ID_FILTER.onInvalidation(message);
+            }
+        }
+    }
+}
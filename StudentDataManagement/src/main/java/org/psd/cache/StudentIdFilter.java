@@ -0,0 +1,329 @@
+package org.psd.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.util.JedisUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本节点已知学生ID的布隆过滤器，用于在不访问Redis的情况下判断学号一定不存在。
+ * 过滤器通过扫描学生排名集合重建，本节点和其他节点添加学生时通过失效频道同步加入；
+ * 布隆过滤器不支持删除，删除的学生只会增加误判，由Redis确认，累计删除较多时重新扫描重建。
+ * 只有在订阅失效频道期间且没有未知的批量写入时过滤器才会给出"一定不存在"的结论。
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class StudentIdFilter {
+    /**
+     * 重建时每次ZSCAN返回的元素个数
+     */
+    private static final int SCAN_COUNT = 1000;
+    /**
+     * 累计删除数超过已插入元素个数的该比例时重建
+     */
+    private static final double REBUILD_REMOVAL_RATIO = 0.25;
+    /**
+     * 各分片学生排名集合的key，重建时依次扫描其中的学生ID
+     */
+    private final List<String> rankKeys;
+    /**
+     * 预期的学生数量，实际数量更多时按实际数量的两倍创建过滤器
+     */
+    private final long expectedInsertions;
+    /**
+     * 期望误判率
+     */
+    private final double fpp;
+    /**
+     * 收到批量写入通知后延迟重建的时间(毫秒)，连续的批量写入只触发一次重建
+     */
+    private final long rebuildDelayMillis;
+    /**
+     * 执行重建的后台线程
+     */
+    private final ScheduledExecutorService executor;
+    /**
+     * 是否已有等待执行的重建任务
+     */
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    /**
+     * 当前使用的过滤器，尚未完成首次重建时为null
+     */
+    private volatile BloomFilter filter;
+    /**
+     * 正在重建的过滤器，重建期间新加入的学生ID同时写入其中
+     */
+    private volatile BloomFilter building;
+    /**
+     * 是否正在通过失效频道跟踪学生ID的变化
+     */
+    private volatile boolean tracking;
+    /**
+     * 过滤器是否包含所有已存在的学生ID，为false时不给出"一定不存在"的结论
+     */
+    private volatile boolean complete;
+    /**
+     * 过滤器失去完整性的次数，用于识别重建期间发生的批量写入
+     */
+    private final AtomicLong staleGeneration = new AtomicLong();
+    /**
+     * 上次重建后删除的学生数
+     */
+    private final AtomicLong removals = new AtomicLong();
+    /**
+     * 判断为一定不存在的次数
+     */
+    private final AtomicLong definiteNegatives = new AtomicLong();
+    /**
+     * 判断为可能存在的次数
+     */
+    private final AtomicLong maybePositives = new AtomicLong();
+    /**
+     * 判断为可能存在但Redis中不存在的次数
+     */
+    private final AtomicLong falsePositives = new AtomicLong();
+    /**
+     * 过滤器未就绪而直接访问Redis的次数
+     */
+    private final AtomicLong bypasses = new AtomicLong();
+    /**
+     * 重建完成的次数
+     */
+    private final AtomicLong rebuilds = new AtomicLong();
+    /**
+     * 上次重建耗时(毫秒)
+     */
+    private volatile long lastRebuildMillis;
+
+    /**
+     * 创建学生ID过滤器，首次重建在订阅失效频道成功后进行
+     *
+     * @param rankKeys           各分片学生排名集合的key
+     * @param expectedInsertions 预期的学生数量
+     * @param fpp                期望误判率
+     * @param rebuildDelayMillis 收到批量写入通知后延迟重建的时间(毫秒)
+     */
+    public StudentIdFilter(List<String> rankKeys, long expectedInsertions, double fpp, long rebuildDelayMillis) {
+        this.rankKeys = rankKeys;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.rebuildDelayMillis = rebuildDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "student-id-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 判断学生ID是否可能存在
+     *
+     * @param studentId 学生ID
+     * @return false表示一定不存在，true表示可能存在，过滤器未就绪时返回null
+     */
+    public Boolean mightContain(String studentId) {
+        BloomFilter current = filter;
+        if (current == null || !tracking || !complete) {
+            bypasses.incrementAndGet();
+            return null;
+        }
+        if (current.mightContain(studentId)) {
+            maybePositives.incrementAndGet();
+            return true;
+        }
+        definiteNegatives.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 记录一次误判，即过滤器判断为可能存在但Redis中不存在
+     */
+    public void recordFalsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    /**
+     * 加入一个已添加或更新的学生ID
+     *
+     * @param studentId 学生ID
+     */
+    public void add(String studentId) {
+        BloomFilter pending = building;
+        if (pending != null) {
+            pending.put(studentId);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(studentId);
+        }
+    }
+
+    /**
+     * 记录一个已删除的学生ID，累计删除较多时重建以降低误判率
+     *
+     * @param studentId 学生ID
+     */
+    public void remove(String studentId) {
+        BloomFilter current = filter;
+        if (current != null && removals.incrementAndGet() > current.getInsertions() * REBUILD_REMOVAL_RATIO) {
+            scheduleRebuild(rebuildDelayMillis);
+        }
+    }
+
+    /**
+     * 收到批量写入通知，新增的学生ID未知，过滤器在重建完成前不再给出"一定不存在"的结论
+     */
+    public void onBatchWrite() {
+        markIncomplete();
+        scheduleRebuild(rebuildDelayMillis);
+    }
+
+    /**
+     * 处理失效频道的消息。单个学生的通知可能来自添加、更新或删除，一律加入过滤器，删除的学生只会增加误判；
+     * 收到{@link NearCacheManager#INVALIDATE_ALL}时批量写入的学生ID未知，重建过滤器
+     *
+     * @param message 学生ID或{@link NearCacheManager#INVALIDATE_ALL}
+     */
+    public void onInvalidation(String message) {
+        if (NearCacheManager.INVALIDATE_ALL.equals(message)) {
+            onBatchWrite();
+        } else {
+            add(message);
+        }
+    }
+
+    /**
+     * 设置是否正在跟踪学生ID的变化，订阅建立时重建，因为断开期间可能错过了添加通知
+     *
+     * @param tracking 订阅失效频道成功时为true，断开时为false
+     */
+    void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        if (tracking) {
+            markIncomplete();
+            scheduleRebuild(0L);
+        }
+    }
+
+    /**
+     * 获取过滤器的运行统计信息
+     *
+     * @return 包含就绪状态、内存占用、误判率和重建情况的Map
+     */
+    public Map<String, Object> getStats() {
+        BloomFilter current = filter;
+        long negatives = definiteNegatives.get();
+        long fp = falsePositives.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null && tracking && complete);
+        stats.put("bitSize", current == null ? 0L : current.getBitSize());
+        stats.put("memoryBytes", current == null ? 0L : current.memoryBytes());
+        stats.put("hashFunctions", current == null ? 0 : current.getHashFunctions());
+        stats.put("insertions", current == null ? 0L : current.getInsertions());
+        stats.put("removalsSinceRebuild", removals.get());
+        stats.put("expectedFpp", current == null ? 0.0 : current.expectedFpp());
+        stats.put("definiteNegatives", negatives);
+        stats.put("maybePositives", maybePositives.get());
+        stats.put("falsePositives", fp);
+        // 实际误判率 = 误判次数 / 实际不存在的查询次数
+        stats.put("observedFpp", negatives + fp == 0 ? 0.0 : (double) fp / (negatives + fp));
+        stats.put("bypasses", bypasses.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        return stats;
+    }
+
+    /**
+     * 停止重建线程，应用关闭时调用
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 标记过滤器可能缺少部分学生ID
+     */
+    private void markIncomplete() {
+        staleGeneration.incrementAndGet();
+        complete = false;
+    }
+
+    /**
+     * 提交重建任务，已有等待执行的重建任务时不重复提交
+     *
+     * @param delayMillis 延迟时间(毫秒)
+     */
+    private void scheduleRebuild(long delayMillis) {
+        if (rebuildQueued.compareAndSet(false, true)) {
+            executor.schedule(this::rebuild, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 扫描各分片的学生排名集合重建过滤器。扫描期间新加入的学生ID同时写入新过滤器，
+     * ZSCAN保证返回扫描全程都存在的元素，二者合起来覆盖所有学生ID
+     */
+    private void rebuild() {
+        rebuildQueued.set(false);
+        long generation = staleGeneration.get();
+        long startNanos = System.nanoTime();
+        try {
+            // 按实际学生数量创建过滤器，学生数量超过预期时保证误判率
+            long students = 0;
+            for (String rankKey : rankKeys) {
+                try (Jedis jedis = JedisUtils.getJedis(rankKey)) {
+                    students += jedis.zcard(rankKey);
+                }
+            }
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, students * 2), fpp);
+            building = rebuilt;
+            removals.set(0L);
+            ScanParams params = new ScanParams().count(SCAN_COUNT);
+            for (String rankKey : rankKeys) {
+                try (Jedis jedis = JedisUtils.getJedis(rankKey)) {
+                    String cursor = ScanParams.SCAN_POINTER_START;
+                    do {
+                        ScanResult<Tuple> result = jedis.zscan(rankKey, cursor, params);
+                        for (Tuple tuple : result.getResult()) {
+                            rebuilt.put(tuple.getElement());
+                        }
+                        cursor = result.getCursor();
+                    } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+                }
+            }
+            filter = rebuilt;
+            // 重建期间收到批量写入通知时，等待下一次重建
+            complete = generation == staleGeneration.get();
+            rebuilds.incrementAndGet();
+            lastRebuildMillis = (System.nanoTime() - startNanos) / 1000000;
+            log.info("学生ID过滤器重建完成，学生数: {}，耗时: {}ms", rebuilt.getInsertions(), lastRebuildMillis);
+        } catch (JedisException e) {
+            log.warn("学生ID过滤器重建失败: {}", e.getMessage());
+            retryRebuild();
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * 重建失败时，如果仍在跟踪学生ID的变化则稍后重试
+     */
+    private void retryRebuild() {
+        if (tracking) {
+            scheduleRebuild(Math.max(rebuildDelayMillis, 1000L));
+        }
+    }
+}
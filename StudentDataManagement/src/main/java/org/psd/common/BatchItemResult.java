@@ -0,0 +1,51 @@
+package org.psd.common;
+
+import lombok.Data;
+
+/**
+ * 封装批量操作中单条记录的处理结果
+ *
+ * @author pengshidun
+ */
+@Data
+public class BatchItemResult {
+    /**
+     * 记录在本批次中的位置(从0开始)
+     */
+    private final Integer index;
+    /**
+     * 学生学号
+     */
+    private final String id;
+    /**
+     * 是否处理成功
+     */
+    private final Boolean success;
+    /**
+     * 失败原因，成功时为null
+     */
+    private final String message;
+
+    /**
+     * 创建成功的处理结果
+     *
+     * @param index 记录在本批次中的位置
+     * @param id    学生学号
+     * @return 处理结果
+     */
+    public static BatchItemResult success(int index, String id) {
+        return new BatchItemResult(index, id, true, null);
+    }
+
+    /**
+     * 创建失败的处理结果
+     *
+     * @param index   记录在本批次中的位置
+     * @param id      学生学号
+     * @param message 失败原因
+     * @return 处理结果
+     */
+    public static BatchItemResult failure(int index, String id, String message) {
+        return new BatchItemResult(index, id, false, message);
+    }
+}
@@ -0,0 +1,119 @@
+package org.psd.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 舱壁隔离器，限制同时执行的操作数，超出时最多排队等待一段时间，
+ * 排队已满或等待超时的操作被拒绝，避免下游变慢时请求无限堆积
+ *
+ * @author pengshidun
+ */
+public class Bulkhead {
+    /**
+     * 同时执行的操作数上限
+     */
+    private final int maxConcurrent;
+    /**
+     * 排队等待的操作数上限
+     */
+    private final int maxQueued;
+    /**
+     * 排队等待的最长时间(毫秒)
+     */
+    private final long maxWaitMillis;
+    /**
+     * 执行许可
+     */
+    private final Semaphore permits;
+    /**
+     * 正在排队等待的操作数
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    /**
+     * 获得许可的操作数
+     */
+    private final AtomicLong admitted = new AtomicLong();
+    /**
+     * 因排队已满被拒绝的操作数
+     */
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    /**
+     * 因等待超时被拒绝的操作数
+     */
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    /**
+     * 构造方法
+     *
+     * @param maxConcurrent 同时执行的操作数上限
+     * @param maxQueued     排队等待的操作数上限
+     * @param maxWaitMillis 排队等待的最长时间(毫秒)
+     */
+    public Bulkhead(int maxConcurrent, int maxQueued, long maxWaitMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * 获取执行许可，没有空闲许可时排队等待，获得许可后必须调用{@link #release()}归还
+     *
+     * @return 是否获得许可，排队已满、等待超时或被中断时返回false
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            admitted.incrementAndGet();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejectedQueueFull.incrementAndGet();
+            return false;
+        }
+        try {
+            if (permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+            rejectedTimeout.incrementAndGet();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedTimeout.incrementAndGet();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * 归还执行许可
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 获取运行统计信息
+     *
+     * @return 包含上限、当前执行数、排队数、获得许可数和拒绝数的Map
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("maxQueued", maxQueued);
+        stats.put("maxWaitMillis", maxWaitMillis);
+        stats.put("active", maxConcurrent - permits.availablePermits());
+        stats.put("queued", queued.get());
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedQueueFull", rejectedQueueFull.get());
+        stats.put("rejectedTimeout", rejectedTimeout.get());
+        return stats;
+    }
+}
@@ -0,0 +1,79 @@
+package org.psd.common;
+
+import lombok.Data;
+import org.psd.entity.Student;
+
+/**
+ * 封装学生数据的变更事件，添加、更新、删除学生后追加到变更事件流，页面据此只更新变化的行
+ *
+ * @author pengshidun
+ */
+@Data
+public class ChangeEvent {
+    /**
+     * 添加学生
+     */
+    public static final String CREATE = "create";
+    /**
+     * 更新学生
+     */
+    public static final String UPDATE = "update";
+    /**
+     * 删除学生
+     */
+    public static final String REMOVE = "remove";
+    /**
+     * 批量写入或无法补发错过的事件，页面需重新加载当前页
+     */
+    public static final String RESET = "reset";
+    /**
+     * 初始事件ID，小于所有事件的ID
+     */
+    public static final String INITIAL_ID = "0-0";
+
+    /**
+     * 事件ID，格式与Redis Stream的条目ID相同，为"毫秒时间戳-序号"，追加到变更事件流时生成，按追加顺序递增
+     */
+    private String id;
+    /**
+     * 事件类型，取值为CREATE、UPDATE、REMOVE或RESET
+     */
+    private final String type;
+    /**
+     * 学生ID，RESET事件为null
+     */
+    private final String studentId;
+    /**
+     * 添加或更新后的学生信息，REMOVE和RESET事件为null
+     */
+    private final Student student;
+    /**
+     * 写入后学生所在分片的数据集版本号，由存储引擎在写入的同一原子操作中递增。事件在写入之后追加，
+     * 同一学生的事件可能不按写入顺序排列，页面忽略版本号不大于已收到事件的更新；RESET事件和写后缓冲批量写入的事件为null
+     */
+    private Long version;
+
+    /**
+     * 判断事件ID格式是否正确
+     *
+     * @param id 事件ID
+     * @return 格式为"毫秒时间戳-序号"时返回true
+     */
+    public static boolean isValidId(String id) {
+        return id != null && id.matches("\\d{1,18}-\\d{1,18}");
+    }
+
+    /**
+     * 比较两个事件ID的先后
+     *
+     * @param a 事件ID
+     * @param b 事件ID
+     * @return a在b之前时为负数，相同时为0，a在b之后时为正数
+     */
+    public static int compareIds(String a, String b) {
+        int ia = a.indexOf('-');
+        int ib = b.indexOf('-');
+        int result = Long.compare(Long.parseLong(a.substring(0, ia)), Long.parseLong(b.substring(0, ib)));
+        return result != 0 ? result : Long.compare(Long.parseLong(a.substring(ia + 1)), Long.parseLong(b.substring(ib + 1)));
+    }
+}
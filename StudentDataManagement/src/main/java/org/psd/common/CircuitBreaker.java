@@ -0,0 +1,161 @@
+package org.psd.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 熔断器，连续失败次数达到阈值后断开，断开期间直接拒绝操作；断开一段时间后进入半开状态，
+ * 只放行一个试探操作，试探成功则闭合，失败则重新断开
+ *
+ * @author pengshidun
+ */
+public class CircuitBreaker {
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /**
+         * 闭合，正常放行
+         */
+        CLOSED,
+        /**
+         * 断开，直接拒绝
+         */
+        OPEN,
+        /**
+         * 半开，只放行一个试探操作
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 触发断开的连续失败次数
+     */
+    private final int failureThreshold;
+    /**
+     * 断开后进入半开状态前的等待时间(毫秒)，也是半开状态下等待试探结果的最长时间
+     */
+    private final long openMillis;
+    /**
+     * 当前状态
+     */
+    private volatile State state = State.CLOSED;
+    /**
+     * 最近一次断开或放行试探操作的时间(毫秒)
+     */
+    private volatile long stateSinceMillis;
+    /**
+     * 连续失败次数
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    /**
+     * 断开的次数
+     */
+    private final AtomicLong opened = new AtomicLong();
+    /**
+     * 断开期间被拒绝的操作数
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * 构造方法
+     *
+     * @param failureThreshold 触发断开的连续失败次数
+     * @param openMillis       断开后进入半开状态前的等待时间(毫秒)
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 判断是否放行一个操作，放行后必须调用{@link #recordSuccess()}或{@link #recordFailure()}报告结果
+     *
+     * @return 闭合时返回true；断开已满等待时间或半开状态下试探操作超时未报告结果时，放行一个试探操作并返回true；其余情况返回false
+     */
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            if (now - stateSinceMillis >= openMillis) {
+                state = State.HALF_OPEN;
+                stateSinceMillis = now;
+                return true;
+            }
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 报告操作成功，闭合熔断器
+     */
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (state != State.CLOSED) {
+            synchronized (this) {
+                state = State.CLOSED;
+            }
+        }
+    }
+
+    /**
+     * 报告操作失败，连续失败次数达到阈值或试探操作失败时断开熔断器
+     */
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            synchronized (this) {
+                if (state != State.OPEN) {
+                    state = State.OPEN;
+                    stateSinceMillis = System.currentTimeMillis();
+                    opened.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取当前状态
+     *
+     * @return 当前状态
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 获取断开状态的剩余等待时间
+     *
+     * @return 距离放行下一个试探操作的毫秒数，未断开时返回0
+     */
+    public long getRetryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0L;
+        }
+        return Math.max(0L, stateSinceMillis + openMillis - System.currentTimeMillis());
+    }
+
+    /**
+     * 获取运行统计信息
+     *
+     * @return 包含当前状态、连续失败次数、断开次数和被拒绝操作数的Map
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("failureThreshold", failureThreshold);
+        stats.put("openMillis", openMillis);
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("opened", opened.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+}
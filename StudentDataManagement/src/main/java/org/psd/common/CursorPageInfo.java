@@ -0,0 +1,39 @@
+package org.psd.common;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 封装Redis游标(keyset)分页信息，通过上一条、下一条记录的游标翻页，
+ * 翻页代价与所在位置无关，也不会因为并发写入而出现记录重复或遗漏
+ *
+ * @author pengshidun
+ */
+@Data
+public class CursorPageInfo<T> {
+    /**
+     * 每页显示个数
+     */
+    private Integer pageSize;
+    /**
+     * 总记录数
+     */
+    private Long totalCount;
+    /**
+     * 当前页第一条记录的排名(从0开始)
+     */
+    private Long startIndex;
+    /**
+     * 获取上一页的游标，当前页已是第一页时为null
+     */
+    private String prevCursor;
+    /**
+     * 获取下一页的游标，当前页已是最后一页时为null
+     */
+    private String nextCursor;
+    /**
+     * 待显示的数据
+     */
+    private List<T> records;
+}
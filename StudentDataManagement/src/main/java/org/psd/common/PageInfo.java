@@ -1,5 +1,6 @@
 package org.psd.common;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.List;
@@ -51,6 +52,11 @@ public class PageInfo<T> {
      * 待显示的数据
      */
     private List<T> records;
+    /**
+     * 是否为Redis不可用时返回的过期快照，正常数据为null
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stale;
 
     /**
      * 构造方法，初始化分页信息
@@ -66,6 +72,29 @@ public class PageInfo<T> {
         init();
     }
 
+    /**
+     * 复制分页信息并标记为过期快照，学生记录列表与原分页共用
+     *
+     * @return 标记为过期的分页信息
+     */
+    public PageInfo<T> toStale() {
+        PageInfo<T> copy = new PageInfo<>(pageNum, pageSize, totalCount);
+        copy.setUrl(url);
+        copy.setRecords(records);
+        copy.setStale(true);
+        return copy;
+    }
+
+    /**
+     * 设置总记录数，并重新计算总页数、前一页页码、下一页页码
+     *
+     * @param totalCount 总记录数
+     */
+    public void setTotalCount(Long totalCount) {
+        this.totalCount = totalCount;
+        init();
+    }
+
     /**
      * 初始化分页详细，包括 总页数、前一页页码、下一页页码
      *
@@ -0,0 +1,64 @@
+package org.psd.common;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 学生排名游标，由翻页方向和边界记录的(平均分, 学号)组成，
+ * 对客户端以URL安全的Base64字符串形式呈现，客户端不应解析其内容
+ *
+ * @author pengshidun
+ */
+@Data
+public class RankCursor {
+    /**
+     * 向后翻页
+     */
+    public static final String NEXT = "n";
+    /**
+     * 向前翻页
+     */
+    public static final String PREV = "p";
+
+    /**
+     * 翻页方向，取值为{@link #NEXT}或{@link #PREV}
+     */
+    private final String direction;
+    /**
+     * 边界记录的平均分
+     */
+    private final Integer avgScore;
+    /**
+     * 边界记录的学号
+     */
+    private final String id;
+
+    /**
+     * 将游标编码为字符串
+     *
+     * @return URL安全的Base64字符串
+     */
+    public String encode() {
+        String raw = direction + ":" + avgScore + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标字符串
+     *
+     * @param cursor 游标字符串
+     * @return 游标对象
+     * @throws IllegalArgumentException 游标格式不合法
+     */
+    public static RankCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        // 学号可能包含冒号，只按前两个冒号切分
+        String[] parts = raw.split(":", 3);
+        if (parts.length != 3 || !(NEXT.equals(parts[0]) || PREV.equals(parts[0]))) {
+            throw new IllegalArgumentException("非法的游标: " + cursor);
+        }
+        return new RankCursor(parts[0], Integer.valueOf(parts[1]), parts[2]);
+    }
+}
@@ -0,0 +1,116 @@
+package org.psd.common;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 封装学生平均分的统计信息，均值和百分位数由增量维护的计数、总和及分数直方图计算，
+ * 计算代价只与分数的取值个数有关，与学生数量无关
+ *
+ * @author pengshidun
+ */
+@Data
+public class ScoreStats {
+    /**
+     * 学生数
+     */
+    private Long count;
+    /**
+     * 平均分总和
+     */
+    private Long sum;
+    /**
+     * 平均分的均值，没有学生时为null
+     */
+    private Double mean;
+    /**
+     * 最低平均分，没有学生时为null
+     */
+    private Integer min;
+    /**
+     * 最高平均分，没有学生时为null
+     */
+    private Integer max;
+    /**
+     * 平均分超出直方图范围的学生数，不参与最值和百分位数的计算
+     */
+    private Long outOfRange;
+    /**
+     * 百分位数，键为百分比，值为按最近秩法取得的平均分，没有学生时为null
+     */
+    private Map<String, Integer> percentiles;
+    /**
+     * 分数直方图，下标为平均分，值为该平均分的学生数
+     */
+    private long[] histogram;
+
+    /**
+     * 根据计数、总和和分数直方图计算统计信息
+     *
+     * @param count       学生数
+     * @param sum         平均分总和
+     * @param outOfRange  平均分超出直方图范围的学生数
+     * @param histogram   分数直方图
+     * @param percentiles 需要计算的百分比，取值(0, 100]
+     * @return 统计信息
+     */
+    public static ScoreStats of(long count, long sum, long outOfRange, long[] histogram, double[] percentiles) {
+        ScoreStats stats = new ScoreStats();
+        stats.setCount(count);
+        stats.setSum(sum);
+        stats.setMean(count == 0 ? null : (double) sum / count);
+        stats.setOutOfRange(outOfRange);
+        stats.setHistogram(histogram);
+        long total = 0;
+        for (int score = 0; score < histogram.length; score++) {
+            if (histogram[score] > 0) {
+                if (stats.getMin() == null) {
+                    stats.setMin(score);
+                }
+                stats.setMax(score);
+                total += histogram[score];
+            }
+        }
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for (double p : percentiles) {
+            values.put(formatPercent(p), percentile(histogram, total, p));
+        }
+        stats.setPercentiles(values);
+        return stats;
+    }
+
+    /**
+     * 按最近秩法计算百分位数，即排序后第ceil(p/100*total)个学生的平均分
+     *
+     * @param histogram 分数直方图
+     * @param total     直方图中的学生数
+     * @param p         百分比
+     * @return 平均分，没有学生时返回null
+     */
+    private static Integer percentile(long[] histogram, long total, double p) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int score = 0; score < histogram.length; score++) {
+            seen += histogram[score];
+            if (seen >= rank) {
+                return score;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * 将百分比格式化为键，整数不带小数部分
+     *
+     * @param p 百分比
+     * @return 如"50"、"99.9"
+     */
+    private static String formatPercent(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+    }
+}
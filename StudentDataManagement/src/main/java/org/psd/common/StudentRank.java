@@ -0,0 +1,33 @@
+package org.psd.common;
+
+import lombok.Data;
+import org.psd.entity.Student;
+
+/**
+ * 封装学生在按平均分倒序排列的排名中的位置，以及该学生所在的一页学生数据
+ *
+ * @author pengshidun
+ */
+@Data
+public class StudentRank {
+    /**
+     * 学生学号
+     */
+    private String id;
+    /**
+     * 平均分
+     */
+    private Integer avgScore;
+    /**
+     * 在排名中的位置(从0开始)，平均分相同的学生按学号的字典序倒序排列
+     */
+    private Long position;
+    /**
+     * 名次(从1开始)，平均分相同的学生名次相同，等于平均分更高的学生数加1
+     */
+    private Long rank;
+    /**
+     * 该学生所在的一页学生数据
+     */
+    private PageInfo<Student> page;
+}
@@ -0,0 +1,74 @@
+package org.psd.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 统计批量任务(如导入、导出)的吞吐量，记录累计和最近一次任务的记录数、耗时和每秒处理记录数
+ *
+ * @author pengshidun
+ */
+public class ThroughputStats {
+    /**
+     * 已完成的任务数
+     */
+    private long runs;
+    /**
+     * 累计处理的记录数
+     */
+    private long totalRecords;
+    /**
+     * 累计耗时(毫秒)
+     */
+    private long totalMillis;
+    /**
+     * 最近一次任务处理的记录数
+     */
+    private long lastRecords;
+    /**
+     * 最近一次任务的耗时(毫秒)
+     */
+    private long lastMillis;
+
+    /**
+     * 记录一次任务的执行情况
+     *
+     * @param records      处理的记录数
+     * @param elapsedNanos 耗时(纳秒)
+     */
+    public synchronized void record(long records, long elapsedNanos) {
+        long millis = elapsedNanos / 1000000;
+        runs++;
+        totalRecords += records;
+        totalMillis += millis;
+        lastRecords = records;
+        lastMillis = millis;
+    }
+
+    /**
+     * 计算每秒处理的记录数
+     *
+     * @param records 记录数
+     * @param millis  耗时(毫秒)
+     * @return 每秒处理的记录数
+     */
+    public static long recordsPerSecond(long records, long millis) {
+        return millis == 0 ? records : records * 1000 / millis;
+    }
+
+    /**
+     * 获取吞吐量统计信息
+     *
+     * @return 包含任务数、记录数、耗时和每秒处理记录数的Map
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs);
+        stats.put("totalRecords", totalRecords);
+        stats.put("totalMillis", totalMillis);
+        stats.put("lastRecords", lastRecords);
+        stats.put("lastMillis", lastMillis);
+        stats.put("lastRecordsPerSecond", recordsPerSecond(lastRecords, lastMillis));
+        return stats;
+    }
+}
@@ -0,0 +1,46 @@
+package org.psd.common;
+
+/**
+ * 添加或更新单个学生数据的结果状态
+ *
+ * @author pengshidun
+ */
+public enum WriteStatus {
+    /**
+     * 添加成功
+     */
+    CREATED,
+    /**
+     * 更新成功，写后缓冲存储引擎中表示更新已被接受，稍后写入
+     */
+    UPDATED,
+    /**
+     * 添加失败，学号已存在
+     */
+    ALREADY_EXISTS,
+    /**
+     * 更新失败，学生不存在
+     */
+    NOT_FOUND,
+    /**
+     * 学生信息字段不合法
+     */
+    INVALID,
+    /**
+     * Redis不可用，写入未执行
+     */
+    UNAVAILABLE,
+    /**
+     * Redis执行出错
+     */
+    ERROR;
+
+    /**
+     * 判断是否写入成功
+     *
+     * @return 添加或更新成功时返回true
+     */
+    public boolean isSuccess() {
+        return this == CREATED || this == UPDATED;
+    }
+}
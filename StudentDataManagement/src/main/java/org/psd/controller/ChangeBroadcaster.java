@@ -0,0 +1,542 @@
+package org.psd.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.common.ChangeEvent;
+import org.psd.storage.ChangeFeed;
+import org.psd.storage.StudentStorageFactory;
+import org.psd.util.ConfigUtils;
+import org.psd.util.JacksonUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 变更事件广播类，每个应用节点只有一个后台线程从变更事件流中读取新事件，
+ * 以Server-Sent Events格式推送给本节点所有已连接的页面，页面连接数不影响对事件流的读取次数。
+ * 读取线程只把事件放入每个页面的有界队列，由写入线程池逐个页面写入响应，
+ * 一个页面的网络阻塞不会拖慢其他页面和事件的读取；队列已满的页面被断开，浏览器重连后按Last-Event-ID补发。
+ * 页面断线重连时带上最后收到的事件ID，补发其后的事件，无法补发时推送RESET事件使页面重新加载当前页
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class ChangeBroadcaster {
+    /**
+     * 每次从事件流读取的事件数上限
+     */
+    private static final int READ_BATCH_SIZE = 100;
+    /**
+     * 每次读取等待新事件的最长时间(毫秒)，应小于Redis的读写超时时间
+     */
+    private static final long READ_BLOCK_MILLIS = 1000L;
+    /**
+     * 心跳注释的内容
+     */
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    /**
+     * 按配置创建的实例
+     */
+    private static final ChangeBroadcaster INSTANCE = new ChangeBroadcaster(StudentStorageFactory.getChangeFeed(),
+            ConfigUtils.getInt("changeFeed.maxClients", 1000), ConfigUtils.getInt("changeFeed.maxBacklog", 1000),
+            ConfigUtils.getInt("changeFeed.maxQueued", 256), ConfigUtils.getLong("changeFeed.heartbeatMillis", 15000L),
+            ConfigUtils.getLong("changeFeed.retryMillis", 3000L));
+
+    /**
+     * 变更事件流，未启用时为null
+     */
+    private final ChangeFeed feed;
+    /**
+     * 本节点同时连接的页面数上限
+     */
+    private final int maxClients;
+    /**
+     * 重连时最多补发的事件数，超出时推送RESET事件
+     */
+    private final int maxBacklog;
+    /**
+     * 每个页面排队等待写入的事件和心跳数上限，不含重连时补发的事件
+     */
+    private final int maxQueued;
+    /**
+     * 没有新事件时发送心跳注释的间隔时间(毫秒)，用于及时发现已断开的连接并避免代理因空闲关闭连接
+     */
+    private final long heartbeatMillis;
+    /**
+     * 页面断线后重连的等待时间(毫秒)，通过retry字段告知浏览器
+     */
+    private final long retryMillis;
+    /**
+     * 已连接的页面
+     */
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    /**
+     * 分发事件和登记新页面的锁，保证新页面补发的事件与之后分发的事件之间不重复、不遗漏，持有时只入队不写入响应
+     */
+    private final Object dispatchLock = new Object();
+    /**
+     * 写入页面响应的线程池，每个页面同时最多占用一个线程，空闲线程自动回收
+     */
+    private final ExecutorService writers;
+    /**
+     * 已分发的事件数
+     */
+    private final AtomicLong dispatched = new AtomicLong();
+    /**
+     * 读取事件流失败的次数
+     */
+    private final AtomicLong readFailures = new AtomicLong();
+    /**
+     * 队列已满被断开的页面数
+     */
+    private final AtomicLong droppedClients = new AtomicLong();
+    /**
+     * 本节点已分发的最后一个事件的ID
+     */
+    private volatile String dispatchedId;
+    /**
+     * 读取线程是否继续运行
+     */
+    private volatile boolean running;
+    /**
+     * 读取线程
+     */
+    private Thread readerThread;
+
+    /**
+     * 构造方法
+     *
+     * @param feed            变更事件流，为null时表示未启用
+     * @param maxClients      同时连接的页面数上限
+     * @param maxBacklog      重连时最多补发的事件数
+     * @param maxQueued       每个页面排队等待写入的事件和心跳数上限
+     * @param heartbeatMillis 心跳间隔时间(毫秒)
+     * @param retryMillis     页面断线后重连的等待时间(毫秒)
+     */
+    ChangeBroadcaster(ChangeFeed feed, int maxClients, int maxBacklog, int maxQueued, long heartbeatMillis,
+                      long retryMillis) {
+        this.feed = feed;
+        this.maxClients = maxClients;
+        this.maxBacklog = maxBacklog;
+        this.maxQueued = Math.max(maxQueued, 1);
+        this.heartbeatMillis = heartbeatMillis;
+        this.retryMillis = retryMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "change-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 获取按配置创建的实例
+     *
+     * @return 变更事件广播实例
+     */
+    public static ChangeBroadcaster getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 是否启用了变更事件流
+     *
+     * @return 启用时返回true
+     */
+    public boolean isEnabled() {
+        return feed != null;
+    }
+
+    /**
+     * 登记一个已开始异步处理的页面连接，先补发lastEventId之后本节点已分发的事件，之后的事件由读取线程推送。
+     * 补发的事件和之后的事件都由写入线程池写入响应
+     *
+     * @param context     异步上下文，响应头已设置
+     * @param lastEventId 页面最后收到的事件ID，为null时只推送之后的新事件
+     * @return 登记成功时返回true，连接数已达上限时返回false
+     */
+    public boolean subscribe(AsyncContext context, String lastEventId) {
+        if (subscribers.size() >= maxClients) {
+            return false;
+        }
+        start();
+        Subscriber subscriber = new Subscriber(context, lastEventId);
+        context.addListener(subscriber);
+        synchronized (dispatchLock) {
+            String currentId = dispatchedId;
+            StringBuilder head = new StringBuilder("retry: ").append(retryMillis).append('\n');
+            if (lastEventId == null) {
+                // 告知浏览器当前位置，连接在收到第一个事件之前断开时也能从此处补发
+                head.append("id: ").append(currentId).append('\n');
+                subscriber.lastId = currentId;
+            }
+            List<byte[]> backlog = new ArrayList<>();
+            backlog.add(head.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+            if (lastEventId != null && ChangeEvent.compareIds(lastEventId, currentId) < 0) {
+                backlog.addAll(replay(lastEventId, currentId));
+                subscriber.lastId = currentId;
+            }
+            subscriber.enqueueBacklog(backlog);
+            subscribers.add(subscriber);
+        }
+        return true;
+    }
+
+    /**
+     * 获取变更事件广播的运行统计信息
+     *
+     * @return 事件流、连接的页面数和已分发的事件数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (feed == null) {
+            stats.put("enabled", false);
+            return stats;
+        }
+        stats.put("feed", feed.getStats());
+        stats.put("clients", subscribers.size());
+        stats.put("maxClients", maxClients);
+        stats.put("maxQueued", maxQueued);
+        stats.put("dispatched", dispatched.get());
+        stats.put("dispatchedId", dispatchedId);
+        stats.put("droppedClients", droppedClients.get());
+        stats.put("readFailures", readFailures.get());
+        return stats;
+    }
+
+    /**
+     * 停止读取线程并结束所有页面连接，应用关闭时调用
+     */
+    public synchronized void shutdown() {
+        running = false;
+        if (readerThread != null) {
+            readerThread.interrupt();
+            readerThread = null;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        writers.shutdown();
+    }
+
+    /**
+     * 首个页面连接时启动读取线程，从事件流当前的最后一个事件之后开始读取，重复调用无副作用
+     *
+     * @throws IllegalStateException 如果未启用变更事件流
+     */
+    private synchronized void start() {
+        if (feed == null) {
+            throw new IllegalStateException("未启用变更事件流");
+        }
+        if (readerThread == null) {
+            dispatchedId = feed.latestId();
+            running = true;
+            readerThread = new Thread(this::readLoop, "change-broadcaster");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+    }
+
+    /**
+     * 编码重连的页面需要补发的(lastEventId, currentId]之间的事件，事件已被裁剪或超过补发上限时改为一个RESET事件
+     *
+     * @param lastEventId 页面最后收到的事件ID
+     * @param currentId   本节点已分发的最后一个事件的ID
+     * @return 编码后的事件
+     */
+    private List<byte[]> replay(String lastEventId, String currentId) {
+        if (feed.isRetained(lastEventId)) {
+            List<ChangeEvent> backlog = feed.read(lastEventId, maxBacklog + 1, 0);
+            // 只补发本节点已分发的事件，之后的事件由读取线程推送
+            int end = 0;
+            while (end < backlog.size() && ChangeEvent.compareIds(backlog.get(end).getId(), currentId) <= 0) {
+                end++;
+            }
+            // 读到的事件须连续到currentId，否则中间有事件缺失
+            if (end > 0 && end <= maxBacklog && backlog.get(end - 1).getId().equals(currentId)) {
+                List<byte[]> frames = new ArrayList<>(end);
+                for (int i = 0; i < end; i++) {
+                    frames.add(frame(backlog.get(i)));
+                }
+                return frames;
+            }
+        }
+        ChangeEvent reset = new ChangeEvent(ChangeEvent.RESET, null, null);
+        reset.setId(currentId);
+        List<byte[]> frames = new ArrayList<>(1);
+        frames.add(frame(reset));
+        return frames;
+    }
+
+    /**
+     * 读取线程的执行逻辑，阻塞读取新事件并分发给所有页面，没有新事件时按间隔发送心跳。
+     * 读取失败后等待一段时间重试，期间错过的事件已被裁剪时推送RESET事件
+     */
+    private void readLoop() {
+        long lastHeartbeat = System.currentTimeMillis();
+        boolean recovering = false;
+        while (running) {
+            try {
+                if (recovering && !feed.isRetained(dispatchedId)) {
+                    ChangeEvent reset = new ChangeEvent(ChangeEvent.RESET, null, null);
+                    reset.setId(feed.latestId());
+                    dispatch(reset);
+                }
+                recovering = false;
+                List<ChangeEvent> events = feed.read(dispatchedId, READ_BATCH_SIZE, READ_BLOCK_MILLIS);
+                for (ChangeEvent event : events) {
+                    dispatch(event);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastHeartbeat >= heartbeatMillis) {
+                    lastHeartbeat = now;
+                    for (Subscriber subscriber : subscribers) {
+                        subscriber.heartbeat();
+                    }
+                }
+            } catch (RuntimeException e) {
+                readFailures.incrementAndGet();
+                recovering = true;
+                log.warn("读取学生数据变更事件失败: {}", e.getMessage());
+                try {
+                    Thread.sleep(READ_BLOCK_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 将事件放入所有页面的队列，并记录为本节点已分发的最后一个事件
+     *
+     * @param event 变更事件
+     */
+    private void dispatch(ChangeEvent event) {
+        byte[] frame = frame(event);
+        synchronized (dispatchLock) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.send(event.getId(), frame);
+            }
+            dispatchedId = event.getId();
+        }
+        dispatched.incrementAndGet();
+    }
+
+    /**
+     * 将事件编码为Server-Sent Events格式，事件名为change，数据为事件的JSON
+     *
+     * @param event 变更事件
+     * @return 编码后的字节
+     */
+    private static byte[] frame(ChangeEvent event) {
+        // JSON中的换行已转义，数据只占一行
+        String frame = "id: " + event.getId() + "\nevent: change\ndata: " + JacksonUtils.objectToJsonStr(event) + "\n\n";
+        return frame.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 页面连接，事件先放入有界队列，由写入线程池中的一个线程按顺序写入响应。
+     * 写入失败、队列已满、超时或出错时从已连接的页面中移除
+     */
+    private class Subscriber implements AsyncListener {
+        /**
+         * 异步上下文
+         */
+        private final AsyncContext context;
+        /**
+         * 等待写入的事件和心跳，由this保护
+         */
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        /**
+         * 队列开头补发的事件数，不计入队列上限，由this保护
+         */
+        private int backlog;
+        /**
+         * 是否已有写入线程在处理队列，由this保护
+         */
+        private boolean writing;
+        /**
+         * 连接是否已结束，由this保护
+         */
+        private boolean closed;
+        /**
+         * 已放入队列的最后一个事件的ID，不重复推送该事件及之前的事件
+         */
+        private String lastId;
+
+        /**
+         * 构造方法
+         *
+         * @param context 异步上下文
+         * @param lastId  页面最后收到的事件ID
+         */
+        Subscriber(AsyncContext context, String lastId) {
+            this.context = context;
+            this.lastId = lastId;
+        }
+
+        /**
+         * 放入连接建立时的响应头和补发的事件，不受队列上限限制
+         *
+         * @param frames 编码后的字节
+         */
+        synchronized void enqueueBacklog(List<byte[]> frames) {
+            queue.addAll(frames);
+            backlog += frames.size();
+            schedule();
+        }
+
+        /**
+         * 将一个事件放入队列，不阻塞，队列已满时断开连接
+         *
+         * @param eventId 事件ID
+         * @param frame   编码后的字节
+         */
+        synchronized void send(String eventId, byte[] frame) {
+            // 页面从其他节点重连时可能已收到本节点尚未分发的事件
+            if (closed || lastId != null && ChangeEvent.compareIds(eventId, lastId) <= 0) {
+                return;
+            }
+            if (queue.size() - backlog >= maxQueued) {
+                // 页面接收过慢，断开后由浏览器带上Last-Event-ID重连补发
+                droppedClients.incrementAndGet();
+                log.info("页面接收变更事件过慢，断开连接");
+                closeLater();
+                return;
+            }
+            queue.addLast(frame);
+            lastId = eventId;
+            schedule();
+        }
+
+        /**
+         * 队列为空时放入一个心跳，队列不为空时写入线程仍在写入，无需心跳
+         */
+        synchronized void heartbeat() {
+            if (!closed && queue.isEmpty() && !writing) {
+                queue.addLast(HEARTBEAT);
+                schedule();
+            }
+        }
+
+        /**
+         * 没有写入线程在处理队列时提交写入任务，调用方需持有this
+         */
+        private void schedule() {
+            if (writing || closed) {
+                return;
+            }
+            writing = true;
+            try {
+                writers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 应用正在关闭
+                writing = false;
+                closeLater();
+            }
+        }
+
+        /**
+         * 写入线程的执行逻辑，每次取出队列中的所有内容，写入后一并发送，直到队列为空
+         */
+        private void drain() {
+            while (true) {
+                List<byte[]> frames;
+                synchronized (this) {
+                    if (closed || queue.isEmpty()) {
+                        writing = false;
+                        return;
+                    }
+                    frames = new ArrayList<>(queue);
+                    queue.clear();
+                    backlog = 0;
+                }
+                try {
+                    OutputStream out = context.getResponse().getOutputStream();
+                    for (byte[] frame : frames) {
+                        out.write(frame);
+                    }
+                    out.flush();
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        writing = false;
+                    }
+                    close();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 标记连接已结束，由写入线程池结束异步处理，调用方需持有this，可能持有dispatchLock
+         */
+        private void closeLater() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            try {
+                writers.execute(this::close);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        /**
+         * 从已连接的页面中移除并结束异步处理
+         */
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // 异步处理已结束
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // 超时后结束连接，浏览器按retry间隔带上Last-Event-ID重连
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // 不会再次开始异步处理
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package org.psd.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.psd.service.StudentService;
-import org.psd.service.impl.StudentServiceImpl;
+import org.psd.service.StudentServiceFactory;
+import org.psd.util.AsyncUtils;
+import org.psd.util.ConfigUtils;
+import org.psd.util.JacksonUtils;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -10,22 +14,38 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 
 /**
- * 该servlet根据请求中的id判断学生id是否已存在
+ * 该servlet根据请求中的id判断学生id是否已存在，POST请求体为学生id的JSON数组时批量判断，
+ * 请求以异步方式在{@link AsyncUtils}的线程池中处理，等待Redis期间不占用容器线程
  *
  * @author pengshidun
  */
-@WebServlet("/isExist")
+@WebServlet(urlPatterns = "/isExist", asyncSupported = true)
 public class ExistStudentServlet extends HttpServlet {
 
+    /**
+     * 单次批量判断的学生id数上限
+     */
+    private static final int MAX_BATCH_SIZE = ConfigUtils.getInt("batch.maxSize", 10000);
+
     /**
      * 实例化StudentService接口的实现类
      */
-    private StudentService studentService = new StudentServiceImpl();
+    private StudentService studentService = StudentServiceFactory.getStudentService();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+        AsyncUtils.dispatch(request, response, this::handleGet);
+    }
 
     @Override
-    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+        AsyncUtils.dispatch(request, response, this::handlePost);
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         // 获取请求中的学生id参数
         String studentId = request.getParameter("id");
         // 调用studentService的existStudent方法判断学生id是否存在
@@ -39,4 +59,32 @@ public class ExistStudentServlet extends HttpServlet {
         // 关闭PrintWriter对象
         writer.close();
     }
+
+    /**
+     * 批量判断学生id是否已存在，请求体为学生id的JSON数组，响应为学生id到是否存在的JSON对象，
+     * 请求体流式解析，学生id数超过上限时立即停止解析并响应413
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    private void handlePost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> studentIds;
+        try {
+            studentIds = JacksonUtils.readArray(request.getReader(), String.class, MAX_BATCH_SIZE);
+        } catch (JsonProcessingException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "JSON格式错误: " + e.getOriginalMessage());
+            return;
+        }
+        if (studentIds == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "请求体不能为空");
+            return;
+        }
+        if (studentIds.size() > MAX_BATCH_SIZE) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "单次批量操作不能超过" + MAX_BATCH_SIZE + "条");
+            return;
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        JacksonUtils.getInstance().writeValue(response.getOutputStream(), studentService.existStudents(studentIds));
+    }
 }
@@ -0,0 +1,152 @@
+package org.psd.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.psd.common.CursorPageInfo;
+import org.psd.common.ThroughputStats;
+import org.psd.entity.Student;
+import org.psd.service.StudentService;
+import org.psd.service.StudentServiceFactory;
+import org.psd.util.ConfigUtils;
+import org.psd.util.CsvWriter;
+import org.psd.util.JacksonUtils;
+import org.psd.util.ResponseUtils;
+import org.psd.util.StudentCodec;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 该servlet按平均分倒序导出全部学生数据，支持CSV和NDJSON(每行一个JSON对象)两种格式。
+ * 按游标分块遍历学生排名，逐块写入响应，内存占用与学生总数无关
+ *
+ * @author pengshidun
+ */
+@Slf4j
+@WebServlet("/students/export")
+public class ExportStudentServlet extends HttpServlet {
+
+    /**
+     * 默认每块读取的记录数
+     */
+    private static final int DEFAULT_CHUNK_SIZE = ConfigUtils.getInt("export.chunkSize", 1000);
+    /**
+     * 每块读取记录数的上限
+     */
+    private static final int MAX_CHUNK_SIZE = 10000;
+    /**
+     * 导出吞吐量统计
+     */
+    private static final ThroughputStats THROUGHPUT_STATS = new ThroughputStats();
+
+    /**
+     * 实例化StudentService接口的实现类
+     */
+    private StudentService studentService = StudentServiceFactory.getStudentService();
+
+    /**
+     * 获取导出吞吐量统计
+     *
+     * @return 导出吞吐量统计
+     */
+    public static ThroughputStats getThroughputStats() {
+        return THROUGHPUT_STATS;
+    }
+
+    /**
+     * 导出全部学生数据。格式由参数format(csv或ndjson，默认ndjson)指定，每块读取的记录数由参数chunkSize指定，
+     * 客户端支持时使用gzip压缩
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 获取导出格式
+        boolean csv = "csv".equalsIgnoreCase(request.getParameter("format"));
+        // 获取每块读取的记录数
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        String chunkSizeStr = request.getParameter("chunkSize");
+        if (chunkSizeStr != null && !chunkSizeStr.isEmpty()) {
+            chunkSize = Math.max(1, Math.min(Integer.parseInt(chunkSizeStr), MAX_CHUNK_SIZE));
+        }
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"students." + (csv ? "csv" : "ndjson") + "\"");
+
+        long startNanos = System.nanoTime();
+        long exported;
+        try (OutputStream out = ResponseUtils.openOutputStream(request, response)) {
+            exported = csv ? exportCsv(out, chunkSize) : exportNdjson(out, chunkSize);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        THROUGHPUT_STATS.record(exported, elapsedNanos);
+        log.info("导出学生数据{}条，耗时{}ms，{}条/秒", exported, elapsedNanos / 1000000,
+                ThroughputStats.recordsPerSecond(exported, elapsedNanos / 1000000));
+    }
+
+    /**
+     * 以CSV格式导出，第一行为表头
+     *
+     * @param out       输出流
+     * @param chunkSize 每块读取的记录数
+     * @return 导出的记录数
+     * @throws IOException 如果写入失败
+     */
+    private long exportCsv(OutputStream out, int chunkSize) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        CsvWriter csvWriter = new CsvWriter(writer);
+        csvWriter.writeRecord(StudentCodec.FIELD_ID, StudentCodec.FIELD_NAME, StudentCodec.FIELD_BIRTHDAY,
+                StudentCodec.FIELD_DESCRIPTION, StudentCodec.FIELD_AVG_SCORE);
+        long exported = 0;
+        String cursor = "";
+        while (cursor != null) {
+            CursorPageInfo<Student> chunk = studentService.listStudentsByCursor(cursor, chunkSize);
+            for (Student student : chunk.getRecords()) {
+                csvWriter.writeRecord(student.getId(), student.getName(), student.getBirthday(), student.getDescription(),
+                        student.getAvgScore() == null ? null : student.getAvgScore().toString());
+            }
+            exported += chunk.getRecords().size();
+            cursor = chunk.getNextCursor();
+        }
+        writer.flush();
+        return exported;
+    }
+
+    /**
+     * 以NDJSON格式导出，每行一个学生的JSON对象
+     *
+     * @param out       输出流
+     * @param chunkSize 每块读取的记录数
+     * @return 导出的记录数
+     * @throws IOException 如果写入失败
+     */
+    private long exportNdjson(OutputStream out, int chunkSize) throws IOException {
+        JsonGenerator generator = JacksonUtils.getInstance().getFactory().createGenerator(out, JsonEncoding.UTF8);
+        // 由调用方关闭输出流
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long exported = 0;
+        String cursor = "";
+        while (cursor != null) {
+            CursorPageInfo<Student> chunk = studentService.listStudentsByCursor(cursor, chunkSize);
+            List<Student> records = chunk.getRecords();
+            for (Student student : records) {
+                StudentCodec.writeJson(generator, student);
+                generator.writeRaw('\n');
+            }
+            exported += records.size();
+            cursor = chunk.getNextCursor();
+        }
+        generator.close();
+        return exported;
+    }
+}
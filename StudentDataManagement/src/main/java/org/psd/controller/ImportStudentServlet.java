@@ -0,0 +1,374 @@
+package org.psd.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.psd.common.BatchItemResult;
+import org.psd.common.ThroughputStats;
+import org.psd.entity.Student;
+import org.psd.service.StudentService;
+import org.psd.service.StudentServiceFactory;
+import org.psd.util.ConfigUtils;
+import org.psd.util.CsvReader;
+import org.psd.util.JacksonUtils;
+import org.psd.util.ResponseUtils;
+import org.psd.util.StudentCodec;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 该servlet以流式读取请求体的方式批量导入学生数据，支持CSV和NDJSON(每行一个JSON对象)两种格式，
+ * 按批次写入Redis，内存占用与导入的记录数无关
+ *
+ * @author pengshidun
+ */
+@WebServlet("/students/import")
+public class ImportStudentServlet extends HttpServlet {
+
+    /**
+     * 默认每批写入的记录数
+     */
+    private static final int DEFAULT_BATCH_SIZE = ConfigUtils.getInt("import.batchSize", 1000);
+    /**
+     * 每批写入记录数的上限
+     */
+    private static final int MAX_BATCH_SIZE = 10000;
+    /**
+     * 未提供表头时CSV各列对应的字段
+     */
+    private static final List<String> DEFAULT_CSV_COLUMNS = Arrays.asList(StudentCodec.FIELD_ID, StudentCodec.FIELD_NAME,
+            StudentCodec.FIELD_BIRTHDAY, StudentCodec.FIELD_DESCRIPTION, StudentCodec.FIELD_AVG_SCORE);
+    /**
+     * 将一行JSON解析为Student的读取器，忽略未知字段
+     */
+    private static final ObjectReader STUDENT_READER = JacksonUtils.getInstance().readerFor(Student.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    /**
+     * 导入吞吐量统计
+     */
+    private static final ThroughputStats THROUGHPUT_STATS = new ThroughputStats();
+
+    /**
+     * 实例化StudentService接口的实现类
+     */
+    private StudentService studentService = StudentServiceFactory.getStudentService();
+
+    /**
+     * 获取导入吞吐量统计
+     *
+     * @return 导入吞吐量统计
+     */
+    public static ThroughputStats getThroughputStats() {
+        return THROUGHPUT_STATS;
+    }
+
+    /**
+     * 批量导入学生数据。格式由参数format(csv或ndjson)指定，未指定时根据Content-Type判断；
+     * 每批写入的记录数由参数batchSize指定。响应为JSON，逐条列出失败的行，最后给出导入汇总
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 获取导入格式
+        String format = request.getParameter("format");
+        if (format == null || format.isEmpty()) {
+            String contentType = request.getContentType();
+            format = contentType != null && contentType.toLowerCase().contains("csv") ? "csv" : "ndjson";
+        }
+        // 获取每批写入的记录数
+        int batchSize = DEFAULT_BATCH_SIZE;
+        String batchSizeStr = request.getParameter("batchSize");
+        if (batchSizeStr != null && !batchSizeStr.isEmpty()) {
+            batchSize = Math.max(1, Math.min(Integer.parseInt(batchSizeStr), MAX_BATCH_SIZE));
+        }
+        RowSource source = "csv".equalsIgnoreCase(format)
+                ? new CsvRowSource(request.getReader())
+                : new NdjsonRowSource(request.getReader());
+
+        response.setContentType("application/json;charset=UTF-8");
+        try (JsonGenerator generator = JacksonUtils.getInstance().getFactory()
+                .createGenerator(ResponseUtils.openOutputStream(request, response), JsonEncoding.UTF8)) {
+            new ImportTask(generator, batchSize).run(source);
+        }
+    }
+
+    /**
+     * 一次导入任务，按批次写入学生数据，并将失败的行和导入汇总写入响应
+     */
+    private class ImportTask {
+        /**
+         * 响应的JSON生成器
+         */
+        private final JsonGenerator generator;
+        /**
+         * 每批写入的记录数
+         */
+        private final int batchSize;
+        /**
+         * 当前批次的学生数据
+         */
+        private final List<Student> batch;
+        /**
+         * 当前批次学生数据对应的行号
+         */
+        private final List<Long> batchRows;
+        /**
+         * 读取的总行数
+         */
+        private long total;
+        /**
+         * 导入成功的行数
+         */
+        private long succeeded;
+
+        ImportTask(JsonGenerator generator, int batchSize) {
+            this.generator = generator;
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<>(batchSize);
+            this.batchRows = new ArrayList<>(batchSize);
+        }
+
+        /**
+         * 逐行读取并按批次导入
+         *
+         * @param source 行数据来源
+         * @throws IOException 如果写入响应失败
+         */
+        void run(RowSource source) throws IOException {
+            long startNanos = System.nanoTime();
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("errors");
+            while (true) {
+                Row row;
+                try {
+                    row = source.next();
+                } catch (IOException e) {
+                    // 请求体格式损坏，无法继续定位后续的行
+                    total++;
+                    writeError(total, null, e.getMessage());
+                    break;
+                }
+                if (row == null) {
+                    break;
+                }
+                total++;
+                if (row.error != null) {
+                    writeError(row.number, row.student == null ? null : row.student.getId(), row.error);
+                    continue;
+                }
+                batch.add(row.student);
+                batchRows.add(row.number);
+                if (batch.size() >= batchSize) {
+                    flush();
+                }
+            }
+            flush();
+            generator.writeEndArray();
+            // 导入汇总
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long elapsedMillis = elapsedNanos / 1000000;
+            THROUGHPUT_STATS.record(succeeded, elapsedNanos);
+            generator.writeNumberField("total", total);
+            generator.writeNumberField("succeeded", succeeded);
+            generator.writeNumberField("failed", total - succeeded);
+            generator.writeNumberField("elapsedMillis", elapsedMillis);
+            generator.writeNumberField("recordsPerSecond", ThroughputStats.recordsPerSecond(succeeded, elapsedMillis));
+            generator.writeEndObject();
+        }
+
+        /**
+         * 写入当前批次，并记录失败的行
+         *
+         * @throws IOException 如果写入响应失败
+         */
+        private void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<BatchItemResult> results = studentService.importStudents(batch);
+            for (BatchItemResult result : results) {
+                if (result.getSuccess()) {
+                    succeeded++;
+                } else {
+                    writeError(batchRows.get(result.getIndex()), result.getId(), result.getMessage());
+                }
+            }
+            batch.clear();
+            batchRows.clear();
+        }
+
+        /**
+         * 写入一条失败的行
+         *
+         * @param rowNumber 行号(从1开始，CSV表头不计入)
+         * @param id        学生学号
+         * @param message   失败原因
+         * @throws IOException 如果写入响应失败
+         */
+        private void writeError(long rowNumber, String id, String message) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("row", rowNumber);
+            generator.writeStringField("id", id);
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * 请求体中解析出的一行数据
+     */
+    private static class Row {
+        /**
+         * 行号(从1开始，CSV表头不计入)
+         */
+        private final long number;
+        /**
+         * 解析出的学生数据
+         */
+        private final Student student;
+        /**
+         * 解析失败的原因，成功时为null
+         */
+        private final String error;
+
+        Row(long number, Student student, String error) {
+            this.number = number;
+            this.student = student;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 行数据来源
+     */
+    private interface RowSource {
+        /**
+         * 读取下一行数据
+         *
+         * @return 行数据，已读完时返回null
+         * @throws IOException 如果请求体读取失败或格式损坏
+         */
+        Row next() throws IOException;
+    }
+
+    /**
+     * CSV格式的行数据来源，第一行包含id列时视为表头，否则按id,name,birthday,description,avgScore的顺序解析
+     */
+    private static class CsvRowSource implements RowSource {
+        /**
+         * CSV读取器
+         */
+        private final CsvReader reader;
+        /**
+         * 各列对应的字段
+         */
+        private List<String> columns;
+        /**
+         * 第一行不是表头时暂存的第一行数据
+         */
+        private List<String> firstRecord;
+        /**
+         * 已读取的数据行数
+         */
+        private long number;
+
+        CsvRowSource(BufferedReader reader) {
+            this.reader = new CsvReader(reader);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> record;
+            if (columns == null) {
+                // 读取第一行，判断是否为表头
+                record = reader.readRecord();
+                if (record != null && record.stream().anyMatch(StudentCodec.FIELD_ID::equalsIgnoreCase)) {
+                    columns = record;
+                    record = reader.readRecord();
+                } else {
+                    columns = DEFAULT_CSV_COLUMNS;
+                }
+            } else {
+                record = reader.readRecord();
+            }
+            if (record == null) {
+                return null;
+            }
+            number++;
+            Student student = new Student();
+            for (int i = 0; i < record.size() && i < columns.size(); i++) {
+                String column = columns.get(i).trim();
+                String value = record.get(i);
+                // 平均分格式错误时报告该行失败，而不是按缺省值0导入
+                if (StudentCodec.FIELD_AVG_SCORE.equalsIgnoreCase(column) && !value.isEmpty() && !value.matches("-?\\d{1,9}")) {
+                    return new Row(number, student, "平均分格式错误: " + value);
+                }
+                StudentCodec.setField(student, columnToField(column), value);
+            }
+            return new Row(number, student, null);
+        }
+
+        /**
+         * 将表头列名转换为字段名，忽略大小写
+         *
+         * @param column 列名
+         * @return 字段名，未知列原样返回
+         */
+        private String columnToField(String column) {
+            for (String field : DEFAULT_CSV_COLUMNS) {
+                if (field.equalsIgnoreCase(column)) {
+                    return field;
+                }
+            }
+            return column;
+        }
+    }
+
+    /**
+     * NDJSON格式的行数据来源，每行一个JSON对象，跳过空行
+     */
+    private static class NdjsonRowSource implements RowSource {
+        /**
+         * 请求体读取器
+         */
+        private final BufferedReader reader;
+        /**
+         * 已读取的数据行数
+         */
+        private long number;
+
+        NdjsonRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line = reader.readLine();
+            while (line != null && line.trim().isEmpty()) {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            number++;
+            try {
+                return new Row(number, STUDENT_READER.readValue(line), null);
+            } catch (JsonProcessingException e) {
+                return new Row(number, null, "JSON格式错误: " + e.getOriginalMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.psd.controller;
+
+import org.psd.filter.BulkheadFilter;
+import org.psd.storage.StudentStorage;
+import org.psd.storage.StudentStorageFactory;
+import org.psd.util.AsyncUtils;
+import org.psd.util.JacksonUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 该servlet以JSON格式输出应用运行指标，如存储引擎的运行情况(Redis连接池的使用情况、近端缓存的命中情况)、异步请求线程池的使用情况、各接口的准入控制和拒绝情况、导入导出的吞吐量、变更事件推送的连接数
+ *
+ * @author pengshidun
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    /**
+     * 获取应用运行指标
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 按模块收集运行指标
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        StudentStorage storage = StudentStorageFactory.getStorage();
+        metrics.put("storage", storage.getName());
+        metrics.putAll(storage.getStats());
+        metrics.put("async", AsyncUtils.getStats());
+        metrics.put("bulkhead", BulkheadFilter.getStats());
+        metrics.put("import", ImportStudentServlet.getThroughputStats().getStats());
+        metrics.put("export", ExportStudentServlet.getThroughputStats().getStats());
+        metrics.put("changes", ChangeBroadcaster.getInstance().getStats());
+        // 将运行指标转换为JSON字符串并输出到响应中
+        response.setContentType("application/json");
+        response.getWriter().print(JacksonUtils.objectToJsonStr(metrics));
+    }
+}
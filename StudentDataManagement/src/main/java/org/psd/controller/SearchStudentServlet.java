@@ -0,0 +1,104 @@
+package org.psd.controller;
+
+import org.psd.common.PageInfo;
+import org.psd.entity.Student;
+import org.psd.service.StudentService;
+import org.psd.service.StudentServiceFactory;
+import org.psd.util.JacksonUtils;
+import org.psd.util.PageJsonWriter;
+import org.psd.util.ResponseUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * 该servlet基于Redis中维护的索引搜索学生，并提供为已有学生补建索引的功能
+ *
+ * @author pengshidun
+ */
+@WebServlet("/students/search")
+public class SearchStudentServlet extends HttpServlet {
+
+    /**
+     * 实例化StudentService接口的实现类
+     */
+    private StudentService studentService = StudentServiceFactory.getStudentService();
+
+    /**
+     * 分页搜索学生，接受页码(pageNum)和每页大小(pageSize)参数。
+     * 带有检索词(q)参数时按备注检索，结果按平均分倒序排列，可选参数为
+     * 检索词的组合方式(op，and或or，默认and)以及平均分区间(minScore、maxScore)；
+     * 带有姓名前缀(name)参数时按姓名前缀搜索，结果按姓名的字典序排列；
+     * 否则按平均分区间(minScore、maxScore)和出生日期区间(bornFrom、bornTo，格式为yyyy-MM-dd)过滤，
+     * 结果按平均分倒序排列，出生日期格式错误时响应400
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Integer pageNum = parseInteger(request.getParameter("pageNum"));
+        Integer pageSize = parseInteger(request.getParameter("pageSize"));
+        String query = request.getParameter("q");
+        PageInfo<Student> pageInfoVO;
+        if (query != null) {
+            // 调用studentService的searchStudentsByDescription方法按备注检索分页学生数据
+            boolean matchAll = !"or".equalsIgnoreCase(request.getParameter("op"));
+            pageInfoVO = studentService.searchStudentsByDescription(query, matchAll,
+                    parseInteger(request.getParameter("minScore")), parseInteger(request.getParameter("maxScore")),
+                    pageNum, pageSize);
+        } else if (request.getParameter("name") != null) {
+            // 调用studentService的searchStudentsByName方法获取匹配的分页学生数据
+            pageInfoVO = studentService.searchStudentsByName(request.getParameter("name"), pageNum, pageSize);
+        } else {
+            try {
+                // 调用studentService的listStudentsByRange方法获取区间内的分页学生数据
+                pageInfoVO = studentService.listStudentsByRange(parseInteger(request.getParameter("minScore")),
+                        parseInteger(request.getParameter("maxScore")), request.getParameter("bornFrom"),
+                        request.getParameter("bornTo"), pageNum, pageSize);
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+        }
+        // 将分页数据以JSON流式写入响应，客户端支持时使用gzip压缩
+        response.setContentType("application/json;charset=UTF-8");
+        PageJsonWriter.write(ResponseUtils.openOutputStream(request, response), pageInfoVO);
+    }
+
+    /**
+     * 按学生数据的当前内容为所有学生补建搜索索引，用于升级后为已有学生建立索引
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long indexed = studentService.reindexStudents();
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().print(JacksonUtils.objectToJsonStr(Collections.singletonMap("reindexed", indexed)));
+    }
+
+    /**
+     * 解析整数参数
+     *
+     * @param value 参数值
+     * @return 整数，为空或格式错误时返回null，由业务层设置默认值
+     */
+    private Integer parseInteger(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.psd.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.common.ChangeEvent;
+import org.psd.util.ConfigUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 该servlet以Server-Sent Events向页面推送学生数据的变更事件，事件名为change，数据为{@link ChangeEvent}的JSON。
+ * 连接保持changeFeed.timeoutMillis毫秒后结束，浏览器自动带上Last-Event-ID请求头重连，
+ * 也可通过lastEventId参数指定从哪个事件之后继续推送
+ *
+ * @author pengshidun
+ */
+@Slf4j
+@WebServlet(urlPatterns = "/students/changes", asyncSupported = true)
+public class StudentChangesServlet extends HttpServlet {
+
+    /**
+     * 每个连接保持的时间(毫秒)，不依赖容器默认的异步超时时间
+     */
+    private static final long TIMEOUT_MILLIS = ConfigUtils.getLong("changeFeed.timeoutMillis", 300000L);
+
+    /**
+     * 建立变更事件推送连接
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!ChangeBroadcaster.getInstance().isEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "未启用变更事件流");
+            return;
+        }
+        // 格式错误的事件ID视为未指定
+        String lastEventId = request.getHeader("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = request.getParameter("lastEventId");
+        }
+        if (!ChangeEvent.isValidId(lastEventId)) {
+            lastEventId = null;
+        }
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        // 避免Nginx等反向代理缓冲事件
+        response.setHeader("X-Accel-Buffering", "no");
+        AsyncContext context = request.startAsync();
+        context.setTimeout(TIMEOUT_MILLIS);
+        try {
+            if (!ChangeBroadcaster.getInstance().subscribe(context, lastEventId)) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                context.complete();
+            }
+        } catch (RuntimeException e) {
+            // 事件流不可用或页面已断开，页面稍后重连
+            log.warn("建立变更事件推送连接失败: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+            context.complete();
+        }
+    }
+}
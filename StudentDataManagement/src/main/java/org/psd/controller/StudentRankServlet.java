@@ -0,0 +1,57 @@
+package org.psd.controller;
+
+import org.psd.common.StudentRank;
+import org.psd.service.StudentService;
+import org.psd.service.StudentServiceFactory;
+import org.psd.util.JacksonUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 该servlet根据学号获取学生的排名，以及该学生所在的一页学生数据，用于跳转到指定学生所在的页
+ *
+ * @author pengshidun
+ */
+@WebServlet("/students/rank")
+public class StudentRankServlet extends HttpServlet {
+
+    /**
+     * 实例化StudentService接口的实现类
+     */
+    private StudentService studentService = StudentServiceFactory.getStudentService();
+
+    /**
+     * 获取学生的排名及其所在的一页学生数据，接受学号(id)和每页大小(pageSize)两个参数，学生不存在时响应404
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 获取请求中的每页大小参数，默认每页大小为10
+        String pageSizeStr = request.getParameter("pageSize");
+        Integer pageSize = null;
+        if (pageSizeStr != null && !pageSizeStr.isEmpty()) {
+            try {
+                pageSize = Integer.valueOf(pageSizeStr);
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "每页大小格式错误: " + pageSizeStr);
+                return;
+            }
+        }
+        // 调用studentService的locateStudent方法获取学生排名
+        StudentRank studentRank = studentService.locateStudent(request.getParameter("id"), pageSize);
+        if (studentRank == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "学生不存在");
+            return;
+        }
+        // 将学生排名转换为JSON字符串并输出到响应中
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().print(JacksonUtils.objectToJsonStr(studentRank));
+    }
+}
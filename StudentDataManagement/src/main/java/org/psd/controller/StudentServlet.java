@@ -1,11 +1,23 @@
 package org.psd.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.psd.cache.NearCache;
+import org.psd.cache.NearCacheManager;
+import org.psd.util.AsyncUtils;
+import org.psd.util.ConfigUtils;
 import org.psd.util.JacksonUtils;
+import org.psd.util.JedisUtils;
 import org.psd.util.MapBeanUtils;
+import org.psd.util.PageJsonWriter;
+import org.psd.util.ResponseUtils;
+import org.psd.common.BatchItemResult;
+import org.psd.common.CursorPageInfo;
 import org.psd.common.PageInfo;
+import org.psd.common.WriteStatus;
 import org.psd.entity.Student;
 import org.psd.service.StudentService;
-import org.psd.service.impl.StudentServiceImpl;
+import org.psd.service.StudentServiceFactory;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -13,46 +25,169 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * 该servlet主要用于处理与学生数据管理相关的请求
+ * 该servlet主要用于处理与学生数据管理相关的请求，请求以异步方式在{@link AsyncUtils}的线程池中处理，
+ * 等待Redis期间不占用容器线程
  *
  * @author pengshidun
  */
-@WebServlet("/students")
+@WebServlet(urlPatterns = "/students", asyncSupported = true)
 public class StudentServlet extends HttpServlet {
 
     /**
      * 实例化StudentService接口的实现类
      */
-    private StudentService studentService = new StudentServiceImpl();
+    private StudentService studentService = StudentServiceFactory.getStudentService();
 
     /**
-     * 分页获取学生数据信息，接受页码(pageNum)和每页大小(pageSize)两个参数
+     * 单次批量操作的记录数上限
+     */
+    private static final int MAX_BATCH_SIZE = ConfigUtils.getInt("batch.maxSize", 10000);
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+        AsyncUtils.dispatch(request, response, this::handleGet);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+        AsyncUtils.dispatch(request, response, this::handlePost);
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) {
+        AsyncUtils.dispatch(request, response, this::handlePut);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        AsyncUtils.dispatch(request, response, this::handleDelete);
+    }
+
+    /**
+     * 分页获取学生数据信息，接受页码(pageNum)和每页大小(pageSize)两个参数；
+     * 响应带有由数据集版本号生成的ETag，请求头If-None-Match与之匹配时响应304；
+     * 请求中带有游标(cursor)参数时改为游标分页，游标为空字符串表示从第一名开始
      *
      * @param request  HTTP请求对象
      * @param response HTTP响应对象
      * @throws IOException 如果发生输入输出异常
      */
-    @Override
-    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        // 获取请求中的页码参数
-        String pageNumberStr = request.getParameter("pageNum");
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         // 获取请求中的每页大小参数
         String pageSizeStr = request.getParameter("pageSize");
-        // 将页码参数转换为整数
-        int pageNum = Integer.parseInt(pageNumberStr);
         // 默认每页大小为10
         int pageSize = 10;
         if (pageSizeStr != null && !pageSizeStr.isEmpty()) {
             pageSize = Integer.parseInt(pageSizeStr);
         }
-        // 调用studentService的listStudentsPage方法获取分页学生数据
-        PageInfo<Student> pageInfoVO = studentService.listStudentsPage(pageNum, pageSize);
-        // 将分页数据转换为JSON字符串并输出到响应中
-        response.getWriter().print(JacksonUtils.objectToJsonStr(pageInfoVO));
+        // 获取请求中的游标参数，存在时按游标分页
+        String cursor = request.getParameter("cursor");
+        if (cursor != null) {
+            doGetByCursor(request, response, cursor, pageSize);
+            return;
+        }
+        // 获取请求中的页码参数
+        String pageNumberStr = request.getParameter("pageNum");
+        // 将页码参数转换为整数
+        int pageNum = Integer.parseInt(pageNumberStr);
+        Long version;
+        try {
+            version = studentService.getDatasetVersion();
+        } catch (JedisConnectionException e) {
+            // Redis不可用，无法生成ETag，尝试返回该页的过期快照，没有快照时抛出异常并响应503
+            writePage(request, response, studentService.listStudentsPage(pageNum, pageSize), null);
+            return;
+        }
+        if (version == null) {
+            // 本节点有尚未写入的更新，分页数据不能只用版本号标识，不设置ETag也不写入分页结果缓存
+            writePage(request, response, studentService.listStudentsPage(pageNum, pageSize), null);
+            return;
+        }
+        // 以数据集版本号和分页参数生成ETag，数据未变化时响应304
+        String etag = "W/\"" + version + "-" + pageNum + "-" + pageSize + "\"";
+        response.setHeader("Cache-Control", "no-cache");
+        if (ResponseUtils.matchesEtag(request, etag)) {
+            response.setHeader("ETag", etag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        NearCache<byte[]> pageCache = NearCacheManager.getPageCache();
+        if (pageCache == null) {
+            // 调用studentService的listStudentsPage方法获取分页学生数据
+            writePage(request, response, studentService.listStudentsPage(pageNum, pageSize), etag);
+            return;
+        }
+        // 从分页结果缓存中获取该版本的分页数据，未命中时查询并序列化后写入缓存
+        String cacheKey = version + ":" + pageNum + ":" + pageSize;
+        byte[] json = pageCache.get(cacheKey);
+        if (json == null) {
+            PageInfo<Student> pageInfoVO = studentService.listStudentsPage(pageNum, pageSize);
+            if (pageInfoVO.getStale() != null) {
+                // 过期快照不写入分页结果缓存
+                writePage(request, response, pageInfoVO, etag);
+                return;
+            }
+            json = PageJsonWriter.toBytes(pageInfoVO);
+            pageCache.put(cacheKey, json);
+        }
+        response.setHeader("ETag", etag);
+        response.setContentType("application/json;charset=UTF-8");
+        // 输出缓存的分页数据，客户端支持时使用gzip压缩
+        try (OutputStream out = ResponseUtils.openOutputStream(request, response)) {
+            out.write(json);
+        }
+    }
+
+    /**
+     * 将分页学生数据以JSON流式写入响应，客户端支持时使用gzip压缩。
+     * 过期快照不设置ETag，并通过Warning响应头标明数据已过期
+     *
+     * @param request    HTTP请求对象
+     * @param response   HTTP响应对象
+     * @param pageInfoVO 分页学生数据
+     * @param etag       数据为最新时设置的ETag，可以为null
+     * @throws IOException 如果发生输入输出异常
+     */
+    private void writePage(HttpServletRequest request, HttpServletResponse response, PageInfo<Student> pageInfoVO, String etag) throws IOException {
+        if (pageInfoVO.getStale() != null) {
+            response.setHeader("Cache-Control", "no-store");
+            response.setHeader("Warning", "110 - \"Response is Stale\"");
+        } else if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        PageJsonWriter.write(ResponseUtils.openOutputStream(request, response), pageInfoVO);
+    }
+
+    /**
+     * 按游标分页获取学生数据信息
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @param cursor   游标
+     * @param pageSize 每页大小
+     * @throws IOException 如果发生输入输出异常
+     */
+    private void doGetByCursor(HttpServletRequest request, HttpServletResponse response, String cursor, int pageSize) throws IOException {
+        CursorPageInfo<Student> cursorPageVO;
+        try {
+            // 调用studentService的listStudentsByCursor方法获取游标分页学生数据
+            cursorPageVO = studentService.listStudentsByCursor(cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            // 游标格式不合法
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        // 将分页数据以JSON流式写入响应，客户端支持时使用gzip压缩
+        response.setContentType("application/json;charset=UTF-8");
+        PageJsonWriter.write(ResponseUtils.openOutputStream(request, response), cursorPageVO);
     }
 
     /**
@@ -62,35 +197,33 @@ public class StudentServlet extends HttpServlet {
      * @param response HTTP响应对象
      * @throws IOException 如果发生输入输出异常
      */
-    @Override
-    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handlePost(HttpServletRequest request, HttpServletResponse response) throws IOException {
         // 获取请求参数映射
         Map<String, String[]> parameterMap = request.getParameterMap();
         // 将参数映射转换为Student对象
         Student student = MapBeanUtils.mapToBean(parameterMap, Student.class);
         // 调用studentService的saveStudent方法保存学生数据
-        boolean isSuccess = studentService.saveStudent(student);
-        // 获取响应的PrintWriter对象，用于输出响应内容
-        PrintWriter writer = response.getWriter();
-        // 根据保存结果输出相应的消息
-        if (isSuccess) {
-            writer.print("添加成功");
-        } else {
-            writer.print("添加失败");
-        }
-        // 关闭PrintWriter对象
-        writer.close();
+        WriteStatus status = studentService.saveStudent(student);
+        // 根据保存结果输出相应的状态码和消息
+        writeStatus(response, status, "添加");
     }
 
     /**
-     * 删除学生
+     * 删除学生；请求体为JSON数组(Content-Type: application/json)时按其中的学生ID批量删除
      *
      * @param request  HTTP请求对象
      * @param response HTTP响应对象
      * @throws IOException 如果发生输入输出异常
      */
-    @Override
-    protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handleDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 请求体为JSON时按学生ID数组批量删除
+        if (isJsonBody(request)) {
+            List<String> studentIds = readJsonBody(request, response, String.class);
+            if (studentIds != null) {
+                writeBatchResults(response, studentService.removeStudents(studentIds));
+            }
+            return;
+        }
         // 获取响应的PrintWriter对象，用于输出响应内容
         PrintWriter writer = response.getWriter();
         // 获取请求中的学生ID参数
@@ -108,30 +241,131 @@ public class StudentServlet extends HttpServlet {
     }
 
     /**
-     * 更新学生信息
+     * 更新学生信息；请求体为JSON数组(Content-Type: application/json)时按其中的学生信息批量添加或更新
      *
      * @param request  HTTP请求对象
      * @param response HTTP响应对象
      * @throws ServletException 如果发生Servlet异常
      * @throws IOException      如果发生输入输出异常
      */
-    @Override
-    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    private void handlePut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        // 请求体为JSON时按学生信息数组批量添加或更新
+        if (isJsonBody(request)) {
+            List<Student> students = readJsonBody(request, response, Student.class);
+            if (students != null) {
+                writeBatchResults(response, studentService.updateStudents(students));
+            }
+            return;
+        }
         // 获取请求参数映射
         Map<String, String[]> parameterMap = request.getParameterMap();
         // 将参数映射转换为Student对象
         Student student = MapBeanUtils.mapToBean(parameterMap, Student.class);
-        // 获取响应的PrintWriter对象，用于输出响应内容
-        PrintWriter writer = response.getWriter();
         // 调用studentService的updateStudent方法更新学生数据
-        Boolean isSuccess = studentService.updateStudent(student);
-        // 根据更新结果输出相应的消息
-        if (isSuccess) {
-            writer.print("更新成功");
-        } else {
-            writer.print("更新失败");
+        WriteStatus status = studentService.updateStudent(student);
+        // 根据更新结果输出相应的状态码和消息
+        writeStatus(response, status, "更新");
+    }
+
+    /**
+     * 将添加或更新的结果映射为HTTP状态码和提示消息并输出
+     *
+     * @param response  HTTP响应对象
+     * @param status    添加或更新的结果
+     * @param operation 操作名称，如"添加"、"更新"
+     * @throws IOException 如果发生输入输出异常
+     */
+    private void writeStatus(HttpServletResponse response, WriteStatus status, String operation) throws IOException {
+        String message;
+        switch (status) {
+            case CREATED:
+            case UPDATED:
+                message = operation + "成功";
+                break;
+            case ALREADY_EXISTS:
+                response.setStatus(HttpServletResponse.SC_CONFLICT);
+                message = operation + "失败，学号已存在";
+                break;
+            case NOT_FOUND:
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                message = operation + "失败，学生不存在";
+                break;
+            case INVALID:
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                message = operation + "失败，学生信息不合法";
+                break;
+            case UNAVAILABLE:
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", String.valueOf(JedisUtils.getRetryAfterSeconds()));
+                message = operation + "失败，Redis暂不可用，请稍后重试";
+                break;
+            default:
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                message = operation + "失败";
+                break;
         }
-        // 关闭PrintWriter对象
+        // 获取响应的PrintWriter对象，输出提示消息后关闭
+        PrintWriter writer = response.getWriter();
+        writer.print(message);
         writer.close();
     }
+
+    /**
+     * 判断请求体是否为JSON
+     *
+     * @param request HTTP请求对象
+     * @return Content-Type为application/json时返回true
+     */
+    private boolean isJsonBody(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase().startsWith("application/json");
+    }
+
+    /**
+     * 流式读取并解析JSON数组请求体，记录数超过上限时立即停止解析，格式错误或记录数超过上限时响应400或413
+     *
+     * @param request     HTTP请求对象
+     * @param response    HTTP响应对象
+     * @param elementType 数组元素的类型
+     * @param <T>         数组元素的类型
+     * @return 解析后的请求体，失败时返回null
+     * @throws IOException 如果发生输入输出异常
+     */
+    private <T> List<T> readJsonBody(HttpServletRequest request, HttpServletResponse response,
+                                     Class<T> elementType) throws IOException {
+        List<T> body;
+        try {
+            body = JacksonUtils.readArray(request.getReader(), elementType, MAX_BATCH_SIZE);
+        } catch (JsonProcessingException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "JSON格式错误: " + e.getOriginalMessage());
+            return null;
+        }
+        if (body == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "请求体不能为空");
+            return null;
+        }
+        if (body.size() > MAX_BATCH_SIZE) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "单次批量操作不能超过" + MAX_BATCH_SIZE + "条");
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * 以JSON输出批量操作的汇总和每条记录的处理结果
+     *
+     * @param response HTTP响应对象
+     * @param results  每条记录的处理结果
+     * @throws IOException 如果发生输入输出异常
+     */
+    private void writeBatchResults(HttpServletResponse response, List<BatchItemResult> results) throws IOException {
+        long succeeded = results.stream().filter(BatchItemResult::getSuccess).count();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("total", results.size());
+        body.put("succeeded", succeeded);
+        body.put("failed", results.size() - succeeded);
+        body.put("results", results);
+        response.setContentType("application/json;charset=UTF-8");
+        JacksonUtils.getInstance().writeValue(response.getOutputStream(), body);
+    }
 }
@@ -0,0 +1,61 @@
+package org.psd.controller;
+
+import org.psd.service.StudentService;
+import org.psd.service.StudentServiceFactory;
+import org.psd.util.JacksonUtils;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 该servlet以JSON格式输出学生平均分的统计信息，包括学生数、均值、最值、百分位数和分数直方图
+ *
+ * @author pengshidun
+ */
+@WebServlet("/students/stats")
+public class StudentStatsServlet extends HttpServlet {
+
+    /**
+     * 未指定百分比时默认计算的百分位数
+     */
+    private static final double[] DEFAULT_PERCENTILES = {25, 50, 75, 90, 99};
+
+    /**
+     * 实例化StudentService接口的实现类
+     */
+    private StudentService studentService = StudentServiceFactory.getStudentService();
+
+    /**
+     * 获取学生平均分的统计信息，参数p为以逗号分隔的百分比，如p=50,90,99.9，取值(0, 100]，格式错误时响应400
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @throws IOException 如果发生输入输出异常
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        double[] percentiles = DEFAULT_PERCENTILES;
+        String percentilesStr = request.getParameter("p");
+        if (percentilesStr != null && !percentilesStr.isEmpty()) {
+            String[] parts = percentilesStr.split(",");
+            percentiles = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                try {
+                    percentiles[i] = Double.parseDouble(parts[i].trim());
+                } catch (NumberFormatException e) {
+                    percentiles[i] = Double.NaN;
+                }
+                if (!(percentiles[i] > 0 && percentiles[i] <= 100)) {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "百分比必须在(0, 100]范围内: " + parts[i]);
+                    return;
+                }
+            }
+        }
+        // 将统计信息转换为JSON字符串并输出到响应中
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().print(JacksonUtils.objectToJsonStr(studentService.getScoreStats(percentiles)));
+    }
+}
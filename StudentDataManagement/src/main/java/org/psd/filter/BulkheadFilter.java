@@ -0,0 +1,176 @@
+package org.psd.filter;
+
+import org.psd.common.Bulkhead;
+import org.psd.util.AsyncUtils;
+import org.psd.util.ConfigUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 准入控制过滤器，为每个访问Redis的接口分别设置读(GET、HEAD)和写(其他方法)两个舱壁隔离器，
+ * 限制同时处理的请求数，超出时排队等待一段时间，排队已满或等待超时时响应503并带有Retry-After头，
+ * 避免Redis变慢时请求无限堆积
+ *
+ * @author pengshidun
+ */
+@WebFilter(filterName = "bulkheadFilter", urlPatterns = "/*", asyncSupported = true)
+public class BulkheadFilter implements Filter {
+    /**
+     * 是否启用准入控制
+     */
+    private static final boolean ENABLED = ConfigUtils.getBoolean("bulkhead.enabled", false);
+    /**
+     * 拒绝请求时建议客户端重试的间隔时间(秒)
+     */
+    private static final String RETRY_AFTER_SECONDS = String.valueOf(ConfigUtils.getInt("bulkhead.retryAfterSeconds", 1));
+    /**
+     * 各接口的读舱壁隔离器，键为接口路径
+     */
+    private static final Map<String, Bulkhead> READ_BULKHEADS = new LinkedHashMap<>();
+    /**
+     * 各接口的写舱壁隔离器，键为接口路径
+     */
+    private static final Map<String, Bulkhead> WRITE_BULKHEADS = new LinkedHashMap<>();
+
+    /*
+     * 静态初始化块，为配置的每个接口创建读、写舱壁隔离器，其余请求不受限制
+     */
+    static {
+        String endpoints = ConfigUtils.getString("bulkhead.endpoints",
+                "/students,/students/search,/students/rank,/students/stats,/students/import,/students/export,/isExist");
+        long maxWaitMillis = ConfigUtils.getLong("bulkhead.maxWaitMillis", 500L);
+        for (String endpoint : endpoints.split(",")) {
+            endpoint = endpoint.trim();
+            if (endpoint.isEmpty()) {
+                continue;
+            }
+            READ_BULKHEADS.put(endpoint, new Bulkhead(ConfigUtils.getInt("bulkhead.read.maxConcurrent", 64),
+                    ConfigUtils.getInt("bulkhead.read.maxQueued", 128), maxWaitMillis));
+            WRITE_BULKHEADS.put(endpoint, new Bulkhead(ConfigUtils.getInt("bulkhead.write.maxConcurrent", 16),
+                    ConfigUtils.getInt("bulkhead.write.maxQueued", 32), maxWaitMillis));
+        }
+    }
+
+    /**
+     * 获取各接口舱壁隔离器的运行统计信息
+     *
+     * @return 键为接口路径，值为读、写舱壁隔离器统计信息的Map，未启用时返回"disabled"
+     */
+    public static Object getStats() {
+        if (!ENABLED) {
+            return "disabled";
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        READ_BULKHEADS.forEach((endpoint, read) -> {
+            Map<String, Object> endpointStats = new LinkedHashMap<>();
+            endpointStats.put("read", read.getStats());
+            endpointStats.put("write", WRITE_BULKHEADS.get(endpoint).getStats());
+            stats.put(endpoint, endpointStats);
+        });
+        return stats;
+    }
+
+    /**
+     * 初始化过滤器
+     *
+     * @param filterConfig 过滤器配置对象
+     */
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // 进行初始化操作
+    }
+
+    /**
+     * 按请求的接口和方法获取执行许可，获得许可后放行，请求处理结束(异步请求在异步处理结束且处理线程退出)后归还许可；
+     * 未获得许可时响应503
+     *
+     * @param servletRequest  请求
+     * @param servletResponse 响应
+     * @param filterChain     过滤器链
+     * @throws IOException      doFilter和sendError抛出IO异常
+     * @throws ServletException doFilter抛出Servlet异常
+     */
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) servletRequest;
+        HttpServletResponse resp = (HttpServletResponse) servletResponse;
+        String method = req.getMethod();
+        Map<String, Bulkhead> bulkheads = "GET".equals(method) || "HEAD".equals(method) ? READ_BULKHEADS : WRITE_BULKHEADS;
+        Bulkhead bulkhead = ENABLED ? bulkheads.get(req.getServletPath()) : null;
+        if (bulkhead == null) {
+            filterChain.doFilter(req, resp);
+            return;
+        }
+        if (!bulkhead.tryAcquire()) {
+            resp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "服务器繁忙，请稍后重试");
+            return;
+        }
+        // 同步请求在过滤器链返回后归还许可，异步请求在异步处理结束且处理线程退出后归还许可，只归还一次；
+        // 超时后处理线程可能仍在访问Redis，此时归还许可会使并发访问Redis的请求数超过舱壁上限
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            filterChain.doFilter(req, resp);
+        } finally {
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        AsyncUtils.whenHandled(req, () -> release(bulkhead, released));
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        AsyncUtils.whenHandled(req, () -> release(bulkhead, released));
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        AsyncUtils.whenHandled(req, () -> release(bulkhead, released));
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                        // 无需处理
+                    }
+                });
+            } else {
+                release(bulkhead, released);
+            }
+        }
+    }
+
+    /**
+     * 销毁过滤器
+     */
+    @Override
+    public void destroy() {
+        // 进行销毁操作
+    }
+
+    /**
+     * 归还执行许可，重复调用时只归还一次
+     *
+     * @param bulkhead 舱壁隔离器
+     * @param released 是否已归还
+     */
+    private static void release(Bulkhead bulkhead, AtomicBoolean released) {
+        if (released.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+}
@@ -11,7 +11,7 @@ import java.io.IOException;
  *
  * @author pengshidun
  */
-@WebFilter(filterName = "encodingFilter", urlPatterns = "/*")
+@WebFilter(filterName = "encodingFilter", urlPatterns = "/*", asyncSupported = true)
 public class EncodingFilter implements Filter {
 
     /**
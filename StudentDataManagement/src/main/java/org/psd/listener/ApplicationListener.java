@@ -0,0 +1,40 @@
+package org.psd.listener;
+
+import org.psd.controller.ChangeBroadcaster;
+import org.psd.storage.StudentStorageFactory;
+import org.psd.util.AsyncUtils;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * 应用生命周期监听器，负责在应用启动时创建学生数据存储引擎，在应用关闭时释放存储引擎占用的资源
+ *
+ * @author pengshidun
+ */
+@WebListener
+public class ApplicationListener implements ServletContextListener {
+
+    /**
+     * 应用启动，按配置创建存储引擎，使用Redis存储引擎时开始订阅近端缓存失效频道并重建学生ID过滤器
+     *
+     * @param sce 应用上下文事件
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        StudentStorageFactory.getStorage();
+    }
+
+    /**
+     * 应用关闭，结束变更事件推送连接，等待异步请求处理结束，释放存储引擎占用的资源，如停止近端缓存失效订阅并销毁Redis连接池
+     *
+     * @param sce 应用上下文事件
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ChangeBroadcaster.getInstance().shutdown();
+        AsyncUtils.shutdown();
+        StudentStorageFactory.shutdown();
+    }
+}
@@ -1,8 +1,16 @@
 package org.psd.service;
 
+import org.psd.common.BatchItemResult;
+import org.psd.common.CursorPageInfo;
 import org.psd.common.PageInfo;
+import org.psd.common.ScoreStats;
+import org.psd.common.StudentRank;
+import org.psd.common.WriteStatus;
 import org.psd.entity.Student;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * 接口提供学生数据的管理功能
  *
@@ -19,12 +27,29 @@ public interface StudentService {
     Boolean existStudent(String studentId);
 
     /**
-     * 根据提供的学生信息录入一个学生数据
+     * 批量判断学生是否已存在
+     *
+     * @param studentIds 学生ID列表
+     * @return 学生ID到是否存在的Map，顺序与studentIds一致，重复的学生ID只保留一个
+     */
+    Map<String, Boolean> existStudents(List<String> studentIds);
+
+    /**
+     * 根据提供的学生信息录入一个学生数据，学号已存在时不覆盖
      *
      * @param student 学生信息
-     * @return 添加是否成功
+     * @return 添加结果，成功时为CREATED
+     */
+    WriteStatus saveStudent(Student student);
+
+    /**
+     * 批量导入学生数据，逐条按录入规则校验，校验通过的记录通过管道一次往返写入，
+     * 学号已存在时覆盖原有数据
+     *
+     * @param students 学生信息列表
+     * @return 每条记录的处理结果，顺序与students一致
      */
-    Boolean saveStudent(Student student);
+    List<BatchItemResult> importStudents(List<Student> students);
 
     /**
      * 根据学生ID删除学生数据
@@ -35,20 +60,125 @@ public interface StudentService {
     Boolean removeStudent(String studentId);
 
     /**
-     * 更新学生数据
+     * 更新学生数据，学生不存在时不添加
      *
      * @param student 学生信息
-     * @return 更新是否成功
+     * @return 更新结果，成功时为UPDATED
+     */
+    WriteStatus updateStudent(Student student);
+
+    /**
+     * 批量删除学生数据，所有删除在一个事务中通过管道一次往返执行
+     *
+     * @param studentIds 学生ID列表
+     * @return 每个学生ID的删除结果，顺序与studentIds一致，学生不存在时为失败
+     */
+    List<BatchItemResult> removeStudents(List<String> studentIds);
+
+    /**
+     * 批量添加或更新学生数据，逐条按录入规则校验，校验通过的记录在一个事务中通过管道一次往返写入
+     *
+     * @param students 学生信息列表
+     * @return 每条记录的处理结果，顺序与students一致
      */
-    Boolean updateStudent(Student student);
+    List<BatchItemResult> updateStudents(List<Student> students);
 
     /**
      * 以学生平均分倒序排序，分页获取学生数据
      * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     * 使用Redis存储引擎且Redis不可用时返回该页最近一次成功查询的快照，快照的stale为true
      *
      * @param pageNum  页码
      * @param pageSize 每页记录数
      * @return 分页详细信息
+     * @throws redis.clients.jedis.exceptions.JedisConnectionException 如果Redis不可用且没有该页的快照
      */
     PageInfo<Student> listStudentsPage(Integer pageNum, Integer pageSize);
+
+    /**
+     * 以学生平均分倒序排序，按游标分页获取学生数据
+     * 游标为空时从第一名开始，每页记录数(pageSize)必须大于0，否则设置为默认值10
+     *
+     * @param cursor   上一次查询返回的prevCursor或nextCursor
+     * @param pageSize 每页记录数
+     * @return 游标分页详细信息
+     * @throws IllegalArgumentException 游标格式不合法
+     */
+    CursorPageInfo<Student> listStudentsByCursor(String cursor, Integer pageSize);
+
+    /**
+     * 获取学生在按平均分倒序排列的排名中的位置和名次，以及该学生所在的一页学生数据，
+     * 平均分相同的学生按学号的字典序倒序排列，与分页获取学生数据时的顺序一致
+     * 每页记录数(pageSize)必须大于0，否则设置为默认值10
+     *
+     * @param studentId 学生ID
+     * @param pageSize  每页记录数
+     * @return 学生排名信息，学生不存在时返回null
+     */
+    StudentRank locateStudent(String studentId, Integer pageSize);
+
+    /**
+     * 获取学生数据集的版本号，每次添加、更新、删除学生数据后递增
+     *
+     * @return 数据集版本号，本节点有尚未写入的更新、读取结果不能只用版本号标识时为null
+     */
+    Long getDatasetVersion();
+
+    /**
+     * 按姓名前缀(忽略大小写)分页搜索学生，结果按姓名、学号的字典序排列
+     * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     *
+     * @param prefix   姓名前缀，为空时匹配所有有姓名的学生
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    PageInfo<Student> searchStudentsByName(String prefix, Integer pageNum, Integer pageSize);
+
+    /**
+     * 按平均分区间和出生日期区间分页获取学生数据，结果按平均分倒序排列，
+     * 限定出生日期时同一平均分内按出生日期从晚到早排列，没有出生日期的学生不会匹配
+     * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     *
+     * @param minScore 最低平均分，为null时不限
+     * @param maxScore 最高平均分，为null时不限
+     * @param bornFrom 最早出生日期(含)，格式为yyyy-MM-dd，为空时不限
+     * @param bornTo   最晚出生日期(含)，格式为yyyy-MM-dd，为空时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     * @throws IllegalArgumentException 如果出生日期格式错误
+     */
+    PageInfo<Student> listStudentsByRange(Integer minScore, Integer maxScore, String bornFrom, String bornTo,
+                                          Integer pageNum, Integer pageSize);
+
+    /**
+     * 按备注中的词检索学生，可限定平均分区间，结果按平均分倒序排列
+     * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     *
+     * @param query    以空白分隔的检索词
+     * @param matchAll 为true时备注需包含所有检索词(AND)，否则包含任一检索词即可(OR)
+     * @param minScore 最低平均分，为null时不限
+     * @param maxScore 最高平均分，为null时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    PageInfo<Student> searchStudentsByDescription(String query, boolean matchAll, Integer minScore,
+                                                  Integer maxScore, Integer pageNum, Integer pageSize);
+
+    /**
+     * 获取学生平均分的统计信息，包括学生数、均值、最值、指定的百分位数和分数直方图
+     *
+     * @param percentiles 需要计算的百分比，取值(0, 100]
+     * @return 平均分统计信息
+     */
+    ScoreStats getScoreStats(double[] percentiles);
+
+    /**
+     * 按学生数据的当前内容补建所有学生的索引并重新计算平均分统计，用于为建立索引之前已存在的学生补建索引
+     *
+     * @return 补建索引的学生数
+     */
+    Long reindexStudents();
 }
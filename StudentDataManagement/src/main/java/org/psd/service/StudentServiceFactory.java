@@ -0,0 +1,36 @@
+package org.psd.service;
+
+import org.psd.service.impl.StudentServiceImpl;
+import org.psd.storage.StudentStorageFactory;
+
+/**
+ * StudentService工厂类，所有servlet共用同一个基于配置的存储引擎和变更事件流创建的StudentService实例
+ *
+ * @author pengshidun
+ */
+public class StudentServiceFactory {
+
+    /**
+     * 私有构造函数，防止外部实例化该工具类。
+     */
+    private StudentServiceFactory() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * 获取StudentService实例，首次调用时按配置创建存储引擎
+     *
+     * @return StudentService实例
+     */
+    public static StudentService getStudentService() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 延迟创建StudentService实例的持有类
+     */
+    private static class Holder {
+        private static final StudentService INSTANCE = new StudentServiceImpl(StudentStorageFactory.getStorage(),
+                StudentStorageFactory.getChangeFeed());
+    }
+}
@@ -1,25 +1,36 @@
 package org.psd.service.impl;
 
-import org.psd.util.JacksonUtils;
-import org.psd.util.JedisUtils;
+import org.psd.storage.ChangeFeed;
+import org.psd.storage.StudentStorage;
+import org.psd.storage.WriteMode;
+import org.psd.util.StudentCodec;
+import org.psd.util.TextTokenizer;
+import org.psd.common.BatchItemResult;
+import org.psd.common.ChangeEvent;
+import org.psd.common.CursorPageInfo;
 import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.ScoreStats;
+import org.psd.common.StudentRank;
+import org.psd.common.WriteStatus;
 import org.psd.entity.Student;
 import org.psd.service.StudentService;
 import lombok.extern.slf4j.Slf4j;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Response;
-import redis.clients.jedis.Transaction;
-import redis.clients.jedis.exceptions.JedisException;
 
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * 学生业务层实现类
+ * 学生业务层实现类，负责参数校验、默认值处理以及检索词和出生日期的解析，
+ * 学生数据的读写由存储引擎完成，单个学生的变更事件由存储引擎追加，批量写入或删除后追加RESET事件
  *
  * @author pengshidun
  */
@@ -27,17 +38,36 @@ import java.util.Set;
 public class StudentServiceImpl implements StudentService {
 
     /**
-     * 存储学生按平均分排序的sorted set类型的key
+     * 单次备注检索的词数上限
      */
-    private final String KEY_STUDENT_RANK = "student:rank";
+    private final Integer MAX_QUERY_TERMS = 32;
     /**
      * 学生最低分数
      */
-    private final Integer MIN_SCORE = 0;
+    private final Integer MIN_SCORE = StudentStorage.MIN_SCORE;
     /**
      * 学生最高分数
      */
-    private final Integer MAX_SCORE = 150;
+    private final Integer MAX_SCORE = StudentStorage.MAX_SCORE;
+    /**
+     * 学生数据存储引擎
+     */
+    private final StudentStorage storage;
+    /**
+     * 学生数据变更事件流，未启用时为null
+     */
+    private final ChangeFeed changeFeed;
+
+    /**
+     * 构造方法
+     *
+     * @param storage    学生数据存储引擎
+     * @param changeFeed 学生数据变更事件流，为null时不追加RESET事件
+     */
+    public StudentServiceImpl(StudentStorage storage, ChangeFeed changeFeed) {
+        this.storage = storage;
+        this.changeFeed = changeFeed;
+    }
 
     /**
      * 根据学生ID判断该学生是否已存在
@@ -47,88 +77,122 @@ public class StudentServiceImpl implements StudentService {
      */
     @Override
     public Boolean existStudent(String studentId) {
-        // 获取Jedis实例
-        Jedis jedis = JedisUtils.getJedis();
-        // 判断Redis中是否存在指定的studentId键
-        Boolean exists = jedis.exists(studentId);
-        // 关闭Jedis连接
-        JedisUtils.close(jedis);
-        // 返回判断结果
-        return exists;
+        if (studentId == null) {
+            return false;
+        }
+        return storage.exists(studentId);
     }
 
     /**
-     * 根据提供的学生信息录入一个学生数据
+     * 批量判断学生是否已存在
      *
-     * @param student 学生信息
-     * @return 添加是否成功
+     * @param studentIds 学生ID列表
+     * @return 学生ID到是否存在的Map，顺序与studentIds一致，重复的学生ID只保留一个
      */
     @Override
-    public Boolean saveStudent(Student student) {
-        // 获取Jedis实例并开启事务
-        Transaction multi = JedisUtils.getJedis().multi();
-        // 检查学生ID是否已存在
-        Response<Boolean> exists = multi.exists(student.getId());
-        // 提交事务
-        multi.exec();
-        // 检查学生信息字段是否有效
-        if (checkField(student)) {
-            // 保存或更新学生信息
-            return saveOrUpdate(student);
+    public Map<String, Boolean> existStudents(List<String> studentIds) {
+        // 去掉null和重复的学生ID，保持原有顺序
+        Set<String> checkIds = new LinkedHashSet<>(studentIds);
+        checkIds.remove(null);
+        if (checkIds.isEmpty()) {
+            return new LinkedHashMap<>();
         }
-        // 如果字段无效，返回false表示添加失败
-        return false;
+        return storage.exist(new ArrayList<>(checkIds));
+    }
+
+    /**
+     * 根据提供的学生信息录入一个学生数据，学号已存在时不覆盖
+     *
+     * @param student 学生信息
+     * @return 添加结果，成功时为CREATED
+     */
+    @Override
+    public WriteStatus saveStudent(Student student) {
+        // 添加学生信息，学号已存在时返回ALREADY_EXISTS
+        return saveOrUpdate(student, WriteMode.CREATE);
+    }
+
+    /**
+     * 批量导入学生数据，逐条按录入规则校验，校验通过的记录一次写入，
+     * 学号已存在时覆盖原有数据
+     *
+     * @param students 学生信息列表
+     * @return 每条记录的处理结果，顺序与students一致
+     */
+    @Override
+    public List<BatchItemResult> importStudents(List<Student> students) {
+        return writeStudents(students, false);
     }
 
     /**
      * 根据学生ID删除学生数据
      *
      * @param studentId 学生ID
-     * @return 删除是否成功
+     * @return 删除是否成功，学生ID为空或学生不存在时返回false
      */
     @Override
     public Boolean removeStudent(String studentId) {
-        // 获取Jedis实例
-        Jedis jedis = JedisUtils.getJedis();
-        // 开启事务
-        Transaction multi = jedis.multi();
-        try {
-            // 删除指定学生ID的数据
-            Response<Long> row = multi.del(studentId);
-            // 从学生排名集合中移除该学生
-            multi.zrem(KEY_STUDENT_RANK, studentId);
-            // 提交事务
-            multi.exec();
-            // 返回删除成功
-            return true;
-        } catch (JedisException e) {
-            // 记录警告日志
-            log.warn(e.getMessage(), e);
-            // 回滚事务
-            multi.discard();
-            // 返回删除失败
+        if (studentId == null || studentId.isEmpty()) {
             return false;
-        } finally {
-            // 关闭Jedis连接
-            JedisUtils.close(jedis);
         }
+        // 删除成功后由存储引擎追加REMOVE事件
+        return storage.remove(studentId);
     }
 
     /**
-     * 更新学生数据
+     * 更新学生数据，学生不存在时不添加
      *
      * @param student 学生信息
-     * @return 更新是否成功
+     * @return 更新结果，成功时为UPDATED
+     */
+    @Override
+    public WriteStatus updateStudent(Student student) {
+        // 更新学生信息，学生不存在时返回NOT_FOUND
+        return saveOrUpdate(student, WriteMode.UPDATE);
+    }
+
+    /**
+     * 批量删除学生数据，所有删除作为一个整体执行
+     *
+     * @param studentIds 学生ID列表
+     * @return 每个学生ID的删除结果，顺序与studentIds一致，学生不存在时为失败
+     */
+    @Override
+    public List<BatchItemResult> removeStudents(List<String> studentIds) {
+        BatchItemResult[] results = new BatchItemResult[studentIds.size()];
+        // 学号不为空的记录在列表中的位置
+        List<Integer> removeIndexes = new ArrayList<>(studentIds.size());
+        List<String> removeIds = new ArrayList<>(studentIds.size());
+        for (int i = 0; i < studentIds.size(); i++) {
+            String studentId = studentIds.get(i);
+            if (studentId == null || studentId.isEmpty()) {
+                results[i] = BatchItemResult.failure(i, studentId, "学号不能为空");
+            } else {
+                removeIndexes.add(i);
+                removeIds.add(studentId);
+            }
+        }
+        List<String> errors = removeIds.isEmpty() ? Collections.emptyList() : storage.removeAll(removeIds);
+        publishReset(errors);
+        fillResults(results, removeIndexes, removeIds, errors);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 批量添加或更新学生数据，逐条按录入规则校验，校验通过的记录作为一个整体写入
+     *
+     * @param students 学生信息列表
+     * @return 每条记录的处理结果，顺序与students一致
      */
     @Override
-    public Boolean updateStudent(Student student) {
-        // 调用saveOrUpdate方法进行更新操作
-        return saveOrUpdate(student);
+    public List<BatchItemResult> updateStudents(List<Student> students) {
+        return writeStudents(students, true);
     }
 
     /**
      * 以学生平均分倒序排序，分页获取学生数据
      * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     * 使用Redis存储引擎且Redis不可用时返回该页最近一次成功查询的快照，快照的stale为true
      *
      * @param pageNum  页码
      * @param pageSize 每页记录数
@@ -136,70 +200,278 @@ public class StudentServiceImpl implements StudentService {
      */
     @Override
     public PageInfo<Student> listStudentsPage(Integer pageNum, Integer pageSize) {
-        // 获取Jedis实例
-        Jedis jedis = JedisUtils.getJedis();
-        // 获取学生总数
-        Long count = jedis.zcount(KEY_STUDENT_RANK, MIN_SCORE, MAX_SCORE);
-        // 初始化分页信息
-        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, count);
-        // 按平均分倒序排序后，获取该页的学生编号
-        Set<String> keys = jedis.zrevrange(KEY_STUDENT_RANK, page.getStartIndex(), page.getEndIndex());
-        // 根据编号获取学生详细信息
-        List<Student> studentList = new ArrayList<>();
-        keys.forEach(key -> {
-            // 获取学生的所有字段
-            Map<String, String> stringStringMap = jedis.hgetAll(key);
-            // 将Map转换为Student对象
-            Student student = JacksonUtils.mapToBean(stringStringMap, Student.class);
-            // 添加到学生列表中
-            studentList.add(student);
-        });
-        // 设置分页记录
-        page.setRecords(studentList);
-        // 关闭Jedis连接
-        JedisUtils.close(jedis);
-        // 返回分页详细信息
-        return page;
-    }
-
-    /**
-     * 添加或更新学生数据
+        return storage.listPage(pageNum, pageSize);
+    }
+
+    /**
+     * 以学生平均分倒序排序，按游标分页获取学生数据
+     * 游标为空时从第一名开始，每页记录数(pageSize)必须大于0，否则设置为默认值10
+     *
+     * @param cursor   上一次查询返回的prevCursor或nextCursor
+     * @param pageSize 每页记录数
+     * @return 游标分页详细信息
+     */
+    @Override
+    public CursorPageInfo<Student> listStudentsByCursor(String cursor, Integer pageSize) {
+        // 处理非法参数并设置默认值
+        if (pageSize == null || pageSize <= 0) {
+            pageSize = 10;
+        }
+        // 解析游标，游标为空时从第一名开始向后翻页
+        RankCursor rankCursor = cursor == null || cursor.isEmpty() ? null : RankCursor.decode(cursor);
+        return storage.listByCursor(rankCursor, pageSize);
+    }
+
+    /**
+     * 获取学生在按平均分倒序排列的排名中的位置和名次，以及该学生所在的一页学生数据，
+     * 平均分相同的学生按学号的字典序倒序排列，与分页获取学生数据时的顺序一致
+     * 每页记录数(pageSize)必须大于0，否则设置为默认值10
+     *
+     * @param studentId 学生ID
+     * @param pageSize  每页记录数
+     * @return 学生排名信息，学生不存在时返回null
+     */
+    @Override
+    public StudentRank locateStudent(String studentId, Integer pageSize) {
+        if (studentId == null || studentId.isEmpty()) {
+            return null;
+        }
+        // 处理非法参数并设置默认值
+        if (pageSize == null || pageSize <= 0) {
+            pageSize = 10;
+        }
+        return storage.locate(studentId, pageSize);
+    }
+
+    /**
+     * 获取学生数据集的版本号，每次添加、更新、删除学生数据后递增
+     *
+     * @return 数据集版本号，本节点有尚未写入的更新时为null
+     */
+    @Override
+    public Long getDatasetVersion() {
+        long version = storage.getVersion();
+        return storage.hasDeferredUpdates() ? null : version;
+    }
+
+    /**
+     * 按姓名前缀(忽略大小写)分页搜索学生，结果按姓名、学号的字典序排列
+     * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     *
+     * @param prefix   姓名前缀，为空时匹配所有有姓名的学生
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchStudentsByName(String prefix, Integer pageNum, Integer pageSize) {
+        return storage.searchByName(prefix == null ? "" : prefix, pageNum, pageSize);
+    }
+
+    /**
+     * 按平均分区间和出生日期区间分页获取学生数据，结果按平均分倒序排列，
+     * 限定出生日期时同一平均分内按出生日期从晚到早排列，没有出生日期的学生不会匹配
+     * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     *
+     * @param minScore 最低平均分，为null时不限
+     * @param maxScore 最高平均分，为null时不限
+     * @param bornFrom 最早出生日期(含)，格式为yyyy-MM-dd，为空时不限
+     * @param bornTo   最晚出生日期(含)，格式为yyyy-MM-dd，为空时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     * @throws IllegalArgumentException 如果出生日期格式错误
+     */
+    @Override
+    public PageInfo<Student> listStudentsByRange(Integer minScore, Integer maxScore, String bornFrom, String bornTo,
+                                                 Integer pageNum, Integer pageSize) {
+        Long fromDay = parseBirthdayBound(bornFrom);
+        Long toDay = parseBirthdayBound(bornTo);
+        // 出生日期索引只包含平均分在有效范围内的学生，逐个平均分统计时以此为界
+        int low = minScore == null ? MIN_SCORE : minScore;
+        int high = maxScore == null ? MAX_SCORE : maxScore;
+        if (fromDay != null || toDay != null) {
+            low = Math.max(low, MIN_SCORE);
+            high = Math.min(high, MAX_SCORE);
+        }
+        return storage.listByRange(low, high, fromDay, toDay, pageNum, pageSize);
+    }
+
+    /**
+     * 按备注中的词检索学生，可限定平均分区间，结果按平均分倒序排列
+     * 其中页码(pageNum)和每页记录数(pageSize)必须大于0，否则设置为默认值1和10
+     *
+     * @param query    以空白分隔的检索词
+     * @param matchAll 为true时备注需包含所有检索词(AND)，否则包含任一检索词即可(OR)
+     * @param minScore 最低平均分，为null时不限
+     * @param maxScore 最高平均分，为null时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchStudentsByDescription(String query, boolean matchAll, Integer minScore,
+                                                         Integer maxScore, Integer pageNum, Integer pageSize) {
+        // 按检索词分组，每个检索词的各个词取交集；AND时所有词合为一组，OR时每个检索词为一组
+        List<Set<String>> groups = new ArrayList<>();
+        int termCount = 0;
+        for (String word : query == null ? new String[0] : query.trim().split("\\s+")) {
+            Set<String> terms = TextTokenizer.queryTerms(word);
+            if (terms.isEmpty() || termCount + terms.size() > MAX_QUERY_TERMS) {
+                continue;
+            }
+            termCount += terms.size();
+            if (matchAll && !groups.isEmpty()) {
+                groups.get(0).addAll(terms);
+            } else {
+                groups.add(terms);
+            }
+        }
+        // 没有有效的检索词时返回空结果
+        if (groups.isEmpty()) {
+            PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+            page.setRecords(Collections.emptyList());
+            return page;
+        }
+        return storage.searchByTerms(groups, minScore == null ? MIN_SCORE : minScore,
+                maxScore == null ? MAX_SCORE : maxScore, pageNum, pageSize);
+    }
+
+    /**
+     * 获取学生平均分的统计信息
+     *
+     * @param percentiles 需要计算的百分比，取值(0, 100]
+     * @return 平均分统计信息
+     */
+    @Override
+    public ScoreStats getScoreStats(double[] percentiles) {
+        return storage.getScoreStats(percentiles);
+    }
+
+    /**
+     * 按学生数据的当前内容补建所有学生的姓名索引、备注索引和出生日期索引，并重新计算平均分统计，重复执行无副作用
+     *
+     * @return 补建索引的学生数
+     */
+    @Override
+    public Long reindexStudents() {
+        return storage.reindex();
+    }
+
+    /**
+     * 批量写入学生数据，逐条按录入规则校验，校验通过的记录一次写入
+     *
+     * @param students      学生信息列表
+     * @param transactional 是否将整批写入作为一个整体执行
+     * @return 每条记录的处理结果，顺序与students一致
+     */
+    private List<BatchItemResult> writeStudents(List<Student> students, boolean transactional) {
+        BatchItemResult[] results = new BatchItemResult[students.size()];
+        // 校验通过的记录在列表中的位置
+        List<Integer> writtenIndexes = new ArrayList<>(students.size());
+        List<Student> written = new ArrayList<>(students.size());
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            String id = student == null ? null : student.getId();
+            // 检查学号是否为空以及其余字段是否有效
+            if (id == null || id.isEmpty()) {
+                results[i] = BatchItemResult.failure(i, id, "学号不能为空");
+            } else if (!checkField(student)) {
+                results[i] = BatchItemResult.failure(i, id, "字段不合法");
+            } else {
+                writtenIndexes.add(i);
+                written.add(student);
+            }
+        }
+        List<String> errors = written.isEmpty()
+                ? Collections.emptyList() : storage.writeAll(written, WriteMode.UPSERT, transactional);
+        publishReset(errors);
+        List<String> writtenIds = new ArrayList<>(written.size());
+        for (Student student : written) {
+            writtenIds.add(student.getId());
+        }
+        fillResults(results, writtenIndexes, writtenIds, errors);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 按存储引擎返回的失败原因填入批量处理结果
+     *
+     * @param results 批量处理结果，按原始位置填入
+     * @param indexes 交给存储引擎处理的记录在原始列表中的位置
+     * @param ids     交给存储引擎处理的学生ID
+     * @param errors  存储引擎返回的失败原因，成功时为null
+     */
+    private void fillResults(BatchItemResult[] results, List<Integer> indexes, List<String> ids, List<String> errors) {
+        for (int j = 0; j < indexes.size(); j++) {
+            int i = indexes.get(j);
+            String error = errors.get(j);
+            results[i] = error == null ? BatchItemResult.success(i, ids.get(j)) : BatchItemResult.failure(i, ids.get(j), error);
+        }
+    }
+
+    /**
+     * 校验学生信息后添加或更新学生数据
      *
      * @param student 学生信息
-     * @return 操作是否成功
-     */
-    private Boolean saveOrUpdate(Student student) {
-        // 将学生对象转换为Map
-        Map<String, String> map = JacksonUtils.beanToMap(student, String.class, String.class);
-        // 获取Jedis实例
-        Jedis jedis = JedisUtils.getJedis();
-        // 开启事务
-        Transaction multi = jedis.multi();
+     * @param mode    写入模式，CREATE表示仅在学生不存在时添加，UPDATE表示仅在学生存在时更新
+     * @return 写入结果
+     */
+    private WriteStatus saveOrUpdate(Student student, WriteMode mode) {
+        // 检查学号是否为空以及其余字段是否有效
+        if (student == null || student.getId() == null || student.getId().isEmpty() || !checkField(student)) {
+            return WriteStatus.INVALID;
+        }
+        // 写入成功后由存储引擎追加带版本号的变更事件
+        return storage.write(student, mode);
+    }
+
+    /**
+     * 批量写入或删除后，有记录处理成功时追加一个RESET事件，页面重新加载当前页，不逐条推送
+     *
+     * @param errors 存储引擎返回的失败原因，成功时为null
+     */
+    private void publishReset(List<String> errors) {
+        if (errors.contains(null)) {
+            publish(new ChangeEvent(ChangeEvent.RESET, null, null));
+        }
+    }
+
+    /**
+     * 向变更事件流追加变更事件，学生数据已写入成功，追加失败时只记录日志，不影响写入结果
+     *
+     * @param event 变更事件
+     */
+    private void publish(ChangeEvent event) {
+        if (changeFeed != null) {
+            changeFeed.appendQuietly(event);
+        }
+    }
+
+    /**
+     * 解析出生日期区间的边界，超出出生日期索引范围的日期收窄到{@link StudentCodec#MAX_EPOCH_DAY}，
+     * 索引中不存在超出该范围的出生日期，收窄不会改变查询结果
+     *
+     * @param birthday 出生日期，格式为yyyy-MM-dd
+     * @return 纪元日，为空时返回null
+     * @throws IllegalArgumentException 如果出生日期格式错误
+     */
+    private Long parseBirthdayBound(String birthday) {
+        if (birthday == null || birthday.isEmpty()) {
+            return null;
+        }
+        long epochDay;
         try {
-            // 将学生数据存入哈希中
-            multi.hset(student.getId(), map);
-            // 使用SortedSet按学生平均分排序存储学生的ID
-            multi.zadd(KEY_STUDENT_RANK, student.getAvgScore(), student.getId());
-            // 提交事务
-            multi.exec();
-            // 返回操作成功
-            return true;
-        } catch (JedisException e) {
-            // 记录警告日志
-            log.warn(e.getMessage(), e);
-            // 回滚事务
-            multi.discard();
-            // 返回操作失败
-            return false;
-        } finally {
-            // 关闭Jedis连接
-            JedisUtils.close(jedis);
+            epochDay = LocalDate.parse(birthday).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("出生日期格式错误: " + birthday);
         }
+        return Math.max(-StudentCodec.MAX_EPOCH_DAY, Math.min(StudentCodec.MAX_EPOCH_DAY, epochDay));
     }
 
     /**
      * 检查学生信息各字段是否合法，如果字段为null则设置默认值。
-     * 平均分必须在指定范围内，出生日期必须符合"yyyy-MM-dd"格式。
+     * 平均分必须在指定范围内，出生日期必须符合"yyyy-MM-dd"格式，且不能超出出生日期索引的范围。
      *
      * @param student 学生信息对象
      * @return 如果所有字段都合法返回true，否则返回false
@@ -225,14 +497,10 @@ public class StudentServiceImpl implements StudentService {
             if (student.getAvgScore() < MIN_SCORE || student.getAvgScore() > MAX_SCORE) {
                 return false;
             }
-            // 检查出生日期是否符合"yyyy-MM-dd"格式
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            try {
-                dtf.parse(student.getBirthday());
-                return true;
-            } catch (DateTimeParseException e) {
-                // 记录警告日志并返回false
-                log.warn(e.getMessage(), e);
+            // 检查出生日期是否为存在的"yyyy-MM-dd"日期，按与出生日期索引相同的规则解析，
+            // 不存在的日期(如2005-02-30)或超出范围的出生日期无法加入出生日期索引，按出生日期区间查询时会被遗漏
+            if (StudentCodec.parseEpochDay(student.getBirthday()) == null) {
+                log.warn("出生日期无效: {}", student.getBirthday());
                 return false;
             }
         }
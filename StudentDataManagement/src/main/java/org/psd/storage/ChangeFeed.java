@@ -0,0 +1,80 @@
+package org.psd.storage;
+
+import org.psd.common.ChangeEvent;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 学生数据变更事件流接口，存储引擎添加、更新、删除单个学生后追加带版本号的变更事件，StudentService批量写入后追加RESET事件，
+ * 各应用节点从中按事件ID顺序读取变更并推送给已连接的页面
+ *
+ * @author pengshidun
+ */
+public interface ChangeFeed {
+
+    /**
+     * 获取事件流名称
+     *
+     * @return 事件流名称
+     */
+    String getName();
+
+    /**
+     * 追加一个变更事件，并为其生成事件ID
+     *
+     * @param event 变更事件
+     */
+    void append(ChangeEvent event);
+
+    /**
+     * 追加一个变更事件，学生数据已写入成功，追加失败时只记录日志，不影响写入结果
+     *
+     * @param event 变更事件
+     */
+    default void appendQuietly(ChangeEvent event) {
+        try {
+            append(event);
+        } catch (RuntimeException e) {
+            LoggerFactory.getLogger(ChangeFeed.class).warn("追加学生数据变更事件失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取最后一个事件的ID
+     *
+     * @return 最后一个事件的ID，没有事件时为{@link ChangeEvent#INITIAL_ID}
+     */
+    String latestId();
+
+    /**
+     * 按顺序读取指定事件之后的事件，没有新事件时最多等待blockMillis毫秒
+     *
+     * @param afterId     事件ID，只读取该事件之后的事件
+     * @param count       最多读取的事件数
+     * @param blockMillis 没有新事件时的最长等待时间(毫秒)，为0时不等待
+     * @return 事件列表，没有新事件时为空列表
+     */
+    List<ChangeEvent> read(String afterId, int count, long blockMillis);
+
+    /**
+     * 判断指定事件之后的事件是否都仍保留在事件流中，事件流按长度上限裁剪最早的事件
+     *
+     * @param afterId 事件ID
+     * @return 该事件之后的事件都可以读取时返回true
+     */
+    boolean isRetained(String afterId);
+
+    /**
+     * 获取事件流的运行统计信息
+     *
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * 释放事件流占用的资源，唤醒等待新事件的读取，应用关闭时调用
+     */
+    void shutdown();
+}
@@ -0,0 +1,195 @@
+package org.psd.storage;
+
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.ScoreStats;
+import org.psd.common.StudentRank;
+import org.psd.common.WriteStatus;
+import org.psd.entity.Student;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 学生数据存储引擎接口，StudentService完成参数校验和解析后通过该接口读写学生数据。
+ * 所有引擎的排名顺序一致：按平均分倒序排列，平均分相同的学生按学号的字典序倒序排列
+ *
+ * @author pengshidun
+ */
+public interface StudentStorage {
+    /**
+     * 学生最低分数
+     */
+    int MIN_SCORE = 0;
+    /**
+     * 学生最高分数
+     */
+    int MAX_SCORE = 150;
+
+    /**
+     * 获取引擎名称
+     *
+     * @return 引擎名称，与配置项storage.engine的取值一致
+     */
+    String getName();
+
+    /**
+     * 判断学生是否存在
+     *
+     * @param studentId 学生ID，不为null
+     * @return 如果学生存在返回true，否则返回false
+     */
+    boolean exists(String studentId);
+
+    /**
+     * 批量判断学生是否存在
+     *
+     * @param studentIds 学生ID列表，不包含null和重复的学生ID
+     * @return 学生ID到是否存在的Map，顺序与studentIds一致
+     */
+    Map<String, Boolean> exist(List<String> studentIds);
+
+    /**
+     * 添加或更新一个学生，并递增数据集版本号，写入成功后向变更事件流追加带有写入后版本号的CREATE或UPDATE事件
+     *
+     * @param student 学生信息，已通过校验
+     * @param mode    写入模式
+     * @return 写入结果，写后缓冲引擎中更新返回的UPDATED只表示更新已被接受，写入后才追加变更事件
+     */
+    WriteStatus write(Student student, WriteMode mode);
+
+    /**
+     * 批量添加或更新学生，整批只递增一次数据集版本号
+     *
+     * @param students      学生信息列表，已通过校验
+     * @param mode          写入模式，不满足写入模式的记录不写入并返回失败原因
+     * @param transactional 是否将整批写入作为一个整体执行
+     * @return 每条记录的失败原因，顺序与students一致，写入成功时为null
+     */
+    List<String> writeAll(List<Student> students, WriteMode mode, boolean transactional);
+
+    /**
+     * 删除一个学生及其所有索引，并递增数据集版本号，删除成功后向变更事件流追加带有删除后版本号的REMOVE事件
+     *
+     * @param studentId 学生ID
+     * @return 删除是否成功，学生不存在时返回false
+     */
+    boolean remove(String studentId);
+
+    /**
+     * 批量删除学生，整批只递增一次数据集版本号
+     *
+     * @param studentIds 学生ID列表，不包含空学号
+     * @return 每个学生ID的失败原因，顺序与studentIds一致，删除成功时为null
+     */
+    List<String> removeAll(List<String> studentIds);
+
+    /**
+     * 获取学生数据集的版本号，每次添加、更新、删除学生数据后递增
+     *
+     * @return 数据集版本号
+     */
+    long getVersion();
+
+    /**
+     * 按排名顺序分页获取学生数据，总记录数只统计平均分在有效范围内的学生
+     *
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    PageInfo<Student> listPage(Integer pageNum, Integer pageSize);
+
+    /**
+     * 按排名顺序从游标位置获取相邻的一页学生数据，总记录数与{@link #listPage(Integer, Integer)}一致，
+     * 只统计平均分在有效范围内的学生，翻页游标按排名中的全部记录生成
+     *
+     * @param cursor   游标，为null时从第一名开始向后翻页
+     * @param pageSize 每页记录数，大于0
+     * @return 游标分页详细信息
+     */
+    CursorPageInfo<Student> listByCursor(RankCursor cursor, int pageSize);
+
+    /**
+     * 获取学生的排名位置、名次以及该学生所在的一页学生数据
+     *
+     * @param studentId 学生ID
+     * @param pageSize  每页记录数，大于0
+     * @return 学生排名信息，学生不存在时返回null
+     */
+    StudentRank locate(String studentId, int pageSize);
+
+    /**
+     * 按姓名前缀(忽略ASCII字母的大小写)分页搜索学生，结果按小写姓名、学号的字典序排列
+     *
+     * @param prefix   姓名前缀，为空时匹配所有有姓名的学生
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    PageInfo<Student> searchByName(String prefix, Integer pageNum, Integer pageSize);
+
+    /**
+     * 按平均分区间和出生日期区间分页获取学生数据，结果按排名顺序排列，
+     * 限定出生日期时同一平均分内按出生日期从晚到早排列，没有出生日期的学生不会匹配
+     *
+     * @param minScore 最低平均分
+     * @param maxScore 最高平均分
+     * @param fromDay  最早出生日期的纪元日(含)，为null时不限
+     * @param toDay    最晚出生日期的纪元日(含)，为null时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    PageInfo<Student> listByRange(int minScore, int maxScore, Long fromDay, Long toDay, Integer pageNum, Integer pageSize);
+
+    /**
+     * 按备注中的词检索学生，结果按排名顺序排列
+     *
+     * @param termGroups 检索词分组，组内取交集(AND)，组间取并集(OR)，不为空
+     * @param minScore   最低平均分
+     * @param maxScore   最高平均分
+     * @param pageNum    页码
+     * @param pageSize   每页记录数
+     * @return 分页详细信息
+     */
+    PageInfo<Student> searchByTerms(List<Set<String>> termGroups, int minScore, int maxScore, Integer pageNum, Integer pageSize);
+
+    /**
+     * 获取学生平均分的统计信息
+     *
+     * @param percentiles 需要计算的百分比，取值(0, 100]
+     * @return 平均分统计信息
+     */
+    ScoreStats getScoreStats(double[] percentiles);
+
+    /**
+     * 按学生数据的当前内容重建所有索引和平均分统计，重复执行无副作用
+     *
+     * @return 重建索引的学生数
+     */
+    long reindex();
+
+    /**
+     * 判断本节点是否有已接受但尚未写入的更新，此时读取结果包含这些更新，不能只用数据集版本号标识
+     *
+     * @return 有尚未写入的更新时返回true，默认为false
+     */
+    default boolean hasDeferredUpdates() {
+        return false;
+    }
+
+    /**
+     * 获取引擎的运行统计信息
+     *
+     * @return 以模块名为键的运行统计信息
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * 释放引擎占用的资源，应用关闭时调用
+     */
+    void shutdown();
+}
@@ -0,0 +1,109 @@
+package org.psd.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.storage.impl.LocalChangeFeed;
+import org.psd.storage.impl.MemoryStudentStorage;
+import org.psd.storage.impl.RedisChangeFeed;
+import org.psd.storage.impl.RedisClusterStudentStorage;
+import org.psd.storage.impl.RedisStudentStorage;
+import org.psd.storage.impl.WriteBehindStudentStorage;
+import org.psd.util.ConfigUtils;
+import org.psd.util.JedisUtils;
+
+/**
+ * 学生数据存储引擎工厂类，按配置项storage.engine创建唯一的存储引擎实例：
+ * redis(默认)将学生数据存储在Redis中，多个应用节点共享；memory将学生数据存储在本进程内存中，适用于单节点部署和测试。
+ * 启用writeBehind.enabled时以写后缓冲包装该引擎，合并短时间内对同一学生的多次更新并批量写入。
+ * 启用changeFeed.enabled时同时创建与存储引擎对应的变更事件流：Redis存储引擎使用Redis Stream，进程内存储引擎使用进程内的事件流
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class StudentStorageFactory {
+    /**
+     * Redis存储引擎
+     */
+    public static final String ENGINE_REDIS = "redis";
+    /**
+     * 进程内存储引擎
+     */
+    public static final String ENGINE_MEMORY = "memory";
+    /**
+     * 配置的存储引擎名称
+     */
+    private static final String ENGINE = ConfigUtils.getString("storage.engine", ENGINE_REDIS).trim().toLowerCase();
+    /**
+     * 存储引擎实例，首次获取时创建
+     */
+    private static StudentStorage storage;
+    /**
+     * 变更事件流实例，首次获取时创建
+     */
+    private static ChangeFeed changeFeed;
+
+    /**
+     * 私有构造函数，防止外部实例化该工具类。
+     */
+    private StudentStorageFactory() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * 获取存储引擎实例，首次调用时按配置创建
+     *
+     * @return 存储引擎实例
+     * @throws IllegalStateException 如果配置了未知的存储引擎
+     */
+    public static synchronized StudentStorage getStorage() {
+        if (storage == null) {
+            switch (ENGINE) {
+                case ENGINE_REDIS:
+                    // 配置了redis.cluster.nodes时连接Redis集群，分别查询各分片后合并
+                    storage = JedisUtils.isCluster()
+                            ? new RedisClusterStudentStorage(getChangeFeed()) : new RedisStudentStorage(getChangeFeed());
+                    break;
+                case ENGINE_MEMORY:
+                    storage = new MemoryStudentStorage(getChangeFeed());
+                    break;
+                default:
+                    throw new IllegalStateException("未知的存储引擎: " + ENGINE);
+            }
+            if (ConfigUtils.getBoolean("writeBehind.enabled", false)) {
+                // 缓冲中的更新在写入成功后由写后缓冲追加变更事件
+                storage = new WriteBehindStudentStorage(storage, getChangeFeed(),
+                        ConfigUtils.getInt("writeBehind.maxPending", 10000), ConfigUtils.getInt("writeBehind.batchSize", 500),
+                        ConfigUtils.getLong("writeBehind.flushMillis", 50L), ConfigUtils.getLong("writeBehind.maxWaitMillis", 1000L));
+            }
+            log.info("学生数据存储引擎: {}", storage.getName());
+        }
+        return storage;
+    }
+
+    /**
+     * 获取变更事件流实例，首次调用时按存储引擎创建
+     *
+     * @return 变更事件流实例，未启用changeFeed.enabled时返回null
+     */
+    public static synchronized ChangeFeed getChangeFeed() {
+        if (changeFeed == null && ConfigUtils.getBoolean("changeFeed.enabled", true)) {
+            int maxLength = ConfigUtils.getInt("changeFeed.maxLength", 10000);
+            changeFeed = ENGINE_REDIS.equals(ENGINE) ? new RedisChangeFeed(maxLength) : new LocalChangeFeed(maxLength);
+            log.info("学生数据变更事件流: {}", changeFeed.getName());
+        }
+        return changeFeed;
+    }
+
+    /**
+     * 释放变更事件流和存储引擎占用的资源，应用关闭时调用
+     */
+    public static synchronized void shutdown() {
+        if (changeFeed != null) {
+            changeFeed.shutdown();
+            changeFeed = null;
+        }
+        if (storage != null) {
+            storage.shutdown();
+            storage = null;
+        }
+    }
+}
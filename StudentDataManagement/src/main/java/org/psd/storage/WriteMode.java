@@ -0,0 +1,21 @@
+package org.psd.storage;
+
+/**
+ * 添加或更新单个学生数据的写入模式
+ *
+ * @author pengshidun
+ */
+public enum WriteMode {
+    /**
+     * 仅在学生不存在时添加
+     */
+    CREATE,
+    /**
+     * 仅在学生存在时更新
+     */
+    UPDATE,
+    /**
+     * 学生不存在时添加，存在时覆盖
+     */
+    UPSERT
+}
@@ -0,0 +1,182 @@
+package org.psd.storage.impl;
+
+import org.psd.common.ChangeEvent;
+import org.psd.storage.ChangeFeed;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内的变更事件流，在本进程内存中保留最近的事件，事件ID的生成规则与Redis Stream相同。
+ * 与进程内存储引擎配合使用，也可在测试中代替Redis变更事件流
+ *
+ * @author pengshidun
+ */
+public class LocalChangeFeed implements ChangeFeed {
+    /**
+     * 保留的事件数上限，超出时丢弃最早的事件
+     */
+    private final int maxLength;
+    /**
+     * 按事件ID顺序保留的事件
+     */
+    private final ArrayDeque<ChangeEvent> events = new ArrayDeque<>();
+    /**
+     * 保护事件队列和事件ID生成的锁
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 追加事件或关闭时唤醒等待新事件的读取
+     */
+    private final Condition appended = lock.newCondition();
+    /**
+     * 最后一个事件ID的毫秒时间戳
+     */
+    private long lastMillis;
+    /**
+     * 最后一个事件ID的序号
+     */
+    private long lastSequence;
+    /**
+     * 最后一个被丢弃的事件的ID
+     */
+    private String trimmedId = ChangeEvent.INITIAL_ID;
+    /**
+     * 追加的事件总数
+     */
+    private long appendedCount;
+    /**
+     * 是否已关闭
+     */
+    private boolean closed;
+
+    /**
+     * 构造方法
+     *
+     * @param maxLength 保留的事件数上限
+     * @throws IllegalArgumentException 如果事件数上限不大于0
+     */
+    public LocalChangeFeed(int maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("事件数上限必须大于0: " + maxLength);
+        }
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public void append(ChangeEvent event) {
+        lock.lock();
+        try {
+            // 与Redis Stream相同，时间戳不回退，同一毫秒内递增序号
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                lastSequence = 0;
+            } else {
+                lastSequence++;
+            }
+            event.setId(lastMillis + "-" + lastSequence);
+            events.addLast(event);
+            if (events.size() > maxLength) {
+                trimmedId = events.removeFirst().getId();
+            }
+            appendedCount++;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String latestId() {
+        lock.lock();
+        try {
+            return events.isEmpty() ? trimmedId : events.getLast().getId();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<ChangeEvent> read(String afterId, int count, long blockMillis) {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+        lock.lock();
+        try {
+            while (true) {
+                // 事件按ID递增排列，从最新的事件向前找到afterId之后的第一个事件
+                List<ChangeEvent> result = new ArrayList<>();
+                Iterator<ChangeEvent> it = events.descendingIterator();
+                while (it.hasNext()) {
+                    ChangeEvent event = it.next();
+                    if (ChangeEvent.compareIds(event.getId(), afterId) <= 0) {
+                        break;
+                    }
+                    result.add(event);
+                }
+                if (!result.isEmpty()) {
+                    Collections.reverse(result);
+                    return result.size() > count ? new ArrayList<>(result.subList(0, count)) : result;
+                }
+                if (closed || remainingNanos <= 0) {
+                    return result;
+                }
+                remainingNanos = appended.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isRetained(String afterId) {
+        lock.lock();
+        try {
+            return ChangeEvent.compareIds(afterId, trimmedId) >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", getName());
+            stats.put("length", events.size());
+            stats.put("maxLength", maxLength);
+            stats.put("appended", appendedCount);
+            stats.put("latestId", events.isEmpty() ? trimmedId : events.getLast().getId());
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
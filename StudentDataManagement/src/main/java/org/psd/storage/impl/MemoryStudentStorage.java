@@ -0,0 +1,808 @@
+package org.psd.storage.impl;
+
+import org.psd.common.ChangeEvent;
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.ScoreStats;
+import org.psd.common.StudentRank;
+import org.psd.common.WriteStatus;
+import org.psd.entity.Student;
+import org.psd.storage.ChangeFeed;
+import org.psd.storage.StudentStorage;
+import org.psd.storage.StudentStorageFactory;
+import org.psd.storage.WriteMode;
+import org.psd.util.StudentCodec;
+import org.psd.util.TextTokenizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内存储引擎，学生数据保存在ConcurrentHashMap中，排名、姓名索引和出生日期索引保存在ConcurrentSkipListMap中，
+ * 分页、排名和检索的语义与Redis存储引擎一致。
+ * 所有写入由一把锁串行执行，读取不加锁，读取期间发生的写入可能只有部分可见(弱一致)，与Redis引擎读取多页时的表现相同
+ *
+ * @author pengshidun
+ */
+public class MemoryStudentStorage implements StudentStorage {
+    /**
+     * 学生ID到学生数据的映射，保存的是写入时的副本，读取时返回的对象不得修改
+     */
+    private final Map<String, Student> records = new ConcurrentHashMap<>();
+    /**
+     * 学生排名，按平均分倒序、学号倒序排列
+     */
+    private final ConcurrentSkipListMap<RankKey, Student> rank = new ConcurrentSkipListMap<>();
+    /**
+     * 每个平均分的学生数，按平均分倒序排列，分页时据此整段跳过同一平均分的学生
+     */
+    private final ConcurrentSkipListMap<Integer, Long> scoreCounts = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    /**
+     * 姓名索引，键为"小写姓名\0学号"，按字典序排列
+     */
+    private final ConcurrentSkipListMap<String, Student> nameIndex = new ConcurrentSkipListMap<>();
+    /**
+     * 备注倒排索引，词到包含该词的学生ID集合的映射
+     */
+    private final Map<String, Set<String>> termIndex = new ConcurrentHashMap<>();
+    /**
+     * 出生日期索引，按平均分倒序、出生日期从晚到早、学号倒序排列，没有合法出生日期的学生不在索引中
+     */
+    private final ConcurrentSkipListMap<RankKey, Student> birthdayIndex = new ConcurrentSkipListMap<>();
+    /**
+     * 数据集版本号
+     */
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * 所有学生的平均分总和，只在持有写锁时修改
+     */
+    private volatile long scoreSum;
+    /**
+     * 写锁，串行执行所有写入
+     */
+    private final Object writeLock = new Object();
+    /**
+     * 学生数据变更事件流，未启用时为null
+     */
+    private final ChangeFeed changeFeed;
+
+    /**
+     * 构造方法，不追加变更事件
+     */
+    public MemoryStudentStorage() {
+        this(null);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param changeFeed 学生数据变更事件流，为null时不追加变更事件
+     */
+    public MemoryStudentStorage(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * 获取引擎名称
+     *
+     * @return memory
+     */
+    @Override
+    public String getName() {
+        return StudentStorageFactory.ENGINE_MEMORY;
+    }
+
+    /**
+     * 根据学生ID判断该学生是否已存在
+     *
+     * @param studentId 学生ID
+     * @return 如果学生存在返回true，否则返回false
+     */
+    @Override
+    public boolean exists(String studentId) {
+        return records.containsKey(studentId);
+    }
+
+    /**
+     * 批量判断学生是否已存在
+     *
+     * @param studentIds 学生ID列表
+     * @return 学生ID到是否存在的Map，顺序与studentIds一致
+     */
+    @Override
+    public Map<String, Boolean> exist(List<String> studentIds) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (String studentId : studentIds) {
+            result.put(studentId, records.containsKey(studentId));
+        }
+        return result;
+    }
+
+    /**
+     * 添加或更新学生数据，在写锁内完成存在性检查、保存学生数据副本、更新所有索引、递增数据集版本号和追加变更事件
+     *
+     * @param student 学生信息
+     * @param mode    写入模式
+     * @return 写入结果
+     */
+    @Override
+    public WriteStatus write(Student student, WriteMode mode) {
+        synchronized (writeLock) {
+            Student old = records.get(student.getId());
+            if (mode == WriteMode.CREATE && old != null) {
+                return WriteStatus.ALREADY_EXISTS;
+            }
+            if (mode == WriteMode.UPDATE && old == null) {
+                return WriteStatus.NOT_FOUND;
+            }
+            put(student, old);
+            publish(new ChangeEvent(old == null ? ChangeEvent.CREATE : ChangeEvent.UPDATE, student.getId(), student),
+                    version.incrementAndGet());
+            return old == null ? WriteStatus.CREATED : WriteStatus.UPDATED;
+        }
+    }
+
+    /**
+     * 批量添加或更新学生数据，整批在一次写锁内完成，因此总是作为一个整体执行，整批只递增一次数据集版本号
+     *
+     * @param students      学生信息列表
+     * @param mode          写入模式
+     * @param transactional 是否将整批写入作为一个整体执行，本引擎始终整体执行
+     * @return 每条记录的失败原因，顺序与students一致，写入成功时为null
+     */
+    @Override
+    public List<String> writeAll(List<Student> students, WriteMode mode, boolean transactional) {
+        // 整批写入始终在写锁内执行，其他写入不会穿插其中
+        synchronized (writeLock) {
+            List<String> errors = new ArrayList<>(students.size());
+            for (Student student : students) {
+                Student old = records.get(student.getId());
+                if (mode == WriteMode.CREATE && old != null) {
+                    errors.add("学生已存在");
+                } else if (mode == WriteMode.UPDATE && old == null) {
+                    errors.add("学生不存在");
+                } else {
+                    put(student, old);
+                    errors.add(null);
+                }
+            }
+            if (!students.isEmpty()) {
+                version.incrementAndGet();
+            }
+            return errors;
+        }
+    }
+
+    /**
+     * 根据学生ID删除学生数据及其所有索引，在写锁内递增数据集版本号和追加变更事件
+     *
+     * @param studentId 学生ID
+     * @return 删除是否成功，学生不存在时返回false
+     */
+    @Override
+    public boolean remove(String studentId) {
+        synchronized (writeLock) {
+            Student old = records.remove(studentId);
+            if (old == null) {
+                return false;
+            }
+            reindex(old, null);
+            publish(new ChangeEvent(ChangeEvent.REMOVE, studentId, null), version.incrementAndGet());
+            return true;
+        }
+    }
+
+    /**
+     * 向变更事件流追加单个学生的变更事件，调用方需持有写锁，事件的顺序与写入顺序一致
+     *
+     * @param event   变更事件
+     * @param version 写入后的数据集版本号
+     */
+    private void publish(ChangeEvent event, long version) {
+        if (changeFeed != null) {
+            event.setVersion(version);
+            changeFeed.appendQuietly(event);
+        }
+    }
+
+    /**
+     * 批量删除学生数据，整批在一次写锁内完成，只递增一次数据集版本号
+     *
+     * @param studentIds 学生ID列表
+     * @return 每个学生ID的失败原因，顺序与studentIds一致，删除成功时为null
+     */
+    @Override
+    public List<String> removeAll(List<String> studentIds) {
+        synchronized (writeLock) {
+            List<String> errors = new ArrayList<>(studentIds.size());
+            for (String studentId : studentIds) {
+                Student old = records.remove(studentId);
+                if (old == null) {
+                    errors.add("学生不存在");
+                } else {
+                    reindex(old, null);
+                    errors.add(null);
+                }
+            }
+            version.incrementAndGet();
+            return errors;
+        }
+    }
+
+    /**
+     * 获取学生数据集的版本号
+     *
+     * @return 数据集版本号
+     */
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 按排名顺序分页获取学生数据，按每个平均分的学生数整段跳过前面的页，总记录数只统计平均分在有效范围内的学生
+     *
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> listPage(Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        // 总记录数只统计平均分在有效范围内的学生，记录按排名位置读取
+        page.setTotalCount(countScores(MIN_SCORE, MAX_SCORE));
+        page.setRecords(rankSlice(Integer.MIN_VALUE, Integer.MAX_VALUE, page.getStartIndex(), page.getPageSize()));
+        return page;
+    }
+
+    /**
+     * 按排名顺序从游标位置获取相邻的一页学生数据，游标指向的学生已被删除或平均分已变化时，
+     * 以游标中的(平均分, 学号)在排名中应处的位置为准，与Redis引擎一致
+     *
+     * @param cursor   游标，为null时从第一名开始向后翻页
+     * @param pageSize 每页记录数
+     * @return 游标分页详细信息
+     */
+    @Override
+    public CursorPageInfo<Student> listByCursor(RankCursor cursor, int pageSize) {
+        // 总记录数与listPage一致，是否还有下一页按排名中的全部记录判断
+        long total = countScores(MIN_SCORE, MAX_SCORE);
+        long size = rank.size();
+        long start = 0;
+        List<Student> studentList;
+        if (cursor == null) {
+            studentList = take(rank.values(), 0, pageSize);
+        } else {
+            RankKey key = new RankKey(cursor.getAvgScore(), 0, cursor.getId());
+            // 游标指向的学生仍在原位时，其前后分别为before条和after条记录之后；
+            // 学生已被删除或平均分已变化时，以(平均分, 学号)应处的位置为准
+            long before = positionOf(key);
+            long after = rank.containsKey(key) ? before + 1 : before;
+            if (RankCursor.PREV.equals(cursor.getDirection())) {
+                start = Math.max(before - pageSize, 0);
+                studentList = take(rank.headMap(key, false).descendingMap().values(), 0, (int) (before - start));
+                Collections.reverse(studentList);
+            } else {
+                start = after;
+                studentList = take(rank.tailMap(key, false).values(), 0, pageSize);
+            }
+        }
+        // 设置分页信息
+        CursorPageInfo<Student> page = new CursorPageInfo<>();
+        page.setPageSize(pageSize);
+        page.setTotalCount(total);
+        page.setStartIndex(start);
+        page.setRecords(studentList);
+        if (!studentList.isEmpty()) {
+            // 以当前页首条、末条记录的(平均分, 学号)生成翻页游标
+            if (start > 0) {
+                Student first = studentList.get(0);
+                page.setPrevCursor(new RankCursor(RankCursor.PREV, first.getAvgScore(), first.getId()).encode());
+            }
+            if (start + studentList.size() < size) {
+                Student last = studentList.get(studentList.size() - 1);
+                page.setNextCursor(new RankCursor(RankCursor.NEXT, last.getAvgScore(), last.getId()).encode());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 获取学生的排名位置、名次以及该学生所在的一页学生数据
+     *
+     * @param studentId 学生ID
+     * @param pageSize  每页记录数
+     * @return 学生排名信息，学生不存在时返回null
+     */
+    @Override
+    public StudentRank locate(String studentId, int pageSize) {
+        Student student = records.get(studentId);
+        if (student == null) {
+            return null;
+        }
+        RankKey key = rankKey(student);
+        long position = positionOf(key);
+        // 名次为平均分更高的学生数加一，平均分相同的学生名次相同
+        long higher = 0;
+        for (long count : scoreCounts.headMap(student.getAvgScore(), false).values()) {
+            higher += count;
+        }
+        PageInfo<Student> page = new PageInfo<>((int) (position / pageSize) + 1, pageSize, countScores(MIN_SCORE, MAX_SCORE));
+        page.setRecords(rankSlice(Integer.MIN_VALUE, Integer.MAX_VALUE, position - position % pageSize, pageSize));
+        StudentRank studentRank = new StudentRank();
+        studentRank.setId(studentId);
+        studentRank.setAvgScore(student.getAvgScore());
+        studentRank.setPosition(position);
+        studentRank.setRank(higher + 1);
+        studentRank.setPage(page);
+        return studentRank;
+    }
+
+    /**
+     * 在姓名索引中按姓名前缀(忽略ASCII字母的大小写)分页搜索学生，结果按小写姓名、学号的字典序排列
+     *
+     * @param prefix   姓名前缀，为空时匹配所有有姓名的学生
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchByName(String prefix, Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        String lower = prefix == null ? "" : lowerName(prefix);
+        // 以前缀加上最大的字符作为前缀区间的开上界
+        NavigableMap<String, Student> matched = lower.isEmpty()
+                ? nameIndex : nameIndex.subMap(lower, true, lower + Character.MAX_VALUE, false);
+        page.setTotalCount((long) matched.size());
+        page.setRecords(take(matched.values(), page.getStartIndex(), page.getPageSize()));
+        return page;
+    }
+
+    /**
+     * 按平均分区间和出生日期区间分页获取学生数据，只限定平均分时在学生排名中定位区间，
+     * 限定出生日期时在出生日期索引中按平均分从高到低逐段统计和读取
+     *
+     * @param minScore 最低平均分
+     * @param maxScore 最高平均分
+     * @param fromDay  最早出生日期的纪元日(含)，为null时不限
+     * @param toDay    最晚出生日期的纪元日(含)，为null时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> listByRange(int minScore, int maxScore, Long fromDay, Long toDay,
+                                         Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        if (fromDay == null && toDay == null) {
+            // 只按平均分过滤时直接在学生排名中定位区间
+            page.setTotalCount(countScores(minScore, maxScore));
+            page.setRecords(rankSlice(minScore, maxScore, page.getStartIndex(), page.getPageSize()));
+            return page;
+        }
+        // 每个平均分对应出生日期索引中的一段连续区间，按平均分从高到低逐段统计和读取
+        long minDay = fromDay == null ? Long.MIN_VALUE : fromDay;
+        long maxDay = toDay == null ? Long.MAX_VALUE : toDay;
+        if (minDay > maxDay || minScore > maxScore) {
+            page.setRecords(new ArrayList<>());
+            return page;
+        }
+        List<NavigableMap<RankKey, Student>> segments = new ArrayList<>();
+        long total = 0;
+        for (int score : scoreCounts.subMap(maxScore, true, minScore, true).keySet()) {
+            NavigableMap<RankKey, Student> segment = birthdayIndex.subMap(
+                    new RankKey(score, maxDay, null), true, new RankKey(score, minDay, ""), true);
+            segments.add(segment);
+            total += segment.size();
+        }
+        page.setTotalCount(total);
+        List<Student> studentList = new ArrayList<>(page.getPageSize());
+        long offset = page.getStartIndex();
+        for (NavigableMap<RankKey, Student> segment : segments) {
+            if (studentList.size() >= page.getPageSize()) {
+                break;
+            }
+            int size = segment.size();
+            if (offset >= size) {
+                offset -= size;
+            } else {
+                studentList.addAll(take(segment.values(), offset, page.getPageSize() - studentList.size()));
+                offset = 0;
+            }
+        }
+        page.setRecords(studentList);
+        return page;
+    }
+
+    /**
+     * 在备注倒排索引中检索学生，组内取交集、组间取并集，按平均分区间过滤后按排名顺序分页
+     *
+     * @param termGroups 检索词分组
+     * @param minScore   最低平均分
+     * @param maxScore   最高平均分
+     * @param pageNum    页码
+     * @param pageSize   每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchByTerms(List<Set<String>> termGroups, int minScore, int maxScore,
+                                           Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        // 组内取交集，组间取并集
+        Set<String> matchedIds = new HashSet<>();
+        for (Set<String> group : termGroups) {
+            Set<String> intersection = null;
+            for (String term : group) {
+                Set<String> ids = termIndex.getOrDefault(term, Collections.emptySet());
+                if (intersection == null) {
+                    intersection = new HashSet<>(ids);
+                } else {
+                    intersection.retainAll(ids);
+                }
+                if (intersection.isEmpty()) {
+                    break;
+                }
+            }
+            if (intersection != null) {
+                matchedIds.addAll(intersection);
+            }
+        }
+        // 按平均分区间过滤后按排名顺序排列
+        List<RankKey> hits = new ArrayList<>();
+        for (String studentId : matchedIds) {
+            Student student = records.get(studentId);
+            if (student != null && student.getAvgScore() >= minScore && student.getAvgScore() <= maxScore) {
+                hits.add(rankKey(student));
+            }
+        }
+        Collections.sort(hits);
+        page.setTotalCount((long) hits.size());
+        List<Student> studentList = new ArrayList<>(page.getPageSize());
+        for (int i = page.getStartIndex(); i < hits.size() && studentList.size() < page.getPageSize(); i++) {
+            Student student = records.get(hits.get(i).id);
+            if (student != null) {
+                studentList.add(student);
+            }
+        }
+        page.setRecords(studentList);
+        return page;
+    }
+
+    /**
+     * 按每个平均分的学生数获取平均分统计信息
+     *
+     * @param percentiles 需要计算的百分比
+     * @return 平均分统计信息
+     */
+    @Override
+    public ScoreStats getScoreStats(double[] percentiles) {
+        long[] histogram = new long[MAX_SCORE - MIN_SCORE + 1];
+        long count = 0;
+        long inRange = 0;
+        for (Map.Entry<Integer, Long> entry : scoreCounts.entrySet()) {
+            count += entry.getValue();
+            int score = entry.getKey();
+            if (score >= MIN_SCORE && score <= MAX_SCORE) {
+                histogram[score - MIN_SCORE] = entry.getValue();
+                inRange += entry.getValue();
+            }
+        }
+        return ScoreStats.of(count, scoreSum, count - inRange, histogram, percentiles);
+    }
+
+    /**
+     * 在写锁内按学生数据的当前内容重建所有索引和平均分统计
+     *
+     * @return 重建索引的学生数
+     */
+    @Override
+    public long reindex() {
+        synchronized (writeLock) {
+            rank.clear();
+            scoreCounts.clear();
+            nameIndex.clear();
+            termIndex.clear();
+            birthdayIndex.clear();
+            scoreSum = 0;
+            for (Student student : records.values()) {
+                reindex(null, student);
+            }
+            return records.size();
+        }
+    }
+
+    /**
+     * 获取引擎的运行统计信息
+     *
+     * @return 包含学生数、数据集版本号和备注索引词数的统计信息
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("students", records.size());
+        memory.put("version", version.get());
+        memory.put("terms", termIndex.size());
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memory", memory);
+        return stats;
+    }
+
+    /**
+     * 释放引擎占用的资源，数据只在本进程内存中，无需释放
+     */
+    @Override
+    public void shutdown() {
+        // 数据只在本进程内存中，无需释放资源
+    }
+
+    /**
+     * 保存学生数据的副本并更新所有索引，调用方需持有写锁
+     *
+     * @param student 学生信息
+     * @param old     该学号原有的学生数据，不存在时为null
+     */
+    private void put(Student student, Student old) {
+        Student copy = new Student();
+        copy.setId(student.getId());
+        copy.setName(student.getName());
+        copy.setBirthday(student.getBirthday());
+        copy.setDescription(student.getDescription());
+        copy.setAvgScore(student.getAvgScore());
+        records.put(copy.getId(), copy);
+        reindex(old, copy);
+    }
+
+    /**
+     * 将学生的索引从旧数据更新为新数据，先加入新的索引项再移除不再使用的旧索引项，
+     * 使并发读取在更新期间总能找到该学生，调用方需持有写锁
+     *
+     * @param old     旧的学生数据，为null表示新增
+     * @param current 新的学生数据，为null表示删除
+     */
+    private void reindex(Student old, Student current) {
+        // 排名和平均分统计
+        RankKey newRankKey = current == null ? null : rankKey(current);
+        RankKey oldRankKey = old == null ? null : rankKey(old);
+        if (newRankKey != null) {
+            rank.put(newRankKey, current);
+            scoreCounts.merge(current.getAvgScore(), 1L, Long::sum);
+            scoreSum += current.getAvgScore();
+        }
+        if (oldRankKey != null) {
+            if (!oldRankKey.equals(newRankKey)) {
+                rank.remove(oldRankKey);
+            }
+            // 学生数减为0的平均分从统计中移除，避免分页时遍历空的平均分
+            scoreCounts.computeIfPresent(old.getAvgScore(), (score, count) -> count > 1 ? count - 1 : null);
+            scoreSum -= old.getAvgScore();
+        }
+        // 姓名索引，只索引非空姓名
+        String newName = current == null ? null : nameKey(current);
+        String oldName = old == null ? null : nameKey(old);
+        if (newName != null) {
+            nameIndex.put(newName, current);
+        }
+        if (oldName != null && !oldName.equals(newName)) {
+            nameIndex.remove(oldName);
+        }
+        // 备注倒排索引
+        Set<String> newTerms = current == null ? Collections.emptySet() : TextTokenizer.indexTerms(current.getDescription());
+        Set<String> oldTerms = old == null ? Collections.emptySet() : TextTokenizer.indexTerms(old.getDescription());
+        for (String term : newTerms) {
+            termIndex.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(current.getId());
+        }
+        for (String term : oldTerms) {
+            if (!newTerms.contains(term)) {
+                Set<String> ids = termIndex.get(term);
+                if (ids != null && ids.remove(old.getId()) && ids.isEmpty()) {
+                    termIndex.remove(term);
+                }
+            }
+        }
+        // 出生日期索引
+        RankKey newBirthdayKey = current == null ? null : birthdayKey(current);
+        RankKey oldBirthdayKey = old == null ? null : birthdayKey(old);
+        if (newBirthdayKey != null) {
+            birthdayIndex.put(newBirthdayKey, current);
+        }
+        if (oldBirthdayKey != null && !oldBirthdayKey.equals(newBirthdayKey)) {
+            birthdayIndex.remove(oldBirthdayKey);
+        }
+    }
+
+    /**
+     * 统计平均分在[minScore, maxScore]内的学生数
+     *
+     * @param minScore 最低平均分
+     * @param maxScore 最高平均分
+     * @return 学生数
+     */
+    private long countScores(int minScore, int maxScore) {
+        long total = 0;
+        if (minScore <= maxScore) {
+            for (long count : scoreCounts.subMap(maxScore, true, minScore, true).values()) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 在平均分在[minScore, maxScore]内的学生中按排名顺序跳过offset条后读取count条，
+     * 先按每个平均分的学生数整段跳过，再在所在的平均分内逐条跳过
+     *
+     * @param minScore 最低平均分
+     * @param maxScore 最高平均分
+     * @param offset   跳过的记录数
+     * @param count    读取的记录数
+     * @return 学生列表
+     */
+    private List<Student> rankSlice(int minScore, int maxScore, long offset, int count) {
+        if (minScore > maxScore) {
+            return new ArrayList<>();
+        }
+        for (Map.Entry<Integer, Long> entry : scoreCounts.subMap(maxScore, true, minScore, true).entrySet()) {
+            if (offset < entry.getValue()) {
+                // 从该平均分的第一名开始，到最低平均分的最后一名为止
+                NavigableMap<RankKey, Student> range = rank.subMap(new RankKey(entry.getKey(), 0, null), true,
+                        new RankKey(minScore, 0, ""), true);
+                return take(range.values(), offset, count);
+            }
+            offset -= entry.getValue();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * 获取(平均分, 学号)在排名中的位置，即排在它前面的学生数
+     *
+     * @param key 排名键，不要求存在于排名中
+     * @return 从0开始的位置
+     */
+    private long positionOf(RankKey key) {
+        long position = 0;
+        for (long count : scoreCounts.headMap(key.score, false).values()) {
+            position += count;
+        }
+        // 同一平均分内排在前面的学生逐个计数
+        return position + rank.subMap(new RankKey(key.score, 0, null), true, key, false).size();
+    }
+
+    /**
+     * 跳过offset个元素后读取最多count个元素
+     *
+     * @param values 按顺序排列的元素
+     * @param offset 跳过的元素数
+     * @param count  读取的元素数
+     * @return 元素列表
+     */
+    private static List<Student> take(Iterable<Student> values, long offset, int count) {
+        List<Student> result = new ArrayList<>(Math.min(count, 64));
+        if (count <= 0) {
+            return result;
+        }
+        for (Student student : values) {
+            if (offset > 0) {
+                offset--;
+                continue;
+            }
+            result.add(student);
+            if (result.size() >= count) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取学生的排名键
+     */
+    private static RankKey rankKey(Student student) {
+        return new RankKey(student.getAvgScore(), 0, student.getId());
+    }
+
+    /**
+     * 获取学生的出生日期索引键，出生日期为空或不合法时返回null
+     */
+    private static RankKey birthdayKey(Student student) {
+        Long epochDay = StudentCodec.parseEpochDay(student.getBirthday());
+        return epochDay == null ? null : new RankKey(student.getAvgScore(), epochDay, student.getId());
+    }
+
+    /**
+     * 获取学生的姓名索引键"小写姓名\0学号"，姓名为空时返回null
+     */
+    private static String nameKey(Student student) {
+        String name = student.getName();
+        return name == null || name.isEmpty() ? null : lowerName(name) + '\0' + student.getId();
+    }
+
+    /**
+     * 与Redis引擎一致，只将ASCII字母转换为小写，并去掉字符\0
+     *
+     * @param name 姓名或姓名前缀
+     * @return 转换后的字符串
+     */
+    private static String lowerName(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                builder.append((char) (c + ('a' - 'A')));
+            } else if (c != '\0') {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 排名和出生日期索引的键，按平均分倒序、出生日期纪元日倒序、学号倒序排列。
+     * 学号为null时表示同一平均分和纪元日内排在最前的位置，用作区间的边界
+     */
+    private static final class RankKey implements Comparable<RankKey> {
+        private final int score;
+        private final long day;
+        private final String id;
+
+        private RankKey(int score, long day, String id) {
+            this.score = score;
+            this.day = day;
+            this.id = id;
+        }
+
+        /**
+         * 按平均分倒序、纪元日倒序、学号倒序比较，学号为null的键排在同一平均分和纪元日的最前面
+         *
+         * @param other 另一个键
+         * @return 比较结果
+         */
+        @Override
+        public int compareTo(RankKey other) {
+            int result = Integer.compare(other.score, score);
+            if (result == 0) {
+                result = Long.compare(other.day, day);
+            }
+            if (result != 0 || Objects.equals(id, other.id)) {
+                return result;
+            }
+            if (id == null || other.id == null) {
+                return id == null ? -1 : 1;
+            }
+            return other.id.compareTo(id);
+        }
+
+        /**
+         * 与{@link #compareTo(RankKey)}一致地判断两个键是否相等
+         *
+         * @param o 另一个对象
+         * @return 平均分、纪元日和学号都相同时返回true
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RankKey && compareTo((RankKey) o) == 0;
+        }
+
+        /**
+         * 按平均分、纪元日和学号计算哈希值
+         *
+         * @return 哈希值
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(score, day, id);
+        }
+    }
+}
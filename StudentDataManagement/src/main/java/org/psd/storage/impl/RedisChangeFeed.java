@@ -0,0 +1,182 @@
+package org.psd.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.common.ChangeEvent;
+import org.psd.entity.Student;
+import org.psd.storage.ChangeFeed;
+import org.psd.util.JacksonUtils;
+import org.psd.util.JedisUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.StreamEntry;
+import redis.clients.jedis.StreamEntryID;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis变更事件流，变更事件以XADD追加到Redis Stream，并按近似长度上限裁剪最早的事件，
+ * 各应用节点以XREAD阻塞读取新事件，因此任一节点上的修改都会推送到所有节点上连接的页面。需要Redis 5.0及以上版本。
+ * 连接Redis集群时事件流位于负责其key所在槽的节点上，所有事件仍按追加顺序排列
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class RedisChangeFeed implements ChangeFeed {
+    /**
+     * 存储变更事件的Stream类型的key
+     */
+    private static final String KEY_STUDENT_CHANGES = "student:changes";
+    /**
+     * 事件字段: 事件类型
+     */
+    private static final String FIELD_TYPE = "type";
+    /**
+     * 事件字段: 学生ID
+     */
+    private static final String FIELD_STUDENT_ID = "studentId";
+    /**
+     * 事件字段: 学生信息的JSON
+     */
+    private static final String FIELD_STUDENT = "student";
+    /**
+     * 事件字段: 数据集版本号
+     */
+    private static final String FIELD_VERSION = "version";
+
+    /**
+     * 保留的事件数上限，按近似长度裁剪，实际保留的事件数可能略多
+     */
+    private final long maxLength;
+    /**
+     * 追加的事件总数
+     */
+    private final AtomicLong appendedCount = new AtomicLong();
+
+    /**
+     * 构造方法
+     *
+     * @param maxLength 保留的事件数上限
+     * @throws IllegalArgumentException 如果事件数上限不大于0
+     */
+    public RedisChangeFeed(long maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("事件数上限必须大于0: " + maxLength);
+        }
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public String getName() {
+        return "redis";
+    }
+
+    @Override
+    public void append(ChangeEvent event) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_TYPE, event.getType());
+        if (event.getStudentId() != null) {
+            fields.put(FIELD_STUDENT_ID, event.getStudentId());
+        }
+        if (event.getStudent() != null) {
+            fields.put(FIELD_STUDENT, JacksonUtils.objectToJsonStr(event.getStudent()));
+        }
+        if (event.getVersion() != null) {
+            fields.put(FIELD_VERSION, String.valueOf(event.getVersion()));
+        }
+        try (Jedis jedis = JedisUtils.getJedis(KEY_STUDENT_CHANGES)) {
+            // MAXLEN ~ 以整个宏节点为单位裁剪，开销远小于精确裁剪
+            StreamEntryID id = jedis.xadd(KEY_STUDENT_CHANGES, StreamEntryID.NEW_ENTRY, fields, maxLength, true);
+            event.setId(id.toString());
+        }
+        appendedCount.incrementAndGet();
+    }
+
+    @Override
+    public String latestId() {
+        try (Jedis jedis = JedisUtils.getJedis(KEY_STUDENT_CHANGES)) {
+            List<StreamEntry> entries = jedis.xrevrange(KEY_STUDENT_CHANGES, null, null, 1);
+            return entries.isEmpty() ? ChangeEvent.INITIAL_ID : entries.get(0).getID().toString();
+        }
+    }
+
+    @Override
+    public List<ChangeEvent> read(String afterId, int count, long blockMillis) {
+        // xread的参数为泛型可变参数，只读取一个Stream，数组中只有该类型的元素
+        @SuppressWarnings("unchecked")
+        Map.Entry<String, StreamEntryID>[] stream = new Map.Entry[]{
+                new AbstractMap.SimpleImmutableEntry<>(KEY_STUDENT_CHANGES, new StreamEntryID(afterId))};
+        List<Map.Entry<String, List<StreamEntry>>> streams;
+        try (Jedis jedis = JedisUtils.getJedis(KEY_STUDENT_CHANGES)) {
+            // blockMillis为0时不带BLOCK参数，立即返回
+            streams = jedis.xread(count, blockMillis, stream);
+        }
+        // 等待超时时返回null
+        if (streams == null || streams.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<StreamEntry> entries = streams.get(0).getValue();
+        List<ChangeEvent> events = new ArrayList<>(entries.size());
+        for (StreamEntry entry : entries) {
+            events.add(toEvent(entry));
+        }
+        return events;
+    }
+
+    @Override
+    public boolean isRetained(String afterId) {
+        try (Jedis jedis = JedisUtils.getJedis(KEY_STUDENT_CHANGES)) {
+            // 被裁剪的事件都在第一个事件之前，无法区分第一个事件之前是否还有事件，保守地要求afterId不早于第一个事件
+            List<StreamEntry> entries = jedis.xrange(KEY_STUDENT_CHANGES, null, null, 1);
+            return entries.isEmpty()
+                    || ChangeEvent.compareIds(afterId, entries.get(0).getID().toString()) >= 0;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", getName());
+        stats.put("key", KEY_STUDENT_CHANGES);
+        stats.put("maxLength", maxLength);
+        stats.put("appended", appendedCount.get());
+        return stats;
+    }
+
+    @Override
+    public void shutdown() {
+        // 连接池由存储引擎关闭时销毁，阻塞中的XREAD最多等待一个读取周期
+    }
+
+    /**
+     * 将Stream条目转换为变更事件
+     *
+     * @param entry Stream条目
+     * @return 变更事件
+     */
+    private ChangeEvent toEvent(StreamEntry entry) {
+        Map<String, String> fields = entry.getFields();
+        Student student = null;
+        String json = fields.get(FIELD_STUDENT);
+        if (json != null) {
+            try {
+                student = JacksonUtils.getInstance().readValue(json, Student.class);
+            } catch (IOException e) {
+                log.warn("变更事件{}的学生信息解析失败: {}", entry.getID(), e.getMessage());
+            }
+        }
+        ChangeEvent event = new ChangeEvent(fields.get(FIELD_TYPE), fields.get(FIELD_STUDENT_ID), student);
+        event.setId(entry.getID().toString());
+        String version = fields.get(FIELD_VERSION);
+        if (version != null) {
+            event.setVersion(Long.parseLong(version));
+        }
+        return event;
+    }
+}
@@ -0,0 +1,561 @@
+package org.psd.storage.impl;
+
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.StudentRank;
+import org.psd.entity.Student;
+import org.psd.storage.ChangeFeed;
+import org.psd.util.RedisShard;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Redis集群存储引擎，学生按学号分布在多个{@link RedisShard}上，每个分片的学生记录、排名和各项索引位于同一个槽，
+ * 单个学生的读写与单机模式相同，通过Lua脚本一次往返原子地完成。分页查询并行查询各分片排在前面的记录，
+ * 按与单个分片相同的排序规则多路归并后截取所需的一页，分片分布在多个节点上时读写容量随节点数增加。
+ * 查询第n页时每个分片都要返回前n页的记录，深分页应使用游标分页，每个分片只需返回一页
+ *
+ * @author pengshidun
+ */
+public class RedisClusterStudentStorage extends RedisStudentStorage {
+
+    /**
+     * 按分数倒序、学号倒序排列，与分片内ZREVRANGE的顺序一致；学号按UTF-8字节比较，与Redis的字典序一致
+     */
+    static final Comparator<ShardEntry> RANK_ORDER = (a, b) -> {
+        int result = Double.compare(b.score, a.score);
+        return result != 0 ? result : compareBytes(b.id, a.id);
+    };
+    /**
+     * 按姓名索引的成员"小写姓名\0学号"的字典序排列，与分片内ZRANGEBYLEX的顺序一致
+     */
+    static final Comparator<ShardEntry> NAME_ORDER = (a, b) -> compareBytes(a.member, b.member);
+
+    /**
+     * 构造方法
+     *
+     * @param changeFeed 学生数据变更事件流，为null时不追加变更事件
+     */
+    public RedisClusterStudentStorage(ChangeFeed changeFeed) {
+        super(changeFeed);
+    }
+
+    /**
+     * 查询一页按平均分倒序排列的学生，各分片在一次往返中统计学生数并返回前若干名，归并后截取该页
+     *
+     * @param page 分页信息
+     */
+    @Override
+    void loadPage(PageInfo<Student> page) {
+        long end = page.getEndIndex();
+        List<ShardResult> results = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Long> total = pipeline.zcount(shard.getRankKey(), MIN_SCORE, MAX_SCORE);
+            Response<Set<Tuple>> top = pipeline.zrevrangeWithScores(shard.getRankKey(), 0, end);
+            pipeline.sync();
+            return new ShardResult(total.get(), 0, rankEntries(shard, top.get()));
+        }));
+        page.setTotalCount(sumTotal(results));
+        page.setRecords(loadRecords(merge(results, RANK_ORDER, page.getStartIndex(), page.getPageSize())));
+    }
+
+    /**
+     * 以学生平均分倒序排序，按游标分页获取学生数据。各分片从游标位置取相邻的一页，归并后再取一页，
+     * 该页开始的排名由各分片排在游标之前的记录数累加得到
+     *
+     * @param cursor   游标，为null时从第一名开始向后翻页
+     * @param pageSize 每页记录数
+     * @return 游标分页详细信息
+     */
+    @Override
+    public CursorPageInfo<Student> listByCursor(RankCursor cursor, int pageSize) {
+        boolean prev = cursor != null && RankCursor.PREV.equals(cursor.getDirection());
+        List<String> args = Arrays.asList(
+                cursor == null ? "" : String.valueOf(cursor.getAvgScore()),
+                cursor == null ? "" : cursor.getId(),
+                String.valueOf(pageSize),
+                prev ? RankCursor.PREV : RankCursor.NEXT,
+                withHashArg(), String.valueOf(MIN_SCORE), String.valueOf(MAX_SCORE));
+        List<ShardResult> results = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+            List<?> reply = (List<?>) KEYSET_PAGE_SCRIPT.eval(jedis, Collections.singletonList(shard.getRankKey()), args);
+            // 每条记录依次为学生编号、平均分、学生记录
+            List<ShardEntry> entries = new ArrayList<>();
+            for (int i = 3; i + 2 < reply.size(); i += 3) {
+                String id = (String) reply.get(i);
+                entries.add(new ShardEntry(id, Double.parseDouble((String) reply.get(i + 1)), null, shard,
+                        decodeRecord(id, reply.get(i + 2))));
+            }
+            return new ShardResult((Long) reply.get(0), (Long) reply.get(1), (Long) reply.get(2), entries);
+        }));
+        List<ShardEntry> merged = mergeCursorPage(results, prev, pageSize);
+        long start = cursorStart(results, prev, merged.size());
+        long size = 0;
+        for (ShardResult result : results) {
+            size += result.size;
+        }
+        // 设置分页信息
+        CursorPageInfo<Student> page = new CursorPageInfo<>();
+        page.setPageSize(pageSize);
+        page.setTotalCount(sumTotal(results));
+        page.setStartIndex(start);
+        page.setRecords(loadRecords(merged));
+        if (!merged.isEmpty()) {
+            // 以当前页首条、末条记录在排名中的(平均分, 学号)生成翻页游标
+            if (start > 0) {
+                ShardEntry first = merged.get(0);
+                page.setPrevCursor(new RankCursor(RankCursor.PREV, (int) first.score, first.id).encode());
+            }
+            if (start + merged.size() < size) {
+                ShardEntry last = merged.get(merged.size() - 1);
+                page.setNextCursor(new RankCursor(RankCursor.NEXT, (int) last.score, last.id).encode());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 归并各分片从游标位置取出的记录，得到游标相邻的一页：
+     * 向后翻页时各分片返回游标之后的一页，归并后取最前面的一页；向前翻页时各分片返回游标之前的一页，归并后取最后一页
+     *
+     * @param results  各分片的游标分页结果
+     * @param prev     是否向前翻页
+     * @param pageSize 每页记录数
+     * @return 该页的记录
+     */
+    static List<ShardEntry> mergeCursorPage(List<ShardResult> results, boolean prev, int pageSize) {
+        if (!prev) {
+            return merge(results, RANK_ORDER, 0, pageSize);
+        }
+        List<ShardEntry> all = merge(results, RANK_ORDER, 0, Integer.MAX_VALUE);
+        return all.subList(Math.max(0, all.size() - pageSize), all.size());
+    }
+
+    /**
+     * 计算归并后的一页在全局排名中的开始位置。
+     * 向后翻页时各分片返回的第一条记录的排名即该分片排在游标之后的记录之前的记录数，累加即为该页的开始排名；
+     * 向前翻页时各分片排在游标之前的记录数为其开始排名加返回的记录数，累加后减去该页的记录数
+     *
+     * @param results 各分片的游标分页结果
+     * @param prev    是否向前翻页
+     * @param taken   该页的记录数
+     * @return 该页第一条记录在全局排名中的位置
+     */
+    static long cursorStart(List<ShardResult> results, boolean prev, int taken) {
+        long start = 0;
+        for (ShardResult result : results) {
+            start += prev ? result.start + result.entries.size() : result.start;
+        }
+        return prev ? start - taken : start;
+    }
+
+    /**
+     * 获取学生在按平均分倒序排列的排名中的位置和名次，以及该学生所在的一页学生数据。
+     * 各分片在一次往返中求出排在该学生之前的记录数、平均分更高的学生数和学生总数，累加后得到全局的位置和名次
+     *
+     * @param studentId 学生ID
+     * @param pageSize  每页记录数
+     * @return 学生排名信息，学生不存在时返回null
+     */
+    @Override
+    public StudentRank locate(String studentId, int pageSize) {
+        RedisShard owner = RECORD_LAYOUT.shardOf(studentId);
+        Double score = owner.execute(jedis -> jedis.zscore(owner.getRankKey(), studentId));
+        if (score == null) {
+            return null;
+        }
+        // 以该学生的(平均分, 学号)为游标，每页0条记录，游标脚本只返回学生总数和游标之后第一条记录的排名，
+        // 学生总数与分页查询使用相同的统计范围
+        List<String> args = Arrays.asList(String.valueOf(score), studentId, "0", RankCursor.NEXT, "0",
+                String.valueOf(MIN_SCORE), String.valueOf(MAX_SCORE));
+        List<long[]> counts = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<Object> keyset = KEYSET_PAGE_SCRIPT.pipelined(pipeline)
+                    .eval(Collections.singletonList(shard.getRankKey()), args);
+            Response<Long> higher = pipeline.zcount(shard.getRankKey(), "(" + score, "+inf");
+            pipeline.sync();
+            List<?> reply = (List<?>) keyset.get();
+            return new long[]{(Long) reply.get(1), higher.get(), (Long) reply.get(0)};
+        }));
+        long[] sums = sumCounts(counts);
+        // 该学生所在分片的游标之后第一条记录的排名包含该学生本身
+        long position = sums[0] - 1;
+        if (position < 0) {
+            return null;
+        }
+        // 根据排名位置计算所在页码，并查询该页
+        PageInfo<Student> page = new PageInfo<>((int) (position / pageSize) + 1, pageSize, sums[2]);
+        loadPage(page);
+        StudentRank studentRank = new StudentRank();
+        studentRank.setId(studentId);
+        studentRank.setAvgScore(score.intValue());
+        studentRank.setPosition(position);
+        studentRank.setRank(sums[1] + 1);
+        studentRank.setPage(page);
+        return studentRank;
+    }
+
+    /**
+     * 按列累加各分片的计数
+     *
+     * @param counts 各分片的{游标之后第一条记录的排名, 平均分更高的学生数, 学生总数}
+     * @return 各列之和，第一列减一即为学生在全局排名中的位置，第二列加一即为名次
+     */
+    static long[] sumCounts(List<long[]> counts) {
+        long[] sums = new long[3];
+        for (long[] count : counts) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += count[i];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * 按姓名前缀分页搜索学生，结果按姓名、学号的字典序排列。
+     * 归并需要学生姓名，各分片总是返回学生记录
+     *
+     * @param prefix   姓名前缀，为空时匹配所有有姓名的学生
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchByName(String prefix, Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        List<String> args = Arrays.asList(prefix == null ? "" : prefix, "0",
+                String.valueOf(page.getEndIndex() + 1), "1");
+        List<ShardResult> results = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+            List<?> reply = (List<?>) SEARCH_NAME_SCRIPT.eval(jedis,
+                    Collections.singletonList(shard.getNameIndexKey()), args);
+            List<ShardEntry> entries = new ArrayList<>();
+            for (int i = 1; i + 1 < reply.size(); i += 2) {
+                String id = (String) reply.get(i);
+                Student student = decodeRecord(id, reply.get(i + 1));
+                entries.add(new ShardEntry(id, 0, nameMember(student.getName(), id), shard, student));
+            }
+            return new ShardResult((Long) reply.get(0), 0, entries);
+        }));
+        page.setTotalCount(sumTotal(results));
+        page.setRecords(loadRecords(merge(results, NAME_ORDER, page.getStartIndex(), page.getPageSize())));
+        return page;
+    }
+
+    /**
+     * 按平均分区间和出生日期区间分页获取学生数据。只按平均分过滤时各分片返回排名中的区间，
+     * 按出生日期过滤时各分片返回学生记录，以出生日期索引的分数归并
+     *
+     * @param minScore 最低平均分
+     * @param maxScore 最高平均分
+     * @param fromDay  最早出生日期的纪元日(含)，为null时不限
+     * @param toDay    最晚出生日期的纪元日(含)，为null时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> listByRange(int minScore, int maxScore, Long fromDay, Long toDay,
+                                         Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        int count = page.getEndIndex() + 1;
+        List<ShardResult> results;
+        if (fromDay == null && toDay == null) {
+            results = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+                Pipeline pipeline = jedis.pipelined();
+                Response<Long> total = pipeline.zcount(shard.getRankKey(), minScore, maxScore);
+                Response<Set<Tuple>> top = pipeline.zrevrangeByScoreWithScores(shard.getRankKey(), maxScore, minScore,
+                        0, count);
+                pipeline.sync();
+                return new ShardResult(total.get(), 0, rankEntries(shard, top.get()));
+            }));
+        } else {
+            List<String> args = Arrays.asList(String.valueOf(minScore), String.valueOf(maxScore),
+                    fromDay == null ? "" : String.valueOf(fromDay), toDay == null ? "" : String.valueOf(toDay),
+                    "0", String.valueOf(count), "1",
+                    String.valueOf(BIRTHDAY_BUCKET_WIDTH), String.valueOf(BIRTHDAY_DAY_OFFSET));
+            results = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+                List<?> reply = (List<?>) RANGE_PAGE_SCRIPT.eval(jedis,
+                        Arrays.asList(shard.getRankKey(), shard.getBirthdayIndexKey()), args);
+                List<ShardEntry> entries = new ArrayList<>();
+                for (int i = 1; i + 1 < reply.size(); i += 2) {
+                    String id = (String) reply.get(i);
+                    Student student = decodeRecord(id, reply.get(i + 1));
+                    String indexScore = birthdayIndexScore(student.getAvgScore(), student.getBirthday());
+                    entries.add(new ShardEntry(id, indexScore.isEmpty() ? 0 : Double.parseDouble(indexScore), null,
+                            shard, student));
+                }
+                return new ShardResult((Long) reply.get(0), 0, entries);
+            }));
+        }
+        page.setTotalCount(sumTotal(results));
+        page.setRecords(loadRecords(merge(results, RANK_ORDER, page.getStartIndex(), page.getPageSize())));
+        return page;
+    }
+
+    /**
+     * 按备注中的词检索学生，各分片在一次往返中完成本分片倒排索引的交并运算并返回排在前面的学生记录，
+     * 以学生的平均分归并
+     *
+     * @param termGroups 检索词分组，组内取交集(AND)，组间取并集(OR)
+     * @param minScore   最低平均分
+     * @param maxScore   最高平均分
+     * @param pageNum    页码
+     * @param pageSize   每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchByTerms(List<Set<String>> termGroups, int minScore, int maxScore,
+                                           Integer pageNum, Integer pageSize) {
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        List<String> args = searchTermsArgs(termGroups, minScore, maxScore, 0, page.getEndIndex() + 1, "1");
+        List<ShardResult> results = fanOut(RedisShard.all(), shard -> shard.execute(jedis -> {
+            List<?> reply = (List<?>) SEARCH_DESCRIPTION_SCRIPT.eval(jedis, searchTermsKeys(shard, termGroups), args);
+            List<ShardEntry> entries = new ArrayList<>();
+            for (int i = 1; i + 1 < reply.size(); i += 2) {
+                String id = (String) reply.get(i);
+                Student student = decodeRecord(id, reply.get(i + 1));
+                entries.add(new ShardEntry(id, student.getAvgScore() == null ? 0 : student.getAvgScore(), null,
+                        shard, student));
+            }
+            return new ShardResult((Long) reply.get(0), 0, entries);
+        }));
+        page.setTotalCount(sumTotal(results));
+        page.setRecords(loadRecords(merge(results, RANK_ORDER, page.getStartIndex(), page.getPageSize())));
+        return page;
+    }
+
+    /**
+     * 将分片排名中的(学号, 平均分)转换为归并条目
+     *
+     * @param shard  分片
+     * @param tuples 按平均分倒序排列的学号和平均分
+     * @return 归并条目列表
+     */
+    private static List<ShardEntry> rankEntries(RedisShard shard, Set<Tuple> tuples) {
+        List<ShardEntry> entries = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            entries.add(new ShardEntry(tuple.getElement(), tuple.getScore(), null, shard, null));
+        }
+        return entries;
+    }
+
+    /**
+     * 解码脚本返回的学生记录
+     *
+     * @param id     学号
+     * @param record 学生记录，脚本未返回时为0
+     * @return 学生信息，脚本未返回时为null
+     */
+    private static Student decodeRecord(String id, Object record) {
+        return record instanceof List || record instanceof String ? RedisRecordLayout.decode(id, record) : null;
+    }
+
+    /**
+     * 多路归并各分片已排好序的记录，跳过前skip条后最多取limit条
+     *
+     * @param results 各分片的查询结果
+     * @param order   排序规则，与各分片内的顺序一致
+     * @param skip    跳过的记录数
+     * @param limit   最多返回的记录数
+     * @return 归并后的记录
+     */
+    static List<ShardEntry> merge(List<ShardResult> results, Comparator<ShardEntry> order, long skip, int limit) {
+        // 堆中每个元素为{分片结果的下标, 该分片下一条记录的下标}
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, results.size()),
+                (x, y) -> order.compare(results.get(x[0]).entries.get(x[1]), results.get(y[0]).entries.get(y[1])));
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).entries.isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<ShardEntry> merged = new ArrayList<>();
+        long position = 0;
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<ShardEntry> entries = results.get(head[0]).entries;
+            if (position++ >= skip) {
+                merged.add(entries.get(head[1]));
+            }
+            if (++head[1] < entries.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 按归并后的顺序获取学生信息。脚本未返回记录的学生先从近端缓存读取，
+     * 未命中的学生按所在分片分组，每个分片通过管道一次往返批量读取，读取期间没有收到失效通知时写入近端缓存
+     *
+     * @param entries 归并后的记录
+     * @return 学生列表
+     */
+    private static List<Student> loadRecords(List<ShardEntry> entries) {
+        // 读取期间收到失效通知时不写入近端缓存
+        long generation = NEAR_CACHE == null ? 0 : NEAR_CACHE.beginRead();
+        Student[] students = new Student[entries.size()];
+        Map<RedisShard, List<Integer>> misses = new LinkedHashMap<>();
+        for (int k = 0; k < students.length; k++) {
+            ShardEntry entry = entries.get(k);
+            students[k] = entry.student != null ? entry.student : NEAR_CACHE == null ? null : NEAR_CACHE.get(entry.id);
+            if (students[k] == null) {
+                misses.computeIfAbsent(entry.shard, shard -> new ArrayList<>()).add(k);
+            }
+        }
+        fanOut(misses.keySet(), shard -> shard.execute(jedis -> {
+            List<Integer> indexes = misses.get(shard);
+            List<Response<?>> responses = new ArrayList<>(indexes.size());
+            Pipeline pipeline = jedis.pipelined();
+            for (int k : indexes) {
+                responses.add(RECORD_LAYOUT.read(pipeline, entries.get(k).id));
+            }
+            // 一次往返读取该分片所有未命中的记录
+            pipeline.sync();
+            for (int j = 0; j < indexes.size(); j++) {
+                Student student = RedisRecordLayout.decode(entries.get(indexes.get(j)).id, responses.get(j).get());
+                students[indexes.get(j)] = student;
+                if (NEAR_CACHE != null && student.getId() != null) {
+                    NEAR_CACHE.put(student.getId(), student, generation);
+                }
+            }
+            return null;
+        }));
+        return Arrays.asList(students);
+    }
+
+    /**
+     * 累加各分片的记录总数
+     *
+     * @param results 各分片的查询结果
+     * @return 记录总数
+     */
+    private static long sumTotal(List<ShardResult> results) {
+        long total = 0;
+        for (ShardResult result : results) {
+            total += result.total;
+        }
+        return total;
+    }
+
+    /**
+     * 生成姓名索引的成员，与upsert-student.lua的nameMember一致: Lua的string.lower只转换ASCII字母，并去掉姓名中的\0
+     *
+     * @param name 姓名
+     * @param id   学号
+     * @return "小写姓名\0学号"
+     */
+    static String nameMember(String name, String id) {
+        StringBuilder sb = new StringBuilder();
+        if (name != null) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    sb.append((char) (c + ('a' - 'A')));
+                } else if (c != '\0') {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('\0').append(id).toString();
+    }
+
+    /**
+     * 按UTF-8字节比较两个字符串，UTF-8字节的顺序与Unicode码点的顺序一致，无需编码
+     *
+     * @param a 字符串
+     * @param b 字符串
+     * @return a在前时为负数，相等时为0，b在前时为正数
+     */
+    static int compareBytes(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * 一个分片的查询结果
+     */
+    static class ShardResult {
+        /**
+         * 该分片中满足条件的记录总数
+         */
+        final long total;
+        /**
+         * 游标分页时该分片返回的第一条记录的排名，其他查询为0
+         */
+        final long start;
+        /**
+         * 游标分页时该分片排名中的记录数，包含平均分超出统计范围的记录，其他查询与total相同
+         */
+        final long size;
+        /**
+         * 该分片排在前面的记录，已按排序规则排列
+         */
+        final List<ShardEntry> entries;
+
+        ShardResult(long total, long start, List<ShardEntry> entries) {
+            this(total, start, total, entries);
+        }
+
+        ShardResult(long total, long start, long size, List<ShardEntry> entries) {
+            this.total = total;
+            this.start = start;
+            this.size = size;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * 从一个分片查询到的一条记录
+     */
+    static class ShardEntry {
+        /**
+         * 学号
+         */
+        final String id;
+        /**
+         * 排序分数，排名中为平均分，按出生日期过滤时为出生日期索引的分数
+         */
+        final double score;
+        /**
+         * 按姓名排序时为姓名索引的成员，其他查询为null
+         */
+        final String member;
+        /**
+         * 所在分片
+         */
+        final RedisShard shard;
+        /**
+         * 脚本返回的学生信息，未返回时为null，由近端缓存或管道读取
+         */
+        final Student student;
+
+        ShardEntry(String id, double score, String member, RedisShard shard, Student student) {
+            this.id = id;
+            this.score = score;
+            this.member = member;
+            this.shard = shard;
+            this.student = student;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.psd.storage.impl;
+
+import org.psd.entity.Student;
+import org.psd.util.JedisUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Tuple;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 学生记录存储布局迁移命令，将所有学生记录从当前布局转换为目标布局，并输出迁移前后的内存占用对比。
+ * 迁移期间应停止写入，迁移完成后将配置项redis.layout修改为目标布局并重启应用。每批学生在一个事务中
+ * 写入新布局并删除旧布局，中断后重新执行即可继续，已迁移的学生不会重复处理。
+ * <p>
+ * 用法: java -cp "WEB-INF/classes:WEB-INF/lib/*" org.psd.storage.impl.RedisLayoutMigration &lt;hash|packed&gt; [report]
+ * <p>
+ * 指定report时只输出目标布局当前的内存占用，不执行迁移。Redis集群只支持packed布局，不支持该命令
+ *
+ * @author pengshidun
+ */
+public class RedisLayoutMigration {
+    /**
+     * 每批迁移的学生数
+     */
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * 估算每个学生记录占用内存时抽样的学生数
+     */
+    private static final int SAMPLE_SIZE = 1000;
+
+    /**
+     * 私有构造函数，防止外部实例化该工具类。
+     */
+    private RedisLayoutMigration() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * 命令入口
+     *
+     * @param args 目标布局，以及可选的report
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("用法: RedisLayoutMigration <hash|packed> [report]");
+            System.exit(2);
+        }
+        if (JedisUtils.isCluster()) {
+            System.err.println("Redis集群只支持packed布局，无需迁移");
+            System.exit(2);
+        }
+        RedisRecordLayout target = RedisRecordLayout.fromConfig(args[0].trim().toLowerCase());
+        RedisRecordLayout source = RedisRecordLayout.fromConfig(
+                target.isPacked() ? RedisRecordLayout.HASH : RedisRecordLayout.PACKED);
+        try (Jedis jedis = JedisUtils.getJedis()) {
+            if (args.length > 1 && "report".equals(args[1])) {
+                System.out.println(measure(jedis, target));
+                return;
+            }
+            String before = measure(jedis, source);
+            long start = System.currentTimeMillis();
+            long migrated = migrate(jedis, source, target);
+            // 递增数据集版本号，使各节点的分页缓存和ETag失效
+            jedis.incr(RedisStudentStorage.SHARD.getVersionKey());
+            System.out.println("迁移前: " + before);
+            System.out.println("迁移后: " + measure(jedis, target));
+            System.out.println("已将" + migrated + "个学生从" + source.getName() + "布局迁移到" + target.getName()
+                    + "布局，耗时" + (System.currentTimeMillis() - start) + "ms，请将配置项redis.layout修改为"
+                    + target.getName() + "后重启应用");
+        } finally {
+            JedisUtils.destroy();
+        }
+    }
+
+    /**
+     * 扫描学生排名集合，分批将学生记录从源布局迁移到目标布局
+     *
+     * @param jedis  Jedis实例
+     * @param source 源布局
+     * @param target 目标布局
+     * @return 迁移的学生数
+     */
+    private static long migrate(Jedis jedis, RedisRecordLayout source, RedisRecordLayout target) {
+        long migrated = 0;
+        ScanParams params = new ScanParams().count(BATCH_SIZE);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<Tuple> result = jedis.zscan(RedisStudentStorage.SHARD.getRankKey(), cursor, params);
+            // 一次往返读取该批学生在源布局中的记录
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<?>> records = new ArrayList<>(result.getResult().size());
+            for (Tuple tuple : result.getResult()) {
+                records.add(source.read(pipeline, tuple.getElement()));
+            }
+            pipeline.sync();
+            // 一次往返在事务中写入目标布局并删除源布局，源布局中已不存在的学生已迁移过
+            pipeline = jedis.pipelined();
+            pipeline.multi();
+            for (int i = 0; i < records.size(); i++) {
+                String studentId = result.getResult().get(i).getElement();
+                Student student = RedisRecordLayout.decode(studentId, records.get(i).get());
+                if (student.getId() != null) {
+                    target.write(pipeline, student);
+                    source.delete(pipeline, studentId);
+                    migrated++;
+                }
+            }
+            pipeline.exec();
+            pipeline.sync();
+            cursor = result.getCursor();
+        } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        return migrated;
+    }
+
+    /**
+     * 统计Redis的内存占用，并抽样估算指定布局下每个学生记录占用的内存
+     *
+     * @param jedis  Jedis实例
+     * @param layout 学生记录布局
+     * @return 内存占用报告
+     */
+    private static String measure(Jedis jedis, RedisRecordLayout layout) {
+        long students = jedis.zcard(RedisStudentStorage.SHARD.getRankKey());
+        // 抽样学生所在的key，hash布局为学生哈希，packed布局为桶
+        Set<String> keys = new LinkedHashSet<>();
+        for (String studentId : jedis.zrange(RedisStudentStorage.SHARD.getRankKey(), 0, SAMPLE_SIZE - 1)) {
+            keys.add(layout.isPacked() ? layout.bucketKey(studentId) : studentId);
+        }
+        long keyBytes = 0;
+        long records = 0;
+        long compactKeys = 0;
+        for (String key : keys) {
+            Object usage = jedis.sendCommand(Protocol.Command.MEMORY, "USAGE", key, "SAMPLES", "0");
+            if (usage == null) {
+                continue;
+            }
+            keyBytes += (Long) usage;
+            records += layout.isPacked() ? jedis.hlen(key) : 1;
+            String encoding = jedis.objectEncoding(key);
+            if ("ziplist".equals(encoding) || "listpack".equals(encoding)) {
+                compactKeys++;
+            }
+        }
+        StringBuilder report = new StringBuilder();
+        report.append("布局=").append(layout.getName())
+                .append(", 学生数=").append(students)
+                .append(", used_memory=").append(usedMemory(jedis));
+        if (records > 0) {
+            report.append(", 每个学生记录约").append(keyBytes / records).append("字节(抽样").append(records).append("个)")
+                    .append(", 紧凑编码的key占比=").append(compactKeys * 100 / keys.size()).append('%');
+        }
+        if (layout.isPacked()) {
+            report.append(", ").append(jedis.configGet("hash-max-ziplist-*"));
+        }
+        return report.toString();
+    }
+
+    /**
+     * 从INFO memory中读取Redis已使用的内存字节数
+     *
+     * @param jedis Jedis实例
+     * @return 已使用的内存字节数，无法读取时为-1
+     */
+    private static long usedMemory(Jedis jedis) {
+        for (String line : jedis.info("memory").split("\r\n")) {
+            if (line.startsWith("used_memory:")) {
+                return Long.parseLong(line.substring("used_memory:".length()).trim());
+            }
+        }
+        return -1;
+    }
+}
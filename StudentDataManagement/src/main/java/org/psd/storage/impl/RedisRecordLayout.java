@@ -0,0 +1,240 @@
+package org.psd.storage.impl;
+
+import org.psd.entity.Student;
+import org.psd.util.ConfigUtils;
+import org.psd.util.JedisUtils;
+import org.psd.util.RedisScript;
+import org.psd.util.RedisShard;
+import org.psd.util.StudentCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 学生记录在Redis中的存储布局：
+ * hash布局为每个学生一个哈希，key为学号，字段为学生的各项属性，每个学生都要承担一个key的固定开销；
+ * packed布局将学生按学号分桶，每个桶为一个哈希，字段为学号，值为{@link StudentCodec#pack(Student)}编码的紧凑记录，
+ * 桶内学生数和记录长度不超过Redis的hash-max-ziplist-entries、hash-max-ziplist-value时，桶以ziplist紧凑编码存储。
+ * Redis集群只支持packed布局，桶号对分片数取余得到学生所在的{@link RedisShard}，桶key带有该分片的哈希标签。
+ * Lua脚本通过{@link #prelude()}生成的公共函数以相同的布局读写学生记录
+ *
+ * @author pengshidun
+ */
+public class RedisRecordLayout {
+    /**
+     * 每个学生一个哈希的布局
+     */
+    public static final String HASH = "hash";
+    /**
+     * 按学号分桶存储紧凑记录的布局
+     */
+    public static final String PACKED = "packed";
+    /**
+     * packed布局中桶key的前缀，与桶号拼接
+     */
+    public static final String BUCKET_PREFIX = "student:records:";
+
+    /**
+     * 是否为packed布局
+     */
+    private final boolean packed;
+    /**
+     * packed布局的桶数
+     */
+    private final int buckets;
+    /**
+     * 集群模式下的分片数，单机模式下为0，桶key不带哈希标签
+     */
+    private final int shards;
+
+    /**
+     * 构造方法
+     *
+     * @param name    布局名称，取值为{@link #HASH}或{@link #PACKED}
+     * @param buckets packed布局的桶数
+     * @param shards  集群模式下的分片数，单机模式下为0
+     * @throws IllegalArgumentException 如果布局名称未知、桶数不大于0、分片数小于0，或集群模式下不是packed布局
+     */
+    public RedisRecordLayout(String name, int buckets, int shards) {
+        if (!HASH.equals(name) && !PACKED.equals(name)) {
+            throw new IllegalArgumentException("未知的学生记录布局: " + name);
+        }
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("桶数必须大于0: " + buckets);
+        }
+        if (shards < 0) {
+            throw new IllegalArgumentException("分片数不能小于0: " + shards);
+        }
+        // hash布局以学号为key，无法带上分片的哈希标签
+        if (shards > 0 && !PACKED.equals(name)) {
+            throw new IllegalArgumentException("Redis集群只支持packed布局，请将配置项redis.layout修改为packed");
+        }
+        this.packed = PACKED.equals(name);
+        this.buckets = buckets;
+        this.shards = shards;
+    }
+
+    /**
+     * 按配置项redis.layout和redis.layout.buckets创建存储布局，连接Redis集群时按{@link RedisShard}分片
+     *
+     * @param name 布局名称，为null时使用配置项redis.layout，默认为hash
+     * @return 存储布局
+     */
+    public static RedisRecordLayout fromConfig(String name) {
+        return new RedisRecordLayout(name != null ? name : ConfigUtils.getString("redis.layout", HASH).trim().toLowerCase(),
+                ConfigUtils.getInt("redis.layout.buckets", 16384), JedisUtils.isCluster() ? RedisShard.count() : 0);
+    }
+
+    /**
+     * 获取布局名称
+     *
+     * @return hash或packed
+     */
+    public String getName() {
+        return packed ? PACKED : HASH;
+    }
+
+    /**
+     * 是否为packed布局
+     *
+     * @return packed布局时返回true
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * 获取学号所在桶的key，与student-record.lua的recordBucket一致
+     *
+     * @param studentId 学号
+     * @return 桶key
+     */
+    public String bucketKey(String studentId) {
+        long h = bucket(studentId);
+        return shards > 0 ? BUCKET_PREFIX + "{" + h % shards + "}:" + h : BUCKET_PREFIX + h;
+    }
+
+    /**
+     * 获取学生所在的分片，与student-record.lua的recordBucket一致
+     *
+     * @param studentId 学号
+     * @return 分片
+     */
+    public RedisShard shardOf(String studentId) {
+        return shards > 0 ? RedisShard.get((int) (bucket(studentId) % shards)) : RedisShard.get(0);
+    }
+
+    /**
+     * 计算学号所在的桶号: 对学号的UTF-8字节计算h = (h * 31 + b) % 桶数
+     *
+     * @param studentId 学号
+     * @return 桶号
+     */
+    private long bucket(String studentId) {
+        long h = 0;
+        for (byte b : studentId.getBytes(StandardCharsets.UTF_8)) {
+            h = (h * 31 + (b & 0xFF)) % buckets;
+        }
+        return h;
+    }
+
+    /**
+     * 生成拼接在Lua脚本之前的学生记录读写函数
+     *
+     * @return Lua源码
+     */
+    public String prelude() {
+        return RedisScript.loadSource("student-record")
+                .replace("${packed}", String.valueOf(packed))
+                .replace("${bucketPrefix}", BUCKET_PREFIX)
+                .replace("${buckets}", String.valueOf(buckets))
+                .replace("${shards}", String.valueOf(shards));
+    }
+
+    /**
+     * 判断学生是否存在
+     *
+     * @param jedis     Jedis实例
+     * @param studentId 学号
+     * @return 学生存在时返回true
+     */
+    public boolean exists(Jedis jedis, String studentId) {
+        return packed ? jedis.hexists(bucketKey(studentId), studentId) : jedis.exists(studentId);
+    }
+
+    /**
+     * 在管道中判断学生是否存在
+     *
+     * @param pipeline  管道
+     * @param studentId 学号
+     * @return 是否存在的管道响应
+     */
+    public Response<Boolean> exists(Pipeline pipeline, String studentId) {
+        return packed ? pipeline.hexists(bucketKey(studentId), studentId) : pipeline.exists(studentId);
+    }
+
+    /**
+     * 在管道中读取学生记录，结果由{@link #decode(String, Object)}解码
+     *
+     * @param pipeline  管道
+     * @param studentId 学号
+     * @return hash布局为字段Map的管道响应，packed布局为紧凑记录的管道响应
+     */
+    public Response<?> read(Pipeline pipeline, String studentId) {
+        return packed ? pipeline.hget(bucketKey(studentId), studentId) : pipeline.hgetAll(studentId);
+    }
+
+    /**
+     * 解码{@link #read(Pipeline, String)}或Lua脚本读取的学生记录
+     *
+     * @param studentId 学号
+     * @param record    字段Map、字段和值交替排列的列表或紧凑记录
+     * @return 学生信息，学生不存在时为学号为null的空对象
+     */
+    @SuppressWarnings("unchecked")
+    public static Student decode(String studentId, Object record) {
+        if (record instanceof String) {
+            return StudentCodec.unpack(studentId, (String) record);
+        }
+        if (record instanceof Map) {
+            return StudentCodec.fromHash((Map<String, String>) record);
+        }
+        if (record instanceof List) {
+            return StudentCodec.fromFields((List<?>) record);
+        }
+        return new Student();
+    }
+
+    /**
+     * 在管道中整条写入学生记录
+     *
+     * @param pipeline 管道
+     * @param student  学生信息
+     */
+    public void write(Pipeline pipeline, Student student) {
+        if (packed) {
+            pipeline.hset(bucketKey(student.getId()), student.getId(), StudentCodec.pack(student));
+        } else {
+            pipeline.del(student.getId());
+            pipeline.hset(student.getId(), StudentCodec.toHash(student));
+        }
+    }
+
+    /**
+     * 在管道中删除学生记录
+     *
+     * @param pipeline  管道
+     * @param studentId 学号
+     */
+    public void delete(Pipeline pipeline, String studentId) {
+        if (packed) {
+            pipeline.hdel(bucketKey(studentId), studentId);
+        } else {
+            pipeline.del(studentId);
+        }
+    }
+}
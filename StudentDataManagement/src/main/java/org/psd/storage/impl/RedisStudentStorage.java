@@ -0,0 +1,1130 @@
+package org.psd.storage.impl;
+
+import org.psd.cache.DatasetVersion;
+import org.psd.cache.NearCache;
+import org.psd.cache.NearCacheManager;
+import org.psd.cache.StudentIdFilter;
+import org.psd.storage.ChangeFeed;
+import org.psd.storage.StudentStorage;
+import org.psd.storage.StudentStorageFactory;
+import org.psd.storage.WriteMode;
+import org.psd.util.ConfigUtils;
+import org.psd.util.JedisUtils;
+import org.psd.util.RedisScript;
+import org.psd.util.RedisShard;
+import org.psd.util.RedisUnavailableException;
+import org.psd.util.StudentCodec;
+import org.psd.util.TextTokenizer;
+import org.psd.common.ChangeEvent;
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.ScoreStats;
+import org.psd.common.StudentRank;
+import org.psd.common.WriteStatus;
+import org.psd.entity.Student;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Redis存储引擎，学生数据和各项索引存储在Redis中，每项读写通过Lua脚本或管道一次往返完成，
+ * 多个应用节点共享数据，并通过近端缓存、学生ID过滤器和失效频道减少对Redis的访问。
+ * 单个学生的读写和批量读写按学生所在的{@link RedisShard}访问，连接Redis集群时由子类{@link RedisClusterStudentStorage}
+ * 分别查询各分片的排名和索引后合并
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class RedisStudentStorage implements StudentStorage {
+
+    /**
+     * 出生日期索引中每个平均分占用的区间宽度。出生日期索引为按平均分分桶的sorted set，成员为学号，
+     * 分数为平均分*BIRTHDAY_BUCKET_WIDTH+出生日期的纪元日+BIRTHDAY_DAY_OFFSET，
+     * 同一平均分的学生位于一段连续区间内并按出生日期排列
+     */
+    static final long BIRTHDAY_BUCKET_WIDTH = 1L << 20;
+    /**
+     * 出生日期纪元日的偏移量，使纪元日在±MAX_EPOCH_DAY内的出生日期映射到[0, BIRTHDAY_BUCKET_WIDTH)
+     */
+    static final long BIRTHDAY_DAY_OFFSET = StudentCodec.MAX_EPOCH_DAY + 1;
+    /**
+     * 单机模式下唯一的分片，学生排名和各项索引的key与引入分片之前相同；
+     * 集群模式下排名查询由{@link RedisClusterStudentStorage}分别查询各分片后合并
+     */
+    static final RedisShard SHARD = RedisShard.get(0);
+    /**
+     * 学生记录的存储布局，由配置项redis.layout指定
+     */
+    static final RedisRecordLayout RECORD_LAYOUT = RedisRecordLayout.fromConfig(null);
+    /**
+     * 拼接在访问学生记录的Lua脚本之前的记录读写函数
+     */
+    private static final String RECORD_PRELUDE = RECORD_LAYOUT.prelude();
+    /**
+     * 同时访问多个分片的线程池，各分片的命令并行往返，单机模式下为null
+     */
+    private static final ExecutorService FANOUT_EXECUTOR = RedisShard.count() > 1
+            ? Executors.newFixedThreadPool(ConfigUtils.getInt("redis.cluster.fanoutThreads", 8), runnable -> {
+                Thread thread = new Thread(runnable, "redis-shard-fanout");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    /**
+     * 一次往返获取分页学生数据的Lua脚本
+     */
+    private static final RedisScript LIST_PAGE_SCRIPT = RedisScript.load("list-page", RECORD_PRELUDE);
+    /**
+     * 按游标一次往返获取分页学生数据的Lua脚本
+     */
+    static final RedisScript KEYSET_PAGE_SCRIPT = RedisScript.load("keyset-page", RECORD_PRELUDE);
+    /**
+     * 原子地添加或更新一个学生的Lua脚本
+     */
+    private static final RedisScript UPSERT_SCRIPT = RedisScript.load("upsert-student", RECORD_PRELUDE);
+    /**
+     * 原子地删除一个学生及其所有索引的Lua脚本
+     */
+    private static final RedisScript REMOVE_SCRIPT = RedisScript.load("remove-student", RECORD_PRELUDE);
+    /**
+     * 按学生记录的当前内容重建一个学生索引的Lua脚本
+     */
+    private static final RedisScript REINDEX_SCRIPT = RedisScript.load("reindex-student", RECORD_PRELUDE);
+    /**
+     * 按姓名前缀一次往返获取分页学生数据的Lua脚本
+     */
+    static final RedisScript SEARCH_NAME_SCRIPT = RedisScript.load("search-name", RECORD_PRELUDE);
+    /**
+     * 按备注中的词和平均分区间一次往返获取分页学生数据的Lua脚本
+     */
+    static final RedisScript SEARCH_DESCRIPTION_SCRIPT = RedisScript.load("search-description", RECORD_PRELUDE);
+    /**
+     * 按平均分区间和出生日期区间一次往返获取分页学生数据的Lua脚本
+     */
+    static final RedisScript RANGE_PAGE_SCRIPT = RedisScript.load("range-page", RECORD_PRELUDE);
+    /**
+     * 按学生排名重新计算平均分统计的Lua脚本
+     */
+    private static final RedisScript REBUILD_STATS_SCRIPT = RedisScript.load("rebuild-stats");
+    /**
+     * 一次往返获取学生排名及其所在一页学生数据的Lua脚本
+     */
+    private static final RedisScript LOCATE_SCRIPT = RedisScript.load("locate-student", RECORD_PRELUDE);
+    /**
+     * 补建索引时每次扫描的学生数
+     */
+    private static final int REINDEX_BATCH_SIZE = 1000;
+    /**
+     * 学生记录近端缓存，未启用时为null
+     */
+    static final NearCache<Student> NEAR_CACHE = NearCacheManager.getStudentCache();
+    /**
+     * 学生ID布隆过滤器，未启用时为null
+     */
+    private static final StudentIdFilter ID_FILTER = NearCacheManager.getIdFilter();
+    /**
+     * 分页数据快照，未启用时为null
+     */
+    static final NearCache<PageInfo<Student>> PAGE_SNAPSHOTS = NearCacheManager.getPageSnapshots();
+
+    /**
+     * 学生数据变更事件流，未启用时为null
+     */
+    private final ChangeFeed changeFeed;
+
+    /**
+     * 构造方法，开始订阅近端缓存失效频道，订阅成功后扫描学生排名集合重建学生ID过滤器
+     *
+     * @param changeFeed 学生数据变更事件流，为null时不追加变更事件
+     */
+    public RedisStudentStorage(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+        NearCacheManager.start();
+    }
+
+    /**
+     * 获取引擎名称
+     *
+     * @return redis
+     */
+    @Override
+    public String getName() {
+        return StudentStorageFactory.ENGINE_REDIS;
+    }
+
+    /**
+     * 根据学生ID判断该学生是否已存在
+     *
+     * @param studentId 学生ID
+     * @return 如果学生存在返回true，否则返回false
+     */
+    @Override
+    public boolean exists(String studentId) {
+        // 布隆过滤器判断一定不存在时无需访问Redis
+        Boolean mightExist = ID_FILTER == null ? null : ID_FILTER.mightContain(studentId);
+        if (Boolean.FALSE.equals(mightExist)) {
+            return false;
+        }
+        // 近端缓存中存在该学生时无需访问Redis
+        if (NEAR_CACHE != null && NEAR_CACHE.get(studentId) != null) {
+            return true;
+        }
+        // 借用学生所在分片的连接，判断Redis中是否存在该学生
+        boolean exists = RECORD_LAYOUT.shardOf(studentId).execute(jedis -> RECORD_LAYOUT.exists(jedis, studentId));
+        if (Boolean.TRUE.equals(mightExist) && !exists) {
+            ID_FILTER.recordFalsePositive();
+        }
+        return exists;
+    }
+
+    /**
+     * 批量判断学生是否已存在，布隆过滤器判断一定不存在或近端缓存命中的学生ID无需访问Redis，
+     * 其余学生ID按所在分片分组，每个分片通过管道一次往返判断，各分片并行
+     *
+     * @param studentIds 学生ID列表
+     * @return 学生ID到是否存在的Map，顺序与studentIds一致
+     */
+    @Override
+    public Map<String, Boolean> exist(List<String> studentIds) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        // 需要访问Redis的学生ID、布隆过滤器的判断结果及其管道响应
+        List<String> checkIds = new ArrayList<>();
+        List<Boolean> checkFilterResults = new ArrayList<>();
+        for (String studentId : studentIds) {
+            Boolean mightExist = ID_FILTER == null ? null : ID_FILTER.mightContain(studentId);
+            if (Boolean.FALSE.equals(mightExist)) {
+                result.put(studentId, false);
+            } else if (NEAR_CACHE != null && NEAR_CACHE.get(studentId) != null) {
+                result.put(studentId, true);
+            } else {
+                // 先占位以保持顺序，结果在管道返回后填入
+                result.put(studentId, null);
+                checkIds.add(studentId);
+                checkFilterResults.add(mightExist);
+            }
+        }
+        if (checkIds.isEmpty()) {
+            return result;
+        }
+        List<Response<Boolean>> responses = new ArrayList<>(Collections.nCopies(checkIds.size(), null));
+        Map<RedisShard, List<Integer>> groups = groupByShard(checkIds);
+        fanOut(groups.keySet(), shard -> shard.execute(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            for (int i : groups.get(shard)) {
+                responses.set(i, RECORD_LAYOUT.exists(pipeline, checkIds.get(i)));
+            }
+            // 一次往返判断该分片的所有学生ID
+            pipeline.sync();
+            return null;
+        }));
+        for (int i = 0; i < checkIds.size(); i++) {
+            boolean exists = responses.get(i).get();
+            if (Boolean.TRUE.equals(checkFilterResults.get(i)) && !exists) {
+                ID_FILTER.recordFalsePositive();
+            }
+            result.put(checkIds.get(i), exists);
+        }
+        return result;
+    }
+
+    /**
+     * 添加或更新学生数据，在学生所在的分片上通过Lua脚本一次往返原子地完成存在性检查、写入学生记录、
+     * 更新学生排名、姓名索引和备注索引、递增数据集版本号以及发布近端缓存失效通知，
+     * 写入成功后追加带有脚本返回的版本号的变更事件
+     *
+     * @param student 学生信息
+     * @param mode    写入模式
+     * @return 写入结果，Redis不可用时为UNAVAILABLE
+     */
+    @Override
+    public WriteStatus write(Student student, WriteMode mode) {
+        List<?> reply;
+        RedisShard shard = RECORD_LAYOUT.shardOf(student.getId());
+        // 借用学生所在分片的连接，使用完毕后自动归还
+        try {
+            reply = shard.execute(jedis -> (List<?>) UPSERT_SCRIPT.eval(jedis,
+                    studentKeys(shard, student.getId()), upsertArgs(shard, student, mode, NearCacheManager.CHANNEL_INVALIDATE)));
+        } catch (RedisUnavailableException e) {
+            // 熔断器断开或无法获取连接，写入未执行
+            return WriteStatus.UNAVAILABLE;
+        } catch (JedisException e) {
+            // 记录警告日志
+            log.warn(e.getMessage(), e);
+            return WriteStatus.ERROR;
+        }
+        WriteStatus status = WriteStatus.valueOf((String) reply.get(0));
+        if (status.isSuccess()) {
+            // 立即使本节点的近端缓存失效并加入学生ID过滤器，保证本节点读到自己的写入
+            NearCacheManager.invalidate(student.getId());
+            if (ID_FILTER != null) {
+                ID_FILTER.add(student.getId());
+            }
+            publish(new ChangeEvent(status == WriteStatus.CREATED ? ChangeEvent.CREATE : ChangeEvent.UPDATE,
+                    student.getId(), student), (Long) reply.get(1));
+        }
+        return status;
+    }
+
+    /**
+     * 批量写入学生数据，按学生所在分片分组，每个分片通过管道一次往返写入，各分片并行。
+     * 集群模式下事务只能保证同一分片内的写入原子地执行
+     *
+     * @param students      学生信息列表
+     * @param mode          写入模式
+     * @param transactional 是否将每个分片的整批写入放在一个事务中执行
+     * @return 每条记录的失败原因，顺序与students一致，写入成功时为null
+     */
+    @Override
+    public List<String> writeAll(List<Student> students, WriteMode mode, boolean transactional) {
+        List<Response<Object>> responses = new ArrayList<>(Collections.nCopies(students.size(), null));
+        List<String> studentIds = new ArrayList<>(students.size());
+        for (Student student : students) {
+            studentIds.add(student.getId());
+        }
+        Map<RedisShard, List<Integer>> groups = groupByShard(studentIds);
+        fanOut(groups.keySet(), shard -> shard.execute(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            RedisScript.Pipelined upsertScript = UPSERT_SCRIPT.pipelined(pipeline);
+            if (transactional) {
+                // 开启事务
+                pipeline.multi();
+            }
+            for (int i : groups.get(shard)) {
+                // 将学生数据存入哈希中，按平均分更新排名并更新姓名和备注索引，版本号和通知由本方法统一处理
+                responses.set(i, upsertScript.eval(studentKeys(shard, studentIds.get(i)),
+                        upsertArgs(shard, students.get(i), mode, "")));
+            }
+            if (transactional) {
+                // 提交事务
+                pipeline.exec();
+            }
+            // 一次往返提交该分片的整批命令
+            pipeline.sync();
+            return null;
+        }));
+        // 逐条检查写入结果，不满足写入模式或脚本执行失败(如key类型冲突)时记录失败原因
+        List<String> errors = new ArrayList<>(students.size());
+        Set<RedisShard> changed = new LinkedHashSet<>();
+        List<String> changedIds = new ArrayList<>();
+        for (int i = 0; i < students.size(); i++) {
+            try {
+                Object status = responses.get(i).get();
+                if (WriteStatus.NOT_FOUND.name().equals(status)) {
+                    errors.add("学生不存在");
+                    continue;
+                }
+                if (WriteStatus.ALREADY_EXISTS.name().equals(status)) {
+                    errors.add("学生已存在");
+                    continue;
+                }
+                errors.add(null);
+                changed.add(RECORD_LAYOUT.shardOf(studentIds.get(i)));
+                changedIds.add(studentIds.get(i));
+                // 立即加入学生ID过滤器，保证本节点读到自己的写入
+                if (ID_FILTER != null) {
+                    ID_FILTER.add(students.get(i).getId());
+                }
+            } catch (JedisException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        // 只更新已存在学生的批量写入(如写后缓冲的合并提交)逐个通知学号，不使各节点的学生ID过滤器失去完整性
+        notifyBatch(changed, NearCacheManager.batchMessages(mode == WriteMode.UPDATE, changedIds));
+        return errors;
+    }
+
+    /**
+     * 根据学生ID删除学生数据，删除成功后追加带有脚本返回的版本号的变更事件
+     *
+     * @param studentId 学生ID
+     * @return 删除是否成功，学生不存在或脚本执行出错时返回false
+     * @throws RedisUnavailableException 如果Redis不可用，删除未执行
+     */
+    @Override
+    public boolean remove(String studentId) {
+        RedisShard shard = RECORD_LAYOUT.shardOf(studentId);
+        // 获取学生所在分片的Jedis实例，Redis不可用时直接抛出异常
+        Jedis jedis = shard.getJedis();
+        List<?> reply;
+        try {
+            // 通过Lua脚本原子地删除学生数据、排名、姓名索引和备注索引，递增数据集版本号并通知所有应用节点使该学生的近端缓存失效
+            reply = (List<?>) REMOVE_SCRIPT.eval(jedis, studentKeys(shard, studentId),
+                    Arrays.asList(NearCacheManager.CHANNEL_INVALIDATE, shard.getTermIndexPrefix()));
+        } catch (JedisException e) {
+            // 记录警告日志
+            log.warn(e.getMessage(), e);
+            // 返回删除失败
+            return false;
+        } finally {
+            // 归还Jedis连接到连接池
+            JedisUtils.close(jedis);
+        }
+        // 立即使本节点的近端缓存失效，保证本节点读到自己的写入
+        NearCacheManager.invalidate(studentId);
+        // 学生不存在时脚本不删除任何记录，也不递增版本号，不计入过滤器的删除数
+        if ((Long) reply.get(0) == 0) {
+            return false;
+        }
+        if (ID_FILTER != null) {
+            ID_FILTER.remove(studentId);
+        }
+        publish(new ChangeEvent(ChangeEvent.REMOVE, studentId, null), (Long) reply.get(1));
+        return true;
+    }
+
+    /**
+     * 向变更事件流追加单个学生的变更事件
+     *
+     * @param event   变更事件
+     * @param version 脚本返回的写入后学生所在分片的数据集版本号
+     */
+    private void publish(ChangeEvent event, long version) {
+        if (changeFeed != null) {
+            event.setVersion(version);
+            changeFeed.appendQuietly(event);
+        }
+    }
+
+    /**
+     * 批量删除学生数据，按学生所在分片分组，每个分片的删除在一个事务中通过管道一次往返执行，各分片并行。
+     * 集群模式下只能保证同一分片内的删除原子地执行
+     *
+     * @param studentIds 学生ID列表
+     * @return 每个学生ID的失败原因，顺序与studentIds一致，学生不存在时为失败
+     */
+    @Override
+    public List<String> removeAll(List<String> studentIds) {
+        List<Response<Object>> responses = new ArrayList<>(Collections.nCopies(studentIds.size(), null));
+        Map<RedisShard, Response<List<Object>>> execs = new ConcurrentHashMap<>();
+        Map<RedisShard, List<Integer>> groups = groupByShard(studentIds);
+        fanOut(groups.keySet(), shard -> shard.execute(jedis -> {
+            // 批量删除时由本方法统一递增版本号和发布通知
+            List<String> args = Arrays.asList("", shard.getTermIndexPrefix());
+            Pipeline pipeline = jedis.pipelined();
+            RedisScript.Pipelined removeScript = REMOVE_SCRIPT.pipelined(pipeline);
+            // 开启事务
+            pipeline.multi();
+            for (int i : groups.get(shard)) {
+                // 删除学生数据，并从学生排名集合、姓名索引和备注索引中移除
+                responses.set(i, removeScript.eval(studentKeys(shard, studentIds.get(i)), args));
+            }
+            // 提交事务，一次往返执行该分片的整批命令
+            execs.put(shard, pipeline.exec());
+            pipeline.sync();
+            return null;
+        }));
+        // 逐条检查删除结果
+        List<String> errors = new ArrayList<>(studentIds.size());
+        Set<RedisShard> changed = new LinkedHashSet<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            try {
+                if (execs.get(RECORD_LAYOUT.shardOf(studentIds.get(i))).get() == null) {
+                    errors.add("事务执行失败");
+                } else if ((Long) responses.get(i).get() > 0) {
+                    errors.add(null);
+                    changed.add(RECORD_LAYOUT.shardOf(studentIds.get(i)));
+                    // 只有实际删除的学生计入过滤器的删除数
+                    if (ID_FILTER != null) {
+                        ID_FILTER.remove(studentIds.get(i));
+                    }
+                } else {
+                    errors.add("学生不存在");
+                }
+            } catch (JedisException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        notifyBatch(changed, Collections.singletonList(NearCacheManager.INVALIDATE_ALL));
+        return errors;
+    }
+
+    /**
+     * 批量写入或删除后，递增有学生变化的分片的数据集版本号，并向失效频道发布通知，
+     * 每个分片一次往返，各分片并行。整批都没有学生变化时不递增版本号也不发布通知，
+     * 各节点的分页结果缓存和学生ID过滤器不受影响。版本号在学生数据写入之后递增，
+     * 读到新版本号时一定能读到新数据，旧版本号下缓存的分页结果在递增后不再被读取
+     *
+     * @param changed  有学生写入或删除成功的分片
+     * @param messages 发布到失效频道的学生ID或{@link NearCacheManager#INVALIDATE_ALL}
+     */
+    private void notifyBatch(Set<RedisShard> changed, List<String> messages) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        // 通知只发布一次，由第一个分片的管道发布
+        RedisShard publisher = changed.iterator().next();
+        try {
+            fanOut(changed, shard -> shard.execute(jedis -> {
+                Pipeline pipeline = jedis.pipelined();
+                pipeline.incr(shard.getVersionKey());
+                if (shard == publisher) {
+                    for (String message : messages) {
+                        pipeline.publish(NearCacheManager.CHANNEL_INVALIDATE, message);
+                    }
+                }
+                pipeline.sync();
+                return null;
+            }));
+        } finally {
+            // 学生数据已经变化，即使通知失败也使本节点的缓存失效
+            messages.forEach(NearCacheManager::invalidateMessage);
+        }
+    }
+
+    /**
+     * 获取学生数据集的版本号，即各分片版本号之和，任一分片写入后都会增大
+     * 本节点正在跟踪版本号变化时直接返回已知的版本号，否则从Redis读取
+     *
+     * @return 数据集版本号
+     */
+    @Override
+    public long getVersion() {
+        DatasetVersion datasetVersion = NearCacheManager.getDatasetVersion();
+        Long version = datasetVersion.get();
+        if (version != null) {
+            return version;
+        }
+        long generation = datasetVersion.beginRead();
+        version = 0L;
+        for (String value : fanOut(RedisShard.all(), shard -> shard.execute(jedis -> jedis.get(shard.getVersionKey())))) {
+            version += value == null ? 0L : Long.parseLong(value);
+        }
+        datasetVersion.set(generation, version);
+        return version;
+    }
+
+    /**
+     * 以学生平均分倒序排序，分页获取学生数据
+     * Redis不可用时返回该页最近一次成功查询的快照，快照的stale为true
+     *
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     * @throws JedisConnectionException 如果Redis不可用且没有该页的快照
+     */
+    @Override
+    public PageInfo<Student> listPage(Integer pageNum, Integer pageSize) {
+        // 初始化分页信息，总记录数由脚本返回后再设置
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        try {
+            loadPage(page);
+        } catch (JedisConnectionException e) {
+            // Redis不可用时返回该页最近一次成功查询的快照，并标记为过期
+            PageInfo<Student> snapshot = PAGE_SNAPSHOTS == null ? null : PAGE_SNAPSHOTS.get(snapshotKey(page));
+            if (snapshot == null) {
+                throw e;
+            }
+            log.warn("Redis不可用，返回第{}页的过期快照: {}", page.getPageNum(), e.getMessage());
+            return snapshot.toStale();
+        }
+        if (PAGE_SNAPSHOTS != null) {
+            PAGE_SNAPSHOTS.put(snapshotKey(page), page);
+        }
+        // 返回分页详细信息
+        return page;
+    }
+
+    /**
+     * 查询一页按平均分倒序排列的学生，设置学生总数和分页记录
+     *
+     * @param page 分页信息
+     */
+    void loadPage(PageInfo<Student> page) {
+        // 从连接池借用Jedis实例，使用完毕后自动归还
+        try (Jedis jedis = SHARD.getJedis()) {
+            // 一次往返获取学生总数、该页的学生编号以及学生详细信息
+            List<?> reply = (List<?>) LIST_PAGE_SCRIPT.eval(jedis, Collections.singletonList(SHARD.getRankKey()),
+                    Arrays.asList(String.valueOf(MIN_SCORE), String.valueOf(MAX_SCORE),
+                            String.valueOf(page.getStartIndex()), String.valueOf(page.getEndIndex()), withHashArg()));
+            // 设置学生总数
+            page.setTotalCount((Long) reply.get(0));
+            // 按排名顺序解析学生详细信息，奇数位为学生编号，偶数位为该学生的所有字段，并设置分页记录
+            page.setRecords(decodeRecords(jedis, reply, 1, 2));
+        }
+    }
+
+    /**
+     * 获取分页数据快照的缓存键
+     *
+     * @param page 分页信息
+     * @return 由页码和每页记录数组成的缓存键
+     */
+    private static String snapshotKey(PageInfo<Student> page) {
+        return page.getPageNum() + ":" + page.getPageSize();
+    }
+
+    /**
+     * 以学生平均分倒序排序，按游标分页获取学生数据
+     *
+     * @param cursor   游标，为null时从第一名开始向后翻页
+     * @param pageSize 每页记录数
+     * @return 游标分页详细信息
+     */
+    @Override
+    public CursorPageInfo<Student> listByCursor(RankCursor cursor, int pageSize) {
+        List<String> args = Arrays.asList(
+                cursor == null ? "" : String.valueOf(cursor.getAvgScore()),
+                cursor == null ? "" : cursor.getId(),
+                String.valueOf(pageSize),
+                cursor == null ? RankCursor.NEXT : cursor.getDirection(),
+                withHashArg(), String.valueOf(MIN_SCORE), String.valueOf(MAX_SCORE));
+        // 从连接池借用Jedis实例，使用完毕后自动归还
+        try (Jedis jedis = SHARD.getJedis()) {
+            // 一次往返定位游标并获取相邻一页的学生编号、平均分以及学生详细信息
+            List<?> reply = (List<?>) KEYSET_PAGE_SCRIPT.eval(jedis, Collections.singletonList(SHARD.getRankKey()), args);
+            long total = (Long) reply.get(0);
+            long start = (Long) reply.get(1);
+            long size = (Long) reply.get(2);
+            // 按排名顺序解析学生详细信息，每条记录依次为学生编号、平均分、所有字段
+            List<Student> studentList = decodeRecords(jedis, reply, 3, 3);
+            // 设置分页信息
+            CursorPageInfo<Student> page = new CursorPageInfo<>();
+            page.setPageSize(pageSize);
+            page.setTotalCount(total);
+            page.setStartIndex(start);
+            page.setRecords(studentList);
+            if (!studentList.isEmpty()) {
+                // 以当前页首条、末条记录在排名中的(平均分, 学号)生成翻页游标
+                if (start > 0) {
+                    page.setPrevCursor(new RankCursor(RankCursor.PREV,
+                            parseRankScore(reply.get(4)), (String) reply.get(3)).encode());
+                }
+                if (start + studentList.size() < size) {
+                    int last = reply.size() - 3;
+                    page.setNextCursor(new RankCursor(RankCursor.NEXT,
+                            parseRankScore(reply.get(last + 1)), (String) reply.get(last)).encode());
+                }
+            }
+            // 返回游标分页详细信息
+            return page;
+        }
+    }
+
+    /**
+     * 获取学生在按平均分倒序排列的排名中的位置和名次，以及该学生所在的一页学生数据
+     *
+     * @param studentId 学生ID
+     * @param pageSize  每页记录数
+     * @return 学生排名信息，学生不存在时返回null
+     */
+    @Override
+    public StudentRank locate(String studentId, int pageSize) {
+        // 从连接池借用Jedis实例，使用完毕后自动归还
+        try (Jedis jedis = SHARD.getJedis()) {
+            // 一次往返获取排名位置、平均分、平均分更高的学生数、学生总数以及该页的学生详细信息
+            List<?> reply = (List<?>) LOCATE_SCRIPT.eval(jedis, Collections.singletonList(SHARD.getRankKey()),
+                    Arrays.asList(studentId, String.valueOf(pageSize), String.valueOf(MIN_SCORE),
+                            String.valueOf(MAX_SCORE), withHashArg()));
+            long position = (Long) reply.get(0);
+            if (position < 0) {
+                return null;
+            }
+            // 根据排名位置计算所在页码，并设置分页信息
+            PageInfo<Student> page = new PageInfo<>((int) (position / pageSize) + 1, pageSize, (Long) reply.get(3));
+            // 按排名顺序解析学生详细信息，奇数位为学生编号，偶数位为该学生的所有字段，并设置分页记录
+            page.setRecords(decodeRecords(jedis, reply, 4, 2));
+            StudentRank studentRank = new StudentRank();
+            studentRank.setId(studentId);
+            studentRank.setAvgScore(parseRankScore(reply.get(1)));
+            studentRank.setPosition(position);
+            studentRank.setRank((Long) reply.get(2) + 1);
+            studentRank.setPage(page);
+            return studentRank;
+        }
+    }
+
+    /**
+     * 按姓名前缀分页搜索学生，结果按姓名、学号的字典序排列
+     *
+     * @param prefix   姓名前缀，为空时匹配所有有姓名的学生
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchByName(String prefix, Integer pageNum, Integer pageSize) {
+        // 初始化分页信息，总记录数由脚本返回后再设置
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        // 从连接池借用Jedis实例，使用完毕后自动归还
+        try (Jedis jedis = SHARD.getJedis()) {
+            // 一次往返获取匹配的学生总数、该页的学生编号以及学生详细信息
+            List<?> reply = (List<?>) SEARCH_NAME_SCRIPT.eval(jedis, Collections.singletonList(SHARD.getNameIndexKey()),
+                    Arrays.asList(prefix == null ? "" : prefix, String.valueOf(page.getStartIndex()),
+                            String.valueOf(page.getPageSize()), withHashArg()));
+            // 设置匹配的学生总数
+            page.setTotalCount((Long) reply.get(0));
+            // 按字典序解析学生详细信息，奇数位为学生编号，偶数位为该学生的所有字段，并设置分页记录
+            page.setRecords(decodeRecords(jedis, reply, 1, 2));
+            // 返回分页详细信息
+            return page;
+        }
+    }
+
+    /**
+     * 按平均分区间和出生日期区间分页获取学生数据
+     *
+     * @param minScore 最低平均分
+     * @param maxScore 最高平均分
+     * @param fromDay  最早出生日期的纪元日(含)，为null时不限
+     * @param toDay    最晚出生日期的纪元日(含)，为null时不限
+     * @param pageNum  页码
+     * @param pageSize 每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> listByRange(int minScore, int maxScore, Long fromDay, Long toDay,
+                                         Integer pageNum, Integer pageSize) {
+        // 初始化分页信息，总记录数由脚本返回后再设置
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        List<String> args = Arrays.asList(String.valueOf(minScore), String.valueOf(maxScore),
+                fromDay == null ? "" : String.valueOf(fromDay), toDay == null ? "" : String.valueOf(toDay),
+                String.valueOf(page.getStartIndex()), String.valueOf(page.getPageSize()), withHashArg(),
+                String.valueOf(BIRTHDAY_BUCKET_WIDTH), String.valueOf(BIRTHDAY_DAY_OFFSET));
+        // 从连接池借用Jedis实例，使用完毕后自动归还
+        try (Jedis jedis = SHARD.getJedis()) {
+            // 一次往返统计区间内的学生总数并获取该页的学生编号以及学生详细信息
+            List<?> reply = (List<?>) RANGE_PAGE_SCRIPT.eval(jedis,
+                    Arrays.asList(SHARD.getRankKey(), SHARD.getBirthdayIndexKey()), args);
+            // 设置区间内的学生总数
+            page.setTotalCount((Long) reply.get(0));
+            // 按排名顺序解析学生详细信息，奇数位为学生编号，偶数位为该学生的所有字段，并设置分页记录
+            page.setRecords(decodeRecords(jedis, reply, 1, 2));
+            // 返回分页详细信息
+            return page;
+        }
+    }
+
+    /**
+     * 按备注中的词检索学生，一次往返完成倒排索引的交并运算、与平均分区间取交集以及获取该页的学生详细信息
+     *
+     * @param termGroups 检索词分组，组内取交集(AND)，组间取并集(OR)
+     * @param minScore   最低平均分
+     * @param maxScore   最高平均分
+     * @param pageNum    页码
+     * @param pageSize   每页记录数
+     * @return 分页详细信息
+     */
+    @Override
+    public PageInfo<Student> searchByTerms(List<Set<String>> termGroups, int minScore, int maxScore,
+                                           Integer pageNum, Integer pageSize) {
+        // 初始化分页信息，总记录数由脚本返回后再设置
+        PageInfo<Student> page = new PageInfo<>(pageNum, pageSize, 0L);
+        List<String> args = searchTermsArgs(termGroups, minScore, maxScore, page.getStartIndex(), page.getPageSize(),
+                withHashArg());
+        // 从连接池借用Jedis实例，使用完毕后自动归还
+        try (Jedis jedis = SHARD.getJedis()) {
+            // 一次往返完成倒排索引的交并运算、与平均分区间取交集以及获取该页的学生详细信息
+            List<?> reply = (List<?>) SEARCH_DESCRIPTION_SCRIPT.eval(jedis, searchTermsKeys(SHARD, termGroups), args);
+            // 设置匹配的学生总数
+            page.setTotalCount((Long) reply.get(0));
+            // 按平均分倒序解析学生详细信息，奇数位为学生编号，偶数位为该学生的所有字段，并设置分页记录
+            page.setRecords(decodeRecords(jedis, reply, 1, 2));
+            // 返回分页详细信息
+            return page;
+        }
+    }
+
+    /**
+     * 获取学生平均分的统计信息，一次读取各分片增量维护的计数、总和及分数直方图并累加，
+     * 计算代价只与分数的取值个数和分片数有关，与学生数量无关
+     *
+     * @param percentiles 需要计算的百分比，取值(0, 100]
+     * @return 平均分统计信息
+     */
+    @Override
+    public ScoreStats getScoreStats(double[] percentiles) {
+        long count = 0;
+        long sum = 0;
+        long other = 0;
+        long[] histogram = new long[MAX_SCORE - MIN_SCORE + 1];
+        for (Map<String, String> hash : fanOut(RedisShard.all(),
+                shard -> shard.execute(jedis -> jedis.hgetAll(shard.getScoreStatsKey())))) {
+            for (int score = MIN_SCORE; score <= MAX_SCORE; score++) {
+                histogram[score - MIN_SCORE] += parseLong(hash.get(String.valueOf(score)));
+            }
+            count += parseLong(hash.get("count"));
+            sum += parseLong(hash.get("sum"));
+            other += parseLong(hash.get("other"));
+        }
+        return ScoreStats.of(count, sum, other, histogram, percentiles);
+    }
+
+    /**
+     * 依次扫描各分片的学生排名集合，按学生数据的当前内容补建所有学生的姓名索引、备注索引和出生日期索引，
+     * 每批学生通过管道两次往返执行，最后重新计算各分片的平均分统计，重复执行无副作用
+     *
+     * @return 补建索引的学生数
+     */
+    @Override
+    public long reindex() {
+        long indexed = 0;
+        for (RedisShard shard : RedisShard.all()) {
+            indexed += reindex(shard);
+        }
+        log.info("学生索引补建完成，学生数: {}", indexed);
+        return indexed;
+    }
+
+    /**
+     * 扫描一个分片的学生排名集合补建索引，并重新计算该分片的平均分统计
+     *
+     * @param shard 分片
+     * @return 补建索引的学生数
+     */
+    private long reindex(RedisShard shard) {
+        long indexed = 0;
+        ScanParams params = new ScanParams().count(REINDEX_BATCH_SIZE);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        // 借用该分片所在节点的连接，使用完毕后自动归还
+        try (Jedis jedis = shard.getJedis()) {
+            do {
+                ScanResult<Tuple> result = jedis.zscan(shard.getRankKey(), cursor, params);
+                // 一次往返读取该批学生的记录，在本地分词并计算出生日期索引的分数
+                Pipeline pipeline = jedis.pipelined();
+                List<Response<?>> values = new ArrayList<>(result.getResult().size());
+                for (Tuple tuple : result.getResult()) {
+                    values.add(RECORD_LAYOUT.read(pipeline, tuple.getElement()));
+                }
+                pipeline.sync();
+                pipeline = jedis.pipelined();
+                RedisScript.Pipelined reindexScript = REINDEX_SCRIPT.pipelined(pipeline);
+                List<Response<Object>> responses = new ArrayList<>(result.getResult().size());
+                for (int i = 0; i < result.getResult().size(); i++) {
+                    String studentId = result.getResult().get(i).getElement();
+                    Object record = values.get(i).get();
+                    // hash布局直接使用读到的字段值，以便脚本逐个字段比较是否已被修改
+                    Map<String, String> value = RECORD_LAYOUT.isPacked()
+                            ? StudentCodec.toHash(RedisRecordLayout.decode(studentId, record)) : castHash(record);
+                    String description = value.getOrDefault(StudentCodec.FIELD_DESCRIPTION, "");
+                    String birthday = value.getOrDefault(StudentCodec.FIELD_BIRTHDAY, "");
+                    String avgScore = value.getOrDefault(StudentCodec.FIELD_AVG_SCORE, "");
+                    Integer score = null;
+                    try {
+                        score = avgScore.isEmpty() ? null : Integer.valueOf(avgScore);
+                    } catch (NumberFormatException e) {
+                        log.warn("平均分格式错误: {}", avgScore);
+                    }
+                    List<String> args = new ArrayList<>();
+                    args.add(shard.getTermIndexPrefix());
+                    args.add(description);
+                    args.add(birthday);
+                    args.add(avgScore);
+                    args.add(birthdayIndexScore(score, birthday));
+                    args.add(record instanceof String ? (String) record : "");
+                    args.addAll(TextTokenizer.indexTerms(description));
+                    responses.add(reindexScript.eval(Arrays.asList(shard.studentKey(studentId), shard.getNameIndexKey(),
+                            shard.getStudentTermsPrefix() + studentId, shard.getBirthdayIndexKey()), args));
+                }
+                // 一次往返补建该批学生的索引
+                pipeline.sync();
+                for (Response<Object> response : responses) {
+                    indexed += (Long) response.get();
+                }
+                cursor = result.getCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+            // 按学生排名原子地重新计算平均分统计
+            REBUILD_STATS_SCRIPT.eval(jedis, Arrays.asList(shard.getRankKey(), shard.getScoreStatsKey()),
+                    Collections.emptyList());
+        }
+        return indexed;
+    }
+
+    /**
+     * 获取学生记录的存储布局、分片数以及Redis连接池和近端缓存的运行统计信息
+     *
+     * @return 包含recordLayout、shards、redisPool和nearCache的Map
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recordLayout", RECORD_LAYOUT.getName());
+        stats.put("shards", RedisShard.count());
+        stats.put("redisPool", JedisUtils.getPoolStats());
+        stats.put("nearCache", NearCacheManager.getStats());
+        return stats;
+    }
+
+    /**
+     * 停止近端缓存失效订阅和访问分片的线程池，并销毁Redis连接池
+     */
+    @Override
+    public void shutdown() {
+        NearCacheManager.shutdown();
+        if (FANOUT_EXECUTOR != null) {
+            FANOUT_EXECUTOR.shutdownNow();
+        }
+        JedisUtils.destroy();
+    }
+
+    /**
+     * 对每个分片执行任务，多个分片时在线程池中并行执行，各分片的往返时间重叠
+     *
+     * @param shards 分片
+     * @param task   对一个分片执行的任务
+     * @param <T>    任务的返回值类型
+     * @return 各分片任务的返回值，顺序与shards一致
+     * @throws RuntimeException 任一分片的任务抛出的异常
+     */
+    static <T> List<T> fanOut(Collection<RedisShard> shards, Function<RedisShard, T> task) {
+        if (shards.size() <= 1 || FANOUT_EXECUTOR == null) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (RedisShard shard : shards) {
+                results.add(task.apply(shard));
+            }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (RedisShard shard : shards) {
+            futures.add(FANOUT_EXECUTOR.submit(() -> task.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JedisException("等待分片查询结果时被中断", e);
+        } catch (ExecutionException e) {
+            // 保持与单个分片时相同的异常类型，Redis不可用时调用方仍可返回快照
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new JedisException(e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 按学生所在分片分组
+     *
+     * @param studentIds 学生ID列表
+     * @return 分片到该分片的学生ID在列表中的位置，按各分片第一个学生ID出现的顺序排列
+     */
+    private static Map<RedisShard, List<Integer>> groupByShard(List<String> studentIds) {
+        Map<RedisShard, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            groups.computeIfAbsent(RECORD_LAYOUT.shardOf(studentIds.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+
+    /**
+     * 获取写入和删除脚本访问的key列表，所有key位于学生所在分片的槽
+     *
+     * @param shard     学生所在的分片
+     * @param studentId 学生ID
+     * @return 依次为学号(hash布局时即学生哈希)、学生排名、数据集版本号、姓名索引、该学生备注包含的词set、出生日期索引、平均分统计
+     */
+    private List<String> studentKeys(RedisShard shard, String studentId) {
+        return Arrays.asList(shard.studentKey(studentId), shard.getRankKey(), shard.getVersionKey(),
+                shard.getNameIndexKey(), shard.getStudentTermsPrefix() + studentId, shard.getBirthdayIndexKey(),
+                shard.getScoreStatsKey());
+    }
+
+    /**
+     * 获取备注检索脚本访问的key列表
+     *
+     * @param shard      分片
+     * @param termGroups 检索词分组
+     * @return 依次为学生排名、两个临时key以及按组排列的各检索词的倒排索引
+     */
+    List<String> searchTermsKeys(RedisShard shard, List<Set<String>> termGroups) {
+        List<String> keys = new ArrayList<>();
+        keys.add(shard.getRankKey());
+        keys.addAll(shard.getSearchTempKeys());
+        for (Set<String> terms : termGroups) {
+            for (String term : terms) {
+                keys.add(shard.getTermIndexPrefix() + term);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 获取备注检索脚本的参数列表
+     *
+     * @param termGroups 检索词分组
+     * @param minScore   最低平均分
+     * @param maxScore   最高平均分
+     * @param offset     跳过的记录数
+     * @param count      返回的记录数
+     * @param withHash   是否返回学生记录
+     * @return 依次为平均分区间、跳过的记录数、返回的记录数、是否返回学生记录、组数以及每组的检索词数
+     */
+    List<String> searchTermsArgs(List<Set<String>> termGroups, int minScore, int maxScore, int offset, int count,
+                                 String withHash) {
+        List<String> args = new ArrayList<>(6 + termGroups.size());
+        args.add(String.valueOf(minScore));
+        args.add(String.valueOf(maxScore));
+        args.add(String.valueOf(offset));
+        args.add(String.valueOf(count));
+        args.add(withHash);
+        args.add(String.valueOf(termGroups.size()));
+        for (Set<String> terms : termGroups) {
+            args.add(String.valueOf(terms.size()));
+        }
+        return args;
+    }
+
+    /**
+     * 获取写入脚本的参数列表
+     *
+     * @param shard   学生所在的分片
+     * @param student 学生信息
+     * @param mode    写入模式
+     * @param channel 近端缓存失效频道，为空字符串时脚本不递增版本号也不发布通知
+     * @return 依次为写入模式、平均分、失效频道、备注倒排索引key的前缀、出生日期索引的分数、
+     * 备注的词数和各个词、packed布局的紧凑记录以及学生的字段和值
+     */
+    private List<String> upsertArgs(RedisShard shard, Student student, WriteMode mode, String channel) {
+        Set<String> terms = TextTokenizer.indexTerms(student.getDescription());
+        List<String> args = new ArrayList<>(16 + terms.size());
+        args.add(mode.name().toLowerCase());
+        args.add(String.valueOf(student.getAvgScore()));
+        args.add(channel);
+        args.add(shard.getTermIndexPrefix());
+        args.add(birthdayIndexScore(student.getAvgScore(), student.getBirthday()));
+        args.add(String.valueOf(terms.size()));
+        args.addAll(terms);
+        args.add(RECORD_LAYOUT.isPacked() ? StudentCodec.pack(student) : "");
+        StudentCodec.toHash(student).forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        return args;
+    }
+
+    /**
+     * 计算学生在出生日期索引中的分数
+     *
+     * @param avgScore 平均分
+     * @param birthday 出生日期，格式为yyyy-MM-dd
+     * @return 出生日期索引的分数，没有出生日期或格式错误时返回空字符串，表示不加入索引
+     */
+    static String birthdayIndexScore(Integer avgScore, String birthday) {
+        Long epochDay = StudentCodec.parseEpochDay(birthday);
+        if (epochDay == null || avgScore == null) {
+            return "";
+        }
+        return String.valueOf(avgScore * BIRTHDAY_BUCKET_WIDTH + epochDay + BIRTHDAY_DAY_OFFSET);
+    }
+
+    /**
+     * 解析平均分统计中的计数
+     *
+     * @param value 计数字符串
+     * @return 计数，不存在时返回0
+     */
+    private long parseLong(String value) {
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    /**
+     * 分页脚本是否需要返回学生的所有字段，启用近端缓存时由调用方先从缓存读取
+     *
+     * @return 脚本参数，1表示返回所有字段，0表示只返回学生编号
+     */
+    String withHashArg() {
+        return NEAR_CACHE == null ? "1" : "0";
+    }
+
+    /**
+     * 按排名顺序解析分页脚本返回的学生记录。脚本未返回字段的记录先从近端缓存读取，
+     * 未命中的记录通过管道一次往返批量读取，读取期间没有收到失效通知时写入近端缓存
+     *
+     * @param jedis  Jedis实例
+     * @param reply  分页脚本的返回值
+     * @param from   第一条记录的学生编号在返回值中的位置
+     * @param stride 每条记录在返回值中占用的元素个数，第一个元素为学生编号，最后一个元素为学生记录
+     * @return 学生列表
+     */
+    List<Student> decodeRecords(Jedis jedis, List<?> reply, int from, int stride) {
+        // 读取期间收到失效通知时不写入近端缓存
+        long generation = NEAR_CACHE == null ? 0 : NEAR_CACHE.beginRead();
+        Student[] students = new Student[(reply.size() - from) / stride];
+        // 近端缓存未命中的记录在学生列表中的位置及其管道响应
+        List<Integer> missIndexes = new ArrayList<>();
+        List<Response<?>> missResponses = new ArrayList<>();
+        Pipeline pipeline = null;
+        for (int k = 0; k < students.length; k++) {
+            int i = from + k * stride;
+            String id = (String) reply.get(i);
+            Object record = reply.get(i + stride - 1);
+            if (record instanceof List || record instanceof String) {
+                // 将字段和值交替排列的列表或紧凑记录直接解码为Student对象
+                students[k] = RedisRecordLayout.decode(id, record);
+                continue;
+            }
+            students[k] = NEAR_CACHE.get(id);
+            if (students[k] == null) {
+                if (pipeline == null) {
+                    pipeline = jedis.pipelined();
+                }
+                missIndexes.add(k);
+                missResponses.add(RECORD_LAYOUT.read(pipeline, id));
+            }
+        }
+        if (pipeline != null) {
+            // 一次往返读取所有未命中的记录
+            pipeline.sync();
+            for (int j = 0; j < missIndexes.size(); j++) {
+                int k = missIndexes.get(j);
+                Student student = RedisRecordLayout.decode((String) reply.get(from + k * stride), missResponses.get(j).get());
+                students[k] = student;
+                if (student.getId() != null) {
+                    NEAR_CACHE.put(student.getId(), student, generation);
+                }
+            }
+        }
+        return Arrays.asList(students);
+    }
+
+    /**
+     * 将hash布局读到的学生记录转换为字段Map
+     *
+     * @param record HGETALL的返回值
+     * @return 字段名到字段值的Map
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> castHash(Object record) {
+        return (Map<String, String>) record;
+    }
+
+    /**
+     * 解析Redis返回的排名分数，分数均为整数
+     *
+     * @param score Redis返回的分数字符串
+     * @return 平均分
+     */
+    Integer parseRankScore(Object score) {
+        return (int) Double.parseDouble((String) score);
+    }
+}
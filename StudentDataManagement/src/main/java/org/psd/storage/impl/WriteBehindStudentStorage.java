@@ -0,0 +1,648 @@
+package org.psd.storage.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.psd.common.ChangeEvent;
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.ScoreStats;
+import org.psd.common.StudentRank;
+import org.psd.common.WriteStatus;
+import org.psd.entity.Student;
+import org.psd.storage.ChangeFeed;
+import org.psd.storage.StudentStorage;
+import org.psd.storage.WriteMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 写后缓冲存储引擎，包装另一个存储引擎。更新学生时先在本节点内存中按学号合并，只保留最新的一次，
+ * 由后台线程在缓冲达到批量大小或最早的更新等待超过刷新间隔后，分批调用{@link StudentStorage#writeAll}写入，
+ * 每批一次往返，整批只递增一次数据集版本号。批次以UPDATE模式写入，只涉及已存在的学生，
+ * Redis存储引擎逐个通知各节点这些学生的缓存失效，不清空近端缓存，也不使学生ID过滤器重建。
+ * <p>
+ * 更新加入缓冲即返回UPDATED，表示更新已被接受，UPDATE变更事件在该批写入成功后追加。
+ * <p>
+ * 缓冲中的不同学生数达到上限时更新请求最多等待指定时间，仍无空间时返回UNAVAILABLE，缓冲和正在写入的批次合计
+ * 不超过上限加一个批量大小。本节点的读请求不写入缓冲，而是用缓冲和正在写入的批次中的更新替换返回的学生记录，
+ * 保证读到自己的写入；学生的排名位置、分页总数、检索匹配和平均分统计仍按已写入的数据计算，直到更新写入。
+ * 删除学生前丢弃该学生缓冲中的更新，并等待正在写入的批次完成，避免已删除的学生被重新写入；关闭时写入所有剩余的更新。
+ * 添加学生、批量导入和重建索引不经过缓冲，执行前先写入缓冲中的更新以保持写入顺序
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class WriteBehindStudentStorage implements StudentStorage {
+    /**
+     * 被包装的存储引擎
+     */
+    private final StudentStorage delegate;
+    /**
+     * 学生数据变更事件流，未启用时为null
+     */
+    private final ChangeFeed changeFeed;
+    /**
+     * 缓冲中不同学生数的上限
+     */
+    private final int maxPending;
+    /**
+     * 每批写入的学生数
+     */
+    private final int batchSize;
+    /**
+     * 最早的更新在缓冲中等待的最长时间(纳秒)
+     */
+    private final long flushNanos;
+    /**
+     * 缓冲已满时更新请求的最长等待时间(纳秒)
+     */
+    private final long maxWaitNanos;
+    /**
+     * 等待写入的更新，按学号合并，由lock保护
+     */
+    private final Map<String, Student> pending = new LinkedHashMap<>();
+    /**
+     * 正在写入的批次，由lock保护
+     */
+    private Map<String, Student> inFlight = Collections.emptyMap();
+    /**
+     * 缓冲中最早的更新加入的时间，由lock保护
+     */
+    private long firstPendingNanos;
+    /**
+     * 保护缓冲的锁
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 缓冲有空间时通知等待的更新请求
+     */
+    private final Condition notFull = lock.newCondition();
+    /**
+     * 缓冲达到批量大小或关闭时通知后台线程
+     */
+    private final Condition flushNeeded = lock.newCondition();
+    /**
+     * 串行执行批量写入和删除
+     */
+    private final ReentrantLock commitLock = new ReentrantLock();
+    /**
+     * 后台写入线程
+     */
+    private final Thread flusher;
+    /**
+     * 是否正在运行，关闭后更新直接写入被包装的存储引擎
+     */
+    private volatile boolean running = true;
+    /**
+     * 加入缓冲的更新数
+     */
+    private final AtomicLong buffered = new AtomicLong();
+    /**
+     * 被同一学生后续更新合并的更新数
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+    /**
+     * 缓冲已满且等待超时被拒绝的更新数
+     */
+    private final AtomicLong rejected = new AtomicLong();
+    /**
+     * 写入的批次数
+     */
+    private final AtomicLong flushedBatches = new AtomicLong();
+    /**
+     * 写入的学生数
+     */
+    private final AtomicLong flushedRecords = new AtomicLong();
+    /**
+     * 写入时学生已不存在等原因未写入的学生数
+     */
+    private final AtomicLong dropped = new AtomicLong();
+    /**
+     * 写入失败后重新放回缓冲的批次数
+     */
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    /**
+     * 构造方法，启动后台写入线程
+     *
+     * @param delegate      被包装的存储引擎
+     * @param changeFeed    学生数据变更事件流，为null时不追加变更事件
+     * @param maxPending    缓冲中不同学生数的上限
+     * @param batchSize     每批写入的学生数，不超过maxPending
+     * @param flushMillis   最早的更新在缓冲中等待的最长时间(毫秒)
+     * @param maxWaitMillis 缓冲已满时更新请求的最长等待时间(毫秒)
+     */
+    public WriteBehindStudentStorage(StudentStorage delegate, ChangeFeed changeFeed, int maxPending, int batchSize,
+                                     long flushMillis, long maxWaitMillis) {
+        this.delegate = delegate;
+        this.changeFeed = changeFeed;
+        this.maxPending = Math.max(maxPending, 1);
+        this.batchSize = Math.max(Math.min(batchSize, this.maxPending), 1);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushMillis, 1));
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxWaitMillis, 0));
+        this.flusher = new Thread(this::flushLoop, "write-behind-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean exists(String studentId) {
+        return isBuffered(studentId) || delegate.exists(studentId);
+    }
+
+    @Override
+    public Map<String, Boolean> exist(List<String> studentIds) {
+        Map<String, Boolean> result = delegate.exist(studentIds);
+        for (String studentId : studentIds) {
+            if (isBuffered(studentId)) {
+                result.put(studentId, true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 更新学生时加入缓冲后立即返回UPDATED，表示更新已被接受，写入成功后追加UPDATE变更事件；
+     * 其他写入模式先写入缓冲中的更新再直接执行，变更事件由被包装的引擎追加
+     *
+     * @param student 学生信息
+     * @param mode    写入模式
+     * @return 写入结果，缓冲已满且等待超时时为UNAVAILABLE
+     */
+    @Override
+    public WriteStatus write(Student student, WriteMode mode) {
+        if (mode != WriteMode.UPDATE || !running) {
+            flush();
+            return delegate.write(student, mode);
+        }
+        String studentId = student.getId();
+        // 缓冲中没有该学生时先确认学生存在，访问存储引擎时不持有锁
+        if (!isBuffered(studentId) && !delegate.exists(studentId)) {
+            return WriteStatus.NOT_FOUND;
+        }
+        Student copy = copyOf(student);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        lock.lock();
+        try {
+            // 合并到已有的更新不占用新的空间，否则在缓冲已满时等待后台线程腾出空间
+            while (!pending.containsKey(studentId) && pending.size() >= maxPending) {
+                flushNeeded.signal();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.incrementAndGet();
+                    return WriteStatus.UNAVAILABLE;
+                }
+                notFull.awaitNanos(remaining);
+            }
+            if (pending.isEmpty()) {
+                firstPendingNanos = System.nanoTime();
+            }
+            if (pending.put(studentId, copy) != null) {
+                coalesced.incrementAndGet();
+            }
+            buffered.incrementAndGet();
+            if (pending.size() >= batchSize) {
+                flushNeeded.signal();
+            }
+            return WriteStatus.UPDATED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return WriteStatus.UNAVAILABLE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> writeAll(List<Student> students, WriteMode mode, boolean transactional) {
+        flush();
+        return delegate.writeAll(students, mode, transactional);
+    }
+
+    @Override
+    public boolean remove(String studentId) {
+        commitLock.lock();
+        try {
+            discard(Collections.singletonList(studentId));
+            return delegate.remove(studentId);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> removeAll(List<String> studentIds) {
+        commitLock.lock();
+        try {
+            discard(studentIds);
+            return delegate.removeAll(studentIds);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * 获取被包装引擎的数据集版本号，不包含缓冲中的更新，有尚未写入的更新时{@link #hasDeferredUpdates()}为true
+     *
+     * @return 数据集版本号
+     */
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public PageInfo<Student> listPage(Integer pageNum, Integer pageSize) {
+        Map<String, Student> buffered = bufferedSnapshot();
+        return overlay(delegate.listPage(pageNum, pageSize), buffered);
+    }
+
+    @Override
+    public CursorPageInfo<Student> listByCursor(RankCursor cursor, int pageSize) {
+        Map<String, Student> buffered = bufferedSnapshot();
+        CursorPageInfo<Student> page = delegate.listByCursor(cursor, pageSize);
+        page.setRecords(overlay(page.getRecords(), buffered));
+        return page;
+    }
+
+    @Override
+    public StudentRank locate(String studentId, int pageSize) {
+        Map<String, Student> buffered = bufferedSnapshot();
+        StudentRank studentRank = delegate.locate(studentId, pageSize);
+        if (studentRank != null) {
+            studentRank.setPage(overlay(studentRank.getPage(), buffered));
+        }
+        return studentRank;
+    }
+
+    @Override
+    public PageInfo<Student> searchByName(String prefix, Integer pageNum, Integer pageSize) {
+        Map<String, Student> buffered = bufferedSnapshot();
+        return overlay(delegate.searchByName(prefix, pageNum, pageSize), buffered);
+    }
+
+    @Override
+    public PageInfo<Student> listByRange(int minScore, int maxScore, Long fromDay, Long toDay,
+                                         Integer pageNum, Integer pageSize) {
+        Map<String, Student> buffered = bufferedSnapshot();
+        return overlay(delegate.listByRange(minScore, maxScore, fromDay, toDay, pageNum, pageSize), buffered);
+    }
+
+    @Override
+    public PageInfo<Student> searchByTerms(List<Set<String>> termGroups, int minScore, int maxScore,
+                                           Integer pageNum, Integer pageSize) {
+        Map<String, Student> buffered = bufferedSnapshot();
+        return overlay(delegate.searchByTerms(termGroups, minScore, maxScore, pageNum, pageSize), buffered);
+    }
+
+    /**
+     * 获取已写入的学生平均分的统计信息，不包含缓冲中的更新
+     *
+     * @param percentiles 需要计算的百分比，取值(0, 100]
+     * @return 平均分统计信息
+     */
+    @Override
+    public ScoreStats getScoreStats(double[] percentiles) {
+        return delegate.getScoreStats(percentiles);
+    }
+
+    @Override
+    public long reindex() {
+        flush();
+        return delegate.reindex();
+    }
+
+    @Override
+    public boolean hasDeferredUpdates() {
+        return hasBuffered();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> writeBehind = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            writeBehind.put("pending", pending.size());
+            writeBehind.put("inFlight", inFlight.size());
+        } finally {
+            lock.unlock();
+        }
+        writeBehind.put("maxPending", maxPending);
+        writeBehind.put("buffered", buffered.get());
+        writeBehind.put("coalesced", coalesced.get());
+        writeBehind.put("rejected", rejected.get());
+        writeBehind.put("flushedBatches", flushedBatches.get());
+        writeBehind.put("flushedRecords", flushedRecords.get());
+        writeBehind.put("dropped", dropped.get());
+        writeBehind.put("failedFlushes", failedFlushes.get());
+        Map<String, Object> stats = new LinkedHashMap<>(delegate.getStats());
+        stats.put("writeBehind", writeBehind);
+        return stats;
+    }
+
+    /**
+     * 停止后台写入线程，写入所有剩余的更新后关闭被包装的存储引擎
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        lock.lock();
+        try {
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.NANOSECONDS.toMillis(flushNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("关闭时写入缓冲中的更新失败，丢弃{}条更新", pendingCount(), e);
+        }
+        delegate.shutdown();
+    }
+
+    /**
+     * 将缓冲中的所有更新分批写入被包装的存储引擎，并等待正在写入的批次完成。
+     * 写入失败时将该批更新放回缓冲(已有更新的学生保留较新的更新)并抛出异常
+     */
+    public void flush() {
+        if (!hasBuffered()) {
+            return;
+        }
+        commitLock.lock();
+        try {
+            while (true) {
+                Map<String, Student> batch = new LinkedHashMap<>();
+                lock.lock();
+                try {
+                    Iterator<Map.Entry<String, Student>> iterator = pending.entrySet().iterator();
+                    while (iterator.hasNext() && batch.size() < batchSize) {
+                        Map.Entry<String, Student> entry = iterator.next();
+                        batch.put(entry.getKey(), entry.getValue());
+                        iterator.remove();
+                    }
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                    inFlight = batch;
+                    firstPendingNanos = System.nanoTime();
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                commit(batch);
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * 写入一批更新，调用方需持有commitLock
+     *
+     * @param batch 学号到最新更新的映射
+     */
+    private void commit(Map<String, Student> batch) {
+        List<String> errors;
+        try {
+            errors = delegate.writeAll(new ArrayList<>(batch.values()), WriteMode.UPDATE, false);
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            lock.lock();
+            try {
+                // 写入期间同一学生又有新的更新时保留新的更新
+                for (Map.Entry<String, Student> entry : batch.entrySet()) {
+                    pending.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+                inFlight = Collections.emptyMap();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        lock.lock();
+        try {
+            inFlight = Collections.emptyMap();
+        } finally {
+            lock.unlock();
+        }
+        flushedBatches.incrementAndGet();
+        flushedRecords.addAndGet(batch.size());
+        Iterator<Student> students = batch.values().iterator();
+        for (int i = 0; i < errors.size(); i++) {
+            Student student = students.next();
+            if (errors.get(i) != null) {
+                // 学生在更新加入缓冲后被其他节点删除等情况，该更新不再写入
+                dropped.incrementAndGet();
+                log.info("写后缓冲中的更新未写入: {}", errors.get(i));
+            } else {
+                publishUpdate(student);
+            }
+        }
+    }
+
+    /**
+     * 更新写入成功后追加UPDATE变更事件，批量写入不返回每个学生的版本号，事件不带版本号
+     *
+     * @param student 写入的学生信息
+     */
+    private void publishUpdate(Student student) {
+        if (changeFeed != null) {
+            changeFeed.appendQuietly(new ChangeEvent(ChangeEvent.UPDATE, student.getId(), student));
+        }
+    }
+
+    /**
+     * 后台写入线程的主循环，缓冲达到批量大小或最早的更新等待超过刷新间隔时写入，写入失败后等待一个刷新间隔再重试
+     */
+    private void flushLoop() {
+        while (running) {
+            lock.lock();
+            try {
+                while (running && pending.size() < batchSize) {
+                    long waitNanos = pending.isEmpty() ? flushNanos : firstPendingNanos + flushNanos - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        break;
+                    }
+                    flushNeeded.awaitNanos(waitNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("写后缓冲批量写入失败，稍后重试: {}", e.getMessage());
+                try {
+                    TimeUnit.NANOSECONDS.sleep(flushNanos);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 丢弃指定学生缓冲中的更新，调用方需持有commitLock，此时没有正在写入的批次
+     *
+     * @param studentIds 学生ID列表
+     */
+    private void discard(List<String> studentIds) {
+        lock.lock();
+        try {
+            for (String studentId : studentIds) {
+                pending.remove(studentId);
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 判断学生是否有尚未完成写入的更新
+     *
+     * @param studentId 学生ID
+     * @return 缓冲或正在写入的批次中有该学生时返回true
+     */
+    private boolean isBuffered(String studentId) {
+        lock.lock();
+        try {
+            return pending.containsKey(studentId) || inFlight.containsKey(studentId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 复制缓冲和正在写入的批次中的更新，在读取被包装的引擎之前调用，
+     * 读取期间写入完成的更新仍会替换读到的记录
+     *
+     * @return 学号到最新更新的映射，没有尚未写入的更新时为空Map
+     */
+    private Map<String, Student> bufferedSnapshot() {
+        lock.lock();
+        try {
+            if (pending.isEmpty() && inFlight.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<String, Student> snapshot = new HashMap<>(inFlight);
+            snapshot.putAll(pending);
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 用尚未写入的更新替换分页中的学生记录。分页信息可能是被包装引擎缓存的快照，有记录被替换时返回副本
+     *
+     * @param page     被包装引擎返回的分页信息
+     * @param buffered 尚未写入的更新
+     * @return 替换后的分页信息
+     */
+    private static PageInfo<Student> overlay(PageInfo<Student> page, Map<String, Student> buffered) {
+        List<Student> records = overlay(page.getRecords(), buffered);
+        if (records == page.getRecords()) {
+            return page;
+        }
+        PageInfo<Student> copy = new PageInfo<>(page.getPageNum(), page.getPageSize(), page.getTotalCount());
+        copy.setUrl(page.getUrl());
+        copy.setRecords(records);
+        copy.setStale(page.getStale());
+        return copy;
+    }
+
+    /**
+     * 用尚未写入的更新替换学生记录，记录的位置不变
+     *
+     * @param records  被包装引擎返回的学生记录
+     * @param buffered 尚未写入的更新
+     * @return 没有记录被替换时为records本身，否则为新的列表
+     */
+    private static List<Student> overlay(List<Student> records, Map<String, Student> buffered) {
+        if (records == null || buffered.isEmpty()) {
+            return records;
+        }
+        List<Student> result = null;
+        for (int i = 0; i < records.size(); i++) {
+            Student student = records.get(i);
+            Student update = student == null || student.getId() == null ? null : buffered.get(student.getId());
+            if (update != null) {
+                if (result == null) {
+                    result = new ArrayList<>(records);
+                }
+                result.set(i, copyOf(update));
+            }
+        }
+        return result == null ? records : result;
+    }
+
+    /**
+     * 判断是否有尚未完成写入的更新
+     *
+     * @return 缓冲或正在写入的批次不为空时返回true
+     */
+    private boolean hasBuffered() {
+        lock.lock();
+        try {
+            return !pending.isEmpty() || !inFlight.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取缓冲中的更新数
+     *
+     * @return 更新数
+     */
+    private int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 复制学生信息，缓冲中保存的更新不受调用方后续修改的影响
+     *
+     * @param student 学生信息
+     * @return 副本
+     */
+    private static Student copyOf(Student student) {
+        Student copy = new Student();
+        copy.setId(student.getId());
+        copy.setName(student.getName());
+        copy.setBirthday(student.getBirthday());
+        copy.setDescription(student.getDescription());
+        copy.setAvgScore(student.getAvgScore());
+        return copy;
+    }
+}
@@ -0,0 +1,765 @@
+package org.psd.util;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步请求处理工具类，将阻塞的业务调用从容器线程转移到有界线程池中执行，
+ * 容器线程在开启异步处理后立即返回，可以继续接收其他请求。
+ * 线程池已满时响应503，处理超时时响应503并中断处理线程，处理出错时响应500。
+ * 同一时刻只有一个线程能写入响应，异步处理结束后处理线程对响应的写入会被丢弃。
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class AsyncUtils {
+    /**
+     * 异步请求的超时时间(毫秒)
+     */
+    private static final long TIMEOUT_MILLIS = ConfigUtils.getLong("async.timeoutMillis", 10000L);
+    /**
+     * 执行业务调用的有界线程池
+     */
+    private static final ThreadPoolExecutor EXECUTOR;
+    /**
+     * 线程池已满而拒绝的请求数
+     */
+    private static final AtomicLong REJECTIONS = new AtomicLong();
+    /**
+     * 处理超时的请求数
+     */
+    private static final AtomicLong TIMEOUTS = new AtomicLong();
+    /**
+     * 处理出错的请求数
+     */
+    private static final AtomicLong ERRORS = new AtomicLong();
+    /**
+     * 因Redis不可用(熔断器断开或连接异常)被拒绝的请求数
+     */
+    private static final AtomicLong UNAVAILABLE = new AtomicLong();
+    /**
+     * 保存异步处理状态的请求属性名
+     */
+    private static final String TASK_ATTRIBUTE = AsyncUtils.class.getName() + ".task";
+
+    /**
+     * 私有构造函数，防止外部实例化该工具类。
+     */
+    private AsyncUtils() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /*
+     * 静态初始化块，根据配置创建线程池。
+     */
+    static {
+        int threads = ConfigUtils.getInt("async.threads", 64);
+        AtomicInteger threadNumber = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ConfigUtils.getInt("async.queueCapacity", 1000)), runnable -> {
+            Thread thread = new Thread(runnable, "async-request-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        // 空闲的线程超时后回收
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 开启异步处理，并将请求交给线程池执行，调用后容器线程立即返回。
+     * 调用方的Servlet及其经过的过滤器必须声明asyncSupported = true。
+     * 超时或出错时由容器线程响应并结束异步处理，处理线程可能仍阻塞在Redis的网络读写上，
+     * 之后经由包装后的响应对象进行的写入都会被丢弃，不会写到已结束或已被容器回收的响应上
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @param handler  请求处理逻辑，在线程池中执行
+     */
+    public static void dispatch(HttpServletRequest request, HttpServletResponse response, Handler handler) {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(TIMEOUT_MILLIS);
+        AsyncTask task = new AsyncTask(asyncContext);
+        request.setAttribute(TASK_ATTRIBUTE, task);
+        HttpServletResponse guarded = new GuardedResponse(response, task);
+        // 先注册监听器再提交任务，避免任务在注册前已结束异步处理
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                task.abort(() -> {
+                    TIMEOUTS.incrementAndGet();
+                    sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "请求处理超时");
+                });
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                task.abort(() -> {
+                });
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                // 无需处理
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // 无需处理
+            }
+        });
+        try {
+            task.setFuture(EXECUTOR.submit(() -> {
+                try {
+                    // 排队期间已超时的请求不再处理
+                    if (task.start()) {
+                        handle(request, guarded, handler, task);
+                    }
+                } finally {
+                    task.exit();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            REJECTIONS.incrementAndGet();
+            task.finish(() -> sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "服务器繁忙，请稍后重试"));
+            task.exit();
+        }
+    }
+
+    /**
+     * 在处理线程中执行请求处理逻辑，处理结束后由处理线程结束异步处理
+     *
+     * @param request  HTTP请求对象
+     * @param response 包装后的HTTP响应对象
+     * @param handler  请求处理逻辑
+     * @param task     异步处理状态
+     */
+    private static void handle(HttpServletRequest request, HttpServletResponse response, Handler handler, AsyncTask task) {
+        try {
+            handler.handle(request, response);
+        } catch (JedisConnectionException e) {
+            UNAVAILABLE.incrementAndGet();
+            log.warn("Redis不可用，拒绝请求: {} {}", request.getMethod(), request.getRequestURI());
+            if (!response.isCommitted()) {
+                response.setHeader("Retry-After", String.valueOf(JedisUtils.getRetryAfterSeconds()));
+                sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Redis暂不可用，请稍后重试");
+            }
+        } catch (Exception e) {
+            // 超时后写入被丢弃或线程被中断引起的异常无需记录
+            if (task.isFinished()) {
+                log.debug("异步请求超时后结束处理: {} {}", request.getMethod(), request.getRequestURI());
+                return;
+            }
+            ERRORS.incrementAndGet();
+            log.warn("异步请求处理失败: {} {}", request.getMethod(), request.getRequestURI(), e);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "服务器内部错误");
+        } finally {
+            task.finish(() -> {
+            });
+        }
+    }
+
+    /**
+     * 在请求的处理线程退出后执行回调，用于在处理线程真正结束后再归还为请求占用的资源(如舱壁许可)。
+     * 请求不是由{@link #dispatch(HttpServletRequest, HttpServletResponse, Handler)}处理的，或处理线程已退出时立即执行。
+     * 应在请求对象仍然有效时调用，例如在AsyncListener的回调中
+     *
+     * @param request  HTTP请求对象
+     * @param callback 回调
+     */
+    public static void whenHandled(ServletRequest request, Runnable callback) {
+        Object task = request.getAttribute(TASK_ATTRIBUTE);
+        if (task instanceof AsyncTask) {
+            ((AsyncTask) task).whenExited(callback);
+        } else {
+            callback.run();
+        }
+    }
+
+    /**
+     * 获取线程池的运行统计信息
+     *
+     * @return 包含线程数、排队数、完成数、拒绝数、超时数、出错数和因Redis不可用被拒绝数的Map
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", EXECUTOR.getActiveCount());
+        stats.put("poolSize", EXECUTOR.getPoolSize());
+        stats.put("maxPoolSize", EXECUTOR.getMaximumPoolSize());
+        stats.put("queued", EXECUTOR.getQueue().size());
+        stats.put("completed", EXECUTOR.getCompletedTaskCount());
+        stats.put("rejections", REJECTIONS.get());
+        stats.put("timeouts", TIMEOUTS.get());
+        stats.put("errors", ERRORS.get());
+        stats.put("unavailable", UNAVAILABLE.get());
+        return stats;
+    }
+
+    /**
+     * 关闭线程池，等待正在处理的请求结束，应用关闭时调用
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+        try {
+            if (!EXECUTOR.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                EXECUTOR.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            EXECUTOR.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 响应错误，响应已提交时无法再修改状态码，只记录日志
+     *
+     * @param response HTTP响应对象
+     * @param status   状态码
+     * @param message  错误消息
+     */
+    private static void sendError(HttpServletResponse response, int status, String message) {
+        if (response.isCommitted()) {
+            log.warn("响应已提交，无法响应{}: {}", status, message);
+            return;
+        }
+        try {
+            response.sendError(status, message);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("响应{}失败: {}", status, e.getMessage());
+        }
+    }
+
+    /**
+     * 一次异步处理的状态。处理线程和超时回调中先结束异步处理的一方负责响应，
+     * 包装后的响应对象在该对象的监视器内检查是否已结束并写入，结束异步处理也在监视器内进行，
+     * 因此结束之后不会再有写入到达原始响应；超时回调最多等待正在进行的一次写入结束
+     */
+    private static final class AsyncTask {
+        /**
+         * 异步处理上下文
+         */
+        private final AsyncContext asyncContext;
+        /**
+         * 处理线程退出后执行的回调
+         */
+        private final List<Runnable> exitCallbacks = new ArrayList<>();
+        /**
+         * 提交到线程池的处理任务，尚未提交时为null
+         */
+        private Future<?> future;
+        /**
+         * 是否已结束异步处理
+         */
+        private boolean finished;
+        /**
+         * 处理线程是否已开始执行
+         */
+        private boolean started;
+        /**
+         * 处理线程是否已退出，或处理任务已确定不会执行
+         */
+        private boolean exited;
+
+        /**
+         * 构造方法
+         *
+         * @param asyncContext 异步处理上下文
+         */
+        AsyncTask(AsyncContext asyncContext) {
+            this.asyncContext = asyncContext;
+        }
+
+        /**
+         * 记录提交到线程池的处理任务
+         *
+         * @param future 处理任务
+         */
+        synchronized void setFuture(Future<?> future) {
+            this.future = future;
+        }
+
+        /**
+         * 是否已结束异步处理
+         *
+         * @return 已结束时返回true
+         */
+        synchronized boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * 处理线程开始执行时调用
+         *
+         * @return 异步处理尚未结束时返回true，否则处理线程不应再处理请求
+         */
+        synchronized boolean start() {
+            started = true;
+            return !finished;
+        }
+
+        /**
+         * 响应并结束异步处理，已结束时什么也不做
+         *
+         * @param respond 结束前在监视器内执行的响应操作
+         * @return 本次调用结束了异步处理时返回true
+         */
+        synchronized boolean finish(Runnable respond) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            respond.run();
+            asyncContext.complete();
+            return true;
+        }
+
+        /**
+         * 由超时或出错回调响应并结束异步处理，并中断仍在执行的处理线程；
+         * 仍在排队的处理任务被取消后不会再执行，此时视为处理线程已退出
+         *
+         * @param respond 结束前在监视器内执行的响应操作
+         */
+        void abort(Runnable respond) {
+            synchronized (this) {
+                if (!finish(respond)) {
+                    return;
+                }
+                if (future != null) {
+                    future.cancel(true);
+                }
+                // 处理线程已开始执行或任务尚未提交完毕时，由处理线程退出时执行回调
+                if (started || future == null) {
+                    return;
+                }
+            }
+            exit();
+        }
+
+        /**
+         * 处理线程退出时调用，执行等待中的回调，重复调用时只执行一次
+         */
+        void exit() {
+            List<Runnable> callbacks;
+            synchronized (this) {
+                if (exited) {
+                    return;
+                }
+                exited = true;
+                callbacks = new ArrayList<>(exitCallbacks);
+                exitCallbacks.clear();
+            }
+            callbacks.forEach(Runnable::run);
+        }
+
+        /**
+         * 在处理线程退出后执行回调，已退出时立即执行
+         *
+         * @param callback 回调
+         */
+        void whenExited(Runnable callback) {
+            synchronized (this) {
+                if (!exited) {
+                    exitCallbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+    }
+
+    /**
+     * 交给处理线程的响应包装，异步处理结束后丢弃对状态码、响应头和响应体的修改，
+     * 写入响应体时抛出IOException使处理逻辑尽早停止
+     */
+    private static final class GuardedResponse extends HttpServletResponseWrapper {
+        /**
+         * 异步处理状态
+         */
+        private final AsyncTask task;
+        /**
+         * 包装后的输出流，首次获取时创建
+         */
+        private ServletOutputStream outputStream;
+        /**
+         * 包装后的字符输出流，首次获取时创建
+         */
+        private PrintWriter writer;
+
+        /**
+         * 构造方法
+         *
+         * @param response 原始响应
+         * @param task     异步处理状态
+         */
+        GuardedResponse(HttpServletResponse response, AsyncTask task) {
+            super(response);
+            this.task = task;
+        }
+
+        /**
+         * 异步处理尚未结束时在监视器内执行修改响应的操作，已结束时丢弃
+         *
+         * @param action 修改响应的操作
+         * @throws IOException 如果操作抛出IO异常
+         */
+        private void guard(IoAction action) throws IOException {
+            synchronized (task) {
+                if (!task.finished) {
+                    action.run();
+                }
+            }
+        }
+
+        /**
+         * 异步处理已结束时抛出异常，此时原始响应可能已被容器回收，不能再获取其输出流，调用方需持有task的监视器
+         *
+         * @throws IOException 如果异步处理已结束
+         */
+        private void ensureActive() throws IOException {
+            if (task.finished) {
+                throw new IOException("异步处理已结束，丢弃响应写入");
+            }
+        }
+
+        /**
+         * 与{@link #guard(IoAction)}相同，用于不抛出IO异常的操作
+         *
+         * @param action 修改响应的操作
+         */
+        private void guardQuietly(Runnable action) {
+            synchronized (task) {
+                if (!task.finished) {
+                    action.run();
+                }
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            synchronized (task) {
+                if (outputStream == null) {
+                    ensureActive();
+                    outputStream = new GuardedOutputStream(super.getOutputStream(), task);
+                }
+                return outputStream;
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            synchronized (task) {
+                if (writer == null) {
+                    ensureActive();
+                    writer = new GuardedWriter(super.getWriter(), task);
+                }
+                return writer;
+            }
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            guard(() -> super.sendError(sc, msg));
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            guard(() -> super.sendError(sc));
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            guard(() -> super.sendRedirect(location));
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            guard(super::flushBuffer);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            guardQuietly(() -> super.setStatus(sc));
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setStatus(int sc, String sm) {
+            guardQuietly(() -> super.setStatus(sc, sm));
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            guardQuietly(() -> super.setHeader(name, value));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            guardQuietly(() -> super.addHeader(name, value));
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            guardQuietly(() -> super.setIntHeader(name, value));
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            guardQuietly(() -> super.addIntHeader(name, value));
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            guardQuietly(() -> super.setDateHeader(name, date));
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            guardQuietly(() -> super.addDateHeader(name, date));
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            guardQuietly(() -> super.addCookie(cookie));
+        }
+
+        @Override
+        public void setContentType(String type) {
+            guardQuietly(() -> super.setContentType(type));
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            guardQuietly(() -> super.setCharacterEncoding(charset));
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            guardQuietly(() -> super.setContentLength(len));
+        }
+
+        @Override
+        public void setLocale(Locale loc) {
+            guardQuietly(() -> super.setLocale(loc));
+        }
+
+        @Override
+        public void setBufferSize(int size) {
+            guardQuietly(() -> super.setBufferSize(size));
+        }
+
+        @Override
+        public void reset() {
+            guardQuietly(super::reset);
+        }
+
+        @Override
+        public void resetBuffer() {
+            guardQuietly(super::resetBuffer);
+        }
+    }
+
+    /**
+     * 包装后的输出流，异步处理结束后写入时抛出IOException
+     */
+    private static final class GuardedOutputStream extends ServletOutputStream {
+        /**
+         * 原始输出流
+         */
+        private final ServletOutputStream out;
+        /**
+         * 异步处理状态
+         */
+        private final AsyncTask task;
+
+        /**
+         * 构造方法
+         *
+         * @param out  原始输出流
+         * @param task 异步处理状态
+         */
+        GuardedOutputStream(ServletOutputStream out, AsyncTask task) {
+            this.out = out;
+            this.task = task;
+        }
+
+        /**
+         * 异步处理已结束时抛出异常，调用方需持有task的监视器
+         *
+         * @throws IOException 如果异步处理已结束
+         */
+        private void ensureActive() throws IOException {
+            if (task.finished) {
+                throw new IOException("异步处理已结束，丢弃响应写入");
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (task) {
+                ensureActive();
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (task) {
+                ensureActive();
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (task) {
+                ensureActive();
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (task) {
+                if (!task.finished) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 包装后的字符输出流，异步处理结束后丢弃写入并标记错误，与PrintWriter吞掉IO异常的行为一致
+     */
+    private static final class GuardedWriter extends PrintWriter {
+        /**
+         * 异步处理状态
+         */
+        private final AsyncTask task;
+
+        /**
+         * 构造方法
+         *
+         * @param out  原始字符输出流
+         * @param task 异步处理状态
+         */
+        GuardedWriter(PrintWriter out, AsyncTask task) {
+            super(out);
+            this.task = task;
+        }
+
+        @Override
+        public void write(int c) {
+            synchronized (task) {
+                if (task.finished) {
+                    setError();
+                    return;
+                }
+                super.write(c);
+            }
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            synchronized (task) {
+                if (task.finished) {
+                    setError();
+                    return;
+                }
+                super.write(buf, off, len);
+            }
+        }
+
+        @Override
+        public void write(String s, int off, int len) {
+            synchronized (task) {
+                if (task.finished) {
+                    setError();
+                    return;
+                }
+                super.write(s, off, len);
+            }
+        }
+
+        @Override
+        public void println() {
+            synchronized (task) {
+                if (task.finished) {
+                    setError();
+                    return;
+                }
+                super.println();
+            }
+        }
+
+        @Override
+        public void flush() {
+            synchronized (task) {
+                if (!task.finished) {
+                    super.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (task) {
+                if (!task.finished) {
+                    super.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 可能抛出IO异常的响应操作
+     */
+    @FunctionalInterface
+    private interface IoAction {
+        /**
+         * 执行操作
+         *
+         * @throws IOException 如果发生输入输出异常
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * 在线程池中执行的请求处理逻辑
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * 处理请求
+         *
+         * @param request  HTTP请求对象
+         * @param response HTTP响应对象
+         * @throws IOException      如果发生输入输出异常
+         * @throws ServletException 如果发生Servlet异常
+         */
+        void handle(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException;
+    }
+}
@@ -0,0 +1,105 @@
+package org.psd.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * 配置工具类，加载classpath下的Redis配置文件和应用配置文件，并提供按类型读取配置项的功能。
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class ConfigUtils {
+    /**
+     * 依次加载的配置文件，后加载的文件可以覆盖先加载文件中的同名配置项。
+     */
+    private static final String[] CONFIG_FILES = {"redis-config.properties", "app-config.properties"};
+    /**
+     * 存放配置内容的Properties对象。
+     */
+    private static final Properties PROPERTIES;
+
+    /**
+     * 私有构造函数，防止外部实例化该工具类。
+     */
+    private ConfigUtils() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /*
+     * 静态初始化块，加载配置文件。
+     */
+    static {
+        PROPERTIES = new Properties();
+        String path = Objects.requireNonNull(Thread.currentThread().getContextClassLoader().getResource("")).getPath();
+        for (String file : CONFIG_FILES) {
+            try (InputStream in = new FileInputStream(path + file)) {
+                PROPERTIES.load(in);
+            } catch (IOException e) {
+                log.warn("加载配置文件{}失败: {}", file, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 读取字符串配置项。
+     *
+     * @param key          配置键
+     * @param defaultValue 默认值
+     * @return 配置值，未配置时返回默认值
+     */
+    public static String getString(String key, String defaultValue) {
+        return PROPERTIES.getProperty(key, defaultValue);
+    }
+
+    /**
+     * 读取整型配置项。
+     *
+     * @param key          配置键
+     * @param defaultValue 默认值
+     * @return 配置值，未配置或格式错误时返回默认值
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = PROPERTIES.getProperty(key);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("配置项{}格式错误: {}", key, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取长整型配置项。
+     *
+     * @param key          配置键
+     * @param defaultValue 默认值
+     * @return 配置值，未配置或格式错误时返回默认值
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = PROPERTIES.getProperty(key);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("配置项{}格式错误: {}", key, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取布尔型配置项。
+     *
+     * @param key          配置键
+     * @param defaultValue 默认值
+     * @return 配置值，未配置时返回默认值
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = PROPERTIES.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,105 @@
+package org.psd.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式CSV读取器，按RFC 4180逐条读取记录，支持双引号包裹的字段、
+ * 字段内的逗号、换行以及以两个双引号转义的双引号。
+ *
+ * @author pengshidun
+ */
+public class CsvReader {
+    /**
+     * 字符输入流
+     */
+    private final Reader reader;
+    /**
+     * 预读的一个字符，-2表示没有预读
+     */
+    private int peeked = -2;
+
+    /**
+     * 构造方法
+     *
+     * @param reader 字符输入流，调用方应传入带缓冲的Reader
+     */
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 读取下一条记录，跳过空行
+     *
+     * @return 记录的字段列表，已读到流末尾时返回null
+     * @throws IOException 如果读取失败
+     */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        // 跳过空行
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("CSV字段的双引号未闭合");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        // 两个双引号转义为一个双引号
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                // 记录结束，\r\n作为一个换行处理
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        peeked = next;
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * 读取一个字符，优先返回预读的字符
+     *
+     * @return 字符，流末尾时返回-1
+     * @throws IOException 如果读取失败
+     */
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+}
@@ -0,0 +1,72 @@
+package org.psd.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 流式CSV写入器，按RFC 4180转义字段：字段包含逗号、双引号或换行时用双引号包裹，
+ * 字段内的双引号以两个双引号表示，记录之间以\r\n分隔。
+ *
+ * @author pengshidun
+ */
+public class CsvWriter {
+    /**
+     * 字符输出流
+     */
+    private final Writer writer;
+
+    /**
+     * 构造方法
+     *
+     * @param writer 字符输出流，调用方应传入带缓冲的Writer
+     */
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param fields 记录的字段，null按空字符串写入
+     * @throws IOException 如果写入失败
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(fields[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * 写入一个字段，必要时加双引号转义
+     *
+     * @param field 字段值
+     * @throws IOException 如果写入失败
+     */
+    private void writeField(String field) throws IOException {
+        if (field == null || field.isEmpty()) {
+            return;
+        }
+        boolean needQuote = false;
+        for (int i = 0; i < field.length() && !needQuote; i++) {
+            char c = field.charAt(i);
+            needQuote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!needQuote) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
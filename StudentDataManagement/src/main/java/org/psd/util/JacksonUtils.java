@@ -1,11 +1,18 @@
 package org.psd.util;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -78,4 +85,40 @@ public class JacksonUtils {
             return null;
         }
     }
+
+    /**
+     * 流式读取JSON数组，逐个解析元素，读到第limit+1个元素时即停止，
+     * 不会为超出上限的请求体解析剩余部分，调用方据返回列表的长度是否超过limit判断是否超出上限
+     *
+     * @param reader      JSON输入
+     * @param elementType 数组元素的类型
+     * @param limit       元素数上限
+     * @param <T>         数组元素的类型
+     * @return 最多limit+1个元素的列表，输入为空或为JSON null时返回null
+     * @throws JsonProcessingException 如果JSON格式错误或不是数组
+     * @throws IOException             如果读取输入失败
+     */
+    public static <T> List<T> readArray(Reader reader, Class<T> elementType, int limit) throws IOException {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(reader)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "请求体必须为JSON数组");
+            }
+            ObjectReader elementReader = OBJECT_MAPPER.readerFor(elementType);
+            List<T> elements = new ArrayList<>();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "JSON数组不完整");
+                }
+                elements.add(elementReader.readValue(parser));
+                if (elements.size() > limit) {
+                    break;
+                }
+            }
+            return elements;
+        }
+    }
 }
@@ -1,27 +1,55 @@
 package org.psd.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.psd.common.CircuitBreaker;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
 import redis.clients.jedis.exceptions.JedisConnectionException;
-import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Objects;
-import java.util.Properties;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Jedis连接工具类，提供Redis连接的获取和关闭功能。
+ * Jedis连接工具类，基于commons-pool2连接池提供Redis连接的借用、归还和统计功能。
+ * 所有连接的借用都经过熔断器，Redis连续不可用时快速失败，不再等待连接超时。
+ * 配置了redis.cluster.nodes时连接Redis集群，按槽从负责该槽的节点的连接池借用连接，
+ * 同一个槽内的key仍可在一个连接上通过Lua脚本、管道和事务一次往返访问。
  *
  * @author pengshidun
  */
 @Slf4j
 public class JedisUtils {
     /**
-     * 存放Redis配置内容的Properties对象。
+     * Redis集群的种子节点，格式为逗号分隔的host:port，为空时连接单机Redis。
      */
-    private static final Properties PROPERTIES;
+    private static final String CLUSTER_NODES = ConfigUtils.getString("redis.cluster.nodes", "").trim();
+    /**
+     * Redis连接池，集群模式下不使用。
+     */
+    private static final JedisPool POOL;
+    /**
+     * Redis集群客户端，集群模式下首次借用连接时创建，创建失败时下次借用连接时重试。
+     */
+    private static volatile SlotRoutingCluster cluster;
+    /**
+     * 从连接池借用连接失败的次数。
+     */
+    private static final AtomicLong BORROW_FAILURES = new AtomicLong();
+    /**
+     * Redis访问熔断器，借用连接失败或连接在使用中断开时记为失败，连接正常归还时记为成功。
+     */
+    private static final CircuitBreaker BREAKER = new CircuitBreaker(
+            ConfigUtils.getInt("redis.breaker.failureThreshold", 5),
+            ConfigUtils.getLong("redis.breaker.openMillis", 5000L));
 
     /**
      * 私有构造函数，防止外部实例化该工具类。
@@ -31,42 +59,317 @@ public class JedisUtils {
     }
 
     /*
-     * 静态初始化块，加载Redis配置文件。
+     * 静态初始化块，根据Redis配置创建连接池。
      */
     static {
-        PROPERTIES = new Properties();
-        String path = Objects.requireNonNull(Thread.currentThread().getContextClassLoader().getResource("")).getPath();
-        try (InputStream in = new FileInputStream(path + "redis-config.properties")) {
-            PROPERTIES.load(in);
-        } catch (IOException e) {
-            log.warn("加载Redis配置文件失败: {}", e.getMessage(), e);
+        POOL = createPool();
+    }
+
+    /**
+     * 根据配置文件创建Jedis连接池，未配置的项使用默认值。
+     *
+     * @return Jedis连接池
+     */
+    private static JedisPool createPool() {
+        if (isCluster()) {
+            return null;
+        }
+        String host = ConfigUtils.getString("redis.host", Protocol.DEFAULT_HOST);
+        int port = ConfigUtils.getInt("redis.port", Protocol.DEFAULT_PORT);
+        int database = ConfigUtils.getInt("redis.database", Protocol.DEFAULT_DATABASE);
+        return new JedisPool(createPoolConfig(), host, port, getTimeout(), getPassword(), database) {
+            @Override
+            protected void returnResource(Jedis resource) {
+                BREAKER.recordSuccess();
+                super.returnResource(resource);
+            }
+
+            @Override
+            protected void returnBrokenResource(Jedis resource) {
+                // Jedis在执行命令时发生连接异常会将连接标记为已损坏
+                BREAKER.recordFailure();
+                super.returnBrokenResource(resource);
+            }
+        };
+    }
+
+    /**
+     * 根据配置文件创建连接池配置，集群模式下每个节点的连接池使用相同的配置。
+     *
+     * @return 连接池配置
+     */
+    private static JedisPoolConfig createPoolConfig() {
+        JedisPoolConfig config = new JedisPoolConfig();
+        // 连接池容量
+        config.setMaxTotal(ConfigUtils.getInt("redis.pool.maxTotal", 32));
+        config.setMaxIdle(ConfigUtils.getInt("redis.pool.maxIdle", 16));
+        config.setMinIdle(ConfigUtils.getInt("redis.pool.minIdle", 4));
+        // 连接池耗尽时借用连接的最长等待时间
+        config.setMaxWaitMillis(ConfigUtils.getLong("redis.pool.maxWaitMillis", 2000L));
+        // 连接有效性检查
+        config.setTestOnBorrow(ConfigUtils.getBoolean("redis.pool.testOnBorrow", false));
+        config.setTestWhileIdle(ConfigUtils.getBoolean("redis.pool.testWhileIdle", true));
+        // 空闲连接驱逐策略
+        config.setTimeBetweenEvictionRunsMillis(ConfigUtils.getLong("redis.pool.timeBetweenEvictionRunsMillis", 30000L));
+        config.setMinEvictableIdleTimeMillis(ConfigUtils.getLong("redis.pool.minEvictableIdleTimeMillis", 60000L));
+        config.setNumTestsPerEvictionRun(ConfigUtils.getInt("redis.pool.numTestsPerEvictionRun", -1));
+        // 开启JMX会与多个应用实例的默认名称冲突，这里统一关闭
+        config.setJmxEnabled(false);
+        return config;
+    }
+
+    /**
+     * 获取连接和读写超时时间
+     *
+     * @return 超时时间(毫秒)
+     */
+    private static int getTimeout() {
+        return ConfigUtils.getInt("redis.timeout", Protocol.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 获取Redis密码
+     *
+     * @return 密码，未配置时为null
+     */
+    private static String getPassword() {
+        String password = ConfigUtils.getString("redis.password", null);
+        return password == null || password.isEmpty() ? null : password;
+    }
+
+    /**
+     * 获取Redis集群客户端，尚未创建时连接种子节点读取槽的分配，集群只有0号数据库，忽略redis.database
+     *
+     * @return Redis集群客户端
+     * @throws JedisConnectionException 如果所有种子节点都无法连接
+     */
+    private static SlotRoutingCluster getCluster() {
+        SlotRoutingCluster current = cluster;
+        if (current == null) {
+            synchronized (JedisUtils.class) {
+                if (cluster == null) {
+                    Set<HostAndPort> nodes = new LinkedHashSet<>();
+                    for (String node : CLUSTER_NODES.split(",")) {
+                        if (!node.trim().isEmpty()) {
+                            nodes.add(HostAndPort.parseString(node.trim()));
+                        }
+                    }
+                    cluster = new SlotRoutingCluster(nodes, getTimeout(),
+                            ConfigUtils.getInt("redis.cluster.maxAttempts", 5), getPassword(), createPoolConfig());
+                }
+                current = cluster;
+            }
         }
+        return current;
     }
 
     /**
-     * 获取配置的Jedis对象。
+     * 是否连接Redis集群
+     *
+     * @return 配置了redis.cluster.nodes时返回true
+     */
+    public static boolean isCluster() {
+        return !CLUSTER_NODES.isEmpty();
+    }
+
+    /**
+     * 从连接池借用一个Jedis连接，使用完毕后必须调用{@link Jedis#close()}或{@link #close(Jedis)}归还。
      *
      * @return Jedis操作对象
+     * @throws RedisUnavailableException 如果熔断器已断开或获取连接失败
      */
     public static Jedis getJedis() {
-        String host = PROPERTIES.getProperty("redis.host");
-        int port = Integer.parseInt(PROPERTIES.getProperty("redis.port"));
-        try (Jedis jedis = new Jedis(host, port)) {
+        if (isCluster()) {
+            // 不涉及具体key的访问(如订阅频道)可使用任一节点，取0号槽所在的节点
+            return getJedis(0);
+        }
+        if (!BREAKER.allowRequest()) {
+            throw new RedisUnavailableException("Redis暂不可用，熔断器已断开");
+        }
+        try {
+            return POOL.getResource();
+        } catch (JedisConnectionException e) {
+            // 无法建立连接，视为Redis不可用
+            BORROW_FAILURES.incrementAndGet();
+            BREAKER.recordFailure();
+            log.warn("获取Jedis连接失败: {}", e.getMessage());
+            throw new RedisUnavailableException("获取Jedis连接失败", e);
+        } catch (JedisException e) {
+            // 连接池耗尽，Redis本身可用，不计入熔断器的失败次数
+            BORROW_FAILURES.incrementAndGet();
+            log.warn("获取Jedis连接失败: {}", e.getMessage());
+            throw new RedisUnavailableException("获取Jedis连接失败", e);
+        }
+    }
+
+    /**
+     * 借用负责指定key所在槽的节点的连接，单机模式下等同于{@link #getJedis()}。
+     * 一个连接上访问的所有key必须位于同一个槽，可通过相同的哈希标签{...}保证
+     *
+     * @param key Redis的key
+     * @return Jedis操作对象
+     * @throws RedisUnavailableException 如果熔断器已断开或获取连接失败
+     */
+    public static Jedis getJedis(String key) {
+        return isCluster() ? getJedis(JedisClusterCRC16.getSlot(key)) : getJedis();
+    }
+
+    /**
+     * 借用负责指定槽的节点的连接，单机模式下等同于{@link #getJedis()}。
+     * 集群节点的连接池由Jedis创建，无法感知连接在使用中断开，熔断器只按借用连接的成败计数
+     *
+     * @param slot 槽号，取值[0, 16384)
+     * @return Jedis操作对象
+     * @throws RedisUnavailableException 如果熔断器已断开或获取连接失败
+     */
+    public static Jedis getJedis(int slot) {
+        if (!isCluster()) {
+            return getJedis();
+        }
+        if (!BREAKER.allowRequest()) {
+            throw new RedisUnavailableException("Redis暂不可用，熔断器已断开");
+        }
+        try {
+            Jedis jedis = getCluster().getConnectionFromSlot(slot);
+            BREAKER.recordSuccess();
             return jedis;
-        } catch (JedisConnectionException | JedisDataException e) {
-            log.warn("创建Jedis连接失败: {}", e.getMessage(), e);
-            return null;
+        } catch (JedisConnectionException e) {
+            // 所有节点都无法建立连接，视为Redis不可用
+            BORROW_FAILURES.incrementAndGet();
+            BREAKER.recordFailure();
+            log.warn("获取槽{}的Jedis连接失败: {}", slot, e.getMessage());
+            throw new RedisUnavailableException("获取Jedis连接失败", e);
+        } catch (JedisException e) {
+            // 节点的连接池耗尽，Redis本身可用，不计入熔断器的失败次数
+            BORROW_FAILURES.incrementAndGet();
+            log.warn("获取槽{}的Jedis连接失败: {}", slot, e.getMessage());
+            throw new RedisUnavailableException("获取Jedis连接失败", e);
         }
     }
 
     /**
-     * 关闭Jedis连接。
+     * 重新读取集群槽的分配，收到MOVED重定向(槽已迁移到其他节点或发生了主从切换)后调用，单机模式下不执行任何操作
+     */
+    public static void renewSlotCache() {
+        SlotRoutingCluster current = cluster;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.renewSlotCache();
+        } catch (JedisException e) {
+            log.warn("重新读取集群槽的分配失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 判断熔断器当前是否断开
+     *
+     * @return 熔断器断开时返回true
+     */
+    public static boolean isCircuitOpen() {
+        return BREAKER.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * 获取熔断器断开状态的剩余等待时间，用于设置Retry-After响应头
+     *
+     * @return 剩余等待时间(秒)，至少为1
+     */
+    public static long getRetryAfterSeconds() {
+        return Math.max(1L, (BREAKER.getRetryAfterMillis() + 999L) / 1000L);
+    }
+
+    /**
+     * 归还Jedis连接到连接池。
      *
-     * @param jedis 待关闭的Jedis对象
+     * @param jedis 待归还的Jedis对象
      */
     public static void close(Jedis jedis) {
         if (jedis != null) {
             jedis.close();
         }
     }
+
+    /**
+     * 销毁连接池，释放所有连接，应用关闭时调用。
+     */
+    public static void destroy() {
+        if (POOL != null && !POOL.isClosed()) {
+            POOL.close();
+        }
+        synchronized (JedisUtils.class) {
+            if (cluster != null) {
+                cluster.close();
+                cluster = null;
+            }
+        }
+    }
+
+    /**
+     * 获取连接池的运行统计信息。
+     *
+     * @return 包含活跃连接数、空闲连接数、等待线程数、借用等待时间、借用失败次数和熔断器状态的Map
+     */
+    public static Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (POOL != null) {
+            stats.putAll(getPoolStats(POOL));
+        } else {
+            // 集群模式下分别统计每个节点的连接池
+            Map<String, Object> nodes = new LinkedHashMap<>();
+            SlotRoutingCluster current = cluster;
+            if (current != null) {
+                current.getClusterNodes().forEach((node, pool) -> nodes.put(node, getPoolStats(pool)));
+            }
+            stats.put("clusterNodes", nodes);
+        }
+        stats.put("borrowFailures", BORROW_FAILURES.get());
+        stats.put("circuitBreaker", BREAKER.getStats());
+        return stats;
+    }
+
+    /**
+     * 获取一个连接池的运行统计信息。
+     *
+     * @param pool 连接池
+     * @return 包含活跃连接数、空闲连接数、等待线程数和借用等待时间的Map
+     */
+    private static Map<String, Object> getPoolStats(JedisPool pool) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", pool.getNumActive());
+        stats.put("idle", pool.getNumIdle());
+        stats.put("waiters", pool.getNumWaiters());
+        stats.put("meanBorrowWaitMillis", pool.getMeanBorrowWaitTimeMillis());
+        stats.put("maxBorrowWaitMillis", pool.getMaxBorrowWaitTimeMillis());
+        return stats;
+    }
+
+    /**
+     * 集群客户端。JedisCluster的命令方法每次只执行一条命令，这里通过{@link #getConnectionFromSlot(int)}
+     * 直接借用负责该槽的节点的连接，以便在同一个槽内使用Lua脚本、管道和事务，并在收到MOVED重定向后主动重新读取槽的分配
+     */
+    private static class SlotRoutingCluster extends JedisCluster {
+
+        /**
+         * 构造方法，连接种子节点读取槽的分配并为每个节点创建连接池
+         *
+         * @param nodes       种子节点
+         * @param timeout     连接和读写超时时间(毫秒)
+         * @param maxAttempts JedisCluster自身命令的最大重定向次数
+         * @param password    密码，可为null
+         * @param poolConfig  每个节点的连接池配置
+         */
+        SlotRoutingCluster(Set<HostAndPort> nodes, int timeout, int maxAttempts, String password,
+                           JedisPoolConfig poolConfig) {
+            super(nodes, timeout, timeout, maxAttempts, password, poolConfig);
+        }
+
+        /**
+         * 重新读取槽的分配
+         */
+        void renewSlotCache() {
+            connectionHandler.renewSlotCache();
+        }
+    }
 }
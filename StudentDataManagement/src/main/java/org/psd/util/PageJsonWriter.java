@@ -0,0 +1,140 @@
+package org.psd.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.entity.Student;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 学生分页数据的流式JSON输出工具类，使用JsonGenerator将分页信息逐字段、
+ * 学生记录逐条写入输出流，不在内存中生成完整的JSON字符串。
+ *
+ * @author pengshidun
+ */
+public class PageJsonWriter {
+
+    // 私有构造方法，防止实例化
+    private PageJsonWriter() {
+    }
+
+    /**
+     * 将学生分页数据以UTF-8编码的JSON写入输出流，写入完毕后关闭输出流
+     *
+     * @param out  输出流
+     * @param page 学生分页数据
+     * @throws IOException 如果写入失败
+     */
+    public static void write(OutputStream out, PageInfo<Student> page) throws IOException {
+        try (JsonGenerator generator = JacksonUtils.getInstance().getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            write(generator, page);
+        }
+    }
+
+    /**
+     * 将学生分页数据序列化为UTF-8编码的JSON字节数组，用于缓存分页结果
+     *
+     * @param page 学生分页数据
+     * @return JSON字节数组
+     * @throws IOException 如果序列化失败
+     */
+    public static byte[] toBytes(PageInfo<Student> page) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        write(out, page);
+        return out.toByteArray();
+    }
+
+    /**
+     * 将学生分页数据写入JsonGenerator，字段顺序与PageInfo直接序列化的结果一致
+     *
+     * @param generator JSON生成器
+     * @param page      学生分页数据
+     * @throws IOException 如果写入失败
+     */
+    public static void write(JsonGenerator generator, PageInfo<Student> page) throws IOException {
+        generator.writeStartObject();
+        writeIntegerField(generator, "startIndex", page.getStartIndex());
+        writeIntegerField(generator, "endIndex", page.getEndIndex());
+        writeIntegerField(generator, "pageSize", page.getPageSize());
+        writeIntegerField(generator, "pageNum", page.getPageNum());
+        writeIntegerField(generator, "totalPage", page.getTotalPage());
+        generator.writeFieldName("totalCount");
+        if (page.getTotalCount() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(page.getTotalCount());
+        }
+        writeIntegerField(generator, "prePageNum", page.getPrePageNum());
+        writeIntegerField(generator, "nextPageNum", page.getNextPageNum());
+        generator.writeStringField("url", page.getUrl());
+        // 逐条写入学生记录
+        writeRecords(generator, page.getRecords());
+        // 只有过期快照输出stale字段
+        if (page.getStale() != null) {
+            generator.writeBooleanField("stale", page.getStale());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 将学生游标分页数据以UTF-8编码的JSON写入输出流，写入完毕后关闭输出流
+     *
+     * @param out  输出流
+     * @param page 学生游标分页数据
+     * @throws IOException 如果写入失败
+     */
+    public static void write(OutputStream out, CursorPageInfo<Student> page) throws IOException {
+        try (JsonGenerator generator = JacksonUtils.getInstance().getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            writeIntegerField(generator, "pageSize", page.getPageSize());
+            generator.writeNumberField("totalCount", page.getTotalCount());
+            generator.writeNumberField("startIndex", page.getStartIndex());
+            generator.writeStringField("prevCursor", page.getPrevCursor());
+            generator.writeStringField("nextCursor", page.getNextCursor());
+            writeRecords(generator, page.getRecords());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * 逐条写入学生记录数组
+     *
+     * @param generator JSON生成器
+     * @param records   学生记录
+     * @throws IOException 如果写入失败
+     */
+    private static void writeRecords(JsonGenerator generator, List<Student> records) throws IOException {
+        generator.writeFieldName("records");
+        if (records == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (Student student : records) {
+            StudentCodec.writeJson(generator, student);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * 写入可能为null的整型字段
+     *
+     * @param generator JSON生成器
+     * @param name      字段名
+     * @param value     字段值
+     * @throws IOException 如果写入失败
+     */
+    private static void writeIntegerField(JsonGenerator generator, String name, Integer value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.psd.util;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Redis Lua脚本封装类，脚本源码存放在classpath下的lua目录中。
+ * 执行时优先使用EVALSHA只传输脚本摘要，服务端未缓存该脚本时回退为EVAL。
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class RedisScript {
+    /**
+     * 脚本名称，即lua目录下的文件名(不含扩展名)
+     */
+    private final String name;
+    /**
+     * 脚本源码
+     */
+    private final String source;
+    /**
+     * 脚本源码的SHA1摘要
+     */
+    private final String sha1;
+
+    /**
+     * 私有构造方法，通过{@link #load(String)}创建实例
+     *
+     * @param name   脚本名称
+     * @param source 脚本源码
+     */
+    private RedisScript(String name, String source) {
+        this.name = name;
+        this.source = source;
+        this.sha1 = sha1Hex(source);
+    }
+
+    /**
+     * 从classpath的lua目录加载指定名称的脚本
+     *
+     * @param name 脚本名称(不含扩展名)
+     * @return 脚本对象
+     */
+    public static RedisScript load(String name) {
+        return new RedisScript(name, loadSource(name));
+    }
+
+    /**
+     * 从classpath的lua目录加载指定名称的脚本，并在脚本源码前拼接公共代码，如多个脚本共用的函数
+     *
+     * @param name    脚本名称(不含扩展名)
+     * @param prelude 拼接在脚本源码前的公共代码
+     * @return 脚本对象
+     */
+    public static RedisScript load(String name, String prelude) {
+        return new RedisScript(name, prelude + "\n" + loadSource(name));
+    }
+
+    /**
+     * 读取classpath的lua目录下指定名称的脚本源码
+     *
+     * @param name 脚本名称(不含扩展名)
+     * @return 脚本源码
+     */
+    public static String loadSource(String name) {
+        String path = "lua/" + name + ".lua";
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("Lua脚本不存在: " + path);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("加载Lua脚本失败: " + path, e);
+        }
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param jedis Jedis操作对象
+     * @param keys  脚本访问的key列表
+     * @param args  脚本参数列表
+     * @return 脚本返回值
+     */
+    public Object eval(Jedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        } catch (JedisDataException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                throw e;
+            }
+            // 服务端尚未缓存该脚本，EVAL执行的同时会缓存脚本
+            log.debug("Lua脚本{}未缓存，使用EVAL执行", name);
+            return jedis.eval(source, keys, args);
+        }
+    }
+
+    /**
+     * 创建在管道中批量执行该脚本的执行器
+     *
+     * @param pipeline 管道
+     * @return 管道执行器
+     */
+    public Pipelined pipelined(Pipeline pipeline) {
+        return new Pipelined(pipeline);
+    }
+
+    /**
+     * 获取脚本源码的SHA1摘要
+     *
+     * @return 十六进制小写的SHA1摘要
+     */
+    public String getSha1() {
+        return sha1;
+    }
+
+    /**
+     * 计算字符串的SHA1摘要
+     *
+     * @param text 待计算的字符串
+     * @return 十六进制小写的SHA1摘要
+     */
+    private static String sha1Hex(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 在管道中批量执行脚本。管道中的命令按顺序执行，第一次使用EVAL同时缓存脚本，
+     * 之后使用EVALSHA，无需额外的往返检查服务端是否已缓存该脚本；在事务中同样适用
+     */
+    public class Pipelined {
+        /**
+         * 管道
+         */
+        private final Pipeline pipeline;
+        /**
+         * 是否已在管道中发送过EVAL
+         */
+        private boolean sourceSent;
+
+        private Pipelined(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        /**
+         * 在管道中执行脚本
+         *
+         * @param keys 脚本访问的key列表
+         * @param args 脚本参数列表
+         * @return 脚本返回值的管道响应
+         */
+        public Response<Object> eval(List<String> keys, List<String> args) {
+            if (sourceSent) {
+                return pipeline.evalsha(sha1, keys, args);
+            }
+            sourceSent = true;
+            return pipeline.eval(source, keys, args);
+        }
+    }
+}
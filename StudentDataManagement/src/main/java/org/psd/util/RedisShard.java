@@ -0,0 +1,205 @@
+package org.psd.util;
+
+import lombok.Getter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 学生数据在Redis中的一个分片，包含该分片的学生排名、数据集版本号和各项索引的key。
+ * 单机Redis只有一个分片，key不带哈希标签；Redis集群中学生按学号分为redis.cluster.shards个分片，
+ * 每个分片的key都带有相同的哈希标签"{分片号}"，位于同一个槽，因此单个学生的写入和单个分片内的查询
+ * 仍可通过Lua脚本一次往返原子地完成，跨分片的查询由调用方分别查询各分片后合并
+ *
+ * @author pengshidun
+ */
+@Getter
+public class RedisShard {
+    /**
+     * 所有分片，按分片号排列
+     */
+    private static final List<RedisShard> SHARDS;
+
+    /*
+     * 静态初始化块，单机模式下只有一个不带哈希标签的分片
+     */
+    static {
+        if (JedisUtils.isCluster()) {
+            int count = ConfigUtils.getInt("redis.cluster.shards", 16);
+            if (count <= 0) {
+                throw new IllegalStateException("分片数必须大于0: " + count);
+            }
+            List<RedisShard> shards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                shards.add(new RedisShard(i, "{" + i + "}"));
+            }
+            SHARDS = Collections.unmodifiableList(shards);
+        } else {
+            SHARDS = Collections.singletonList(new RedisShard(0, null));
+        }
+    }
+
+    /**
+     * 分片号
+     */
+    private final int index;
+    /**
+     * 哈希标签，单机模式下为null
+     */
+    private final String tag;
+    /**
+     * 哈希标签所在的槽，单机模式下为-1
+     */
+    private final int slot;
+    /**
+     * 学生按平均分排序的sorted set类型的key
+     */
+    private final String rankKey;
+    /**
+     * 数据集版本号的key，每次写入时递增
+     */
+    private final String versionKey;
+    /**
+     * 姓名前缀搜索的sorted set类型索引的key，成员为"小写姓名\0学号"，按字典序排列
+     */
+    private final String nameIndexKey;
+    /**
+     * 备注倒排索引key的前缀，与词拼接后为包含该词的学生ID set
+     */
+    private final String termIndexPrefix;
+    /**
+     * 学生备注包含的词set的key前缀，与学生ID拼接
+     */
+    private final String studentTermsPrefix;
+    /**
+     * 按平均分分桶的出生日期sorted set类型索引的key
+     */
+    private final String birthdayIndexKey;
+    /**
+     * 平均分统计的hash类型的key
+     */
+    private final String scoreStatsKey;
+    /**
+     * 备注检索脚本使用的临时key
+     */
+    private final List<String> searchTempKeys;
+
+    /**
+     * 构造方法，单机模式下的key名称与引入分片之前相同，已有数据无需迁移
+     *
+     * @param index 分片号
+     * @param tag   哈希标签，单机模式下为null
+     */
+    private RedisShard(int index, String tag) {
+        this.index = index;
+        this.tag = tag;
+        this.slot = tag == null ? -1 : JedisClusterCRC16.getSlot(tag);
+        this.rankKey = key("student:rank");
+        this.versionKey = key("student:version");
+        this.nameIndexKey = key("student:index:name");
+        this.termIndexPrefix = key("student:index:term") + ":";
+        this.studentTermsPrefix = key("student:terms") + ":";
+        this.birthdayIndexKey = key("student:index:birthday");
+        this.scoreStatsKey = key("student:stats");
+        this.searchTempKeys = Arrays.asList(key("student:search:tmp"), key("student:search:matched"));
+    }
+
+    /**
+     * 为key名称加上该分片的哈希标签
+     *
+     * @param name key名称
+     * @return 集群模式下为"名称:{分片号}"，单机模式下为名称本身
+     */
+    private String key(String name) {
+        return tag == null ? name : name + ":" + tag;
+    }
+
+    /**
+     * 获取所有分片
+     *
+     * @return 按分片号排列的分片列表
+     */
+    public static List<RedisShard> all() {
+        return SHARDS;
+    }
+
+    /**
+     * 获取指定分片
+     *
+     * @param index 分片号
+     * @return 分片
+     */
+    public static RedisShard get(int index) {
+        return SHARDS.get(index);
+    }
+
+    /**
+     * 获取分片数
+     *
+     * @return 单机模式下为1
+     */
+    public static int count() {
+        return SHARDS.size();
+    }
+
+    /**
+     * 获取所有分片的学生排名集合的key
+     *
+     * @return 按分片号排列的key列表
+     */
+    public static List<String> rankKeys() {
+        List<String> keys = new ArrayList<>(SHARDS.size());
+        for (RedisShard shard : SHARDS) {
+            keys.add(shard.getRankKey());
+        }
+        return keys;
+    }
+
+    /**
+     * 借用该分片所在节点的连接，单机模式下等同于{@link JedisUtils#getJedis()}
+     *
+     * @return Jedis操作对象
+     * @throws RedisUnavailableException 如果熔断器已断开或获取连接失败
+     */
+    public Jedis getJedis() {
+        return tag == null ? JedisUtils.getJedis() : JedisUtils.getJedis(slot);
+    }
+
+    /**
+     * 借用该分片所在节点的连接执行操作，使用完毕后自动归还。
+     * 集群模式下槽已迁移到其他节点时重新读取槽的分配，并在新的节点上重试一次；
+     * MOVED重定向在执行前返回，命令未被执行，重试是安全的
+     *
+     * @param action 使用连接的操作，管道的响应应在操作内读取，以便重定向在操作内抛出
+     * @param <T>    操作的返回值类型
+     * @return 操作的返回值
+     * @throws RedisUnavailableException 如果熔断器已断开或获取连接失败
+     */
+    public <T> T execute(Function<Jedis, T> action) {
+        try (Jedis jedis = getJedis()) {
+            return action.apply(jedis);
+        } catch (JedisMovedDataException e) {
+            JedisUtils.renewSlotCache();
+        }
+        try (Jedis jedis = getJedis()) {
+            return action.apply(jedis);
+        }
+    }
+
+    /**
+     * 为学号加上该分片的哈希标签，作为写入脚本的KEYS[1]，使脚本声明的所有key位于同一个槽，
+     * 由student-record.lua的recordId去掉前缀
+     *
+     * @param studentId 学号
+     * @return 集群模式下为"{分片号}学号"，单机模式下为学号本身
+     */
+    public String studentKey(String studentId) {
+        return tag == null ? studentId : tag + studentId;
+    }
+}
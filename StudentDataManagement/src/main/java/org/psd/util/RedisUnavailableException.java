@@ -0,0 +1,32 @@
+package org.psd.util;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Redis不可用异常，熔断器断开或无法从连接池借用连接时抛出。
+ * 继承JedisConnectionException，已有的Jedis异常处理逻辑无需修改即可处理该异常。
+ *
+ * @author pengshidun
+ */
+public class RedisUnavailableException extends JedisConnectionException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 构造方法
+     *
+     * @param message 异常信息
+     */
+    public RedisUnavailableException(String message) {
+        super(message);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param message 异常信息
+     * @param cause   原始异常
+     */
+    public RedisUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
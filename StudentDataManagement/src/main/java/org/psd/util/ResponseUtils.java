@@ -0,0 +1,123 @@
+package org.psd.util;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP响应工具类，根据客户端支持的内容编码打开响应输出流。
+ *
+ * @author pengshidun
+ */
+public class ResponseUtils {
+
+    /**
+     * gzip输出流的缓冲区大小
+     */
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    // 私有构造方法，防止实例化
+    private ResponseUtils() {
+    }
+
+    /**
+     * 判断客户端是否接受gzip内容编码。按逗号拆分Accept-Encoding的各项编码，
+     * 显式列出gzip(或x-gzip)时以其q值为准，q=0表示拒绝；未列出gzip时以通配符"*"的q值为准
+     *
+     * @param request HTTP请求对象
+     * @return 客户端接受gzip时返回true
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzipQuality = -1;
+        double wildcardQuality = -1;
+        for (String item : acceptEncoding.split(",")) {
+            String[] params = item.split(";");
+            String coding = params[0].trim().toLowerCase();
+            double quality = parseQuality(params);
+            if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if ("*".equals(coding)) {
+                wildcardQuality = Math.max(wildcardQuality, quality);
+            }
+        }
+        return gzipQuality >= 0 ? gzipQuality > 0 : wildcardQuality > 0;
+    }
+
+    /**
+     * 解析Accept-Encoding中一项编码的q值
+     *
+     * @param params 按分号拆分的编码及其参数
+     * @return q值，未指定时为1，无法解析时为0
+     */
+    private static double parseQuality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            int eq = param.indexOf('=');
+            if (eq > 0 && "q".equalsIgnoreCase(param.substring(0, eq).trim())) {
+                try {
+                    return Double.parseDouble(param.substring(eq + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 判断请求头If-None-Match是否与给定的ETag匹配，按弱比较规则忽略"W/"前缀
+     *
+     * @param request HTTP请求对象
+     * @param etag    当前资源的ETag
+     * @return 匹配时返回true，此时可以直接响应304
+     */
+    public static boolean matchesEtag(HttpServletRequest request, String etag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 去掉ETag的弱校验前缀
+     *
+     * @param etag ETag
+     * @return 不带"W/"前缀的ETag
+     */
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * 打开响应输出流，客户端接受gzip时设置Content-Encoding并返回gzip压缩流。
+     * 调用方写入完毕后必须关闭返回的输出流，以便写出gzip尾部数据。
+     *
+     * @param request  HTTP请求对象
+     * @param response HTTP响应对象
+     * @return 响应输出流
+     * @throws IOException 如果获取输出流失败
+     */
+    public static OutputStream openOutputStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 响应内容随Accept-Encoding变化，告知缓存按该请求头区分
+        response.addHeader("Vary", "Accept-Encoding");
+        if (acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            return new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE);
+        }
+        return response.getOutputStream();
+    }
+}
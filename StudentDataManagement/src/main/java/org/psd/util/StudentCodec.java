@@ -0,0 +1,361 @@
+package org.psd.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.psd.entity.Student;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 学生数据编解码工具类，直接按字段完成Student与Redis哈希、紧凑记录、JSON输出之间的转换，
+ * 不经过反射，也不生成中间JSON字符串。
+ *
+ * @author pengshidun
+ */
+@Slf4j
+public class StudentCodec {
+    /**
+     * 学号字段名
+     */
+    public static final String FIELD_ID = "id";
+    /**
+     * 姓名字段名
+     */
+    public static final String FIELD_NAME = "name";
+    /**
+     * 出生日期字段名
+     */
+    public static final String FIELD_BIRTHDAY = "birthday";
+    /**
+     * 备注字段名
+     */
+    public static final String FIELD_DESCRIPTION = "description";
+    /**
+     * 平均分字段名
+     */
+    public static final String FIELD_AVG_SCORE = "avgScore";
+    /**
+     * 出生日期纪元日绝对值的上限，对应0534-07-21至3405-06-14，写入时拒绝超出该范围的出生日期
+     */
+    public static final long MAX_EPOCH_DAY = (1L << 19) - 1;
+    /**
+     * 紧凑记录的格式版本，位于记录的第一个字节
+     */
+    private static final int PACKED_VERSION = 1;
+    /**
+     * 紧凑记录第二个字节中的标记位，分别表示姓名、备注、以纪元日存储的出生日期、以字符串存储的出生日期、平均分是否存在
+     */
+    private static final int PACKED_NAME = 1;
+    private static final int PACKED_DESCRIPTION = 1 << 1;
+    private static final int PACKED_BIRTHDAY_DAY = 1 << 2;
+    private static final int PACKED_BIRTHDAY_TEXT = 1 << 3;
+    private static final int PACKED_AVG_SCORE = 1 << 4;
+    /**
+     * 变长整数每个字节存储的数据位数，次高位0x40表示后面还有字节
+     */
+    private static final int VARINT_BITS = 6;
+    private static final int VARINT_MORE = 1 << VARINT_BITS;
+
+    /**
+     * 私有构造方法，防止实例化
+     */
+    private StudentCodec() {
+    }
+
+    /**
+     * 将Student转换为Redis哈希的字段Map，值为null的字段不写入
+     *
+     * @param student 学生信息
+     * @return 字段名到字段值的Map
+     */
+    public static Map<String, String> toHash(Student student) {
+        // 容量8可以容纳5个字段而不触发扩容
+        Map<String, String> hash = new HashMap<>(8);
+        putIfNotNull(hash, FIELD_ID, student.getId());
+        putIfNotNull(hash, FIELD_NAME, student.getName());
+        putIfNotNull(hash, FIELD_BIRTHDAY, student.getBirthday());
+        putIfNotNull(hash, FIELD_DESCRIPTION, student.getDescription());
+        if (student.getAvgScore() != null) {
+            hash.put(FIELD_AVG_SCORE, student.getAvgScore().toString());
+        }
+        return hash;
+    }
+
+    /**
+     * 将Redis哈希的字段Map转换为Student
+     *
+     * @param hash 字段名到字段值的Map
+     * @return 学生信息，hash为null时返回null
+     */
+    public static Student fromHash(Map<String, String> hash) {
+        if (hash == null) {
+            return null;
+        }
+        Student student = new Student();
+        hash.forEach((field, value) -> setField(student, field, value));
+        return student;
+    }
+
+    /**
+     * 将字段名和字段值交替排列的列表(HGETALL或Lua脚本的返回格式)转换为Student
+     *
+     * @param fields 字段名和字段值交替排列的列表
+     * @return 学生信息
+     */
+    public static Student fromFields(List<?> fields) {
+        Student student = new Student();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            setField(student, (String) fields.get(i), (String) fields.get(i + 1));
+        }
+        return student;
+    }
+
+    /**
+     * 将Student以JSON对象的形式写入JsonGenerator
+     *
+     * @param generator JSON生成器
+     * @param student   学生信息
+     * @throws IOException 如果写入失败
+     */
+    public static void writeJson(JsonGenerator generator, Student student) throws IOException {
+        if (student == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField(FIELD_ID, student.getId());
+        generator.writeStringField(FIELD_NAME, student.getName());
+        generator.writeStringField(FIELD_BIRTHDAY, student.getBirthday());
+        generator.writeStringField(FIELD_DESCRIPTION, student.getDescription());
+        generator.writeFieldName(FIELD_AVG_SCORE);
+        if (student.getAvgScore() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(student.getAvgScore());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 根据字段名设置Student的对应属性，忽略未知字段
+     *
+     * @param student 学生信息
+     * @param field   字段名
+     * @param value   字段值
+     */
+    public static void setField(Student student, String field, String value) {
+        switch (field) {
+            case FIELD_ID:
+                student.setId(value);
+                break;
+            case FIELD_NAME:
+                student.setName(value);
+                break;
+            case FIELD_BIRTHDAY:
+                student.setBirthday(value);
+                break;
+            case FIELD_DESCRIPTION:
+                student.setDescription(value);
+                break;
+            case FIELD_AVG_SCORE:
+                student.setAvgScore(parseScore(value));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 将Student编码为紧凑记录，不包含学号(学号为所在哈希的字段名)。
+     * 记录依次为格式版本、字段标记位、姓名、备注、出生日期和平均分，值为null的字段不写入；
+     * 字符串为UTF-8字节长度加内容，能还原为原字符串的出生日期存储为纪元日，纪元日和平均分为zigzag变长整数。
+     * 变长整数每个字节只使用低7位(低6位为数据，0x40表示后面还有字节)，因此记录中字符串以外的字节都小于0x80，整条记录是合法的UTF-8字符串，
+     * 可以原样经过Jedis的字符串命令和Lua脚本
+     *
+     * @param student 学生信息
+     * @return 紧凑记录
+     */
+    public static String pack(Student student) {
+        Long epochDay = parseEpochDay(student.getBirthday());
+        // 只有格式规范的出生日期才能由纪元日还原，其余按原字符串存储
+        boolean birthdayAsDay = epochDay != null && LocalDate.ofEpochDay(epochDay).toString().equals(student.getBirthday());
+        int flags = (student.getName() != null ? PACKED_NAME : 0)
+                | (student.getDescription() != null ? PACKED_DESCRIPTION : 0)
+                | (birthdayAsDay ? PACKED_BIRTHDAY_DAY : student.getBirthday() != null ? PACKED_BIRTHDAY_TEXT : 0)
+                | (student.getAvgScore() != null ? PACKED_AVG_SCORE : 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(PACKED_VERSION);
+        out.write(flags);
+        writeString(out, student.getName());
+        writeString(out, student.getDescription());
+        if (birthdayAsDay) {
+            writeVarint(out, epochDay);
+        } else {
+            writeString(out, student.getBirthday());
+        }
+        if (student.getAvgScore() != null) {
+            writeVarint(out, student.getAvgScore());
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将紧凑记录解码为Student
+     *
+     * @param id     学号
+     * @param record 紧凑记录
+     * @return 学生信息
+     * @throws IllegalArgumentException 如果记录格式不合法
+     */
+    public static Student unpack(String id, String record) {
+        ByteBuffer in = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+        try {
+            if (in.get() != PACKED_VERSION) {
+                throw new IllegalArgumentException("不支持的紧凑记录格式版本");
+            }
+            int flags = in.get();
+            Student student = new Student();
+            student.setId(id);
+            if ((flags & PACKED_NAME) != 0) {
+                student.setName(readString(in));
+            }
+            if ((flags & PACKED_DESCRIPTION) != 0) {
+                student.setDescription(readString(in));
+            }
+            if ((flags & PACKED_BIRTHDAY_DAY) != 0) {
+                student.setBirthday(LocalDate.ofEpochDay(readVarint(in)).toString());
+            } else if ((flags & PACKED_BIRTHDAY_TEXT) != 0) {
+                student.setBirthday(readString(in));
+            }
+            if ((flags & PACKED_AVG_SCORE) != 0) {
+                student.setAvgScore((int) readVarint(in));
+            }
+            return student;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("紧凑记录不完整", e);
+        }
+    }
+
+    /**
+     * 写入长度前缀的字符串，值为null时不写入
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeLength(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * 读取长度前缀的字符串
+     */
+    private static String readString(ByteBuffer in) {
+        int length = (int) readLength(in);
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * 以zigzag变长整数写入有符号整数，绝对值较小的负数同样只占用少量字节
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        writeLength(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * 读取zigzag变长整数
+     */
+    private static long readVarint(ByteBuffer in) {
+        long value = readLength(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 写入无符号变长整数，低位在前，每个字节存储6位数据
+     */
+    private static void writeLength(ByteArrayOutputStream out, long value) {
+        while ((value & ~(VARINT_MORE - 1L)) != 0) {
+            out.write((int) (value & (VARINT_MORE - 1)) | VARINT_MORE);
+            value >>>= VARINT_BITS;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * 读取无符号变长整数
+     */
+    private static long readLength(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += VARINT_BITS) {
+            int b = in.get();
+            value |= (long) (b & (VARINT_MORE - 1)) << shift;
+            if ((b & VARINT_MORE) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("变长整数过长");
+    }
+
+    /**
+     * 解析平均分字段
+     *
+     * @param value 字段值
+     * @return 平均分，为空或格式错误时返回null
+     */
+    private static Integer parseScore(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            log.warn("平均分格式错误: {}", value);
+            return null;
+        }
+    }
+
+    /**
+     * 将出生日期转换为纪元日
+     *
+     * @param birthday 出生日期，格式为yyyy-MM-dd
+     * @return 纪元日，为空、格式错误或超出{@link #MAX_EPOCH_DAY}时返回null
+     */
+    public static Long parseEpochDay(String birthday) {
+        if (birthday == null || birthday.isEmpty()) {
+            return null;
+        }
+        try {
+            long epochDay = LocalDate.parse(birthday).toEpochDay();
+            return Math.abs(epochDay) <= MAX_EPOCH_DAY ? epochDay : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 字段值不为null时放入Map
+     *
+     * @param hash  字段Map
+     * @param field 字段名
+     * @param value 字段值
+     */
+    private static void putIfNotNull(Map<String, String> hash, String field, String value) {
+        if (value != null) {
+            hash.put(field, value);
+        }
+    }
+}
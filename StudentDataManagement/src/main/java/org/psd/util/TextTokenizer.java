@@ -0,0 +1,117 @@
+package org.psd.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 文本分词工具类，用于建立和查询备注的倒排索引。
+ * 连续的字母和数字(汉字除外)组成一个词，统一转换为小写；
+ * 汉字没有分隔符，建立索引时取每个单字和相邻两字，查询时取相邻两字，单独一个汉字时取单字。
+ *
+ * @author pengshidun
+ */
+public class TextTokenizer {
+    /**
+     * 词的最大长度，超出部分截断，避免过长的索引key
+     */
+    private static final int MAX_TERM_LENGTH = 32;
+
+    /**
+     * 私有构造方法，防止实例化
+     */
+    private TextTokenizer() {
+    }
+
+    /**
+     * 获取建立索引时文本包含的所有词
+     *
+     * @param text 文本
+     * @return 去重后的词集合，文本为空时返回空集合
+     */
+    public static Set<String> indexTerms(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 获取查询时一个检索词对应的所有词，文档需包含其中的每个词才匹配该检索词
+     *
+     * @param text 检索词
+     * @return 去重后的词集合，检索词不含字母、数字或汉字时返回空集合
+     */
+    public static Set<String> queryTerms(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * 分词
+     *
+     * @param text     文本
+     * @param forIndex 是否用于建立索引，建立索引时额外取汉字的每个单字
+     * @return 去重后的词集合
+     */
+    private static Set<String> tokenize(String text, boolean forIndex) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        // 连续汉字中的前一个汉字，以及当前这段连续汉字的长度
+        int previousHan = -1;
+        int hanRun = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                addWord(terms, word);
+                if (forIndex) {
+                    terms.add(new String(Character.toChars(codePoint)));
+                }
+                if (previousHan >= 0) {
+                    terms.add(new String(Character.toChars(previousHan)) + new String(Character.toChars(codePoint)));
+                }
+                previousHan = codePoint;
+                hanRun++;
+                continue;
+            }
+            // 查询时单独一个汉字无法组成两字词，取单字
+            addSingleHan(terms, previousHan, hanRun, forIndex);
+            previousHan = -1;
+            hanRun = 0;
+            if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+            } else {
+                addWord(terms, word);
+            }
+        }
+        addSingleHan(terms, previousHan, hanRun, forIndex);
+        addWord(terms, word);
+        return terms;
+    }
+
+    /**
+     * 将累积的词加入词集合并清空
+     *
+     * @param terms 词集合
+     * @param word  累积的词
+     */
+    private static void addWord(Set<String> terms, StringBuilder word) {
+        if (word.length() > 0) {
+            terms.add(word.length() > MAX_TERM_LENGTH ? word.substring(0, MAX_TERM_LENGTH) : word.toString());
+            word.setLength(0);
+        }
+    }
+
+    /**
+     * 查询时一段连续汉字只有一个字，将该字加入词集合
+     *
+     * @param terms    词集合
+     * @param han      该段最后一个汉字，-1表示没有
+     * @param hanRun   该段连续汉字的长度
+     * @param forIndex 是否用于建立索引，建立索引时单字已加入
+     */
+    private static void addSingleHan(Set<String> terms, int han, int hanRun, boolean forIndex) {
+        if (!forIndex && hanRun == 1) {
+            terms.add(new String(Character.toChars(han)));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+-- 按游标(平均分, 学号)在学生排名中定位，一次往返获取相邻的一页学生数据
+-- KEYS[1]: 学生排名sorted set
+-- ARGV[1], ARGV[2]: 游标的平均分和学号，为空字符串时从第一名开始
+-- ARGV[3]: 每页记录数
+-- ARGV[4]: 翻页方向，n表示向后翻页，p表示向前翻页
+-- ARGV[5]: 为1时返回学生记录(格式见student-record.lua的recordRead)，否则以0占位，由调用方从近端缓存读取
+-- ARGV[6], ARGV[7]: 统计总数的最低分、最高分，与list-page.lua一致
+-- 返回: {总数, 该页开始排名, 排名中的记录数, id1, score1, record1, id2, ...}，
+-- 排名中的记录数包含平均分超出统计范围的记录，调用方据此判断该页之后是否还有记录
+local key = KEYS[1]
+local count = tonumber(ARGV[3])
+local total = redis.call('ZCOUNT', key, ARGV[6], ARGV[7])
+local size = redis.call('ZCARD', key)
+
+-- 按字节比较两个字符串，与sorted set中同分成员的排列顺序一致，不受Lua字符串比较所用区域设置的影响
+local function bytesLess(a, b)
+    local n = math.min(#a, #b)
+    for i = 1, n do
+        local x, y = string.byte(a, i), string.byte(b, i)
+        if x ~= y then
+            return x < y
+        end
+    end
+    return #a < #b
+end
+
+-- before: 按平均分倒序排列时排在游标之前的记录数
+-- after: 游标之后第一条记录的排名
+local before, after = 0, 0
+if ARGV[1] ~= '' then
+    local score, id = tonumber(ARGV[1]), ARGV[2]
+    local old = redis.call('ZSCORE', key, id)
+    if old and tonumber(old) == score then
+        -- 游标对应的学生仍在原位置，直接取其排名
+        before = redis.call('ZREVRANK', key, id)
+        after = before + 1
+    else
+        -- 游标对应的学生已被删除或修改了平均分，只读地求出游标位置，不修改排名集合：
+        -- 平均分高于游标的记录都排在游标之前，同分的记录按学号倒序排列，学号大于游标的排在游标之前，
+        -- 同分记录在排名中连续，在其中二分查找第一个学号小于游标的记录
+        local low = redis.call('ZCOUNT', key, '(' .. ARGV[1], '+inf')
+        local high = low + redis.call('ZCOUNT', key, ARGV[1], ARGV[1])
+        while low < high do
+            local mid = math.floor((low + high) / 2)
+            local member = redis.call('ZREVRANGE', key, mid, mid)[1]
+            if bytesLess(member, id) then
+                high = mid
+            else
+                low = mid + 1
+            end
+        end
+        before = low
+        after = before
+    end
+end
+local start
+if ARGV[4] == 'p' then
+    start = math.max(before - count, 0)
+    count = before - start
+else
+    start = after
+end
+local result = { total, start, size }
+if count > 0 then
+    local members = redis.call('ZREVRANGE', key, start, start + count - 1, 'WITHSCORES')
+    for i = 1, #members, 2 do
+        result[#result + 1] = members[i]
+        result[#result + 1] = members[i + 1]
+        if ARGV[5] == '1' then
+            result[#result + 1] = recordRead(members[i])
+        else
+            result[#result + 1] = 0
+        end
+    end
+end
+return result
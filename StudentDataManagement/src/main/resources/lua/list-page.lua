@@ -0,0 +1,17 @@
+-- 一次往返获取一页学生数据
+-- KEYS[1]: 学生排名sorted set
+-- ARGV[1], ARGV[2]: 统计总数的最低分、最高分
+-- ARGV[3], ARGV[4]: 按平均分倒序的开始、结束索引
+-- ARGV[5]: 为1时返回学生记录(格式见student-record.lua的recordRead)，否则以0占位，由调用方从近端缓存读取
+-- 返回: {总数, id1, record1, id2, record2, ...}
+local result = { redis.call('ZCOUNT', KEYS[1], ARGV[1], ARGV[2]) }
+local ids = redis.call('ZREVRANGE', KEYS[1], ARGV[3], ARGV[4])
+for _, id in ipairs(ids) do
+    result[#result + 1] = id
+    if ARGV[5] == '1' then
+        result[#result + 1] = recordRead(id)
+    else
+        result[#result + 1] = 0
+    end
+end
+return result
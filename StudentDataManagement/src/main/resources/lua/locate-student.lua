@@ -0,0 +1,31 @@
+-- 一次往返获取学生的排名、总数以及该学生所在的一页学生数据
+-- 平均分相同的学生按学号的字典序倒序排列，与分页获取学生数据时的顺序一致，只要数据不变排名就不会变化
+-- KEYS[1]: 学生排名sorted set
+-- ARGV[1]: 学号
+-- ARGV[2]: 每页记录数
+-- ARGV[3], ARGV[4]: 统计总数的最低分、最高分
+-- ARGV[5]: 为1时返回学生记录(格式见student-record.lua的recordRead)，否则以0占位，由调用方从近端缓存读取
+-- 返回: 学生不存在时为{-1}，否则为{排名位置(从0开始), 平均分, 平均分更高的学生数, 总数, id1, record1, id2, ...}
+local position = redis.call('ZREVRANK', KEYS[1], ARGV[1])
+if not position then
+    return { -1 }
+end
+local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+local pageSize = tonumber(ARGV[2])
+local start = position - position % pageSize
+local result = {
+    position,
+    score,
+    redis.call('ZCOUNT', KEYS[1], '(' .. score, '+inf'),
+    redis.call('ZCOUNT', KEYS[1], ARGV[3], ARGV[4])
+}
+local ids = redis.call('ZREVRANGE', KEYS[1], start, start + pageSize - 1)
+for _, id in ipairs(ids) do
+    result[#result + 1] = id
+    if ARGV[5] == '1' then
+        result[#result + 1] = recordRead(id)
+    else
+        result[#result + 1] = 0
+    end
+end
+return result
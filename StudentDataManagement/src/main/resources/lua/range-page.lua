@@ -0,0 +1,55 @@
+-- 按平均分区间和出生日期区间一次往返获取一页学生数据，结果按平均分倒序排列
+-- KEYS[1]: 学生排名sorted set
+-- KEYS[2]: 按平均分分桶的出生日期索引sorted set，分数为平均分*桶宽+出生日期的纪元日+偏移量
+-- ARGV[1], ARGV[2]: 平均分的最低分、最高分，均为整数
+-- ARGV[3], ARGV[4]: 出生日期纪元日的下限、上限，均为空字符串时不按出生日期过滤
+-- ARGV[5], ARGV[6]: 跳过的记录数、每页记录数
+-- ARGV[7]: 为1时返回学生记录(格式见student-record.lua的recordRead)，否则以0占位，由调用方从近端缓存读取
+-- ARGV[8], ARGV[9]: 桶宽、纪元日偏移量
+-- 返回: {总数, id1, record1, id2, record2, ...}
+local minScore, maxScore = tonumber(ARGV[1]), tonumber(ARGV[2])
+local offset, count = tonumber(ARGV[5]), tonumber(ARGV[6])
+local result = { 0 }
+local ids = {}
+if ARGV[3] == '' and ARGV[4] == '' then
+    -- 只按平均分过滤时直接在学生排名中定位区间
+    result[1] = redis.call('ZCOUNT', KEYS[1], minScore, maxScore)
+    ids = redis.call('ZREVRANGEBYSCORE', KEYS[1], maxScore, minScore, 'LIMIT', offset, count)
+else
+    -- 平均分只有有限个整数取值，每个平均分对应出生日期索引中的一段连续区间，
+    -- 按平均分从高到低逐段统计和读取，同一平均分内按出生日期从晚到早排列
+    local width, dayOffset = tonumber(ARGV[8]), tonumber(ARGV[9])
+    local minDay = ARGV[3] == '' and 0 or tonumber(ARGV[3]) + dayOffset
+    local maxDay = ARGV[4] == '' and width - 1 or tonumber(ARGV[4]) + dayOffset
+    local counts = {}
+    for score = maxScore, minScore, -1 do
+        local c = redis.call('ZCOUNT', KEYS[2], score * width + minDay, score * width + maxDay)
+        counts[score] = c
+        result[1] = result[1] + c
+    end
+    for score = maxScore, minScore, -1 do
+        if #ids >= count then
+            break
+        end
+        local c = counts[score]
+        if offset >= c then
+            offset = offset - c
+        elseif c > 0 then
+            local page = redis.call('ZREVRANGEBYSCORE', KEYS[2], score * width + maxDay, score * width + minDay,
+                    'LIMIT', offset, count - #ids)
+            for _, id in ipairs(page) do
+                ids[#ids + 1] = id
+            end
+            offset = 0
+        end
+    end
+end
+for _, id in ipairs(ids) do
+    result[#result + 1] = id
+    if ARGV[7] == '1' then
+        result[#result + 1] = recordRead(id)
+    else
+        result[#result + 1] = 0
+    end
+end
+return result
@@ -0,0 +1,32 @@
+-- 按学生排名重新计算平均分统计，用于为建立统计之前已存在的学生补建统计或修复统计，复杂度与分数取值个数有关
+-- KEYS[1]: 学生排名sorted set, KEYS[2]: 平均分统计hash
+-- 返回: 学生数
+local count = redis.call('ZCARD', KEYS[1])
+local sum = 0
+local inRange = 0
+local stats = { 'count', count }
+for score = 0, 150 do
+    local c = redis.call('ZCOUNT', KEYS[1], score, score)
+    if c > 0 then
+        stats[#stats + 1] = tostring(score)
+        stats[#stats + 1] = c
+        sum = sum + score * c
+        inRange = inRange + c
+    end
+end
+-- 超出0~150范围的平均分逐个累加，正常情况下不存在
+if inRange < count then
+    for _, range in ipairs({ { '-inf', '(0' }, { '(150', '+inf' } }) do
+        local members = redis.call('ZRANGEBYSCORE', KEYS[1], range[1], range[2], 'WITHSCORES')
+        for i = 2, #members, 2 do
+            sum = sum + tonumber(members[i])
+        end
+    end
+end
+stats[#stats + 1] = 'sum'
+stats[#stats + 1] = sum
+stats[#stats + 1] = 'other'
+stats[#stats + 1] = count - inRange
+redis.call('DEL', KEYS[2])
+redis.call('HSET', KEYS[2], unpack(stats))
+return count
@@ -0,0 +1,50 @@
+-- 按学生记录的当前内容重建一个学生的索引，用于为建立索引之前已存在的学生补建索引，重复执行无副作用
+-- KEYS[1]: 学号(hash布局时即学生哈希，集群模式下带有分片的哈希标签前缀), KEYS[2]: 姓名索引sorted set, KEYS[3]: 该学生备注包含的词set
+-- KEYS[4]: 按平均分分桶的出生日期索引sorted set
+-- ARGV[1]: 备注倒排索引key的前缀
+-- ARGV[2], ARGV[3], ARGV[4]: 调用方读到的备注、出生日期和平均分，已被修改时不重建对应索引，由写入脚本维护
+-- ARGV[5]: 调用方计算的出生日期索引分数，为空字符串表示没有出生日期
+-- ARGV[6]: packed布局时为调用方读到的紧凑记录，整条比较是否已被修改，hash布局时为空字符串
+-- ARGV[7...]: 调用方对该备注分词后的词
+-- 返回: 学生存在时为1，否则为0
+local id = recordId(KEYS[1])
+local name, descriptionUnchanged, birthdayUnchanged
+if RECORD_PACKED then
+    local record = redis.call('HGET', recordBucket(id), id)
+    if not record then
+        return 0
+    end
+    name = recordDecodeName(record)
+    -- 紧凑记录整条比较，未被修改时备注、出生日期和平均分均与调用方读到的一致
+    descriptionUnchanged = record == ARGV[6]
+    birthdayUnchanged = descriptionUnchanged
+else
+    local current = redis.call('HMGET', id, 'name', 'description', 'birthday', 'avgScore')
+    name = current[1]
+    if not name and redis.call('EXISTS', id) == 0 then
+        return 0
+    end
+    descriptionUnchanged = (current[2] or '') == ARGV[2]
+    birthdayUnchanged = (current[3] or '') == ARGV[3] and (current[4] or '') == ARGV[4]
+end
+if name and name ~= '' then
+    redis.call('ZADD', KEYS[2], 0, (string.gsub(string.lower(name), '%z', '')) .. '\0' .. id)
+end
+if descriptionUnchanged then
+    for _, term in ipairs(redis.call('SMEMBERS', KEYS[3])) do
+        redis.call('SREM', ARGV[1] .. term, id)
+    end
+    redis.call('DEL', KEYS[3])
+    for i = 7, #ARGV do
+        redis.call('SADD', ARGV[1] .. ARGV[i], id)
+        redis.call('SADD', KEYS[3], ARGV[i])
+    end
+end
+if birthdayUnchanged then
+    if ARGV[5] ~= '' then
+        redis.call('ZADD', KEYS[4], ARGV[5], id)
+    else
+        redis.call('ZREM', KEYS[4], id)
+    end
+end
+return 1
@@ -0,0 +1,39 @@
+-- 原子地删除一个学生及其所有索引
+-- KEYS[1]: 学号(hash布局时即学生哈希，集群模式下带有分片的哈希标签前缀), KEYS[2]: 学生排名sorted set, KEYS[3]: 数据集版本号, KEYS[4]: 姓名索引sorted set
+-- KEYS[5]: 该学生备注包含的词set, KEYS[6]: 按平均分分桶的出生日期索引sorted set, KEYS[7]: 平均分统计hash
+-- ARGV[1]: 近端缓存失效频道，为空字符串时不递增版本号也不发布通知，由批量删除的调用方统一处理
+-- ARGV[2]: 备注倒排索引key的前缀
+-- 返回: 删除的学生数，学生不存在时为0；ARGV[1]不为空时返回{删除的学生数, 删除后的数据集版本号}，学生不存在时不递增版本号，版本号为0
+local id = recordId(KEYS[1])
+local name = recordName(id)
+if name and name ~= '' then
+    redis.call('ZREM', KEYS[4], (string.gsub(string.lower(name), '%z', '')) .. '\0' .. id)
+end
+for _, term in ipairs(redis.call('SMEMBERS', KEYS[5])) do
+    redis.call('SREM', ARGV[2] .. term, id)
+end
+redis.call('DEL', KEYS[5])
+-- 从平均分统计中减去该学生的平均分
+local score = redis.call('ZSCORE', KEYS[2], id)
+if score then
+    score = tonumber(score)
+    local field = 'other'
+    if score >= 0 and score <= 150 and score % 1 == 0 then
+        field = tostring(score)
+    end
+    redis.call('HINCRBY', KEYS[7], 'count', -1)
+    redis.call('HINCRBY', KEYS[7], 'sum', -score)
+    redis.call('HINCRBY', KEYS[7], field, -1)
+end
+local deleted = recordDelete(id)
+redis.call('ZREM', KEYS[2], id)
+redis.call('ZREM', KEYS[6], id)
+if ARGV[1] ~= '' then
+    local version = 0
+    if deleted > 0 then
+        version = redis.call('INCR', KEYS[3])
+        redis.call('PUBLISH', ARGV[1], id)
+    end
+    return { deleted, version }
+end
+return deleted
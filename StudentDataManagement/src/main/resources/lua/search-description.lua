@@ -0,0 +1,40 @@
+-- 按备注中的词检索学生，与平均分区间取交集后按平均分倒序一次往返获取一页学生数据
+-- KEYS[1]: 学生排名sorted set, KEYS[2], KEYS[3]: 临时key，脚本结束前删除
+-- KEYS[4...]: 各检索词对应的倒排索引set，按组依次排列
+-- ARGV[1], ARGV[2]: 平均分的最低分、最高分
+-- ARGV[3], ARGV[4]: 跳过的记录数、每页记录数
+-- ARGV[5]: 为1时返回学生记录(格式见student-record.lua的recordRead)，否则以0占位，由调用方从近端缓存读取
+-- ARGV[6]: 组数g，ARGV[7...6+g]: 每组的倒排索引个数，组内取交集(AND)，组间取并集(OR)
+-- 返回: {总数, id1, record1, id2, record2, ...}
+local rank, tmp, matched = KEYS[1], KEYS[2], KEYS[3]
+local groups = tonumber(ARGV[6])
+local pos = 4
+redis.call('DEL', matched)
+for g = 1, groups do
+    local size = tonumber(ARGV[6 + g])
+    local keys = {}
+    for i = pos, pos + size - 1 do
+        keys[#keys + 1] = KEYS[i]
+    end
+    pos = pos + size
+    if groups == 1 then
+        redis.call('SINTERSTORE', matched, unpack(keys))
+    else
+        redis.call('SINTERSTORE', tmp, unpack(keys))
+        redis.call('SUNIONSTORE', matched, matched, tmp)
+    end
+end
+-- 与学生排名取交集，权重0使结果的分数等于平均分
+redis.call('ZINTERSTORE', tmp, 2, rank, matched, 'WEIGHTS', 1, 0)
+local result = { redis.call('ZCOUNT', tmp, ARGV[1], ARGV[2]) }
+local ids = redis.call('ZREVRANGEBYSCORE', tmp, ARGV[2], ARGV[1], 'LIMIT', ARGV[3], ARGV[4])
+redis.call('DEL', tmp, matched)
+for _, id in ipairs(ids) do
+    result[#result + 1] = id
+    if ARGV[5] == '1' then
+        result[#result + 1] = recordRead(id)
+    else
+        result[#result + 1] = 0
+    end
+end
+return result
@@ -0,0 +1,25 @@
+-- 按姓名前缀(忽略大小写)一次往返获取一页学生数据，结果按姓名、学号的字典序排列
+-- KEYS[1]: 姓名索引sorted set，成员为"小写姓名\0学号"
+-- ARGV[1]: 姓名前缀，为空字符串时匹配所有有姓名的学生
+-- ARGV[2], ARGV[3]: 跳过的记录数、每页记录数
+-- ARGV[4]: 为1时返回学生记录(格式见student-record.lua的recordRead)，否则以0占位，由调用方从近端缓存读取
+-- 返回: {总数, id1, record1, id2, record2, ...}
+local prefix = string.gsub(string.lower(ARGV[1]), '%z', '')
+local min, max = '-', '+'
+if prefix ~= '' then
+    -- UTF-8编码中不会出现字节0xFF，以其作为前缀区间的开上界
+    min, max = '[' .. prefix, '(' .. prefix .. '\255'
+end
+-- ZLEXCOUNT与ZRANGEBYLEX的复杂度只与索引大小的对数及返回的记录数有关
+local result = { redis.call('ZLEXCOUNT', KEYS[1], min, max) }
+local members = redis.call('ZRANGEBYLEX', KEYS[1], min, max, 'LIMIT', ARGV[2], ARGV[3])
+for _, member in ipairs(members) do
+    local id = string.sub(member, string.find(member, '\0', 1, true) + 1)
+    result[#result + 1] = id
+    if ARGV[4] == '1' then
+        result[#result + 1] = recordRead(id)
+    else
+        result[#result + 1] = 0
+    end
+end
+return result
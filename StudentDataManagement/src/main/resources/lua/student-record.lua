@@ -0,0 +1,78 @@
+-- 读写学生记录的公共函数，由RedisRecordLayout按配置替换占位符后拼接在访问学生记录的脚本之前
+-- hash布局: 每个学生一个哈希，key为学号，字段为学生的各项属性
+-- packed布局: 学生按学号分桶存储，桶为哈希，key为桶key前缀拼接桶号，字段为学号，值为StudentCodec.pack编码的紧凑记录
+-- 集群模式只使用packed布局，桶号对分片数取余得到分片号，桶key为桶key前缀拼接"{分片号}:桶号"，与该分片的排名和索引位于同一个槽
+local RECORD_PACKED = ${packed}
+local RECORD_BUCKET_PREFIX = '${bucketPrefix}'
+local RECORD_BUCKETS = ${buckets}
+local RECORD_SHARDS = ${shards}
+
+-- 学号所在桶的key，与RedisRecordLayout.bucketKey一致: 对学号的UTF-8字节计算h = (h * 31 + b) % 桶数
+local function recordBucket(id)
+    local h = 0
+    for i = 1, #id do
+        h = (h * 31 + string.byte(id, i)) % RECORD_BUCKETS
+    end
+    if RECORD_SHARDS > 0 then
+        return RECORD_BUCKET_PREFIX .. '{' .. (h % RECORD_SHARDS) .. '}:' .. h
+    end
+    return RECORD_BUCKET_PREFIX .. h
+end
+
+-- 写入、删除和重建索引脚本的KEYS[1]对应的学号，集群模式下KEYS[1]带有分片的哈希标签前缀"{分片号}"，
+-- 使脚本声明的所有key位于同一个槽，去掉前缀即为学号
+local function recordId(key)
+    if RECORD_SHARDS > 0 then
+        return string.sub(key, string.find(key, '}', 1, true) + 1)
+    end
+    return key
+end
+
+-- 学生是否存在
+local function recordExists(id)
+    if RECORD_PACKED then
+        return redis.call('HEXISTS', recordBucket(id), id) == 1
+    end
+    return redis.call('EXISTS', id) == 1
+end
+
+-- 读取学生记录，hash布局返回字段和值交替排列的列表，packed布局返回紧凑记录，学生不存在时返回空列表
+local function recordRead(id)
+    if RECORD_PACKED then
+        return redis.call('HGET', recordBucket(id), id) or {}
+    end
+    return redis.call('HGETALL', id)
+end
+
+-- 从紧凑记录中解析姓名，记录的第二个字节最低位表示有姓名，姓名紧随其后，
+-- 长度为变长整数，每个字节低6位为数据，0x40表示后面还有字节
+local function recordDecodeName(record)
+    if string.byte(record, 2) % 2 == 0 then
+        return false
+    end
+    local length, shift, pos, b = 0, 1, 3, 0
+    repeat
+        b = string.byte(record, pos)
+        length = length + (b % 64) * shift
+        shift = shift * 64
+        pos = pos + 1
+    until b < 64
+    return string.sub(record, pos, pos + length - 1)
+end
+
+-- 读取学生姓名，学生不存在或没有姓名时返回false
+local function recordName(id)
+    if RECORD_PACKED then
+        local record = redis.call('HGET', recordBucket(id), id)
+        return record and recordDecodeName(record)
+    end
+    return redis.call('HGET', id, 'name')
+end
+
+-- 删除学生记录，返回删除的学生数
+local function recordDelete(id)
+    if RECORD_PACKED then
+        return redis.call('HDEL', recordBucket(id), id)
+    end
+    return redis.call('DEL', id)
+end
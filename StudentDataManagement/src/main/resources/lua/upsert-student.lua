@@ -0,0 +1,103 @@
+-- 原子地添加或更新一个学生，一次往返完成存在性检查和所有写入
+-- KEYS[1]: 学号(hash布局时即学生哈希，集群模式下带有分片的哈希标签前缀), KEYS[2]: 学生排名sorted set, KEYS[3]: 数据集版本号, KEYS[4]: 姓名索引sorted set
+-- KEYS[5]: 该学生备注包含的词set, KEYS[6]: 按平均分分桶的出生日期索引sorted set
+-- KEYS[7]: 平均分统计hash，包含学生数count、平均分总和sum、0~150各分数的学生数以及超出该范围的学生数other
+-- ARGV[1]: create表示仅在学生不存在时添加，update表示仅在学生存在时更新，upsert表示不检查
+-- ARGV[2]: 平均分
+-- ARGV[3]: 近端缓存失效频道，为空字符串时不递增版本号也不发布通知，由批量写入的调用方统一处理
+-- ARGV[4]: 备注倒排索引key的前缀，与词拼接后为包含该词的学生ID set
+-- ARGV[5]: 出生日期索引的分数，即平均分*桶宽+出生日期的纪元日+偏移量，为空字符串表示没有出生日期
+-- ARGV[6]: 备注分词后的词数n，ARGV[7...6+n]: 备注包含的词
+-- ARGV[7+n]: packed布局时为学生的紧凑记录，hash布局时为空字符串
+-- ARGV[8+n...]: 学生的字段和值，交替排列，hash布局时原样写入学生哈希
+-- 返回: 写入结果CREATED、UPDATED、ALREADY_EXISTS或NOT_FOUND；ARGV[3]不为空时返回{写入结果, 写入后的数据集版本号}，未写入时版本号为0
+local function reply(status, version)
+    if ARGV[3] ~= '' then
+        return { status, version or 0 }
+    end
+    return status
+end
+local id = recordId(KEYS[1])
+local exists = recordExists(id)
+if ARGV[1] == 'create' and exists then
+    return reply('ALREADY_EXISTS')
+end
+if ARGV[1] == 'update' and not exists then
+    return reply('NOT_FOUND')
+end
+local termCount = tonumber(ARGV[6])
+local fieldStart = 8 + termCount
+local fields = {}
+for i = fieldStart, #ARGV - 1, 2 do
+    fields[ARGV[i]] = ARGV[i + 1]
+end
+-- 姓名索引的成员为"小写姓名\0学号"，所有成员分数相同，按字典序排列
+local function nameMember(name)
+    return (string.gsub(string.lower(name), '%z', '')) .. '\0' .. id
+end
+if fields['name'] then
+    -- 姓名变化时先移除旧的索引成员，必须在写入学生记录之前读取旧姓名
+    local old = exists and recordName(id)
+    if old and old ~= '' and old ~= fields['name'] then
+        redis.call('ZREM', KEYS[4], nameMember(old))
+    end
+    if fields['name'] ~= '' then
+        redis.call('ZADD', KEYS[4], 0, nameMember(fields['name']))
+    end
+end
+if fields['description'] then
+    -- 从旧备注包含而新备注不包含的词的倒排索引中移除该学生，再加入新备注包含的词
+    local terms = {}
+    for i = 7, fieldStart - 2 do
+        terms[ARGV[i]] = true
+    end
+    for _, term in ipairs(redis.call('SMEMBERS', KEYS[5])) do
+        if not terms[term] then
+            redis.call('SREM', ARGV[4] .. term, id)
+        end
+    end
+    redis.call('DEL', KEYS[5])
+    for i = 7, fieldStart - 2 do
+        redis.call('SADD', ARGV[4] .. ARGV[i], id)
+        redis.call('SADD', KEYS[5], ARGV[i])
+    end
+end
+-- 从平均分统计中减去旧的平均分，再加上新的平均分，必须在更新排名之前读取旧平均分
+local function statsField(score)
+    if score >= 0 and score <= 150 and score % 1 == 0 then
+        return tostring(score)
+    end
+    return 'other'
+end
+local oldScore = redis.call('ZSCORE', KEYS[2], id)
+if oldScore then
+    oldScore = tonumber(oldScore)
+    redis.call('HINCRBY', KEYS[7], 'count', -1)
+    redis.call('HINCRBY', KEYS[7], 'sum', -oldScore)
+    redis.call('HINCRBY', KEYS[7], statsField(oldScore), -1)
+end
+local newScore = tonumber(ARGV[2])
+redis.call('HINCRBY', KEYS[7], 'count', 1)
+redis.call('HINCRBY', KEYS[7], 'sum', newScore)
+redis.call('HINCRBY', KEYS[7], statsField(newScore), 1)
+if RECORD_PACKED then
+    -- 紧凑记录整条覆盖，写入的学生已通过校验，所有字段均不为null
+    redis.call('HSET', recordBucket(id), id, ARGV[fieldStart - 1])
+else
+    redis.call('HSET', id, unpack(ARGV, fieldStart))
+end
+redis.call('ZADD', KEYS[2], ARGV[2], id)
+if ARGV[5] ~= '' then
+    redis.call('ZADD', KEYS[6], ARGV[5], id)
+else
+    redis.call('ZREM', KEYS[6], id)
+end
+local version
+if ARGV[3] ~= '' then
+    version = redis.call('INCR', KEYS[3])
+    redis.call('PUBLISH', ARGV[3], id)
+end
+if exists then
+    return reply('UPDATED', version)
+end
+return reply('CREATED', version)
@@ -1,3 +1,45 @@
+// 当前显示的页码
+let currentPage = 1;
+// 学生总记录数
+let totalCount = 0;
+// 是否已连接变更事件流，连接后修改、删除学生不再重新加载整页，由变更事件更新对应的行
+let liveChanges = false;
+// 每个学生已收到的变更事件中最大的版本号，事件追加的顺序可能与写入顺序不同，忽略版本号更小的更新
+let changeVersions = {};
+
+// 转义HTML特殊字符
+function escapeHtml(value) {
+    return String(value === null || value === undefined ? "" : value)
+        .replace(/&/g, "&amp;").replace(/</g, "&lt;").replace(/>/g, "&gt;")
+        .replace(/"/g, "&quot;").replace(/'/g, "&#39;");
+}
+
+// 生成一个学生的表格行，行的data-id为学号，操作链接按点击时所在的行定位学生
+function renderRow(student) {
+    return "<tr data-id='" + escapeHtml(student.id) + "'>" +
+        "<td>" + escapeHtml(student.id) + "</td>" +
+        "<td>" + escapeHtml(student.name) + "</td>" +
+        "<td>" + escapeHtml(student.birthday) + "</td>" +
+        "<td>" + escapeHtml(student.description) + "</td>" +
+        "<td>" + escapeHtml(student.avgScore) + "</td>" +
+        "<td>" +
+        "<a class='link link-info' onclick='openModalStudent($(this).closest(\"tr\").index())'>修改</a>&nbsp;" +
+        "<a class='link link-danger' onclick='delStudent($(this).closest(\"tr\").index(), $(this).closest(\"tr\").attr(\"data-id\"))'>删除</a>&nbsp;" +
+        "</td></tr>";
+}
+
+// 查找当前页中指定学号的行
+function findRow(studentId) {
+    return $("#t-body tr").filter(function () {
+        return $(this).attr("data-id") === studentId;
+    });
+}
+
+// 更新总记录数
+function showTotal() {
+    $("#total").text("共" + totalCount + "条记录");
+}
+
 // 获取学生分页信息，更新表格体(t-body)和分页信息条(bottom-bar)
 function getPageStudent(pageNumber) {
     let url = "/students?pageNum=" + pageNumber;
@@ -5,24 +47,17 @@ function getPageStudent(pageNumber) {
         if (res === null) {
             return;
         }
+        currentPage = res.pageNum;
         // 更新学生数据表格
         let students = res.records;
         let result = "";
         for (let i = 0; i < students.length; i++) {
-            result += "<tr>";
-            result += "<td>" + students[i].id + "</td>";
-            result += "<td>" + students[i].name + "</td>";
-            result += "<td>" + students[i].birthday + "</td>";
-            result += "<td>" + students[i].description + "</td>";
-            result += "<td>" + students[i].avgScore + "</td>";
-            result += "<td>" +
-                "<a class='link link-info' onclick='openModalStudent(" + i + ")'>修改</a>&nbsp;" +
-                "<a class='link link-danger' onclick='delStudent(" + i + ", " + students[i].id + ")'>删除</a>&nbsp;";
-            result += "</tr>";
+            result += renderRow(students[i]);
         }
         $("#t-body").html(result);
         // 设置上一页按钮
         let $prev = $("#prev");
+        $prev.off("click");
         if (res.pageNum === 1) {
             $prev.attr("disabled", true);
         } else {
@@ -43,6 +78,7 @@ function getPageStudent(pageNumber) {
         $("#page").html(html);
         // 设置下一页按钮
         let $next = $("#next");
+        $next.off("click");
         if (res.pageNum === res.totalPage) {
             $next.attr("disabled", true);
         } else {
@@ -52,10 +88,68 @@ function getPageStudent(pageNumber) {
             });
         }
         // 设置总记录数
-        $("#total").text("共" + res.totalCount + "条记录");
+        totalCount = res.totalCount;
+        showTotal();
     })
 }
 
+// 订阅学生数据变更事件，只更新当前页中变化的行；浏览器不支持或服务端未启用时仍在每次修改后重新加载当前页
+function subscribeChanges() {
+    if (!window.EventSource) {
+        return;
+    }
+    let source = new EventSource("/students/changes");
+    source.onopen = function () {
+        liveChanges = true;
+    };
+    source.addEventListener("change", function (e) {
+        applyChange(JSON.parse(e.data));
+    });
+    source.onerror = function () {
+        // 连接断开时浏览器带上最后收到的事件ID自动重连，服务端拒绝连接时不再重连
+        if (source.readyState !== EventSource.CLOSED) {
+            return;
+        }
+        if (liveChanges) {
+            // 稍后重新订阅，期间可能错过变更，重新加载当前页
+            liveChanges = false;
+            setTimeout(function () {
+                subscribeChanges();
+                getPageStudent(currentPage);
+            }, 5000);
+        }
+    };
+}
+
+// 按变更事件更新当前页：修改的学生替换对应的行，删除的学生移除对应的行，添加和删除都更新总记录数，
+// 批量写入或无法补发错过的事件时重新加载当前页
+function applyChange(event) {
+    let $row = event.studentId === null ? $() : findRow(event.studentId);
+    // 版本号不大于该学生已收到事件的更新已被更晚的写入覆盖
+    let stale = false;
+    if (event.studentId !== null && event.version != null) {
+        let seen = changeVersions[event.studentId];
+        stale = seen !== undefined && event.version <= seen;
+        if (!stale) {
+            changeVersions[event.studentId] = event.version;
+        }
+    }
+    if (event.type === "reset" || (event.type !== "remove" && event.student === null)) {
+        changeVersions = {};
+        getPageStudent(currentPage);
+    } else if (event.type === "create") {
+        totalCount++;
+        showTotal();
+    } else if (event.type === "update" && !stale) {
+        $row.replaceWith(renderRow(event.student));
+    } else if (event.type === "remove") {
+        // 被删除的学生不在当前页时也要减少总记录数
+        $row.remove();
+        totalCount--;
+        showTotal();
+    }
+}
+
 // 添加或更新学生信息
 function addOrUpdStudent(flag) {
     let id = $("#id").val();
@@ -87,10 +181,12 @@ function addOrUpdStudent(flag) {
             success: function (data) {
                 toast(data);
                 closeModel();
-                getPageStudent(1);
+                // 新学生在排名中的位置未知，重新加载当前页
+                getPageStudent(currentPage);
             },
-            error: function () {
-                toast("网络错误！")
+            error: function (xhr) {
+                // 服务端拒绝时显示其返回的提示消息
+                toast(xhr.responseText || "网络错误！")
             }
         });
     } else {
@@ -101,10 +197,14 @@ function addOrUpdStudent(flag) {
             success: function (data) {
                 toast(data);
                 closeModel();
-                getPageStudent(1);
+                // 已连接变更事件流时由更新事件替换对应的行
+                if (!liveChanges) {
+                    getPageStudent(currentPage);
+                }
             },
-            error: function () {
-                toast("网络错误！")
+            error: function (xhr) {
+                // 服务端拒绝时显示其返回的提示消息
+                toast(xhr.responseText || "网络错误！")
             }
         });
 
@@ -113,14 +213,18 @@ function addOrUpdStudent(flag) {
 
 // 删除学生信息并移除相关dom
 function delStudent(index, userId) {
-    let url = '/students?id=' + userId;
+    let url = '/students?id=' + encodeURIComponent(userId);
     $.ajax({
         type: 'DELETE',
         url: url,
         success: function (data) {
             toast(data);
-            getPageStudent(1);
-            $('#t-body tr:eq(' + index + ')').remove();
+            // 已连接变更事件流时只移除该行，总记录数由删除事件更新
+            if (liveChanges) {
+                $('#t-body tr:eq(' + index + ')').remove();
+            } else {
+                getPageStudent(currentPage);
+            }
         },
         error: function () {
             toast("网络错误！")
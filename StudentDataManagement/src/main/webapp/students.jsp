@@ -135,7 +135,8 @@
 <div class="shade hide"></div>
 <script>
     $(function () {
-        // 初始化加载第一页用户信息
+        // 订阅学生数据变更事件，并加载第一页用户信息
+        subscribeChanges();
         getPageStudent(1);
         // 监听学号输入框失去焦点事件，检查学号是否存在
         $("#id").blur(function () {
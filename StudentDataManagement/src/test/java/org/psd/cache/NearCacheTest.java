@@ -0,0 +1,41 @@
+package org.psd.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 近端缓存的单元测试，验证读取期间发生失效时不写入缓存
+ *
+ * @author pengshidun
+ */
+public class NearCacheTest {
+
+    @Test
+    public void putWithoutInvalidationIsCached() {
+        NearCache<String> cache = new NearCache<>(10, 60000L);
+        long generation = cache.beginRead();
+        cache.put("1", "张三", generation);
+        assertEquals("张三", cache.get("1"));
+    }
+
+    @Test
+    public void putAfterInvalidationIsSkipped() {
+        NearCache<String> cache = new NearCache<>(10, 60000L);
+        long generation = cache.beginRead();
+        // 读取Redis期间收到该学生的失效通知，读到的旧值不能写入缓存
+        cache.invalidate("1");
+        cache.put("1", "旧值", generation);
+        assertNull(cache.get("1"));
+
+        generation = cache.beginRead();
+        cache.invalidateAll();
+        cache.put("1", "旧值", generation);
+        assertNull(cache.get("1"));
+
+        generation = cache.beginRead();
+        cache.put("1", "新值", generation);
+        assertEquals("新值", cache.get("1"));
+    }
+}
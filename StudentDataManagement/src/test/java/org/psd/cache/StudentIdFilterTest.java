@@ -0,0 +1,107 @@
+package org.psd.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.psd.entity.Student;
+import org.psd.storage.WriteMode;
+import org.psd.storage.impl.MemoryStudentStorage;
+import org.psd.storage.impl.WriteBehindStudentStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 学生ID过滤器的单元测试。被包装的进程内存储引擎在批量写入后按Redis存储引擎的方式生成失效通知，
+ * 模拟其他节点的过滤器收到这些通知，验证写后缓冲的合并提交不使过滤器失去完整性
+ *
+ * @author pengshidun
+ */
+public class StudentIdFilterTest {
+
+    private StudentIdFilter filter;
+    private WriteBehindStudentStorage storage;
+
+    @Before
+    public void setUp() {
+        // 没有需要扫描的排名集合，订阅建立后的重建立即完成；批量写入后的重建延迟足够长，测试期间不会执行
+        filter = new StudentIdFilter(Collections.emptyList(), 100, 0.01, 60000L);
+        filter.setTracking(true);
+        await();
+        MemoryStudentStorage delegate = new MemoryStudentStorage() {
+            @Override
+            public List<String> writeAll(List<Student> students, WriteMode mode, boolean transactional) {
+                List<String> errors = super.writeAll(students, mode, transactional);
+                List<String> changedIds = new ArrayList<>();
+                for (int i = 0; i < students.size(); i++) {
+                    if (errors.get(i) == null) {
+                        changedIds.add(students.get(i).getId());
+                    }
+                }
+                NearCacheManager.batchMessages(mode == WriteMode.UPDATE, changedIds).forEach(filter::onInvalidation);
+                return errors;
+            }
+        };
+        delegate.write(student("s1", 90), WriteMode.UPSERT);
+        filter.add("s1");
+        storage = new WriteBehindStudentStorage(delegate, null, 100, 100, 60000L, 0L);
+    }
+
+    @After
+    public void tearDown() {
+        storage.shutdown();
+        filter.shutdown();
+    }
+
+    @Test
+    public void writeBehindFlushKeepsFilterComplete() {
+        storage.write(student("s1", 95), WriteMode.UPDATE);
+        storage.flush();
+        assertEquals(true, filter.getStats().get("ready"));
+        assertTrue(filter.mightContain("s1"));
+        assertFalse(filter.mightContain("s2"));
+    }
+
+    @Test
+    public void batchThatMayAddStudentsMarksFilterIncomplete() {
+        storage.writeAll(Collections.singletonList(student("s2", 80)), WriteMode.UPSERT, false);
+        assertEquals(false, filter.getStats().get("ready"));
+    }
+
+    @Test
+    public void failedBatchPublishesNothing() {
+        storage.writeAll(Collections.singletonList(student("s1", 80)), WriteMode.CREATE, false);
+        assertEquals(true, filter.getStats().get("ready"));
+        assertTrue(NearCacheManager.batchMessages(false, Collections.emptyList()).isEmpty());
+    }
+
+    private void await() {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Boolean.TRUE.equals(filter.getStats().get("ready"))) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("等待过滤器重建超时");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static Student student(String id, int avgScore) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("张三");
+        student.setDescription("");
+        student.setBirthday("");
+        student.setAvgScore(avgScore);
+        return student;
+    }
+}
@@ -0,0 +1,201 @@
+package org.psd.controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.psd.common.ChangeEvent;
+import org.psd.storage.impl.LocalChangeFeed;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 变更事件广播的单元测试，使用进程内的变更事件流，验证按Last-Event-ID补发、事件被裁剪后推送RESET以及断开接收过慢的页面
+ *
+ * @author pengshidun
+ */
+public class ChangeBroadcasterTest {
+
+    private LocalChangeFeed feed;
+    private ChangeBroadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        feed = new LocalChangeFeed(3);
+        broadcaster = new ChangeBroadcaster(feed, 10, 10, 16, 60000L, 3000L);
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void newSubscriberStartsAtDispatchedPosition() {
+        String first = append("s1");
+        Client client = subscribe(null);
+        await(() -> client.text().contains("id: " + first + "\n"));
+        assertTrue(client.text().startsWith("retry: 3000\n"));
+        // 订阅之前的事件不推送
+        assertFalse(client.text().contains("event: change"));
+
+        String second = append("s2");
+        await(() -> client.text().contains("id: " + second + "\nevent: change"));
+    }
+
+    @Test
+    public void resumeReplaysEventsAfterLastEventId() {
+        Client live = subscribe(null);
+        String first = append("s1");
+        String second = append("s2");
+        String third = append("s3");
+        await(() -> live.text().contains("id: " + third + "\n"));
+
+        Client resumed = subscribe(first);
+        await(() -> resumed.text().contains("id: " + third + "\n"));
+        assertFalse(resumed.text().contains("id: " + first + "\n"));
+        assertTrue(resumed.text().indexOf("id: " + second + "\n") < resumed.text().indexOf("id: " + third + "\n"));
+        assertFalse(resumed.text().contains("\"reset\""));
+
+        // 补发后的新事件只推送一次
+        String fourth = append("s4");
+        await(() -> resumed.text().contains("id: " + fourth + "\n"));
+        assertEquals(resumed.text().indexOf("id: " + fourth + "\n"), resumed.text().lastIndexOf("id: " + fourth + "\n"));
+    }
+
+    @Test
+    public void resumeAfterTrimmedEventSendsReset() {
+        Client live = subscribe(null);
+        String first = append("s1");
+        append("s2");
+        append("s3");
+        append("s4");
+        // 事件流最多保留3个事件，first之后的s2已被裁剪
+        String last = append("s5");
+        await(() -> live.text().contains("id: " + last + "\n"));
+
+        Client resumed = subscribe(first);
+        await(() -> resumed.text().contains("\"reset\""));
+        assertTrue(resumed.text().contains("id: " + last + "\nevent: change"));
+        assertFalse(resumed.text().contains("\"s5\""));
+    }
+
+    @Test
+    public void slowSubscriberIsDroppedWithoutBlockingOthers() {
+        // 每个页面最多排队2个事件
+        broadcaster.shutdown();
+        broadcaster = new ChangeBroadcaster(feed, 10, 10, 2, 60000L, 3000L);
+        CountDownLatch unblock = new CountDownLatch(1);
+        Client slow = subscribe(null, unblock);
+        Client fast = subscribe(null);
+        // 逐个追加事件，正常的页面每次都能及时收完，只有阻塞的页面积压
+        for (int i = 0; i < 6; i++) {
+            String id = append("s" + i);
+            await(() -> fast.text().contains("id: " + id + "\n"));
+        }
+        await(slow::isCompleted);
+        assertEquals(1L, broadcaster.getStats().get("droppedClients"));
+        assertEquals(1, broadcaster.getStats().get("clients"));
+        unblock.countDown();
+    }
+
+    private String append(String studentId) {
+        ChangeEvent event = new ChangeEvent(ChangeEvent.REMOVE, studentId, null);
+        feed.append(event);
+        return event.getId();
+    }
+
+    private Client subscribe(String lastEventId) {
+        return subscribe(lastEventId, null);
+    }
+
+    private Client subscribe(String lastEventId, CountDownLatch blockUntil) {
+        Client client = new Client(blockUntil);
+        assertTrue(broadcaster.subscribe(client.context, lastEventId));
+        return client;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("等待超时");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * 模拟的页面连接，记录写入响应的内容，blockUntil不为null时第一次写入阻塞到其计数归零
+     */
+    private static class Client {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        private final AsyncContext context;
+        private volatile boolean completed;
+
+        Client(CountDownLatch blockUntil) {
+            ServletOutputStream out = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (blockUntil != null) {
+                        try {
+                            blockUntil.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    synchronized (received) {
+                        received.write(b, off, len);
+                    }
+                }
+            };
+            ServletResponse response = (ServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ServletResponse.class}, (proxy, method, args) ->
+                            "getOutputStream".equals(method.getName()) ? out : null);
+            context = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{AsyncContext.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getResponse":
+                                return response;
+                            case "complete":
+                                completed = true;
+                                return null;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        String text() {
+            synchronized (received) {
+                return new String(received.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.psd.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.psd.common.WriteStatus;
+import org.psd.entity.Student;
+import org.psd.storage.impl.MemoryStudentStorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 学生数据服务的单元测试，使用进程内存储引擎，验证录入规则的校验和非法参数的处理
+ *
+ * @author pengshidun
+ */
+public class StudentServiceImplTest {
+
+    private MemoryStudentStorage storage;
+    private StudentServiceImpl service;
+
+    @Before
+    public void setUp() {
+        storage = new MemoryStudentStorage();
+        service = new StudentServiceImpl(storage, null);
+    }
+
+    @Test
+    public void impossibleBirthdayIsRejected() {
+        // 宽松解析会把2005-02-30读作2005-02-28，而出生日期索引无法解析该日期
+        assertEquals(WriteStatus.INVALID, service.saveStudent(student("s1", "2005-02-30")));
+        assertEquals(WriteStatus.INVALID, service.saveStudent(student("s1", "2005-2-3")));
+        assertEquals(WriteStatus.INVALID, service.saveStudent(student("s1", "+999999-01-01")));
+        assertFalse(storage.exists("s1"));
+
+        assertEquals(WriteStatus.CREATED, service.saveStudent(student("s1", "2004-02-29")));
+        assertEquals(WriteStatus.INVALID, service.updateStudent(student("s1", "2005-02-29")));
+        assertEquals("2004-02-29", storage.listPage(1, 10).getRecords().get(0).getBirthday());
+    }
+
+    @Test
+    public void removeWithBlankIdReturnsFalse() {
+        assertFalse(service.removeStudent(null));
+        assertFalse(service.removeStudent(""));
+        assertFalse(service.removeStudent("s1"));
+    }
+
+    private static Student student(String id, String birthday) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("张三");
+        student.setDescription("");
+        student.setBirthday(birthday);
+        student.setAvgScore(90);
+        return student;
+    }
+}
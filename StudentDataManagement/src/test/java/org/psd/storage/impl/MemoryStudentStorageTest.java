@@ -0,0 +1,179 @@
+package org.psd.storage.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.psd.common.ChangeEvent;
+import org.psd.common.CursorPageInfo;
+import org.psd.common.PageInfo;
+import org.psd.common.RankCursor;
+import org.psd.common.StudentRank;
+import org.psd.entity.Student;
+import org.psd.storage.WriteMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 进程内存储引擎的单元测试，验证排名顺序、游标翻页和排名定位与Redis引擎的语义一致
+ *
+ * @author pengshidun
+ */
+public class MemoryStudentStorageTest {
+
+    private MemoryStudentStorage storage;
+
+    /**
+     * 排名顺序为: s0(95), s5(90), s4(90), s3(90), s2(90), s1(90), s9(80), s8(80), s7(70), s6(60)
+     */
+    @Before
+    public void setUp() {
+        storage = new MemoryStudentStorage();
+        write("s1", 90);
+        write("s3", 90);
+        write("s2", 90);
+        write("s0", 95);
+        write("s5", 90);
+        write("s4", 90);
+        write("s9", 80);
+        write("s8", 80);
+        write("s7", 70);
+        write("s6", 60);
+    }
+
+    @Test
+    public void tiesAreOrderedByIdDescending() {
+        PageInfo<Student> page = storage.listPage(1, 10);
+        assertEquals(Long.valueOf(10), page.getTotalCount());
+        assertEquals(Arrays.asList("s0", "s5", "s4", "s3", "s2", "s1", "s9", "s8", "s7", "s6"), ids(page.getRecords()));
+        // 第二页从同一平均分的中间开始
+        assertEquals(Arrays.asList("s3", "s2", "s1"), ids(storage.listPage(2, 3).getRecords()));
+    }
+
+    @Test
+    public void cursorPagesForwardAndBackward() {
+        CursorPageInfo<Student> first = storage.listByCursor(null, 3);
+        assertEquals(Arrays.asList("s0", "s5", "s4"), ids(first.getRecords()));
+        assertNull(first.getPrevCursor());
+
+        CursorPageInfo<Student> second = storage.listByCursor(RankCursor.decode(first.getNextCursor()), 3);
+        assertEquals(Long.valueOf(3), second.getStartIndex());
+        assertEquals(Arrays.asList("s3", "s2", "s1"), ids(second.getRecords()));
+
+        CursorPageInfo<Student> back = storage.listByCursor(RankCursor.decode(second.getPrevCursor()), 3);
+        assertEquals(Long.valueOf(0), back.getStartIndex());
+        assertEquals(Arrays.asList("s0", "s5", "s4"), ids(back.getRecords()));
+    }
+
+    @Test
+    public void nextCursorSurvivesDeletionOfBoundaryRow() {
+        CursorPageInfo<Student> first = storage.listByCursor(null, 3);
+        // 删除作为游标的末条记录和下一页中的一条记录
+        storage.remove("s4");
+        storage.remove("s2");
+        CursorPageInfo<Student> second = storage.listByCursor(RankCursor.decode(first.getNextCursor()), 3);
+        assertEquals(Long.valueOf(2), second.getStartIndex());
+        assertEquals(Long.valueOf(8), second.getTotalCount());
+        assertEquals(Arrays.asList("s3", "s1", "s9"), ids(second.getRecords()));
+    }
+
+    @Test
+    public void prevCursorSurvivesDeletionOfBoundaryRow() {
+        CursorPageInfo<Student> first = storage.listByCursor(null, 3);
+        CursorPageInfo<Student> second = storage.listByCursor(RankCursor.decode(first.getNextCursor()), 3);
+        // 删除作为游标的首条记录和上一页中的一条记录
+        storage.remove("s3");
+        storage.remove("s5");
+        CursorPageInfo<Student> back = storage.listByCursor(RankCursor.decode(second.getPrevCursor()), 3);
+        assertEquals(Long.valueOf(0), back.getStartIndex());
+        assertEquals(Arrays.asList("s0", "s4"), ids(back.getRecords()));
+        assertNull(back.getPrevCursor());
+        assertNotNull(back.getNextCursor());
+    }
+
+    @Test
+    public void cursorUsesOriginalPositionOfRescoredRow() {
+        CursorPageInfo<Student> first = storage.listByCursor(null, 3);
+        // 游标指向的学生平均分提高到第一名，游标仍按(90, s4)定位
+        write("s4", 100);
+        CursorPageInfo<Student> second = storage.listByCursor(RankCursor.decode(first.getNextCursor()), 3);
+        assertEquals(Long.valueOf(3), second.getStartIndex());
+        assertEquals(Arrays.asList("s3", "s2", "s1"), ids(second.getRecords()));
+    }
+
+    @Test
+    public void locateReturnsPositionRankAndPage() {
+        StudentRank rank = storage.locate("s2", 3);
+        assertEquals(Long.valueOf(4), rank.getPosition());
+        // 平均分相同的学生名次相同，名次为平均分更高的学生数加一
+        assertEquals(Long.valueOf(2), rank.getRank());
+        assertEquals(Integer.valueOf(2), rank.getPage().getPageNum());
+        assertEquals(Arrays.asList("s3", "s2", "s1"), ids(rank.getPage().getRecords()));
+
+        rank = storage.locate("s6", 4);
+        assertEquals(Long.valueOf(9), rank.getPosition());
+        assertEquals(Long.valueOf(10), rank.getRank());
+        assertEquals(Integer.valueOf(3), rank.getPage().getPageNum());
+        assertEquals(Arrays.asList("s7", "s6"), ids(rank.getPage().getRecords()));
+
+        assertNull(storage.locate("missing", 3));
+    }
+
+    @Test
+    public void locateFollowsDeletes() {
+        storage.remove("s0");
+        storage.remove("s5");
+        StudentRank rank = storage.locate("s2", 3);
+        assertEquals(Long.valueOf(2), rank.getPosition());
+        assertEquals(Long.valueOf(1), rank.getRank());
+        assertEquals(Arrays.asList("s4", "s3", "s2"), ids(rank.getPage().getRecords()));
+    }
+
+    @Test
+    public void changeEventsCarryWriteVersions() {
+        LocalChangeFeed feed = new LocalChangeFeed(100);
+        MemoryStudentStorage storage = new MemoryStudentStorage(feed);
+        Student student = new Student();
+        student.setId("s1");
+        student.setAvgScore(90);
+        storage.write(student, WriteMode.UPSERT);
+        storage.write(student, WriteMode.UPSERT);
+        assertTrue(storage.remove("s1"));
+        // 删除不存在的学生不递增版本号，也不追加事件
+        assertFalse(storage.remove("s1"));
+        assertEquals(3, storage.getVersion());
+
+        List<ChangeEvent> events = feed.read(ChangeEvent.INITIAL_ID, 10, 0);
+        assertEquals(3, events.size());
+        assertEquals(ChangeEvent.CREATE, events.get(0).getType());
+        assertEquals(ChangeEvent.UPDATE, events.get(1).getType());
+        assertEquals(ChangeEvent.REMOVE, events.get(2).getType());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), events.get(i).getVersion());
+        }
+    }
+
+    private void write(String id, int avgScore) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName("");
+        student.setDescription("");
+        student.setBirthday("");
+        student.setAvgScore(avgScore);
+        storage.write(student, WriteMode.UPSERT);
+    }
+
+    private static List<String> ids(List<Student> students) {
+        List<String> ids = new ArrayList<>(students.size());
+        for (Student student : students) {
+            ids.add(student.getId());
+        }
+        return ids;
+    }
+}
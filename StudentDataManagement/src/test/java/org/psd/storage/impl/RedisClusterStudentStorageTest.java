@@ -0,0 +1,249 @@
+package org.psd.storage.impl;
+
+import org.junit.Test;
+import org.psd.storage.impl.RedisClusterStudentStorage.ShardEntry;
+import org.psd.storage.impl.RedisClusterStudentStorage.ShardResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.psd.storage.StudentStorage.MAX_SCORE;
+import static org.psd.storage.StudentStorage.MIN_SCORE;
+
+/**
+ * Redis集群存储引擎归并逻辑的单元测试。各分片的查询结果按keyset-page.lua的语义在内存中模拟，
+ * 验证归并后的顺序、游标分页的开始排名和排名定位与把所有学生放在一个分片中时一致
+ *
+ * @author pengshidun
+ */
+public class RedisClusterStudentStorageTest {
+
+    /**
+     * 分布在3个分片上的学生，平均分90的学生分散在各个分片上，学号含有非ASCII字符和不同长度
+     */
+    private static final List<List<ShardEntry>> SHARDS = Arrays.asList(
+            sorted(entry("a9", 95), entry("b1", 90), entry("b10", 90), entry("学01", 90), entry("c1", 70), entry("x", 200)),
+            sorted(entry("a1", 95), entry("b2", 90), entry("b", 90), entry("Z9", 90), entry("c2", 70)),
+            sorted(entry("b3", 90), entry("b20", 90), entry("学1", 90), entry("c0", 70), entry("d0", 10)));
+
+    @Test
+    public void mergeOrdersTiesAcrossShardsByIdBytes() {
+        List<String> merged = ids(RedisClusterStudentStorage.merge(fullResults(), RedisClusterStudentStorage.RANK_ORDER,
+                0, Integer.MAX_VALUE));
+        assertEquals(Arrays.asList("x", "a9", "a1", "学1", "学01", "b3", "b20", "b2", "b10", "b1", "b", "Z9",
+                "c2", "c1", "c0", "d0"), merged);
+        assertEquals(ids(global()), merged);
+        // 跳过和截取跨越同分记录
+        assertEquals(Arrays.asList("b20", "b2", "b10"), ids(RedisClusterStudentStorage.merge(fullResults(),
+                RedisClusterStudentStorage.RANK_ORDER, 6, 3)));
+    }
+
+    @Test
+    public void cursorPagesMatchSingleShardOrder() {
+        List<ShardEntry> global = global();
+        for (int pageSize = 1; pageSize <= 5; pageSize++) {
+            // 从第一页开始向后翻到最后一页
+            ShardEntry cursor = null;
+            long expectedStart = 0;
+            List<ShardEntry> last = null;
+            while (expectedStart < global.size()) {
+                List<ShardResult> results = keyset(cursor, pageSize, false);
+                List<ShardEntry> page = RedisClusterStudentStorage.mergeCursorPage(results, false, pageSize);
+                assertEquals(expectedStart, RedisClusterStudentStorage.cursorStart(results, false, page.size()));
+                assertEquals(ids(slice(global, expectedStart, pageSize)), ids(page));
+                expectedStart += page.size();
+                cursor = page.get(page.size() - 1);
+                last = page;
+            }
+            // 从最后一页开始向前翻到第一页
+            cursor = last.get(0);
+            long before = global.size() - last.size();
+            while (before > 0) {
+                List<ShardResult> results = keyset(cursor, pageSize, true);
+                List<ShardEntry> page = RedisClusterStudentStorage.mergeCursorPage(results, true, pageSize);
+                long start = RedisClusterStudentStorage.cursorStart(results, true, page.size());
+                assertEquals(Math.max(0, before - pageSize), start);
+                assertEquals(ids(slice(global, start, (int) (before - start))), ids(page));
+                before = start;
+                cursor = page.get(0);
+            }
+        }
+    }
+
+    @Test
+    public void cursorOnDeletedRowUsesItsRankPosition() {
+        List<ShardEntry> global = global();
+        // 游标(90, "b15")不在任何分片中，位于b2和b10之间
+        ShardEntry cursor = entry("b15", 90);
+        List<ShardResult> next = keyset(cursor, 3, false);
+        List<ShardEntry> page = RedisClusterStudentStorage.mergeCursorPage(next, false, 3);
+        assertEquals(8, RedisClusterStudentStorage.cursorStart(next, false, page.size()));
+        assertEquals(ids(slice(global, 8, 3)), ids(page));
+
+        List<ShardResult> prev = keyset(cursor, 3, true);
+        page = RedisClusterStudentStorage.mergeCursorPage(prev, true, 3);
+        assertEquals(5, RedisClusterStudentStorage.cursorStart(prev, true, page.size()));
+        assertEquals(Arrays.asList("b3", "b20", "b2"), ids(page));
+    }
+
+    @Test
+    public void cursorTotalCountsOnlyScoresInRange() {
+        List<ShardResult> results = keyset(null, 3, false);
+        long total = 0;
+        long size = 0;
+        for (ShardResult result : results) {
+            total += result.total;
+            size += result.size;
+        }
+        // 平均分200的记录参与排名和翻页，不计入总数
+        assertEquals(15, total);
+        assertEquals(16, size);
+    }
+
+    @Test
+    public void locateSumsPerShardPositions() {
+        List<ShardEntry> global = global();
+        for (int position = 0; position < global.size(); position++) {
+            ShardEntry target = global.get(position);
+            List<long[]> counts = new ArrayList<>();
+            for (List<ShardEntry> shard : SHARDS) {
+                ShardResult result = keyset(shard, target, 0, false);
+                long higher = 0;
+                for (ShardEntry entry : shard) {
+                    if (entry.score > target.score) {
+                        higher++;
+                    }
+                }
+                counts.add(new long[]{result.start, higher, result.total});
+            }
+            long[] sums = RedisClusterStudentStorage.sumCounts(counts);
+            assertEquals(target.id, position, sums[0] - 1);
+            long higher = 0;
+            for (ShardEntry entry : global) {
+                if (entry.score > target.score) {
+                    higher++;
+                }
+            }
+            assertEquals(target.id, higher + 1, sums[1] + 1);
+            assertEquals(15, sums[2]);
+        }
+    }
+
+    @Test
+    public void birthdayIndexScoresMergeByScoreThenBirthday() {
+        List<List<ShardEntry>> shards = Arrays.asList(
+                sorted(birthday("s1", 90, "2003-01-01"), birthday("s2", 90, "2001-06-30"), birthday("s3", 80, "2005-01-01")),
+                sorted(birthday("s4", 90, "2003-01-01"), birthday("s5", 91, "1999-01-01"), birthday("s6", 90, "0600-01-01")),
+                sorted(birthday("s7", 80, "2006-12-31"), birthday("s8", 90, "3400-01-01")));
+        List<ShardResult> results = new ArrayList<>();
+        for (List<ShardEntry> shard : shards) {
+            results.add(new ShardResult(shard.size(), 0, shard));
+        }
+        // 平均分倒序，同一平均分内出生日期从晚到早，出生日期相同时学号倒序
+        assertEquals(Arrays.asList("s5", "s8", "s4", "s1", "s2", "s6", "s7", "s3"),
+                ids(RedisClusterStudentStorage.merge(results, RedisClusterStudentStorage.RANK_ORDER, 0, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void compareBytesMatchesUtf8Order() {
+        // U+FF21(全角A)的UTF-8编码小于U+1F600(emoji)，而UTF-16编码相反
+        assertEquals(-1, Integer.signum(RedisClusterStudentStorage.compareBytes("Ａ", "😀")));
+        assertEquals(-1, Integer.signum(RedisClusterStudentStorage.compareBytes("b", "b1")));
+        assertEquals(1, Integer.signum(RedisClusterStudentStorage.compareBytes("学", "z")));
+        assertEquals(0, RedisClusterStudentStorage.compareBytes("学1", "学1"));
+    }
+
+    /**
+     * 模拟各分片执行keyset-page.lua
+     */
+    private static List<ShardResult> keyset(ShardEntry cursor, int count, boolean prev) {
+        List<ShardResult> results = new ArrayList<>();
+        for (List<ShardEntry> shard : SHARDS) {
+            results.add(keyset(shard, cursor, count, prev));
+        }
+        return results;
+    }
+
+    /**
+     * 按keyset-page.lua的语义在一个分片中定位游标并取相邻的一页
+     */
+    private static ShardResult keyset(List<ShardEntry> shard, ShardEntry cursor, int count, boolean prev) {
+        long before = 0;
+        long after = 0;
+        if (cursor != null) {
+            for (ShardEntry entry : shard) {
+                int c = RedisClusterStudentStorage.RANK_ORDER.compare(entry, cursor);
+                if (c < 0) {
+                    before++;
+                } else if (c == 0) {
+                    after = 1;
+                }
+            }
+            after += before;
+        }
+        long start;
+        long n;
+        if (prev) {
+            start = Math.max(before - count, 0);
+            n = before - start;
+        } else {
+            start = after;
+            n = count;
+        }
+        long total = 0;
+        for (ShardEntry entry : shard) {
+            if (entry.score >= MIN_SCORE && entry.score <= MAX_SCORE) {
+                total++;
+            }
+        }
+        return new ShardResult(total, start, shard.size(), slice(shard, start, (int) n));
+    }
+
+    private static List<ShardResult> fullResults() {
+        List<ShardResult> results = new ArrayList<>();
+        for (List<ShardEntry> shard : SHARDS) {
+            results.add(new ShardResult(shard.size(), 0, shard));
+        }
+        return results;
+    }
+
+    /**
+     * 所有学生放在一个分片中时的排名
+     */
+    private static List<ShardEntry> global() {
+        List<ShardEntry> all = new ArrayList<>();
+        SHARDS.forEach(all::addAll);
+        all.sort(RedisClusterStudentStorage.RANK_ORDER);
+        return all;
+    }
+
+    private static List<ShardEntry> slice(List<ShardEntry> entries, long from, int count) {
+        int start = (int) Math.min(from, entries.size());
+        return entries.subList(start, Math.min(entries.size(), start + Math.max(count, 0)));
+    }
+
+    private static List<ShardEntry> sorted(ShardEntry... entries) {
+        List<ShardEntry> list = new ArrayList<>(Arrays.asList(entries));
+        list.sort(RedisClusterStudentStorage.RANK_ORDER);
+        return Collections.unmodifiableList(list);
+    }
+
+    private static ShardEntry entry(String id, double score) {
+        return new ShardEntry(id, score, null, null, null);
+    }
+
+    private static ShardEntry birthday(String id, int avgScore, String birthday) {
+        return entry(id, Double.parseDouble(RedisStudentStorage.birthdayIndexScore(avgScore, birthday)));
+    }
+
+    private static List<String> ids(List<ShardEntry> entries) {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (ShardEntry entry : entries) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,105 @@
+package org.psd.storage.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.psd.common.ChangeEvent;
+import org.psd.common.PageInfo;
+import org.psd.common.WriteStatus;
+import org.psd.entity.Student;
+import org.psd.service.impl.StudentServiceImpl;
+import org.psd.storage.WriteMode;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 写后缓冲存储引擎的单元测试，刷新间隔足够长，缓冲中的更新只在调用flush时写入
+ *
+ * @author pengshidun
+ */
+public class WriteBehindStudentStorageTest {
+
+    private MemoryStudentStorage delegate;
+    private LocalChangeFeed feed;
+    private WriteBehindStudentStorage storage;
+
+    @Before
+    public void setUp() {
+        delegate = new MemoryStudentStorage();
+        feed = new LocalChangeFeed(100);
+        delegate.write(student("s1", "张三", 90), WriteMode.UPSERT);
+        delegate.write(student("s2", "李四", 80), WriteMode.UPSERT);
+        storage = new WriteBehindStudentStorage(delegate, feed, 100, 100, 60000L, 0L);
+    }
+
+    @After
+    public void tearDown() {
+        storage.shutdown();
+    }
+
+    @Test
+    public void readsOverlayBufferedUpdatesWithoutFlushing() {
+        long version = delegate.getVersion();
+        assertEquals(WriteStatus.UPDATED, storage.write(student("s2", "王五", 80), WriteMode.UPDATE));
+        assertTrue(storage.hasDeferredUpdates());
+
+        PageInfo<Student> page = storage.listPage(1, 10);
+        assertEquals("王五", page.getRecords().get(1).getName());
+        assertEquals("王五", storage.listByCursor(null, 10).getRecords().get(1).getName());
+        assertEquals("王五", storage.locate("s2", 10).getPage().getRecords().get(1).getName());
+        // 读取不写入缓冲中的更新，被包装引擎中的记录和版本号不变
+        assertEquals(version, delegate.getVersion());
+        assertEquals(version, storage.getVersion());
+        assertEquals("李四", delegate.listPage(1, 10).getRecords().get(1).getName());
+        assertEquals(ChangeEvent.INITIAL_ID, feed.latestId());
+    }
+
+    @Test
+    public void updateEventIsAppendedAfterCommit() {
+        long version = delegate.getVersion();
+        storage.write(student("s1", "甲", 90), WriteMode.UPDATE);
+        storage.write(student("s1", "乙", 90), WriteMode.UPDATE);
+        assertEquals(ChangeEvent.INITIAL_ID, feed.latestId());
+
+        storage.flush();
+        assertFalse(storage.hasDeferredUpdates());
+        assertEquals(version + 1, delegate.getVersion());
+        // 合并后的更新只追加一个事件
+        List<ChangeEvent> events = feed.read(ChangeEvent.INITIAL_ID, 10, 0);
+        assertEquals(1, events.size());
+        assertEquals(ChangeEvent.UPDATE, events.get(0).getType());
+        assertEquals("乙", events.get(0).getStudent().getName());
+    }
+
+    @Test
+    public void serviceLeavesBufferedUpdateEventsToStorage() {
+        StudentServiceImpl service = new StudentServiceImpl(storage, feed);
+        assertNotNull(service.getDatasetVersion());
+        Student student = student("s1", "丙", 95);
+        student.setBirthday("2001-02-03");
+        assertEquals(WriteStatus.UPDATED, service.updateStudent(student));
+        assertEquals(ChangeEvent.INITIAL_ID, feed.latestId());
+        // 有尚未写入的更新时版本号不能标识读取结果
+        assertNull(service.getDatasetVersion());
+
+        storage.flush();
+        assertEquals(1, feed.read(ChangeEvent.INITIAL_ID, 10, 0).size());
+        assertNotNull(service.getDatasetVersion());
+    }
+
+    private static Student student(String id, String name, int avgScore) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName(name);
+        student.setDescription("");
+        student.setBirthday("");
+        student.setAvgScore(avgScore);
+        return student;
+    }
+}
@@ -0,0 +1,149 @@
+package org.psd.util;
+
+import org.psd.entity.Student;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 比较StudentCodec与JacksonUtils.mapToBean/beanToMap往返转换每条记录分配的堆内存和耗时。
+ * 通过HotSpot的ThreadMXBean统计当前线程分配的字节数，先预热再测量，结果为每条记录的平均值。
+ * 运行方式(在StudentDataManagement目录下):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) org.psd.util.StudentCodecBenchmark [次数]
+ * </pre>
+ *
+ * @author pengshidun
+ */
+public class StudentCodecBenchmark {
+    /**
+     * 默认的测量次数
+     */
+    private static final int DEFAULT_ITERATIONS = 200000;
+
+    /**
+     * 用于测量的学生信息
+     */
+    private static final Student STUDENT = new Student();
+    /**
+     * HGETALL返回的字段Map
+     */
+    private static final Map<String, String> HASH = new LinkedHashMap<>();
+    /**
+     * Lua脚本返回的字段名和字段值交替排列的列表
+     */
+    private static final List<String> FIELDS;
+    /**
+     * 紧凑记录
+     */
+    private static final String PACKED;
+    /**
+     * 防止JIT消除测量代码的结果累加值
+     */
+    private static long sink;
+
+    static {
+        STUDENT.setId("20210001");
+        STUDENT.setName("张三");
+        STUDENT.setBirthday("2003-05-17");
+        STUDENT.setDescription("喜欢数学和物理，担任班长");
+        STUDENT.setAvgScore(128);
+        HASH.putAll(StudentCodec.toHash(STUDENT));
+        List<String> fields = new ArrayList<>();
+        HASH.forEach((field, value) -> {
+            fields.add(field);
+            fields.add(value);
+        });
+        FIELDS = fields;
+        PACKED = StudentCodec.pack(STUDENT);
+    }
+
+    /**
+     * 私有构造方法，防止实例化
+     */
+    private StudentCodecBenchmark() {
+    }
+
+    /**
+     * 各实现的测量项，依次为读取(Redis记录转换为Student)和写入(Student转换为Redis记录)
+     *
+     * @return 测量项名称到测量代码的Map
+     */
+    static Map<String, IntConsumer> cases() {
+        Map<String, IntConsumer> cases = new LinkedHashMap<>();
+        cases.put("read  JacksonUtils.mapToBean", i -> sink += JacksonUtils.mapToBean(HASH, Student.class).getAvgScore());
+        cases.put("read  StudentCodec.fromHash", i -> sink += StudentCodec.fromHash(HASH).getAvgScore());
+        cases.put("read  StudentCodec.fromFields", i -> sink += StudentCodec.fromFields(FIELDS).getAvgScore());
+        cases.put("read  StudentCodec.unpack", i -> sink += StudentCodec.unpack(STUDENT.getId(), PACKED).getAvgScore());
+        cases.put("write JacksonUtils.beanToMap", i -> sink += JacksonUtils.beanToMap(STUDENT, String.class, String.class).size());
+        cases.put("write StudentCodec.toHash", i -> sink += StudentCodec.toHash(STUDENT).size());
+        cases.put("write StudentCodec.pack", i -> sink += StudentCodec.pack(STUDENT).length());
+        return cases;
+    }
+
+    /**
+     * 测量每次调用在当前线程分配的平均字节数
+     *
+     * @param action     测量代码
+     * @param iterations 测量次数
+     * @return 每次调用分配的字节数，JVM不支持统计线程分配字节数时返回-1
+     */
+    static double allocatedBytesPerCall(IntConsumer action, int iterations) {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        if (threads == null) {
+            return -1;
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            action.accept(i);
+        }
+        return (double) (threads.getThreadAllocatedBytes(threadId) - before) / iterations;
+    }
+
+    /**
+     * 获取支持统计线程分配字节数的ThreadMXBean
+     *
+     * @return ThreadMXBean，不支持时返回null
+     */
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    /**
+     * 运行基准测试并输出每条记录的分配字节数和耗时
+     *
+     * @param args 可选的测量次数
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        Map<String, IntConsumer> cases = cases();
+        // 预热，使测量代码完成JIT编译
+        for (IntConsumer action : cases.values()) {
+            allocatedBytesPerCall(action, iterations);
+        }
+        System.out.printf("%-32s %12s %12s%n", "case", "bytes/op", "ns/op");
+        for (Map.Entry<String, IntConsumer> entry : cases.entrySet()) {
+            double bytes = allocatedBytesPerCall(entry.getValue(), iterations);
+            long start = System.nanoTime();
+            allocatedBytesPerCall(entry.getValue(), iterations);
+            double nanos = (double) (System.nanoTime() - start) / iterations;
+            System.out.printf("%-32s %12.1f %12.1f%n", entry.getKey(), bytes, nanos);
+        }
+        System.out.println("sink: " + sink);
+    }
+}
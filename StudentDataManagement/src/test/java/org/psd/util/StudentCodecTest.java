@@ -0,0 +1,51 @@
+package org.psd.util;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.psd.entity.Student;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StudentCodec的单元测试，验证编解码往返结果与Jackson一致，且每条记录分配的内存少于Jackson往返转换
+ *
+ * @author pengshidun
+ */
+public class StudentCodecTest {
+
+    @Test
+    public void roundTripsMatchJackson() {
+        Student student = new Student();
+        student.setId("20210001");
+        student.setName("张三");
+        student.setBirthday("2003-05-17");
+        student.setDescription("喜欢数学");
+        student.setAvgScore(128);
+        Map<String, String> hash = StudentCodec.toHash(student);
+        assertEquals(JacksonUtils.beanToMap(student, String.class, String.class), hash);
+        assertEquals(JacksonUtils.mapToBean(hash, Student.class), StudentCodec.fromHash(hash));
+        assertEquals(student, StudentCodec.fromFields(Arrays.asList("id", "20210001", "name", "张三",
+                "birthday", "2003-05-17", "description", "喜欢数学", "avgScore", "128")));
+        assertEquals(student, StudentCodec.unpack(student.getId(), StudentCodec.pack(student)));
+    }
+
+    @Test
+    public void allocatesLessThanJacksonPerRecord() {
+        Map<String, IntConsumer> cases = StudentCodecBenchmark.cases();
+        int iterations = 20000;
+        // 预热后测量
+        cases.values().forEach(action -> StudentCodecBenchmark.allocatedBytesPerCall(action, iterations));
+        double jacksonRead = StudentCodecBenchmark.allocatedBytesPerCall(cases.get("read  JacksonUtils.mapToBean"), iterations);
+        Assume.assumeTrue("JVM不支持统计线程分配字节数", jacksonRead >= 0);
+        double codecRead = StudentCodecBenchmark.allocatedBytesPerCall(cases.get("read  StudentCodec.fromFields"), iterations);
+        double jacksonWrite = StudentCodecBenchmark.allocatedBytesPerCall(cases.get("write JacksonUtils.beanToMap"), iterations);
+        double codecWrite = StudentCodecBenchmark.allocatedBytesPerCall(cases.get("write StudentCodec.toHash"), iterations);
+        assertTrue("读取: codec " + codecRead + " B, jackson " + jacksonRead + " B", codecRead * 2 < jacksonRead);
+        assertTrue("写入: codec " + codecWrite + " B, jackson " + jacksonWrite + " B", codecWrite * 2 < jacksonWrite);
+    }
+}